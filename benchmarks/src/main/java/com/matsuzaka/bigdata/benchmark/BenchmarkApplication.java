@@ -0,0 +1,28 @@
+package com.matsuzaka.bigdata.benchmark;
+
+import com.matsuzaka.bigdata.entity.Enrollment;
+import com.matsuzaka.bigdata.repository.EnrollmentRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.repository.SearchRepository;
+import com.matsuzaka.bigdata.service.IndexProfileManager;
+import com.matsuzaka.bigdata.service.PerformanceService;
+import com.matsuzaka.bigdata.service.QueryMetrics;
+import com.matsuzaka.bigdata.service.QueryResultCache;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Benchmark 用的最小 Spring 設定：只載入資料存取層與 PerformanceService，
+ * 不啟動 Swing 視窗、Web 伺服器與 DataInitializer
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan(basePackageClasses = Enrollment.class)
+@EnableJpaRepositories(basePackageClasses = EnrollmentRepository.class)
+@Import({PerformanceService.class, EnrollmentStreamRepository.class, SearchRepository.class, QueryMetrics.class, QueryResultCache.class,
+        IndexProfileManager.class})
+public class BenchmarkApplication {
+}
@@ -0,0 +1,88 @@
+package com.matsuzaka.bigdata.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 啟動內嵌資料庫並產生指定規模的測試資料
+ * 學生數、課程數、教師數與選課數的比例沿用 DataInitializer (10,000 : 1,000 : 100 : 1,000,000)
+ */
+final class BenchmarkDataSet {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    final int students;
+    final int courses;
+    final int teachers;
+    final int enrollments;
+    final ConfigurableApplicationContext context;
+
+    private BenchmarkDataSet(int enrollments) {
+        this.enrollments = enrollments;
+        this.students = Math.max(enrollments / 100, 1);
+        this.courses = Math.max(enrollments / 1_000, 1);
+        this.teachers = Math.max(enrollments / 10_000, 1);
+        this.context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .run("--spring.config.name=benchmark");
+    }
+
+    static BenchmarkDataSet create(int enrollments) {
+        BenchmarkDataSet dataSet = new BenchmarkDataSet(enrollments);
+        dataSet.seed();
+        return dataSet;
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    void close() {
+        context.close();
+    }
+
+    private void seed() {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        LocalDate today = LocalDate.now();
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < students; i++) {
+            batch.add(new Object[]{"Student " + i, today.minusYears(18).minusDays(random.nextInt(365 * 7)), "student" + i + "@example.com"});
+            flushIfFull(jdbcTemplate, "INSERT INTO student (name, birth, email) VALUES (?, ?, ?)", batch, i == students - 1);
+        }
+        for (int i = 0; i < courses; i++) {
+            batch.add(new Object[]{"Course #" + i, random.nextInt(1, 5)});
+            flushIfFull(jdbcTemplate, "INSERT INTO course (title, credit) VALUES (?, ?)", batch, i == courses - 1);
+        }
+        for (int i = 0; i < teachers; i++) {
+            batch.add(new Object[]{"Teacher " + i, "teacher" + i + "@example.com"});
+            flushIfFull(jdbcTemplate, "INSERT INTO teacher (name, email) VALUES (?, ?)", batch, i == teachers - 1);
+        }
+        // 每門課一位教師，約兩成的課程再加一位合授教師
+        for (int i = 0; i < courses; i++) {
+            int teacher = random.nextInt(teachers);
+            batch.add(new Object[]{1 + teacher, 1 + i});
+            if (teachers > 1 && random.nextInt(5) == 0) {
+                batch.add(new Object[]{1 + (teacher + 1 + random.nextInt(teachers - 1)) % teachers, 1 + i});
+            }
+            flushIfFull(jdbcTemplate, "INSERT INTO course_assignment (teacher_id, course_id) VALUES (?, ?)", batch, i == courses - 1);
+        }
+        for (int i = 0; i < enrollments; i++) {
+            batch.add(new Object[]{1 + random.nextInt(students), 1 + random.nextInt(courses), today.minusDays(random.nextInt(365 * 3))});
+            flushIfFull(jdbcTemplate, "INSERT INTO enrollment (student_id, course_id, enrollment_date) VALUES (?, ?, ?)", batch, i == enrollments - 1);
+        }
+    }
+
+    private static void flushIfFull(JdbcTemplate jdbcTemplate, String sql, List<Object[]> batch, boolean last) {
+        if (batch.size() == BATCH_SIZE || (last && !batch.isEmpty())) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.matsuzaka.bigdata.benchmark;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.dto.TeacherEnrollmentInfo;
+import com.matsuzaka.bigdata.dto.TeacherStudentInfo;
+import com.matsuzaka.bigdata.service.IndexProfile;
+import com.matsuzaka.bigdata.service.IndexProfileManager;
+import com.matsuzaka.bigdata.service.PerformanceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 三個功能在「直接查詢資料庫」、「資料庫 + 查詢結果快取」與兩種記憶體索引 (HashMap、CSR) 上的 JMH 量測，
+ * 以及教師 → 課程 → 學生的多段 join (功能 8 / 9) 在資料庫與授課鄰接表 + CSR 上的量測
+ *
+ * 每次呼叫都查詢隨機的學生 / 課程 id，避免只量到單一 key 的快取效果。
+ * 服務內建的暖機已透過 bigdata.query.warmup-iterations=0 關閉，改由 JMH 的 @Warmup 負責。
+ * indexProfile 參數決定資料庫上的索引 (只影響 db / cache)，結果表中即可看出每個數字是在哪種索引下量到的；
+ * 只比較記憶體索引時可加上 -p indexProfile=covering 省去另外兩組。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class QueryPathBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int enrollments;
+
+    @Param({"10"})
+    private int topK;
+
+    @Param({"none", "single", "covering"})
+    private String indexProfile;
+
+    private BenchmarkDataSet dataSet;
+    private PerformanceService performanceService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSet = BenchmarkDataSet.create(enrollments);
+        dataSet.bean(IndexProfileManager.class).apply(IndexProfile.of(indexProfile));
+        performanceService = dataSet.bean(PerformanceService.class);
+        // 資料是在 @PostConstruct 之後才產生的，重新載入記憶體快取
+        performanceService.initializeInMemoryCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSet.close();
+    }
+
+    private long randomStudentId() {
+        return ThreadLocalRandom.current().nextLong(1, dataSet.students + 1);
+    }
+
+    private long randomCourseId() {
+        return ThreadLocalRandom.current().nextLong(1, dataSet.courses + 1);
+    }
+
+    private long randomTeacherId() {
+        return ThreadLocalRandom.current().nextLong(1, dataSet.teachers + 1);
+    }
+
+    // --- 功能 1 ---
+
+    @Benchmark
+    public QueryResult<StudentCourseInfo> feature1_coursesByStudent_db() {
+        return performanceService.findCoursesByStudentId_DB(randomStudentId());
+    }
+
+    @Benchmark
+    public QueryResult<StudentCourseInfo> feature1_coursesByStudent_cache() {
+        return performanceService.findCoursesByStudentId_Cached(randomStudentId());
+    }
+
+    @Benchmark
+    public QueryResult<StudentCourseInfo> feature1_coursesByStudent_hash() {
+        return performanceService.findCoursesByStudentId_InMemory(randomStudentId());
+    }
+
+    @Benchmark
+    public QueryResult<StudentCourseInfo> feature1_coursesByStudent_csr() {
+        return performanceService.findCoursesByStudentId_Csr(randomStudentId());
+    }
+
+    // --- 功能 2 ---
+
+    @Benchmark
+    public QueryResult<CourseStudentInfo> feature2_studentsByCourse_db() {
+        return performanceService.findStudentsByCourseId_DB(randomCourseId());
+    }
+
+    @Benchmark
+    public QueryResult<CourseStudentInfo> feature2_studentsByCourse_cache() {
+        return performanceService.findStudentsByCourseId_Cached(randomCourseId());
+    }
+
+    @Benchmark
+    public QueryResult<CourseStudentInfo> feature2_studentsByCourse_hash() {
+        return performanceService.findStudentsByCourseId_InMemory(randomCourseId());
+    }
+
+    @Benchmark
+    public QueryResult<CourseStudentInfo> feature2_studentsByCourse_csr() {
+        return performanceService.findStudentsByCourseId_Csr(randomCourseId());
+    }
+
+    // --- 功能 3 ---
+
+    @Benchmark
+    public QueryResult<PopularCourseInfo> feature3_topCourses_db() {
+        return performanceService.findTopPopularCourses_DB(topK);
+    }
+
+    @Benchmark
+    public QueryResult<PopularCourseInfo> feature3_topCourses_cache() {
+        return performanceService.findTopPopularCourses_Cached(topK);
+    }
+
+    @Benchmark
+    public QueryResult<PopularCourseInfo> feature3_topCourses_hash() {
+        return performanceService.findTopPopularCourses_InMemory(topK);
+    }
+
+    @Benchmark
+    public QueryResult<PopularCourseInfo> feature3_topCourses_csr() {
+        return performanceService.findTopPopularCourses_Csr(topK);
+    }
+
+    // --- 功能 8 / 9 (多段 join) ---
+
+    @Benchmark
+    public QueryResult<TeacherStudentInfo> feature8_studentsByTeacher_db() {
+        return performanceService.findStudentsByTeacherId_DB(randomTeacherId());
+    }
+
+    @Benchmark
+    public QueryResult<TeacherStudentInfo> feature8_studentsByTeacher_csr() {
+        return performanceService.findStudentsByTeacherId_Csr(randomTeacherId());
+    }
+
+    @Benchmark
+    public QueryResult<TeacherEnrollmentInfo> feature9_topTeachers_db() {
+        return performanceService.findTopTeachers_DB(topK);
+    }
+
+    @Benchmark
+    public QueryResult<TeacherEnrollmentInfo> feature9_topTeachers_csr() {
+        return performanceService.findTopTeachers_Csr(topK);
+    }
+}
@@ -0,0 +1,116 @@
+package com.matsuzaka.bigdata.benchmark;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.service.PerformanceService;
+import com.matsuzaka.bigdata.service.ShardedQueryEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片查詢引擎 (ShardedQueryEngine) 隨分片數增加的延遲，與同一份資料在單機 CSR 索引上的量測並列
+ *
+ * 每個 shards 參數都會重新啟動對應數量的工作行程；單機的 csr 量測與分片數無關，每組參數各量一次作為對照。
+ * 分片版本直接呼叫引擎的查詢方法，單機版本經由 PerformanceService 的計時方法 (只多了一次 nanoTime 與配置量讀取)。
+ * 功能 1 不論分片數都只有一次行程間往返；功能 2 / 3 需要詢問所有分片，功能 3 依 TPUT 最多三輪。
+ * 只比較部分分片數時可加上例如 -p shards=1,4。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ShardedQueryBenchmark {
+
+    @Param({"1000000"})
+    private int enrollments;
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    @Param({"10"})
+    private int topK;
+
+    private BenchmarkDataSet dataSet;
+    private PerformanceService performanceService;
+    private ShardedQueryEngine shardedEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSet = BenchmarkDataSet.create(enrollments);
+        performanceService = dataSet.bean(PerformanceService.class);
+        // 資料是在 @PostConstruct 之後才產生的，重新載入記憶體快取
+        performanceService.initializeInMemoryCache();
+        shardedEngine = new ShardedQueryEngine(performanceService, dataSet.bean(EnrollmentStreamRepository.class), shards, "512m");
+        shardedEngine.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shardedEngine.close();
+        dataSet.close();
+    }
+
+    private long randomStudentId() {
+        return ThreadLocalRandom.current().nextLong(1, dataSet.students + 1);
+    }
+
+    private long randomCourseId() {
+        return ThreadLocalRandom.current().nextLong(1, dataSet.courses + 1);
+    }
+
+    // --- 功能 1 ---
+
+    @Benchmark
+    public QueryResult<StudentCourseInfo> feature1_coursesByStudent_csr() {
+        return performanceService.findCoursesByStudentId_Csr(randomStudentId());
+    }
+
+    @Benchmark
+    public List<StudentCourseInfo> feature1_coursesByStudent_sharded() {
+        return shardedEngine.findCoursesByStudentId(randomStudentId());
+    }
+
+    // --- 功能 2 ---
+
+    @Benchmark
+    public QueryResult<CourseStudentInfo> feature2_studentsByCourse_csr() {
+        return performanceService.findStudentsByCourseId_Csr(randomCourseId());
+    }
+
+    @Benchmark
+    public List<CourseStudentInfo> feature2_studentsByCourse_sharded() {
+        return shardedEngine.findStudentsByCourseId(randomCourseId());
+    }
+
+    // --- 功能 3 ---
+
+    @Benchmark
+    public QueryResult<PopularCourseInfo> feature3_topCourses_csr() {
+        return performanceService.findTopPopularCourses_Csr(topK);
+    }
+
+    @Benchmark
+    public List<PopularCourseInfo> feature3_topCourses_sharded() {
+        return shardedEngine.findTopPopularCourses(topK);
+    }
+}
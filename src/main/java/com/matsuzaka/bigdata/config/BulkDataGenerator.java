@@ -0,0 +1,223 @@
+package com.matsuzaka.bigdata.config;
+
+import com.github.javafaker.Faker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 大量測試資料產生器 (bigdata.seed.mode=bulk)
+ *
+ * 與 saveAll 版本的差異：
+ * - 實體使用 GenerationType.IDENTITY，Hibernate 必須逐筆 INSERT 取回 id，jdbc.batch_size 完全不會生效；
+ *   這裡改用原生 JDBC 的多列 INSERT (INSERT ... VALUES (...), (...), ...)，一次往返寫入 batchSize 筆
+ * - 每個執行緒使用自己的連線，負責一段連續的資料列，並以手動 commit 減少交易次數
+ * - Faker 只在啟動時產生一小批姓名 / 課程名稱，之後隨機組合，不在每一列呼叫 Faker
+ */
+@Component
+public class BulkDataGenerator {
+
+    private static final int NAME_POOL_SIZE = 500;
+    /** 每寫入幾個多列 INSERT 提交一次交易 */
+    private static final int BATCHES_PER_COMMIT = 20;
+    /** 各資料表寫入的欄位數最大值 (student、enrollment 各 3 欄) */
+    private static final int MAX_COLUMNS = 3;
+    /** MariaDB / MySQL 單一 PreparedStatement 的參數數上限 */
+    private static final int MAX_PLACEHOLDERS = 65_535;
+
+    /**
+     * 將第 rowIndex 筆資料的欄位綁定到 PreparedStatement 中，從第 parameterIndex 個參數開始
+     */
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement statement, int parameterIndex, long rowIndex, ThreadLocalRandom random) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int threads;
+    private final int batchSize;
+
+    public BulkDataGenerator(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                             @Value("${bigdata.seed.threads:4}") int threads,
+                             @Value("${bigdata.seed.batch-size:1000}") int batchSize) {
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("bigdata.seed.threads 與 batch-size 必須為正數");
+        }
+        if ((long) batchSize * MAX_COLUMNS > MAX_PLACEHOLDERS) {
+            throw new IllegalArgumentException("bigdata.seed.batch-size 最多 " + MAX_PLACEHOLDERS / MAX_COLUMNS
+                    + " 列 (每列 " + MAX_COLUMNS + " 個參數，單一 INSERT 最多 " + MAX_PLACEHOLDERS + " 個參數): " + batchSize);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    public void generate(long studentCount, long courseCount, long teacherCount, long enrollmentCount) {
+        Faker faker = new Faker(new Locale("zh-TW"));
+        String[] firstNames = new String[NAME_POOL_SIZE];
+        String[] lastNames = new String[NAME_POOL_SIZE];
+        String[] courseTitles = new String[NAME_POOL_SIZE];
+        for (int i = 0; i < NAME_POOL_SIZE; i++) {
+            firstNames[i] = faker.name().firstName();
+            lastNames[i] = faker.name().lastName();
+            courseTitles[i] = faker.educator().course();
+        }
+        LocalDate today = LocalDate.now();
+
+        // 1. 學生：生日落在 18 ~ 25 歲之間，email 加上序號確保唯一
+        insert("student", "name, birth, email", 3, studentCount, (ps, p, i, random) -> {
+            String firstName = firstNames[random.nextInt(NAME_POOL_SIZE)];
+            String lastName = lastNames[random.nextInt(NAME_POOL_SIZE)];
+            ps.setString(p, firstName + " " + lastName);
+            ps.setObject(p + 1, today.minusYears(18).minusDays(random.nextInt(7 * 365)));
+            ps.setString(p + 2, firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@example.com");
+        });
+
+        // 2. 課程：名稱加上序號避免重複
+        insert("course", "title, credit", 2, courseCount, (ps, p, i, random) -> {
+            ps.setString(p, courseTitles[random.nextInt(NAME_POOL_SIZE)] + " #" + i);
+            ps.setInt(p + 1, random.nextInt(1, 5));
+        });
+
+        // 3. 老師
+        insert("teacher", "name, email", 2, teacherCount, (ps, p, i, random) -> {
+            String firstName = firstNames[random.nextInt(NAME_POOL_SIZE)];
+            String lastName = lastNames[random.nextInt(NAME_POOL_SIZE)];
+            ps.setString(p, firstName + " " + lastName);
+            ps.setString(p + 1, firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@example-teacher.com");
+        });
+
+        // 4. 選課紀錄：空表新增的自動遞增 id 是連續的，直接在 id 範圍內隨機挑選學生與課程
+        long[] studentIds = idRange("student");
+        long[] courseIds = idRange("course");
+        insert("enrollment", "student_id, course_id, enrollment_date", 3, enrollmentCount, (ps, p, i, random) -> {
+            ps.setLong(p, random.nextLong(studentIds[0], studentIds[1] + 1));
+            ps.setLong(p + 1, random.nextLong(courseIds[0], courseIds[1] + 1));
+            ps.setObject(p + 2, today.minusDays(random.nextInt(365 * 3)));
+        });
+    }
+
+    private long[] idRange(String table) {
+        return jdbcTemplate.queryForObject("SELECT MIN(id), MAX(id) FROM " + table,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
+
+    /**
+     * 將 rows 筆資料平均分給各執行緒，以多列 INSERT 平行寫入，並印出每秒寫入筆數
+     */
+    private void insert(String table, String columns, int columnCount, long rows, RowBinder binder) {
+        if (rows <= 0) {
+            return;
+        }
+        System.out.printf("[大量產生] 正在寫入 %,d 筆 %s 資料 (執行緒: %d，每批 %d 列)...%n", rows, table, threads, batchSize);
+        long startTime = System.currentTimeMillis();
+        AtomicLong inserted = new AtomicLong();
+        long progressStep = Math.max(rows / 10, 1);
+
+        int taskCount = (int) Math.min(threads, rows);
+        long chunk = (rows + taskCount - 1) / taskCount;
+        List<Callable<Void>> tasks = new ArrayList<>(taskCount);
+        for (int t = 0; t < taskCount; t++) {
+            long from = t * chunk;
+            long to = Math.min(from + chunk, rows);
+            tasks.add(() -> {
+                insertRange(table, columns, columnCount, from, to, binder, rowsWritten -> {
+                    long done = inserted.addAndGet(rowsWritten);
+                    if (done / progressStep != (done - rowsWritten) / progressStep) {
+                        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+                        System.out.printf("...%s 已寫入 %,d 筆 (%,d 筆/秒)%n", table, done, done * 1000 / elapsed);
+                    }
+                });
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(taskCount);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("資料產生被中斷", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(table + " 資料寫入失敗", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+        System.out.printf("[大量產生] %-10s %,12d 筆，耗時: %,d ms，%,d 筆/秒%n", table, rows, elapsed, rows * 1000 / elapsed);
+    }
+
+    private void insertRange(String table, String columns, int columnCount, long from, long to, RowBinder binder,
+                             LongConsumer progress) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            long row = from;
+            try (PreparedStatement statement = connection.prepareStatement(multiRowInsert(table, columns, columnCount, batchSize))) {
+                int batches = 0;
+                while (to - row >= batchSize) {
+                    bindRows(statement, columnCount, row, batchSize, binder, random);
+                    statement.executeUpdate();
+                    row += batchSize;
+                    if (++batches % BATCHES_PER_COMMIT == 0) {
+                        connection.commit();
+                    }
+                    progress.accept(batchSize);
+                }
+            }
+            int remaining = (int) (to - row);
+            if (remaining > 0) {
+                try (PreparedStatement statement = connection.prepareStatement(multiRowInsert(table, columns, columnCount, remaining))) {
+                    bindRows(statement, columnCount, row, remaining, binder, random);
+                    statement.executeUpdate();
+                }
+                progress.accept(remaining);
+            }
+            connection.commit();
+        }
+    }
+
+    private static void bindRows(PreparedStatement statement, int columnCount, long firstRow, int rowCount,
+                                 RowBinder binder, ThreadLocalRandom random) throws SQLException {
+        for (int r = 0; r < rowCount; r++) {
+            binder.bind(statement, r * columnCount + 1, firstRow + r, random);
+        }
+    }
+
+    /**
+     * INSERT INTO table (columns) VALUES (?, ?), (?, ?), ...
+     */
+    private static String multiRowInsert(String table, String columns, int columnCount, int rowCount) {
+        String row = "(" + "?, ".repeat(columnCount - 1) + "?)";
+        StringBuilder sql = new StringBuilder(32 + rowCount * (row.length() + 2))
+                .append("INSERT INTO ").append(table).append(" (").append(columns).append(") VALUES ");
+        for (int r = 0; r < rowCount; r++) {
+            if (r > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+}
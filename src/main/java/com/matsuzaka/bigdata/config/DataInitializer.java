@@ -9,7 +9,9 @@ import com.matsuzaka.bigdata.repository.CourseRepository;
 import com.matsuzaka.bigdata.repository.EnrollmentRepository;
 import com.matsuzaka.bigdata.repository.StudentRepository;
 import com.matsuzaka.bigdata.repository.TeacherRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
@@ -22,6 +24,7 @@ import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 @Component
+@Order(0) // 先產生資料，再執行其他 CommandLineRunner (例如命令列壓測)
 public class DataInitializer implements CommandLineRunner {
 
     private final JdbcTemplate jdbcTemplate;
@@ -29,13 +32,33 @@ public class DataInitializer implements CommandLineRunner {
     private final CourseRepository courseRepository;
     private final TeacherRepository teacherRepository;
     private final EnrollmentRepository enrollmentRepository;
+    private final BulkDataGenerator bulkDataGenerator;
 
-    public DataInitializer(JdbcTemplate jdbcTemplate, StudentRepository studentRepository, CourseRepository courseRepository, TeacherRepository teacherRepository, EnrollmentRepository enrollmentRepository) {
+    /** jpa: 逐筆以 saveAll 寫入；bulk: 多執行緒原生 JDBC 多列 INSERT */
+    private final String mode;
+    private final int studentCount;
+    private final int courseCount;
+    private final int teacherCount;
+    private final long enrollmentCount;
+
+    public DataInitializer(JdbcTemplate jdbcTemplate, StudentRepository studentRepository, CourseRepository courseRepository, TeacherRepository teacherRepository, EnrollmentRepository enrollmentRepository,
+                           BulkDataGenerator bulkDataGenerator,
+                           @Value("${bigdata.seed.mode:bulk}") String mode,
+                           @Value("${bigdata.seed.students:10000}") int studentCount,
+                           @Value("${bigdata.seed.courses:1000}") int courseCount,
+                           @Value("${bigdata.seed.teachers:100}") int teacherCount,
+                           @Value("${bigdata.seed.enrollments:1000000}") long enrollmentCount) {
         this.jdbcTemplate = jdbcTemplate;
         this.studentRepository = studentRepository;
         this.courseRepository = courseRepository;
         this.teacherRepository = teacherRepository;
         this.enrollmentRepository = enrollmentRepository;
+        this.bulkDataGenerator = bulkDataGenerator;
+        this.mode = mode;
+        this.studentCount = studentCount;
+        this.courseCount = courseCount;
+        this.teacherCount = teacherCount;
+        this.enrollmentCount = enrollmentCount;
     }
 
     @Override
@@ -44,19 +67,64 @@ public class DataInitializer implements CommandLineRunner {
         Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM enrollment", Integer.class);
         if (count != null && count > 0) {
             System.out.println("資料庫已有資料，跳過資料生成程序。");
-            return;
+        } else {
+            System.out.printf("資料庫為空，開始生成大量測試資料 (模式: %s)...%n", mode);
+            long startTime = System.currentTimeMillis();
+
+            if ("bulk".equalsIgnoreCase(mode)) {
+                bulkDataGenerator.generate(studentCount, courseCount, teacherCount, enrollmentCount);
+            } else {
+                generateWithJpa();
+            }
+
+            long endTime = System.currentTimeMillis();
+            System.out.printf("所有資料生成完畢，總耗時: %.2f 分鐘%n", (endTime - startTime) / 60000.0);
         }
+        // 在加入授課資料之前建立的資料庫也要補上，教師相關查詢 (功能 8 / 9) 才有資料
+        generateCourseAssignments();
+    }
 
-        System.out.println("資料庫為空，開始生成大量測試資料...");
-        long startTime = System.currentTimeMillis();
+    /**
+     * 授課資料表為空時，替每門課隨機指派一位教師，約兩成的課程再加一位合授教師
+     * 只有課程數筆，兩種產生模式共用同一個批次寫入
+     */
+    private void generateCourseAssignments() {
+        Integer assignments = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM course_assignment", Integer.class);
+        if (assignments != null && assignments > 0) {
+            return;
+        }
+        List<Long> teacherIds = jdbcTemplate.queryForList("SELECT id FROM teacher", Long.class);
+        List<Long> courseIds = jdbcTemplate.queryForList("SELECT id FROM course", Long.class);
+        if (teacherIds.isEmpty() || courseIds.isEmpty()) {
+            return;
+        }
+        Random random = new Random();
+        List<Object[]> rows = new ArrayList<>(courseIds.size() * 6 / 5);
+        for (Long courseId : courseIds) {
+            int first = random.nextInt(teacherIds.size());
+            rows.add(new Object[]{teacherIds.get(first), courseId});
+            if (teacherIds.size() > 1 && random.nextInt(5) == 0) {
+                // 與第一位不同的另一位教師
+                int second = (first + 1 + random.nextInt(teacherIds.size() - 1)) % teacherIds.size();
+                rows.add(new Object[]{teacherIds.get(second), courseId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO course_assignment (teacher_id, course_id) VALUES (?, ?)", rows);
+        System.out.printf("授課資料生成完畢，共 %,d 筆。%n", rows.size());
+    }
 
+    /**
+     * 原本的產生方式：每一列呼叫 Faker，並以 saveAll 寫入
+     * 注意 IDENTITY 主鍵會讓 Hibernate 的 JDBC 批次寫入失效，大量資料請改用 bulk 模式
+     */
+    private void generateWithJpa() {
         Faker faker = new Faker(new Locale("zh-TW"));
         Random random = new Random();
 
-        // 1. 生成 10,000 學生
-        System.out.println("正在生成 10,000 筆學生資料...");
+        // 1. 生成學生
+        System.out.printf("正在生成 %,d 筆學生資料...%n", studentCount);
         List<Student> students = new ArrayList<>();
-        for (int i = 0; i < 10000; i++) {
+        for (int i = 0; i < studentCount; i++) {
             Student s = new Student();
             String firstName = faker.name().firstName();
             String lastName = faker.name().lastName();
@@ -69,10 +137,10 @@ public class DataInitializer implements CommandLineRunner {
         List<Student> savedStudents = studentRepository.saveAllAndFlush(students);
         System.out.println("學生資料生成完畢。");
 
-        // 2. 生成 1,000 課程
-        System.out.println("正在生成 1,000 筆課程資料...");
+        // 2. 生成課程
+        System.out.printf("正在生成 %,d 筆課程資料...%n", courseCount);
         List<Course> courses = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
+        for (int i = 0; i < courseCount; i++) {
             Course c = new Course();
             c.setTitle(faker.educator().course() + " #" + i); // 課程名稱也加上唯一後綴避免重複
             c.setCredit(random.nextInt(1, 5));
@@ -81,10 +149,10 @@ public class DataInitializer implements CommandLineRunner {
         List<Course> savedCourses = courseRepository.saveAllAndFlush(courses);
         System.out.println("課程資料生成完畢。");
 
-        // 3. 生成 100 老師
-        System.out.println("正在生成 100 筆教師資料...");
+        // 3. 生成老師
+        System.out.printf("正在生成 %,d 筆教師資料...%n", teacherCount);
         List<Teacher> teachers = new ArrayList<>();
-        for (int i = 0; i < 100; i++) {
+        for (int i = 0; i < teacherCount; i++) {
             Teacher t = new Teacher();
             String firstName = faker.name().firstName();
             String lastName = faker.name().lastName();
@@ -96,11 +164,11 @@ public class DataInitializer implements CommandLineRunner {
         teacherRepository.saveAllAndFlush(teachers);
         System.out.println("教師資料生成完畢。");
 
-        // 4. 生成 1,000,000 筆選課紀錄
-        System.out.println("正在生成 1,000,000 筆選課紀錄，請稍候...");
+        // 4. 生成選課紀錄
+        System.out.printf("正在生成 %,d 筆選課紀錄，請稍候...%n", enrollmentCount);
         int batchSize = 1000; // 每 1000 筆存一次
         List<Enrollment> enrollmentBatch = new ArrayList<>();
-        for (int i = 1; i <= 1_000_000; i++) {
+        for (long i = 1; i <= enrollmentCount; i++) {
             Enrollment e = new Enrollment();
             e.setStudentId(savedStudents.get(random.nextInt(savedStudents.size())).getId());
             e.setCourseId(savedCourses.get(random.nextInt(savedCourses.size())).getId());
@@ -119,8 +187,5 @@ public class DataInitializer implements CommandLineRunner {
             enrollmentRepository.saveAll(enrollmentBatch);
         }
         System.out.println("選課紀錄生成完畢。");
-
-        long endTime = System.currentTimeMillis();
-        System.out.printf("所有資料生成完畢，總耗時: %.2f 分鐘%n", (endTime - startTime) / 60000.0);
     }
 }
\ No newline at end of file
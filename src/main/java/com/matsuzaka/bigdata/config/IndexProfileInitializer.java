@@ -0,0 +1,41 @@
+package com.matsuzaka.bigdata.config;
+
+import com.matsuzaka.bigdata.service.IndexProfile;
+import com.matsuzaka.bigdata.service.IndexProfileManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 資料產生後套用 bigdata.db.index-profile 指定的索引設定檔；未指定時只偵測目前的索引作為量測標籤
+ * 先產生資料再建索引，大量寫入時不必同時維護索引。
+ */
+@Component
+@Order(1)
+public class IndexProfileInitializer implements CommandLineRunner {
+
+    private final IndexProfileManager indexProfileManager;
+    private final String profile;
+    private final boolean explainOnStartup;
+
+    public IndexProfileInitializer(IndexProfileManager indexProfileManager,
+                                   @Value("${bigdata.db.index-profile:}") String profile,
+                                   @Value("${bigdata.db.explain-on-startup:false}") boolean explainOnStartup) {
+        this.indexProfileManager = indexProfileManager;
+        this.profile = profile;
+        this.explainOnStartup = explainOnStartup;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (profile.isBlank()) {
+            System.out.printf("[索引設定檔] 目前為 %s%n", indexProfileManager.detectAndTag());
+        } else {
+            indexProfileManager.apply(IndexProfile.of(profile));
+        }
+        if (explainOnStartup) {
+            indexProfileManager.explainAll(false);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.matsuzaka.bigdata.config;
+
+import com.matsuzaka.bigdata.dto.LoadProfile;
+import com.matsuzaka.bigdata.service.LoadDriver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 以命令列執行壓測，完成後結束程式 (不開啟 GUI)，例如：
+ * java -jar BigData-exec.jar --bigdata.loadtest.enabled=true --bigdata.loadtest.engines=db,csr --bigdata.loadtest.threads=200
+ */
+@Component
+@ConditionalOnProperty(name = "bigdata.loadtest.enabled", havingValue = "true")
+public class LoadTestRunner implements CommandLineRunner {
+
+    private final LoadDriver loadDriver;
+    private final ConfigurableApplicationContext context;
+    private final LoadProfile profile;
+
+    public LoadTestRunner(LoadDriver loadDriver, ConfigurableApplicationContext context,
+                          @Value("${bigdata.loadtest.engines:db,cache,hash,csr}") List<String> engines,
+                          @Value("${bigdata.loadtest.threads:64}") int threads,
+                          @Value("${bigdata.loadtest.virtual-threads:false}") boolean virtualThreads,
+                          @Value("${bigdata.loadtest.duration-seconds:30}") int durationSeconds,
+                          @Value("${bigdata.loadtest.mix:4,4,2}") String mix,
+                          @Value("${bigdata.loadtest.distribution:zipf}") String distribution,
+                          @Value("${bigdata.loadtest.zipf-exponent:1.0}") double zipfExponent,
+                          @Value("${bigdata.loadtest.top-k:10}") int topK) {
+        this.loadDriver = loadDriver;
+        this.context = context;
+        this.profile = new LoadProfile(engines, threads, virtualThreads, Duration.ofSeconds(durationSeconds),
+                Arrays.stream(mix.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray(),
+                distribution, zipfExponent, topK);
+    }
+
+    @Override
+    public void run(String... args) {
+        loadDriver.run(profile, System.out::println);
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,34 @@
+package com.matsuzaka.bigdata.config;
+
+import com.matsuzaka.bigdata.repository.SearchRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 資料產生後建立功能 10 (前綴搜尋) 使用的 FULLTEXT 索引；已存在或資料庫不支援時略過
+ * 與 enrollment 的索引設定檔相同，先產生資料再建索引。
+ */
+@Component
+@Order(2)
+public class SearchIndexInitializer implements CommandLineRunner {
+
+    private final SearchRepository searchRepository;
+    private final boolean enabled;
+
+    public SearchIndexInitializer(SearchRepository searchRepository,
+                                  @Value("${bigdata.db.fulltext-index:true}") boolean enabled) {
+        this.searchRepository = searchRepository;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            return;
+        }
+        searchRepository.ensureFullTextIndexes();
+        System.out.printf("[搜尋] 資料庫端前綴搜尋使用 %s%n", searchRepository.usesFullText() ? "FULLTEXT 索引" : "REGEXP_LIKE (全表掃描)");
+    }
+}
@@ -0,0 +1,46 @@
+package com.matsuzaka.bigdata.controller;
+
+import com.matsuzaka.bigdata.dto.EnrollmentRequest;
+import com.matsuzaka.bigdata.entity.Enrollment;
+import com.matsuzaka.bigdata.service.PerformanceService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * 選課 / 退選 API：同時寫入資料庫與記憶體索引
+ */
+@RestController
+@RequestMapping("/api/enrollments")
+public class EnrollmentController {
+
+    private final PerformanceService performanceService;
+
+    public EnrollmentController(PerformanceService performanceService) {
+        this.performanceService = performanceService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Enrollment> enroll(@RequestBody EnrollmentRequest request) {
+        if (request.studentId() == null || request.courseId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "studentId 與 courseId 為必填");
+        }
+        try {
+            Enrollment saved = performanceService.enroll(request.studentId(), request.courseId(), request.enrollmentDate());
+            return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> unenroll(@PathVariable Long id) {
+        return performanceService.unenroll(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
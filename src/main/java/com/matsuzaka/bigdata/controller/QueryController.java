@@ -0,0 +1,373 @@
+package com.matsuzaka.bigdata.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.matsuzaka.bigdata.dto.BatchQueryResult;
+import com.matsuzaka.bigdata.dto.CoEnrolledCourseInfo;
+import com.matsuzaka.bigdata.dto.CourseOverlapInfo;
+import com.matsuzaka.bigdata.dto.CourseSearchInfo;
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.IndexFootprint;
+import com.matsuzaka.bigdata.dto.MonthlyEnrollmentCount;
+import com.matsuzaka.bigdata.dto.PageResult;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.QueryEngineInfo;
+import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentSearchInfo;
+import com.matsuzaka.bigdata.dto.TeacherEnrollmentInfo;
+import com.matsuzaka.bigdata.dto.TeacherStudentInfo;
+import com.matsuzaka.bigdata.service.PerformanceService;
+import com.matsuzaka.bigdata.service.QueryEngine;
+import com.matsuzaka.bigdata.service.QueryEngineRegistry;
+import com.matsuzaka.bigdata.service.SearchMode;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_OVERLAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_CO_ENROLLED_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_MONTHLY_ENROLLMENTS;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BETWEEN;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_TEACHER;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_TEACHERS;
+
+/**
+ * 各比較功能的查詢 API，供壓測工具直接呼叫 (與 Swing 介面使用相同的 PerformanceService)
+ *
+ * engine 參數選擇查詢方式，由 QueryEngineRegistry 依功能解析：memory 為該功能第一個記憶體引擎的別名，
+ * 該功能沒有實作的引擎回應 400，背景載入中的引擎回應 503；GET /api/engines 列出功能 1 / 2 / 3 的所有引擎。
+ * 回應標頭 X-Query-Engine 為實際使用的引擎，X-Query-Time-Nanos 與 Server-Timing 為核心查詢耗時 (不含暖機、序列化與網路)，
+ * X-Query-Allocated-Bytes 為計時區間內本執行緒配置的位元組數 (JVM 不支援時不附)。
+ */
+@RestController
+@RequestMapping("/api")
+public class QueryController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final PerformanceService performanceService;
+    private final QueryEngineRegistry queryEngineRegistry;
+    private final ObjectMapper objectMapper;
+
+    public QueryController(PerformanceService performanceService, QueryEngineRegistry queryEngineRegistry, ObjectMapper objectMapper) {
+        this.performanceService = performanceService;
+        this.queryEngineRegistry = queryEngineRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    // 功能 1 / 2 / 3 可用的查詢引擎
+    @GetMapping("/engines")
+    public List<QueryEngineInfo> engines() {
+        return queryEngineRegistry.engineInfos();
+    }
+
+    // 各記憶體索引的保留大小估計
+    @GetMapping("/memory")
+    public List<IndexFootprint> memory() {
+        return performanceService.memoryFootprint();
+    }
+
+    // 功能 1
+    @GetMapping("/students/{studentId}/courses")
+    public ResponseEntity<List<StudentCourseInfo>> coursesOfStudent(@PathVariable Long studentId,
+                                                                    @RequestParam(defaultValue = "memory") String engine) {
+        QueryEngine selected = registeredEngine(FEATURE_COURSES_BY_STUDENT, engine);
+        return timed(selected.id(), queryEngineRegistry.findCoursesByStudentId(selected, studentId));
+    }
+
+    // 功能 2
+    @GetMapping("/courses/{courseId}/students")
+    public ResponseEntity<List<CourseStudentInfo>> studentsOfCourse(@PathVariable Long courseId,
+                                                                    @RequestParam(defaultValue = "memory") String engine) {
+        QueryEngine selected = registeredEngine(FEATURE_STUDENTS_BY_COURSE, engine);
+        return timed(selected.id(), queryEngineRegistry.findStudentsByCourseId(selected, courseId));
+    }
+
+    // 功能 1 (批次)：請求內容為 id 的 JSON 陣列，回應標頭另有 X-Query-Ids (去重後的 id 數) 與 X-Query-Amortized-Nanos-Per-Id
+    @PostMapping("/students/courses/batch")
+    public ResponseEntity<Map<Long, List<StudentCourseInfo>>> coursesOfStudents(@RequestBody List<Long> studentIds,
+                                                                               @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_COURSES_BY_STUDENT_BATCH, engine);
+        try {
+            return timedBatch(selected, selected.equals("db")
+                    ? performanceService.findCoursesByStudentIds_DB(studentIds)
+                    : performanceService.findCoursesByStudentIds_Csr(studentIds));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 功能 2 (批次)
+    @PostMapping("/courses/students/batch")
+    public ResponseEntity<Map<Long, List<CourseStudentInfo>>> studentsOfCourses(@RequestBody List<Long> courseIds,
+                                                                               @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_STUDENTS_BY_COURSE_BATCH, engine);
+        try {
+            return timedBatch(selected, selected.equals("db")
+                    ? performanceService.findStudentsByCourseIds_DB(courseIds)
+                    : performanceService.findStudentsByCourseIds_Csr(courseIds));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 功能 2 (分頁)：cursor 取自上一頁回應的 X-Next-Cursor 標頭，沒有此標頭表示已是最後一頁
+    @GetMapping("/courses/{courseId}/students/page")
+    public ResponseEntity<List<CourseStudentInfo>> studentsOfCoursePage(@PathVariable Long courseId,
+                                                                        @RequestParam(defaultValue = "100") int size,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_STUDENTS_BY_COURSE_PAGE, engine);
+        PageResult<CourseStudentInfo> page;
+        try {
+            page = selected.equals("db")
+                    ? performanceService.findStudentsByCourseIdPage_DB(courseId, cursor, size)
+                    : performanceService.findStudentsByCourseIdPage_InMemory(courseId, cursor, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Query-Engine", selected)
+                .header("X-Query-Time-Nanos", Long.toString(page.executionTimeNanos()))
+                .header("Server-Timing", String.format(Locale.ROOT, "%s;dur=%.3f", selected, page.executionTimeMillis()));
+        if (page.allocatedBytes() >= 0) {
+            response.header("X-Query-Allocated-Bytes", Long.toString(page.allocatedBytes()));
+        }
+        if (page.nextCursor() != null) {
+            response.header("X-Next-Cursor", page.nextCursor());
+        }
+        return response.body(page.data());
+    }
+
+    // 功能 2 (串流)：每行一筆 JSON，邊查詢邊寫出，伺服器端不組成完整名單；耗時與配置量記錄在 bigdata.query 指標
+    @GetMapping(value = "/courses/{courseId}/students/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> studentsOfCourseStream(@PathVariable Long courseId,
+                                                                        @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_STUDENTS_BY_COURSE_STREAM, engine);
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                Consumer<CourseStudentInfo> sink = info -> {
+                    try {
+                        writer.write(info);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                if (selected.equals("db")) {
+                    performanceService.streamStudentsByCourseId_DB(courseId, sink);
+                } else {
+                    performanceService.streamStudentsByCourseId_InMemory(courseId, sink);
+                }
+            }
+            out.write('\n');
+        };
+        return ResponseEntity.ok().contentType(NDJSON).header("X-Query-Engine", selected).body(body);
+    }
+
+    // 功能 4
+    @GetMapping("/courses/{courseId}/students/between")
+    public ResponseEntity<List<CourseStudentInfo>> studentsOfCourseBetween(@PathVariable Long courseId,
+                                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                           @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_STUDENTS_BY_COURSE_BETWEEN, engine);
+        try {
+            return timed(selected, selected.equals("db")
+                    ? performanceService.findStudentsByCourseIdBetween_DB(courseId, from, to)
+                    : performanceService.findStudentsByCourseIdBetween_InMemory(courseId, from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 功能 5
+    @GetMapping("/courses/{courseId}/enrollments/monthly")
+    public ResponseEntity<List<MonthlyEnrollmentCount>> monthlyEnrollments(@PathVariable Long courseId,
+                                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                           @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_MONTHLY_ENROLLMENTS, engine);
+        try {
+            return timed(selected, selected.equals("db")
+                    ? performanceService.countEnrollmentsByMonth_DB(courseId, from, to)
+                    : performanceService.countEnrollmentsByMonth_InMemory(courseId, from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 功能 3
+    @GetMapping("/courses/top")
+    public ResponseEntity<List<PopularCourseInfo>> topCourses(@RequestParam(defaultValue = "10") int k,
+                                                              @RequestParam(defaultValue = "memory") String engine) {
+        if (k <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k 必須為正整數");
+        }
+        QueryEngine selected = registeredEngine(FEATURE_TOP_COURSES, engine);
+        return timed(selected.id(), queryEngineRegistry.findTopPopularCourses(selected, k));
+    }
+
+    // 功能 6：修過此課程的學生也修了哪些課，依共同修課的不重複學生數排序
+    @GetMapping("/courses/{courseId}/co-enrolled")
+    public ResponseEntity<List<CoEnrolledCourseInfo>> coEnrolledCourses(@PathVariable Long courseId,
+                                                                        @RequestParam(defaultValue = "10") int n,
+                                                                        @RequestParam(defaultValue = "memory") String engine) {
+        if (n <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "n 必須為正整數");
+        }
+        String selected = engineFor(FEATURE_CO_ENROLLED_COURSES, engine);
+        return timed(selected, selected.equals("db")
+                ? performanceService.findCoEnrolledCourses_DB(courseId, n)
+                : performanceService.findCoEnrolledCourses_Bitmap(courseId, n));
+    }
+
+    // 功能 7：兩門課修課學生的交集、聯集大小與 Jaccard 相似度
+    @GetMapping("/courses/{courseId}/overlap/{otherCourseId}")
+    public ResponseEntity<List<CourseOverlapInfo>> courseOverlap(@PathVariable Long courseId, @PathVariable Long otherCourseId,
+                                                                 @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_COURSE_OVERLAP, engine);
+        return timed(selected, selected.equals("db")
+                ? performanceService.findCourseOverlap_DB(courseId, otherCourseId)
+                : performanceService.findCourseOverlap_Bitmap(courseId, otherCourseId));
+    }
+
+    // 功能 8：修過此教師任一門課的不重複學生
+    @GetMapping("/teachers/{teacherId}/students")
+    public ResponseEntity<List<TeacherStudentInfo>> studentsOfTeacher(@PathVariable Long teacherId,
+                                                                      @RequestParam(defaultValue = "memory") String engine) {
+        String selected = engineFor(FEATURE_STUDENTS_BY_TEACHER, engine);
+        return timed(selected, selected.equals("db")
+                ? performanceService.findStudentsByTeacherId_DB(teacherId)
+                : performanceService.findStudentsByTeacherId_Csr(teacherId));
+    }
+
+    // 功能 9：依所授課程的修課人次總和排名教師
+    @GetMapping("/teachers/top")
+    public ResponseEntity<List<TeacherEnrollmentInfo>> topTeachers(@RequestParam(defaultValue = "10") int k,
+                                                                   @RequestParam(defaultValue = "memory") String engine) {
+        if (k <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k 必須為正整數");
+        }
+        String selected = engineFor(FEATURE_TOP_TEACHERS, engine);
+        return timed(selected, selected.equals("db")
+                ? performanceService.findTopTeachers_DB(k)
+                : performanceService.findTopTeachers_Csr(k));
+    }
+
+    // 功能 10：姓名或 email 中有詞以 q 開頭 (prefix)，或任何位置含有 q (substring) 的學生，依學生 id 排序
+    @GetMapping("/students/search")
+    public ResponseEntity<List<StudentSearchInfo>> searchStudents(@RequestParam String q,
+                                                                  @RequestParam(defaultValue = "prefix") String mode,
+                                                                  @RequestParam(defaultValue = "50") int limit,
+                                                                  @RequestParam(defaultValue = "memory") String engine) {
+        SearchMode searchMode = searchMode(mode);
+        String selected = engineFor(searchMode.studentFeature(), engine);
+        try {
+            return timed(selected, selected.equals("db")
+                    ? performanceService.searchStudents_DB(q, searchMode, limit)
+                    : performanceService.searchStudents_InMemory(q, searchMode, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 功能 10：課程名稱的前綴或子字串搜尋，依課程 id 排序
+    @GetMapping("/courses/search")
+    public ResponseEntity<List<CourseSearchInfo>> searchCourses(@RequestParam String q,
+                                                                @RequestParam(defaultValue = "prefix") String mode,
+                                                                @RequestParam(defaultValue = "50") int limit,
+                                                                @RequestParam(defaultValue = "memory") String engine) {
+        SearchMode searchMode = searchMode(mode);
+        String selected = engineFor(searchMode.courseFeature(), engine);
+        try {
+            return timed(selected, selected.equals("db")
+                    ? performanceService.searchCourses_DB(q, searchMode, limit)
+                    : performanceService.searchCourses_InMemory(q, searchMode, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 所有端點共用的 engine 參數檢查：該功能沒有的引擎回應 400，尚未就緒的引擎回應 503
+     */
+    private String engineFor(String feature, String engine) {
+        try {
+            return queryEngineRegistry.resolve(feature, engine);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * 功能 1 / 2 / 3 經由 QueryEngineRegistry 執行，需要引擎本身
+     */
+    private QueryEngine registeredEngine(String feature, String engine) {
+        String selected = engineFor(feature, engine);
+        return queryEngineRegistry.find(selected).orElseThrow();
+    }
+
+    private static SearchMode searchMode(String mode) {
+        try {
+            return SearchMode.of(mode);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static <T> ResponseEntity<List<T>> timed(String engine, QueryResult<T> result) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Query-Engine", engine)
+                .header("X-Query-Time-Nanos", Long.toString(result.executionTimeNanos()))
+                .header("Server-Timing", String.format(Locale.ROOT, "%s;dur=%.3f", engine, result.executionTimeMillis()));
+        if (result.allocatedBytes() >= 0) {
+            response.header("X-Query-Allocated-Bytes", Long.toString(result.allocatedBytes()));
+        }
+        return response.body(result.data());
+    }
+
+    private static <T> ResponseEntity<Map<Long, List<T>>> timedBatch(String engine, BatchQueryResult<T> result) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Query-Engine", engine)
+                .header("X-Query-Time-Nanos", Long.toString(result.executionTimeNanos()))
+                .header("X-Query-Ids", Integer.toString(result.idCount()))
+                .header("X-Query-Amortized-Nanos-Per-Id", String.format(Locale.ROOT, "%.0f", result.amortizedNanosPerId()))
+                .header("Server-Timing", String.format(Locale.ROOT, "%s;dur=%.3f", engine, result.executionTimeMillis()));
+        if (result.allocatedBytes() >= 0) {
+            response.header("X-Query-Allocated-Bytes", Long.toString(result.allocatedBytes()));
+        }
+        return response.body(result.data());
+    }
+}
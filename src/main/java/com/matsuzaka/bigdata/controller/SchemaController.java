@@ -0,0 +1,54 @@
+package com.matsuzaka.bigdata.controller;
+
+import com.matsuzaka.bigdata.dto.IndexProfileStatus;
+import com.matsuzaka.bigdata.dto.QueryPlan;
+import com.matsuzaka.bigdata.service.IndexProfile;
+import com.matsuzaka.bigdata.service.IndexProfileManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * 資料庫索引設定檔與執行計畫 API，例如：
+ * PUT /api/schema/index-profile/covering 切換索引後，GET /api/schema/explain?analyze=true 取得各原生查詢的實際執行計畫
+ */
+@RestController
+@RequestMapping("/api/schema")
+public class SchemaController {
+
+    private final IndexProfileManager indexProfileManager;
+
+    public SchemaController(IndexProfileManager indexProfileManager) {
+        this.indexProfileManager = indexProfileManager;
+    }
+
+    @GetMapping("/index-profile")
+    public IndexProfileStatus indexProfile() {
+        return new IndexProfileStatus(indexProfileManager.detectAndTag(), indexProfileManager.managedIndexes());
+    }
+
+    /**
+     * 同步建立 / 移除索引，大表上可能需要數分鐘才回應
+     */
+    @PutMapping("/index-profile/{profile}")
+    public IndexProfileStatus applyIndexProfile(@PathVariable String profile) {
+        try {
+            indexProfileManager.apply(IndexProfile.of(profile));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return indexProfile();
+    }
+
+    @GetMapping("/explain")
+    public List<QueryPlan> explain(@RequestParam(defaultValue = "false") boolean analyze) {
+        return indexProfileManager.explainAll(analyze);
+    }
+}
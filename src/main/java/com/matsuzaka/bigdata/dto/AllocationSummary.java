@@ -0,0 +1,9 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 某功能在某查詢引擎上每次查詢配置的位元組數統計
+ */
+public record AllocationSummary(long count, double meanBytes, double maxBytes) {
+
+    public static final AllocationSummary EMPTY = new AllocationSummary(0, 0, 0);
+}
@@ -0,0 +1,33 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批次查詢的結果：每個 id 一份結果清單 (依請求中 id 第一次出現的順序，查無資料時為空清單) 與整批的耗時
+ *
+ * @param allocatedBytes 計時範圍內呼叫端執行緒配置的位元組數；JVM 不支援執行緒配置計數時為 -1
+ */
+public record BatchQueryResult<T>(Map<Long, List<T>> data, long executionTimeNanos, long allocatedBytes) {
+
+    public double executionTimeMillis() {
+        return executionTimeNanos / 1_000_000.0;
+    }
+
+    public int idCount() {
+        return data.size();
+    }
+
+    public long rowCount() {
+        long rows = 0;
+        for (List<T> list : data.values()) {
+            rows += list.size();
+        }
+        return rows;
+    }
+
+    /** 整批耗時平均分攤到每個 id 的奈秒數 */
+    public double amortizedNanosPerId() {
+        return data.isEmpty() ? 0 : (double) executionTimeNanos / data.size();
+    }
+}
@@ -0,0 +1,6 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 與指定課程有共同修課學生的課程，sharedStudents 為兩門課都修過的不重複學生數
+ */
+public record CoEnrolledCourseInfo(String courseTitle, long sharedStudents) {}
@@ -0,0 +1,7 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 兩門課的修課學生重疊程度 (皆為不重複學生數)，jaccard = shared / (studentsA + studentsB - shared)
+ */
+public record CourseOverlapInfo(String courseTitleA, String courseTitleB, long studentsA, long studentsB,
+                                long sharedStudents, double jaccard) {}
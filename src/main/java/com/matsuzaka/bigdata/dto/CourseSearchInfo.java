@@ -0,0 +1,6 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 名稱符合搜尋字串的課程 (功能 10)；附上課程 ID 以便接著查詢其修課學生
+ */
+public record CourseSearchInfo(long courseId, String courseTitle, int credit) {}
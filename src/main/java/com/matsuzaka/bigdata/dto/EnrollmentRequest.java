@@ -0,0 +1,5 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.time.LocalDate;
+
+public record EnrollmentRequest(Long studentId, Long courseId, LocalDate enrollmentDate) {}
@@ -0,0 +1,13 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 某個記憶體索引的保留大小估計
+ *
+ * @param entries 索引中的項目數 (學生、課程、選課紀錄或集合數，依索引而定)
+ */
+public record IndexFootprint(String index, long entries, long heapBytes, long offHeapBytes) {
+
+    public long totalBytes() {
+        return heapBytes + offHeapBytes;
+    }
+}
@@ -0,0 +1,9 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.util.Set;
+
+/**
+ * enrollment 目前的索引設定檔 (不符合任何設定檔時為 custom) 與實際存在的受管理索引
+ */
+public record IndexProfileStatus(String profile, Set<String> indexes) {
+}
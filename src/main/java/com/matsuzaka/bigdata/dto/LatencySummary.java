@@ -0,0 +1,9 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 某功能在某查詢引擎上的延遲統計，時間單位皆為奈秒
+ */
+public record LatencySummary(long count, double p50Nanos, double p99Nanos, double p999Nanos, double maxNanos) {
+
+    public static final LatencySummary EMPTY = new LatencySummary(0, 0, 0, 0, 0);
+}
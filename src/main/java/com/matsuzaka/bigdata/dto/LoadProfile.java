@@ -0,0 +1,37 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 一次壓測的設定
+ *
+ * @param engines         依序壓測的查詢方式 (db / hash / csr)，每種各跑 duration 的時間
+ * @param threads         並行的執行緒數 (每條執行緒不停地送出查詢)
+ * @param virtualThreads  是否使用虛擬執行緒 (需 Java 21 以上，否則退回平台執行緒)
+ * @param duration        每種查詢方式的壓測時間
+ * @param mix             功能 1、功能 2、功能 3 的比重，例如 {4, 4, 2}
+ * @param distribution    學生 / 課程 id 的分布：uniform 或 zipf
+ * @param zipfExponent    zipf 分布的指數，越大熱門 id 越集中
+ * @param topK            功能 3 的 K
+ */
+public record LoadProfile(List<String> engines, int threads, boolean virtualThreads, Duration duration,
+                          int[] mix, String distribution, double zipfExponent, int topK) {
+
+    public LoadProfile {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一種查詢方式");
+        }
+        if (threads <= 0 || duration.isNegative() || duration.isZero() || topK <= 0) {
+            throw new IllegalArgumentException("threads、duration、topK 必須為正數");
+        }
+        if (mix.length != 3 || mix[0] < 0 || mix[1] < 0 || mix[2] < 0 || mix[0] + mix[1] + mix[2] == 0) {
+            throw new IllegalArgumentException("mix 必須是三個非負整數且總和大於 0");
+        }
+        if (!distribution.equals("uniform") && !distribution.equals("zipf")) {
+            throw new IllegalArgumentException("未知的 id 分布: " + distribution + " (可用 uniform / zipf)");
+        }
+        engines = List.copyOf(engines);
+        mix = mix.clone();
+    }
+}
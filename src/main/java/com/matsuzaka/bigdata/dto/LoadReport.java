@@ -0,0 +1,14 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 單一查詢方式的壓測結果；延遲為呼叫端量到的整體耗時 (含組合結果 DTO 與等待連線)
+ *
+ * @param indexProfile 壓測時 enrollment 的索引設定檔 (影響 db / cache 的結果)
+ */
+public record LoadReport(String engine, String indexProfile, int threads, long requests, long errors, double elapsedSeconds,
+                         double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+    public double throughputPerSecond() {
+        return elapsedSeconds > 0 ? requests / elapsedSeconds : 0.0;
+    }
+}
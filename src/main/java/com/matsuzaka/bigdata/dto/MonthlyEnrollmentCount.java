@@ -0,0 +1,8 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.time.YearMonth;
+
+/**
+ * 某課程在某月份的修課人次
+ */
+public record MonthlyEnrollmentCount(YearMonth month, long count) {}
@@ -0,0 +1,20 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.util.List;
+
+/**
+ * 一頁查詢結果
+ *
+ * @param nextCursor 下一頁的游標，null 表示已是最後一頁；游標格式由各查詢方式自行決定，呼叫端原樣傳回即可
+ * @param allocatedBytes 計時範圍內執行查詢的執行緒配置的位元組數；JVM 不支援執行緒配置計數時為 -1
+ */
+public record PageResult<T>(List<T> data, String nextCursor, long executionTimeNanos, long allocatedBytes) {
+
+    public PageResult(QueryResult<T> result, String nextCursor) {
+        this(result.data(), nextCursor, result.executionTimeNanos(), result.allocatedBytes());
+    }
+
+    public double executionTimeMillis() {
+        return executionTimeNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,3 @@
+package com.matsuzaka.bigdata.dto;
+
+public record QueryEngineInfo(String id, String displayName, boolean ready) {}
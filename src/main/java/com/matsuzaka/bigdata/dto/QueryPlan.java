@@ -0,0 +1,11 @@
+package com.matsuzaka.bigdata.dto;
+
+import java.util.List;
+
+/**
+ * 某個原生查詢在某索引設定檔下的執行計畫
+ *
+ * @param analyzed true 表示實際執行過查詢 (MariaDB 的 ANALYZE / H2 的 EXPLAIN ANALYZE)，計畫中含實際列數
+ * @param plan     資料庫輸出的每一列，欄位以 " | " 分隔，第一列為欄位名稱
+ */
+public record QueryPlan(String query, String indexProfile, String sql, boolean analyzed, List<String> plan) {}
@@ -1,8 +1,18 @@
 package com.matsuzaka.bigdata.dto;
 
-import java.time.LocalDate;
 import java.util.List;
 
 
-public record QueryResult<T>(List<T> data, long executionTime) {}
+/**
+ * @param allocatedBytes 計時範圍內執行查詢的執行緒配置的位元組數；JVM 不支援執行緒配置計數或未量測時為 -1
+ */
+public record QueryResult<T>(List<T> data, long executionTimeNanos, long allocatedBytes) {
 
+    public QueryResult(List<T> data, long executionTimeNanos) {
+        this(data, executionTimeNanos, -1);
+    }
+
+    public double executionTimeMillis() {
+        return executionTimeNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 查詢結果快取的累計統計；記憶體用量為依結果筆數與字串長度估算的位元組數
+ */
+public record ResultCacheStats(long hits, long misses, double hitRatio, long evictions, long entries,
+                               long usedBytes, long maxBytes) {
+}
@@ -0,0 +1,6 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 姓名或 email 符合搜尋字串的學生 (功能 10)；附上學生 ID 以便接著查詢其修課紀錄
+ */
+public record StudentSearchInfo(long studentId, String studentName, String email) {}
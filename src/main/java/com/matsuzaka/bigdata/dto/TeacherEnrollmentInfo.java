@@ -0,0 +1,6 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 教師所授全部課程的修課人次總和
+ */
+public record TeacherEnrollmentInfo(String teacherName, long enrollmentCount) {}
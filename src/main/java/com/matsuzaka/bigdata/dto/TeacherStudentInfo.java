@@ -0,0 +1,6 @@
+package com.matsuzaka.bigdata.dto;
+
+/**
+ * 修過某教師任一門課的學生 (不重複)
+ */
+public record TeacherStudentInfo(String studentName, String email) {}
@@ -0,0 +1,26 @@
+package com.matsuzaka.bigdata.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 教師授課：一門課可由多位教師合授，同一 (教師, 課程) 只會有一筆
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "course_assignment",
+        uniqueConstraints = @UniqueConstraint(name = "uk_course_assignment_teacher_course", columnNames = {"teacher_id", "course_id"}),
+        indexes = @Index(name = "idx_course_assignment_course", columnList = "course_id"))
+public class CourseAssignment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "teacher_id", nullable = false)
+    private Long teacherId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+}
@@ -5,6 +5,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDate;
 
+/**
+ * 次要索引不在這裡以 @Table(indexes) 宣告 (ddl-auto=update 會一直把它們建回來)，
+ * 改由 IndexProfileManager 依索引設定檔建立 / 移除，才能比較不同索引配置下的資料庫查詢
+ */
 @Entity
 @Data
 @NoArgsConstructor
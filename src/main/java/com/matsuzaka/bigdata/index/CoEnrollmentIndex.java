@@ -0,0 +1,143 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 共同修課分析用的點陣索引 (功能 6 / 7)：每門課一個修課學生的 CompressedBitmap
+ *
+ * 同一學生重複修同一門課只算一次，因此與「不重複學生數」的 SQL 結果一致。
+ * - 功能 6「修過 X 的學生也修了哪些課」：X 的集合與其他每門課的集合求交集大小，各課程在 ForkJoin common pool 上平行計算，
+ *   再以最小堆積取前 N 名；不需要像 SQL 一樣把 enrollment 自我 join 後再分組
+ * - 功能 7 兩門課的 Jaccard 相似度：兩個集合的大小與交集大小
+ *
+ * 每門課的集合發佈後不可修改，各課程集合的參照存在 SegmentedArray 中；寫入端以 edit() 取得 Editor，
+ * 把異動的課程換成 with / without 後的新集合，只複製被寫到的參照分段，再連同其他索引一起發佈，讀取端不需要加鎖。
+ */
+public final class CoEnrollmentIndex {
+
+    /**
+     * 兩門課的修課學生集合比較結果
+     */
+    public record Overlap(int studentsA, int studentsB, int shared) {
+        public int union() {
+            return studentsA + studentsB - shared;
+        }
+
+        /** |A ∩ B| / |A ∪ B|，兩門課都沒有學生時為 0 */
+        public double jaccard() {
+            int union = union();
+            return union == 0 ? 0.0 : (double) shared / union;
+        }
+    }
+
+    private final SegmentedArray<CompressedBitmap> studentsByCourse;
+
+    private CoEnrollmentIndex(SegmentedArray<CompressedBitmap> studentsByCourse) {
+        this.studentsByCourse = studentsByCourse;
+    }
+
+    /**
+     * 由 CSR 基底的課程端建立，各課程平行建立 (課程端區間是依日期排序的，需先排序去重)
+     */
+    public static CoEnrollmentIndex build(CsrEnrollmentIndex base, int maxCourseId) {
+        CompressedBitmap[] bitmaps = new CompressedBitmap[maxCourseId + 1];
+        IntStream.rangeClosed(0, maxCourseId).parallel().forEach(courseId -> {
+            int start = base.courseStart(courseId);
+            int end = base.courseEnd(courseId);
+            int[] students = new int[end - start];
+            for (int pos = start; pos < end; pos++) {
+                students[pos - start] = base.courseStudentIdAt(pos);
+            }
+            Arrays.sort(students);
+            int distinct = 0;
+            for (int i = 0; i < students.length; i++) {
+                if (i == 0 || students[i] != students[i - 1]) {
+                    students[distinct++] = students[i];
+                }
+            }
+            bitmaps[courseId] = CompressedBitmap.fromSorted(students, distinct);
+        });
+        return new CoEnrollmentIndex(SegmentedArray.of(bitmaps.length, courseId -> bitmaps[courseId]));
+    }
+
+    public int maxCourseId() {
+        return studentsByCourse.length() - 1;
+    }
+
+    /** 該課程的修課學生集合；id 超出範圍時為空集合 */
+    public CompressedBitmap students(int courseId) {
+        if (courseId < 0 || courseId >= studentsByCourse.length()) {
+            return CompressedBitmap.EMPTY;
+        }
+        return studentsByCourse.get(courseId);
+    }
+
+    /**
+     * 與 courseId 共同修課學生數最多的前 n 門課程 (不含 courseId 本身，忽略沒有共同學生的課程)
+     * 同人數時 id 較小者優先
+     */
+    public CoursePopularityIndex.Ranking coEnrolled(int courseId, int n) {
+        CompressedBitmap target = students(courseId);
+        int[] shared = new int[studentsByCourse.length()];
+        if (!target.isEmpty()) {
+            IntStream.range(0, shared.length).parallel().forEach(other -> {
+                if (other != courseId) {
+                    shared[other] = target.andCardinality(studentsByCourse.get(other));
+                }
+            });
+        }
+        int[] courseIds = CsrEnrollmentIndex.topByDegree(shared.length - 1, id -> shared[id], n);
+        int[] counts = new int[courseIds.length];
+        for (int i = 0; i < courseIds.length; i++) {
+            counts[i] = shared[courseIds[i]];
+        }
+        return new CoursePopularityIndex.Ranking(courseIds, counts);
+    }
+
+    public Overlap overlap(int courseA, int courseB) {
+        CompressedBitmap a = students(courseA);
+        CompressedBitmap b = students(courseB);
+        return new Overlap(a.cardinality(), b.cardinality(), a.andCardinality(b));
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 以目前版本為基礎累積異動，build() 產生新版本；非執行緒安全，目前版本不受影響
+     */
+    public final class Editor {
+        private final SegmentedArray.Editor<CompressedBitmap> bitmaps = studentsByCourse.edit();
+
+        private Editor() {
+        }
+
+        /**
+         * 設定學生是否在某課程的集合中；課程 id 超出範圍時不做任何事 (下次全量重建時才納入)
+         */
+        public void set(int courseId, int studentId, boolean enrolled) {
+            if (courseId < 0 || courseId >= bitmaps.length()) {
+                return;
+            }
+            CompressedBitmap current = bitmaps.get(courseId);
+            bitmaps.set(courseId, enrolled ? current.with(studentId) : current.without(studentId));
+        }
+
+        public CoEnrollmentIndex build() {
+            return new CoEnrollmentIndex(bitmaps.build());
+        }
+    }
+
+    /**
+     * 所有課程集合的記憶體估計 (bytes)
+     */
+    public long estimatedBytes() {
+        long bytes = studentsByCourse.estimatedBytes();
+        for (int courseId = 0; courseId < studentsByCourse.length(); courseId++) {
+            bytes += studentsByCourse.get(courseId).estimatedBytes();
+        }
+        return bytes;
+    }
+}
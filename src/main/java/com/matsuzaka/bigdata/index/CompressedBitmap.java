@@ -0,0 +1,309 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.Arrays;
+
+/**
+ * 不可變的壓縮位元集合 (Roaring 式)，存放非負的 int (學生 id)
+ *
+ * 以 id 的高 16 位元分桶，每桶一個容器，存放低 16 位元：
+ * - 陣列容器：排序的 char[]，桶內元素 <= 4096 時使用 (每個元素 2 bytes)
+ * - 點陣容器：long[1024] 共 65536 位元，元素較多時使用 (固定 8 KB)
+ * 兩者在 4096 個元素時大小相同，因此以此為切換門檻，稀疏與稠密的課程都不會浪費空間。
+ *
+ * 交集只比對兩邊都有的桶；點陣與點陣之間是逐 long 的 AND + bitCount，不需走訪個別元素。
+ * with / without 回傳新的物件，只複製受影響的那一個容器，其他容器與原物件共用。
+ */
+public final class CompressedBitmap {
+
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Object[0], 0);
+
+    /** 陣列容器的元素上限，超過時改用點陣容器 */
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    /** 各桶的高 16 位元，遞增排序 */
+    private final char[] keys;
+    /** 與 keys 平行：char[] (陣列容器) 或 long[] (點陣容器) */
+    private final Object[] containers;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, Object[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param values 遞增排序且不重複的非負整數，只讀取前 length 個
+     */
+    public static CompressedBitmap fromSorted(int[] values, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        char[] keys = new char[(values[length - 1] >>> 16) - (values[0] >>> 16) + 1];
+        Object[] containers = new Object[keys.length];
+        int buckets = 0;
+        int start = 0;
+        while (start < length) {
+            int key = values[start] >>> 16;
+            int end = start;
+            while (end < length && values[end] >>> 16 == key) {
+                end++;
+            }
+            keys[buckets] = (char) key;
+            containers[buckets] = container(values, start, end);
+            buckets++;
+            start = end;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, buckets), Arrays.copyOf(containers, buckets), length);
+    }
+
+    private static Object container(int[] values, int start, int end) {
+        if (end - start <= ARRAY_MAX) {
+            char[] array = new char[end - start];
+            for (int i = start; i < end; i++) {
+                array[i - start] = (char) values[i];
+            }
+            return array;
+        }
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = start; i < end; i++) {
+            char low = (char) values[i];
+            words[low >>> 6] |= 1L << low;
+        }
+        return words;
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (containers[index] instanceof char[] array) {
+            return Arrays.binarySearch(array, low) >= 0;
+        }
+        long[] words = (long[]) containers[index];
+        return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * 加入 value 後的新集合；已存在時回傳原物件
+     */
+    public CompressedBitmap with(int value) {
+        if (contains(value)) {
+            return this;
+        }
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Object[] newContainers = new Object[containers.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(containers, 0, newContainers, 0, insertAt);
+            newKeys[insertAt] = key;
+            newContainers[insertAt] = new char[]{low};
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(containers, insertAt, newContainers, insertAt + 1, containers.length - insertAt);
+            return new CompressedBitmap(newKeys, newContainers, cardinality + 1);
+        }
+        Object updated;
+        if (containers[index] instanceof char[] array) {
+            if (array.length < ARRAY_MAX) {
+                int insertAt = -Arrays.binarySearch(array, low) - 1;
+                char[] newArray = new char[array.length + 1];
+                System.arraycopy(array, 0, newArray, 0, insertAt);
+                newArray[insertAt] = low;
+                System.arraycopy(array, insertAt, newArray, insertAt + 1, array.length - insertAt);
+                updated = newArray;
+            } else {
+                long[] words = new long[BITMAP_WORDS];
+                for (char c : array) {
+                    words[c >>> 6] |= 1L << c;
+                }
+                words[low >>> 6] |= 1L << low;
+                updated = words;
+            }
+        } else {
+            long[] words = ((long[]) containers[index]).clone();
+            words[low >>> 6] |= 1L << low;
+            updated = words;
+        }
+        Object[] newContainers = containers.clone();
+        newContainers[index] = updated;
+        return new CompressedBitmap(keys, newContainers, cardinality + 1);
+    }
+
+    /**
+     * 移除 value 後的新集合；不存在時回傳原物件
+     */
+    public CompressedBitmap without(int value) {
+        if (!contains(value)) {
+            return this;
+        }
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        char low = (char) value;
+        Object updated;
+        if (containers[index] instanceof char[] array) {
+            if (array.length == 1) {
+                return withoutContainer(index);
+            }
+            int removeAt = Arrays.binarySearch(array, low);
+            char[] newArray = new char[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, removeAt);
+            System.arraycopy(array, removeAt + 1, newArray, removeAt, array.length - removeAt - 1);
+            updated = newArray;
+        } else {
+            long[] words = ((long[]) containers[index]).clone();
+            words[low >>> 6] &= ~(1L << low);
+            updated = toArrayIfSparse(words);
+        }
+        Object[] newContainers = containers.clone();
+        newContainers[index] = updated;
+        return new CompressedBitmap(keys, newContainers, cardinality - 1);
+    }
+
+    private CompressedBitmap withoutContainer(int index) {
+        char[] newKeys = new char[keys.length - 1];
+        Object[] newContainers = new Object[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+        return new CompressedBitmap(newKeys, newContainers, cardinality - 1);
+    }
+
+    /** 點陣容器降到門檻以下時轉回陣列容器 */
+    private static Object toArrayIfSparse(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        if (count > ARRAY_MAX) {
+            return words;
+        }
+        char[] array = new char[count];
+        int n = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                array[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * |this ∩ other|，不建立交集本身
+     */
+    public int andCardinality(CompressedBitmap other) {
+        if (isEmpty() || other.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += andCardinality(containers[i], other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int andCardinality(Object a, Object b) {
+        if (a instanceof long[] wordsA) {
+            if (b instanceof long[] wordsB) {
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    count += Long.bitCount(wordsA[w] & wordsB[w]);
+                }
+                return count;
+            }
+            return arrayAndBitmap((char[]) b, wordsA);
+        }
+        char[] arrayA = (char[]) a;
+        if (b instanceof long[] wordsB) {
+            return arrayAndBitmap(arrayA, wordsB);
+        }
+        char[] arrayB = (char[]) b;
+        // 大小懸殊時，逐一以二分搜尋在大的一邊查找；否則線性合併
+        if (arrayA.length * 32 < arrayB.length) {
+            return gallopCount(arrayA, arrayB);
+        }
+        if (arrayB.length * 32 < arrayA.length) {
+            return gallopCount(arrayB, arrayA);
+        }
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < arrayA.length && j < arrayB.length) {
+            if (arrayA[i] < arrayB[j]) {
+                i++;
+            } else if (arrayA[i] > arrayB[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int arrayAndBitmap(char[] array, long[] words) {
+        int count = 0;
+        for (char c : array) {
+            if ((words[c >>> 6] & (1L << c)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int gallopCount(char[] small, char[] large) {
+        int count = 0;
+        int from = 0;
+        for (char c : small) {
+            int index = Arrays.binarySearch(large, from, large.length, c);
+            if (index >= 0) {
+                count++;
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+            if (from == large.length) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 記憶體估計 (bytes)：容器內容加上每個容器 16 bytes 的物件標頭
+     */
+    public long estimatedBytes() {
+        long bytes = 32L + 2L * keys.length + 4L * containers.length;
+        for (Object container : containers) {
+            bytes += 16L + (container instanceof char[] array ? 2L * array.length : 8L * BITMAP_WORDS);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,189 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.Arrays;
+
+/**
+ * 即時維護的課程熱門度排名 (功能 3)
+ *
+ * 不在每次查詢時排序全部課程，而是在選課紀錄新增 / 刪除時調整排名：
+ * - counts[courseId]：每門課的修課人數
+ * - order：所有課程依修課人數由多到少排列，pos[courseId] 為該課程在 order 中的位置
+ * - greater[x]：修課人數「大於 x」的課程數，也就是 order 中第一個人數 <= x 的位置
+ *
+ * 因為每次異動人數只會 +1 或 -1，課程只需要和「同人數區塊」的第一個 (或最後一個) 元素交換位置，
+ * 再把 greater[] 的一個格子加減一即可；讀取前 K 名只需讀 order 的前 K 格，為 O(K)。
+ *
+ * 每個實例都不可修改：四個陣列都是 SegmentedIntArray，edit() 取得 Editor 累積異動，build() 產生新版本，
+ * 未被寫到的分段與舊版本共用，讀取端因此不需要加鎖。一次異動只寫 counts / order / pos / greater 的少數格子，
+ * 成本是複製這些格子所在的分段 (各 SegmentedIntArray.SEGMENT_SIZE 個 int)，加上開始編輯時複製分段參照陣列
+ * (約 C / SEGMENT_SIZE 個參照)；同一批異動中同一分段只複製一次。
+ */
+public final class CoursePopularityIndex {
+
+    /**
+     * 前 K 名的快照：courseIds[i] 的修課人數為 counts[i]
+     */
+    public record Ranking(int[] courseIds, int[] counts) {
+        public int size() {
+            return courseIds.length;
+        }
+    }
+
+    private final SegmentedIntArray counts;
+    private final SegmentedIntArray order;
+    private final SegmentedIntArray pos;
+    private final SegmentedIntArray greater;
+
+    private CoursePopularityIndex(SegmentedIntArray counts, SegmentedIntArray order, SegmentedIntArray pos, SegmentedIntArray greater) {
+        this.counts = counts;
+        this.order = order;
+        this.pos = pos;
+        this.greater = greater;
+    }
+
+    /**
+     * 由每門課的修課人數建立排名；以人數做一次計數排序，O(C + maxCount)
+     *
+     * @param courseCounts courseCounts[courseId] = 修課人數，陣列長度即課程 id 的範圍
+     */
+    public static CoursePopularityIndex fromCounts(int[] courseCounts) {
+        int[] counts = Arrays.copyOf(courseCounts, Math.max(courseCounts.length, 1));
+        int maxCount = 0;
+        for (int count : counts) {
+            maxCount = Math.max(maxCount, count);
+        }
+        // histogram[x] = 人數恰為 x 的課程數，再由大到小累加成 greater[x]
+        int[] greater = new int[maxCount + 2];
+        for (int count : counts) {
+            if (count > 0) {
+                greater[count - 1]++;
+            }
+        }
+        for (int x = maxCount - 1; x >= 0; x--) {
+            greater[x] += greater[x + 1];
+        }
+        // 人數為 x 的區塊從 greater[x] 開始，依 id 由小到大放入
+        int[] cursor = Arrays.copyOf(greater, greater.length);
+        int[] order = new int[counts.length];
+        int[] pos = new int[counts.length];
+        for (int courseId = 0; courseId < counts.length; courseId++) {
+            int p = cursor[counts[courseId]]++;
+            order[p] = courseId;
+            pos[courseId] = p;
+        }
+        return new CoursePopularityIndex(SegmentedIntArray.of(counts), SegmentedIntArray.of(order),
+                SegmentedIntArray.of(pos), SegmentedIntArray.of(greater));
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 以目前版本為基礎累積異動，build() 產生新版本；非執行緒安全，目前版本不受影響
+     */
+    public final class Editor {
+        private final SegmentedIntArray.Editor counts = CoursePopularityIndex.this.counts.edit();
+        private final SegmentedIntArray.Editor order = CoursePopularityIndex.this.order.edit();
+        private final SegmentedIntArray.Editor pos = CoursePopularityIndex.this.pos.edit();
+        private final SegmentedIntArray.Editor greater = CoursePopularityIndex.this.greater.edit();
+
+        private Editor() {
+        }
+
+        /**
+         * 某課程新增一位修課學生
+         */
+        public void increment(int courseId) {
+            ensureCourse(courseId);
+            int count = counts.get(courseId);
+            if (count + 1 >= greater.length()) {
+                greater.grow(greater.length() * 2);
+            }
+            // 與同人數區塊的第一個元素交換，人數 +1 後該位置就成為 (count + 1) 區塊的最後一格
+            int first = greater.get(count);
+            swap(pos.get(courseId), first);
+            greater.set(count, first + 1);
+            counts.set(courseId, count + 1);
+        }
+
+        /**
+         * 某課程減少一位修課學生；人數已為 0 時不做任何事
+         */
+        public void decrement(int courseId) {
+            if (courseId < 0 || courseId >= counts.length() || counts.get(courseId) == 0) {
+                return;
+            }
+            int count = counts.get(courseId);
+            // 與同人數區塊的最後一個元素交換，人數 -1 後該位置就成為 (count - 1) 區塊的第一格
+            int last = greater.get(count - 1) - 1;
+            swap(pos.get(courseId), last);
+            greater.set(count - 1, last);
+            counts.set(courseId, count - 1);
+        }
+
+        public CoursePopularityIndex build() {
+            return new CoursePopularityIndex(counts.build(), order.build(), pos.build(), greater.build());
+        }
+
+        /**
+         * 新課程 id 超出目前範圍時擴充陣列；新課程人數為 0，放在 order 尾端 (人數為 0 的區塊) 仍維持排序
+         */
+        private void ensureCourse(int courseId) {
+            if (courseId < counts.length()) {
+                return;
+            }
+            int oldLength = counts.length();
+            int newLength = Math.max(courseId + 1, oldLength + (oldLength >> 1));
+            order.grow(newLength);
+            pos.grow(newLength);
+            counts.grow(newLength);
+            for (int id = oldLength; id < newLength; id++) {
+                order.set(id, id);
+                pos.set(id, id);
+            }
+        }
+
+        private void swap(int i, int j) {
+            if (i == j) {
+                return;
+            }
+            int a = order.get(i);
+            int b = order.get(j);
+            order.set(i, b);
+            order.set(j, a);
+            pos.set(b, i);
+            pos.set(a, j);
+        }
+    }
+
+    public int count(int courseId) {
+        return courseId >= 0 && courseId < counts.length() ? counts.get(courseId) : 0;
+    }
+
+    /** 課程 id 的範圍 (陣列長度) */
+    public int capacity() {
+        return counts.length();
+    }
+
+    /**
+     * 記憶體估計 (bytes)：四個分段 int 陣列，與其他版本共用的分段也計入
+     */
+    public long estimatedBytes() {
+        return 32L + counts.estimatedBytes() + order.estimatedBytes() + pos.estimatedBytes() + greater.estimatedBytes();
+    }
+
+    /**
+     * 取得修課人數最多的前 k 門課程 (只包含人數大於 0 的課程)，O(k)
+     */
+    public Ranking top(int k) {
+        int size = Math.max(0, Math.min(k, greater.get(0)));
+        int[] courseIds = new int[size];
+        int[] topCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            courseIds[i] = order.get(i);
+            topCounts[i] = counts.get(courseIds[i]);
+        }
+        return new Ranking(courseIds, topCounts);
+    }
+}
@@ -0,0 +1,222 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.Arrays;
+
+/**
+ * 可寫入的 CSR 索引：不可變的 CsrEnrollmentIndex 作為基底，再加上每個 key 一份的「覆蓋層」
+ *
+ * CSR 的 offsets / 欄位陣列是連續配置的，無法就地插入或刪除。因此寫入時採用「逐 key 的寫入時複製」：
+ * - 某學生 (或課程) 第一次被寫入時，把它在基底中的區間複製成一份獨立的 Postings，套用異動後放進覆蓋層
+ * - 之後對同一 key 的寫入，都是複製覆蓋層中的舊 Postings 再替換
+ * - 讀取時先查覆蓋層，沒有才讀基底
+ *
+ * 每個實例都不可修改：edit() 取得 Editor 累積寫入，build() 產生共用基底與未異動分段的新版本 (見 SegmentedOverlay)，
+ * 學生端與課程端在同一個新版本中一起發佈，讀取端不需要加鎖，也不會看到只套用了一半的寫入。
+ */
+public final class CsrDeltaIndex {
+
+    /**
+     * 走訪某 key 的每一筆紀錄：otherId 為另一方的 id (學生端為課程 id，課程端為學生 id)
+     */
+    @FunctionalInterface
+    public interface PostingConsumer {
+        void accept(int otherId, int epochDay);
+    }
+
+    /** 覆蓋層中某 key 的完整紀錄，發佈後不可修改 */
+    private record Postings(int[] ids, int[] epochDays) {
+        int size() {
+            return ids.length;
+        }
+    }
+
+    private final CsrEnrollmentIndex base;
+    private final SegmentedOverlay<Integer, Postings> studentOverlay;
+    private final SegmentedOverlay<Integer, Postings> courseOverlay;
+
+    public CsrDeltaIndex(CsrEnrollmentIndex base) {
+        this(base, SegmentedOverlay.empty(), SegmentedOverlay.empty());
+    }
+
+    private CsrDeltaIndex(CsrEnrollmentIndex base, SegmentedOverlay<Integer, Postings> studentOverlay,
+                          SegmentedOverlay<Integer, Postings> courseOverlay) {
+        this.base = base;
+        this.studentOverlay = studentOverlay;
+        this.courseOverlay = courseOverlay;
+    }
+
+    public CsrEnrollmentIndex base() {
+        return base;
+    }
+
+    // --- 讀取 ---
+
+    public int studentDegree(int studentId) {
+        Postings postings = studentOverlay.get(studentId);
+        return postings != null ? postings.size() : base.studentEnd(studentId) - base.studentStart(studentId);
+    }
+
+    public int courseDegree(int courseId) {
+        Postings postings = courseOverlay.get(courseId);
+        return postings != null ? postings.size() : base.courseDegree(courseId);
+    }
+
+    public void forEachCourseOfStudent(int studentId, PostingConsumer consumer) {
+        Postings postings = studentOverlay.get(studentId);
+        if (postings != null) {
+            forEach(postings, consumer);
+            return;
+        }
+        int end = base.studentEnd(studentId);
+        for (int pos = base.studentStart(studentId); pos < end; pos++) {
+            consumer.accept(base.studentCourseIdAt(pos), base.studentEpochDayAt(pos));
+        }
+    }
+
+    public void forEachStudentOfCourse(int courseId, PostingConsumer consumer) {
+        Postings postings = courseOverlay.get(courseId);
+        if (postings != null) {
+            forEach(postings, consumer);
+            return;
+        }
+        int end = base.courseEnd(courseId);
+        for (int pos = base.courseStart(courseId); pos < end; pos++) {
+            consumer.accept(base.courseStudentIdAt(pos), base.courseEpochDayAt(pos));
+        }
+    }
+
+    private static void forEach(Postings postings, PostingConsumer consumer) {
+        int[] ids = postings.ids();
+        int[] epochDays = postings.epochDays();
+        for (int i = 0; i < ids.length; i++) {
+            consumer.accept(ids[i], epochDays[i]);
+        }
+    }
+
+    /**
+     * 修課人數最多的前 k 門課程；沒有任何寫入時直接使用基底的結果
+     */
+    public int[] topCourses(int k) {
+        if (courseOverlay.isEmpty()) {
+            return base.topCourses(k);
+        }
+        int[] maxCourseId = {base.maxCourseId()};
+        courseOverlay.forEach((courseId, postings) -> maxCourseId[0] = Math.max(maxCourseId[0], courseId));
+        return CsrEnrollmentIndex.topByDegree(maxCourseId[0], this::courseDegree, k);
+    }
+
+    // --- 寫入 ---
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 以目前版本為基礎累積寫入，build() 產生新版本；非執行緒安全，目前版本不受影響
+     */
+    public final class Editor {
+        private final SegmentedOverlay.Editor<Integer, Postings> students = studentOverlay.edit();
+        private final SegmentedOverlay.Editor<Integer, Postings> courses = courseOverlay.edit();
+
+        private Editor() {
+        }
+
+        public void add(int studentId, int courseId, int epochDay) {
+            students.put(studentId, append(studentPostings(studentId), courseId, epochDay));
+            courses.put(courseId, append(coursePostings(courseId), studentId, epochDay));
+        }
+
+        /**
+         * 移除一筆 (學生, 課程, 日期) 相符的紀錄；同一學生重複選同一門課時只移除其中一筆
+         *
+         * @return 是否找到並移除
+         */
+        public boolean remove(int studentId, int courseId, int epochDay) {
+            Postings current = studentPostings(studentId);
+            Postings updated = without(current, courseId, epochDay);
+            if (updated == current) {
+                return false;
+            }
+            students.put(studentId, updated);
+            courses.put(courseId, without(coursePostings(courseId), studentId, epochDay));
+            return true;
+        }
+
+        public CsrDeltaIndex build() {
+            return new CsrDeltaIndex(base, students.build(), courses.build());
+        }
+
+        private Postings studentPostings(int studentId) {
+            Postings postings = students.get(studentId);
+            return postings != null ? postings : studentSlice(studentId);
+        }
+
+        private Postings coursePostings(int courseId) {
+            Postings postings = courses.get(courseId);
+            return postings != null ? postings : courseSlice(courseId);
+        }
+    }
+
+    private Postings studentSlice(int studentId) {
+        int start = base.studentStart(studentId);
+        int end = base.studentEnd(studentId);
+        int[] ids = new int[end - start];
+        int[] epochDays = new int[end - start];
+        for (int pos = start; pos < end; pos++) {
+            ids[pos - start] = base.studentCourseIdAt(pos);
+            epochDays[pos - start] = base.studentEpochDayAt(pos);
+        }
+        return new Postings(ids, epochDays);
+    }
+
+    private Postings courseSlice(int courseId) {
+        int start = base.courseStart(courseId);
+        int end = base.courseEnd(courseId);
+        int[] ids = new int[end - start];
+        int[] epochDays = new int[end - start];
+        for (int pos = start; pos < end; pos++) {
+            ids[pos - start] = base.courseStudentIdAt(pos);
+            epochDays[pos - start] = base.courseEpochDayAt(pos);
+        }
+        return new Postings(ids, epochDays);
+    }
+
+    private static Postings append(Postings postings, int otherId, int epochDay) {
+        int size = postings.size();
+        int[] ids = Arrays.copyOf(postings.ids(), size + 1);
+        int[] epochDays = Arrays.copyOf(postings.epochDays(), size + 1);
+        ids[size] = otherId;
+        epochDays[size] = epochDay;
+        return new Postings(ids, epochDays);
+    }
+
+    /**
+     * 回傳移除一筆相符紀錄後的新 Postings；找不到時回傳原物件
+     */
+    private static Postings without(Postings postings, int otherId, int epochDay) {
+        int[] ids = postings.ids();
+        int[] epochDays = postings.epochDays();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == otherId && epochDays[i] == epochDay) {
+                int[] newIds = new int[ids.length - 1];
+                int[] newEpochDays = new int[ids.length - 1];
+                System.arraycopy(ids, 0, newIds, 0, i);
+                System.arraycopy(ids, i + 1, newIds, i, ids.length - i - 1);
+                System.arraycopy(epochDays, 0, newEpochDays, 0, i);
+                System.arraycopy(epochDays, i + 1, newEpochDays, i, ids.length - i - 1);
+                return new Postings(newIds, newEpochDays);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * 基底加上覆蓋層的記憶體估計 (bytes)
+     */
+    public long estimatedBytes() {
+        long[] bytes = {base.estimatedBytes()};
+        studentOverlay.forEach((studentId, postings) -> bytes[0] += 64L + 8L * postings.size());
+        courseOverlay.forEach((courseId, postings) -> bytes[0] += 64L + 8L * postings.size());
+        return bytes[0];
+    }
+}
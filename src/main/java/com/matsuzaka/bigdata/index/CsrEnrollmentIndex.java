@@ -0,0 +1,433 @@
+package com.matsuzaka.bigdata.index;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 以「壓縮稀疏列」(Compressed Sparse Row, CSR) 格式儲存的選課索引
+ *
+ * 與 Map<Long, List<Enrollment>> 不同，這裡完全不保存 Enrollment 物件：
+ * - offsets 陣列以 id 為索引 (dense)，offsets[id] ~ offsets[id + 1] 即為該 id 的所有選課紀錄位置
+ * - 對應位置上的「另一方 id」與「修課日期 (epoch day)」存在兩條平行的 int[] 欄位中
+ * - 學生端另有一條 enrollment.id 欄位，讓索引可以完整還原每一筆選課紀錄 (例如從快照重建 HashMap 索引)
+ *
+ * 因此查詢某學生 / 某課程的紀錄時只需一次陣列存取定位區間，之後是連續記憶體的線性掃描，
+ * 沒有 Long 裝箱、沒有 HashMap 節點、也沒有 Hibernate 實體的額外狀態。
+ * 此類別建立後即不可變，可安全地被多執行緒同時讀取。
+ *
+ * 欄位以 IntBuffer 存放：由資料庫建立時包裝一般的 int[]，從快照檔啟動時則直接是記憶體映射 (mmap) 的檔案內容，
+ * 兩者共用同一套查詢程式碼。
+ */
+public final class CsrEnrollmentIndex {
+
+    /** columns() / fromColumns() 使用的欄位數與順序 */
+    public static final int COLUMN_COUNT = 7;
+
+    // --- 以學生為主的索引 (功能 1) ---
+    private final IntBuffer studentOffsets;
+    private final IntBuffer studentEnrollmentIds;
+    private final IntBuffer studentCourseIds;
+    private final IntBuffer studentDates;
+
+    // --- 以課程為主的索引 (功能 2、功能 3) ---
+    private final IntBuffer courseOffsets;
+    private final IntBuffer courseStudentIds;
+    private final IntBuffer courseDates;
+
+    private CsrEnrollmentIndex(IntBuffer studentOffsets, IntBuffer studentEnrollmentIds, IntBuffer studentCourseIds, IntBuffer studentDates,
+                               IntBuffer courseOffsets, IntBuffer courseStudentIds, IntBuffer courseDates) {
+        this.studentOffsets = studentOffsets;
+        this.studentEnrollmentIds = studentEnrollmentIds;
+        this.studentCourseIds = studentCourseIds;
+        this.studentDates = studentDates;
+        this.courseOffsets = courseOffsets;
+        this.courseStudentIds = courseStudentIds;
+        this.courseDates = courseDates;
+    }
+
+    private CsrEnrollmentIndex(int[] studentOffsets, int[] studentEnrollmentIds, int[] studentCourseIds, int[] studentDates,
+                               int[] courseOffsets, int[] courseStudentIds, int[] courseDates) {
+        this(IntBuffer.wrap(studentOffsets), IntBuffer.wrap(studentEnrollmentIds), IntBuffer.wrap(studentCourseIds), IntBuffer.wrap(studentDates),
+                IntBuffer.wrap(courseOffsets), IntBuffer.wrap(courseStudentIds), IntBuffer.wrap(courseDates));
+    }
+
+    /**
+     * 以既有的欄位 (例如快照檔的記憶體映射) 組成索引，順序與 columns() 相同
+     */
+    public static CsrEnrollmentIndex fromColumns(List<IntBuffer> columns) {
+        if (columns.size() != COLUMN_COUNT) {
+            throw new IllegalArgumentException("CSR 索引需要 " + COLUMN_COUNT + " 條欄位，實際為 " + columns.size());
+        }
+        return new CsrEnrollmentIndex(columns.get(0), columns.get(1), columns.get(2), columns.get(3),
+                columns.get(4), columns.get(5), columns.get(6));
+    }
+
+    /**
+     * 索引的所有欄位 (唯讀)，依序為：
+     * studentOffsets, studentEnrollmentIds, studentCourseIds, studentDates, courseOffsets, courseStudentIds, courseDates
+     */
+    public List<IntBuffer> columns() {
+        return List.of(studentOffsets.asReadOnlyBuffer(), studentEnrollmentIds.asReadOnlyBuffer(), studentCourseIds.asReadOnlyBuffer(),
+                studentDates.asReadOnlyBuffer(), courseOffsets.asReadOnlyBuffer(), courseStudentIds.asReadOnlyBuffer(), courseDates.asReadOnlyBuffer());
+    }
+
+    /**
+     * 由四條平行欄位建立 CSR 索引
+     * 使用兩次計數排序 (counting sort)：先統計每個 id 的筆數並做前綴和得到 offsets，
+     * 再依序把每筆紀錄放到對應區間，整體為 O(n + maxId)
+     *
+     * @param enrollmentIds 每筆選課的 enrollment.id
+     * @param studentIds   每筆選課的學生 id
+     * @param courseIds    每筆選課的課程 id
+     * @param epochDays    每筆選課的修課日期 (LocalDate.toEpochDay())
+     * @param size         實際使用的筆數 (陣列可能大於 size)
+     * @param maxStudentId 最大學生 id
+     * @param maxCourseId  最大課程 id
+     */
+    public static CsrEnrollmentIndex build(int[] enrollmentIds, int[] studentIds, int[] courseIds, int[] epochDays, int size,
+                                           int maxStudentId, int maxCourseId) {
+        int[] studentOffsets = new int[maxStudentId + 2];
+        int[] courseOffsets = new int[maxCourseId + 2];
+        for (int i = 0; i < size; i++) {
+            studentOffsets[studentIds[i] + 1]++;
+            courseOffsets[courseIds[i] + 1]++;
+        }
+        prefixSum(studentOffsets);
+        prefixSum(courseOffsets);
+
+        int[] studentEnrollmentIds = new int[size];
+        int[] studentCourseIds = new int[size];
+        int[] studentDates = new int[size];
+        int[] courseStudentIds = new int[size];
+        int[] courseDates = new int[size];
+
+        // 以 offsets 的副本作為每個 id 目前的寫入游標
+        int[] studentCursor = Arrays.copyOf(studentOffsets, studentOffsets.length);
+        int[] courseCursor = Arrays.copyOf(courseOffsets, courseOffsets.length);
+        for (int i = 0; i < size; i++) {
+            int s = studentCursor[studentIds[i]]++;
+            studentEnrollmentIds[s] = enrollmentIds[i];
+            studentCourseIds[s] = courseIds[i];
+            studentDates[s] = epochDays[i];
+
+            int c = courseCursor[courseIds[i]]++;
+            courseStudentIds[c] = studentIds[i];
+            courseDates[c] = epochDays[i];
+        }
+
+        return new CsrEnrollmentIndex(studentOffsets, studentEnrollmentIds, studentCourseIds, studentDates,
+                courseOffsets, courseStudentIds, courseDates);
+    }
+
+    /**
+     * 逐筆累積選課紀錄的建構器，用於串流載入：資料列讀入後立即拆成四條 int 欄位，不保留任何物件
+     * 非執行緒安全
+     */
+    public static final class Builder {
+        private int[] enrollmentIds;
+        private int[] studentIds;
+        private int[] courseIds;
+        private int[] epochDays;
+        private int size;
+        private int maxStudentId;
+        private int maxCourseId;
+
+        /**
+         * @param expectedSize 預估筆數 (例如 COUNT(*) 的結果)，用來一次配置足夠的欄位容量
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            this.enrollmentIds = new int[capacity];
+            this.studentIds = new int[capacity];
+            this.courseIds = new int[capacity];
+            this.epochDays = new int[capacity];
+        }
+
+        public void add(int enrollmentId, int studentId, int courseId, int epochDay) {
+            if (size == studentIds.length) {
+                int capacity = size + (size >> 1);
+                enrollmentIds = Arrays.copyOf(enrollmentIds, capacity);
+                studentIds = Arrays.copyOf(studentIds, capacity);
+                courseIds = Arrays.copyOf(courseIds, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+            }
+            enrollmentIds[size] = enrollmentId;
+            studentIds[size] = studentId;
+            courseIds[size] = courseId;
+            epochDays[size] = epochDay;
+            size++;
+            maxStudentId = Math.max(maxStudentId, studentId);
+            maxCourseId = Math.max(maxCourseId, courseId);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 建立索引；offsets 陣列至少涵蓋到傳入的最大 id，讓沒有選課紀錄的學生 / 課程也能回傳空區間
+         */
+        public CsrEnrollmentIndex build(int minMaxStudentId, int minMaxCourseId) {
+            CsrEnrollmentIndex index = CsrEnrollmentIndex.build(enrollmentIds, studentIds, courseIds, epochDays, size,
+                    Math.max(maxStudentId, minMaxStudentId), Math.max(maxCourseId, minMaxCourseId));
+            clear();
+            return index;
+        }
+
+        /** 欄位已複製進索引後釋放暫存陣列 */
+        private void clear() {
+            enrollmentIds = studentIds = courseIds = epochDays = new int[0];
+            size = 0;
+        }
+    }
+
+    /**
+     * 由多個分區 (partition) 的建構器平行合併出單一 CSR 索引
+     *
+     * 做法與平行基數排序相同：
+     * 1. 各分區平行統計自己每個 id 的筆數
+     * 2. 依「id 由小到大、同 id 內分區由前到後」做一次前綴和，得到全域 offsets，
+     *    同時把每個分區的計數改寫成該分區在每個 id 區間內的寫入起點
+     * 3. 各分區平行把自己的資料寫到互不重疊的位置，不需要任何鎖
+     * 因為同一 id 內依分區順序排列，分區若依 enrollment.id 切分，結果與單執行緒載入的順序一致
+     *
+     * @param parts 依 id 範圍排序的分區建構器，合併後即被清空
+     * @param pool  執行統計與寫入的執行緒池
+     */
+    public static CsrEnrollmentIndex build(List<Builder> parts, int minMaxStudentId, int minMaxCourseId, ExecutorService pool) {
+        int maxStudentId = minMaxStudentId;
+        int maxCourseId = minMaxCourseId;
+        int total = 0;
+        for (Builder part : parts) {
+            maxStudentId = Math.max(maxStudentId, part.maxStudentId);
+            maxCourseId = Math.max(maxCourseId, part.maxCourseId);
+            total += part.size;
+        }
+        int partCount = parts.size();
+        int[][] studentCursors = new int[partCount][];
+        int[][] courseCursors = new int[partCount][];
+
+        // 1. 各分區平行計數
+        int studentKeys = maxStudentId + 1;
+        int courseKeys = maxCourseId + 1;
+        List<Callable<Void>> countTasks = new ArrayList<>(partCount);
+        for (int p = 0; p < partCount; p++) {
+            int partIndex = p;
+            countTasks.add(() -> {
+                Builder part = parts.get(partIndex);
+                int[] studentCounts = new int[studentKeys];
+                int[] courseCounts = new int[courseKeys];
+                for (int i = 0; i < part.size; i++) {
+                    studentCounts[part.studentIds[i]]++;
+                    courseCounts[part.courseIds[i]]++;
+                }
+                studentCursors[partIndex] = studentCounts;
+                courseCursors[partIndex] = courseCounts;
+                return null;
+            });
+        }
+        invokeAll(pool, countTasks);
+
+        // 2. 學生端與課程端的前綴和互不相干，同時進行
+        int[][] offsets = new int[2][];
+        invokeAll(pool, List.of(
+                () -> { offsets[0] = toCursors(studentCursors, studentKeys); return null; },
+                () -> { offsets[1] = toCursors(courseCursors, courseKeys); return null; }));
+
+        // 3. 各分區平行寫入自己的位置
+        int[] studentEnrollmentIds = new int[total];
+        int[] studentCourseIds = new int[total];
+        int[] studentDates = new int[total];
+        int[] courseStudentIds = new int[total];
+        int[] courseDates = new int[total];
+        List<Callable<Void>> scatterTasks = new ArrayList<>(partCount);
+        for (int p = 0; p < partCount; p++) {
+            int partIndex = p;
+            scatterTasks.add(() -> {
+                Builder part = parts.get(partIndex);
+                int[] studentCursor = studentCursors[partIndex];
+                int[] courseCursor = courseCursors[partIndex];
+                for (int i = 0; i < part.size; i++) {
+                    int s = studentCursor[part.studentIds[i]]++;
+                    studentEnrollmentIds[s] = part.enrollmentIds[i];
+                    studentCourseIds[s] = part.courseIds[i];
+                    studentDates[s] = part.epochDays[i];
+
+                    int c = courseCursor[part.courseIds[i]]++;
+                    courseStudentIds[c] = part.studentIds[i];
+                    courseDates[c] = part.epochDays[i];
+                }
+                part.clear();
+                return null;
+            });
+        }
+        invokeAll(pool, scatterTasks);
+
+        return new CsrEnrollmentIndex(offsets[0], studentEnrollmentIds, studentCourseIds, studentDates,
+                offsets[1], courseStudentIds, courseDates);
+    }
+
+    /**
+     * 將 counts[part][id] 改寫為該分區在該 id 區間內的寫入起點，並回傳全域 offsets (長度 keys + 1)
+     */
+    private static int[] toCursors(int[][] counts, int keys) {
+        int[] offsets = new int[keys + 1];
+        int running = 0;
+        for (int id = 0; id < keys; id++) {
+            offsets[id] = running;
+            for (int[] partCounts : counts) {
+                int count = partCounts[id];
+                partCounts[id] = running;
+                running += count;
+            }
+        }
+        offsets[keys] = running;
+        return offsets;
+    }
+
+    private static void invokeAll(ExecutorService pool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("CSR 索引建立被中斷", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("CSR 索引建立失敗", e.getCause());
+        }
+    }
+
+    private static void prefixSum(int[] offsets) {
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+    }
+
+    // --- 學生端存取 ---
+
+    /** 該學生紀錄區間的起點 (含)；id 超出範圍時回傳空區間 */
+    public int studentStart(int studentId) {
+        return studentId >= 0 && studentId < studentOffsets.limit() - 1 ? studentOffsets.get(studentId) : 0;
+    }
+
+    /** 該學生紀錄區間的終點 (不含) */
+    public int studentEnd(int studentId) {
+        return studentId >= 0 && studentId < studentOffsets.limit() - 1 ? studentOffsets.get(studentId + 1) : 0;
+    }
+
+    public int studentEnrollmentIdAt(int position) {
+        return studentEnrollmentIds.get(position);
+    }
+
+    public int studentCourseIdAt(int position) {
+        return studentCourseIds.get(position);
+    }
+
+    public int studentEpochDayAt(int position) {
+        return studentDates.get(position);
+    }
+
+    public int maxStudentId() {
+        return studentOffsets.limit() - 2;
+    }
+
+    // --- 課程端存取 ---
+
+    /** 該課程紀錄區間的起點 (含)；id 超出範圍時回傳空區間 */
+    public int courseStart(int courseId) {
+        return courseId >= 0 && courseId < courseOffsets.limit() - 1 ? courseOffsets.get(courseId) : 0;
+    }
+
+    /** 該課程紀錄區間的終點 (不含) */
+    public int courseEnd(int courseId) {
+        return courseId >= 0 && courseId < courseOffsets.limit() - 1 ? courseOffsets.get(courseId + 1) : 0;
+    }
+
+    public int courseStudentIdAt(int position) {
+        return courseStudentIds.get(position);
+    }
+
+    public int courseEpochDayAt(int position) {
+        return courseDates.get(position);
+    }
+
+    public int courseDegree(int courseId) {
+        return courseEnd(courseId) - courseStart(courseId);
+    }
+
+    public int maxCourseId() {
+        return courseOffsets.limit() - 2;
+    }
+
+    public int size() {
+        return studentCourseIds.limit();
+    }
+
+    /**
+     * 找出修課人數最多的前 k 門課程
+     * 課程的修課人數即為 offsets 相鄰兩格的差，不需要額外計數；
+     * 以大小為 k 的最小堆積 (min-heap) 掃描一次，O(C log k)
+     *
+     * @return 依修課人數由多到少排序的課程 id
+     */
+    public int[] topCourses(int k) {
+        return topByDegree(maxCourseId(), this::courseDegree, k);
+    }
+
+    /**
+     * 在 id 0 ~ maxId 中，以大小為 k 的最小堆積找出 degree 最大的前 k 個 id (忽略 degree 為 0 者)
+     * 同 degree 時 id 較小者優先；k <= 0 時為空陣列
+     */
+    public static int[] topByDegree(int maxId, IntUnaryOperator degreeOf, int k) {
+        if (k <= 0) {
+            return new int[0];
+        }
+        // 堆積最多只會放 maxId + 1 個元素，也避免 k 接近 Integer.MAX_VALUE 時 k + 1 溢位
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.min(k, Math.max(maxId, 0) + 1) + 1, (a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(b[0], a[0]));
+        for (int id = 0; id <= maxId; id++) {
+            int degree = degreeOf.applyAsInt(id);
+            if (degree == 0) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.offer(new int[]{id, degree});
+            } else if (degree > heap.peek()[1]) {
+                heap.poll();
+                heap.offer(new int[]{id, degree});
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll()[0];
+        }
+        return result;
+    }
+
+    /**
+     * 索引本身所佔用的記憶體估計 (bytes)，僅計算欄位內容，每條欄位另加 16 bytes 的物件標頭
+     * 由快照映射而來的欄位位於作業系統的 page cache，不佔用 Java heap
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (IntBuffer column : List.of(studentOffsets, studentEnrollmentIds, studentCourseIds, studentDates, courseOffsets, courseStudentIds, courseDates)) {
+            bytes += 16L + 4L * column.limit();
+        }
+        return bytes;
+    }
+
+    /**
+     * 欄位是否為記憶體映射的檔案內容 (而非 heap 上的 int[])
+     */
+    public boolean isMapped() {
+        return studentCourseIds.isDirect();
+    }
+}
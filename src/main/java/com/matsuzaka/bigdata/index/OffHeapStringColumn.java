@@ -0,0 +1,119 @@
+package com.matsuzaka.bigdata.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 存放在 heap 之外、以字典編碼的字串欄位 (例如學生姓名、email、課程名稱)
+ *
+ * - 不重複的字串以 UTF-8 依序寫入一塊 direct ByteBuffer，entryOffsets[i] ~ entryOffsets[i + 1] 為第 i 個字串
+ * - codes[id] 為該 id 對應的字串編號，-1 表示沒有值；重複出現的字串 (如同名同姓) 只存一份
+ *
+ * heap 上只剩兩個 int[]，不再有每列一個 String 物件與其 byte[]，GC 不需要掃描這些資料。
+ * get() 每次都從 ByteBuffer 解碼出新的 String，只在查詢結果真正需要時才產生，用完即可回收。
+ * 建立後不可變；讀取使用絕對位置的 ByteBuffer.get，不改動 buffer 的 position，可安全地被多執行緒同時讀取。
+ */
+public final class OffHeapStringColumn {
+
+    private final ByteBuffer data;
+    private final int[] entryOffsets;
+    private final int[] codes;
+
+    private OffHeapStringColumn(ByteBuffer data, int[] entryOffsets, int[] codes) {
+        this.data = data;
+        this.entryOffsets = entryOffsets;
+        this.codes = codes;
+    }
+
+    /**
+     * 取得 id 對應的字串；id 超出範圍或沒有值時回傳 null
+     */
+    public String get(int id) {
+        if (id < 0 || id >= codes.length || codes[id] < 0) {
+            return null;
+        }
+        int code = codes[id];
+        int start = entryOffsets[code];
+        byte[] bytes = new byte[entryOffsets[code + 1] - start];
+        data.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** 不重複字串的數量 */
+    public int distinctCount() {
+        return entryOffsets.length - 1;
+    }
+
+    /** 存放在 heap 上的部分 (offsets 與 codes 陣列) */
+    public long heapBytes() {
+        return 16L + 4L * entryOffsets.length + 16L + 4L * codes.length;
+    }
+
+    /** 存放在 heap 之外的 UTF-8 字串內容 */
+    public long offHeapBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * 逐筆設定 id 與字串的建構器；建立期間暫時使用 heap 上的字典與位元組陣列，build() 後即可回收
+     */
+    public static final class Builder {
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private byte[] bytes = new byte[1024];
+        private int byteSize;
+        private int[] entryOffsets = new int[64];
+        private int[] codes;
+
+        public Builder(int expectedIds) {
+            this.codes = new int[Math.max(expectedIds, 16)];
+            Arrays.fill(codes, -1);
+        }
+
+        public void set(int id, String value) {
+            if (id >= codes.length) {
+                int oldLength = codes.length;
+                codes = Arrays.copyOf(codes, Math.max(id + 1, oldLength + (oldLength >> 1)));
+                Arrays.fill(codes, oldLength, codes.length, -1);
+            }
+            codes[id] = value == null ? -1 : dictionary.computeIfAbsent(value, this::append);
+        }
+
+        private int append(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if ((long) byteSize + encoded.length > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("字串欄位超過單一 ByteBuffer 的 2GB 上限");
+            }
+            if (byteSize + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max((long) byteSize + encoded.length, bytes.length + ((long) bytes.length >> 1))));
+            }
+            int code = dictionary.size();
+            if (code + 1 >= entryOffsets.length) {
+                entryOffsets = Arrays.copyOf(entryOffsets, entryOffsets.length * 2);
+            }
+            System.arraycopy(encoded, 0, bytes, byteSize, encoded.length);
+            byteSize += encoded.length;
+            entryOffsets[code + 1] = byteSize;
+            return code;
+        }
+
+        /**
+         * @param maxId 欄位涵蓋的最大 id，codes 陣列長度為 maxId + 1
+         */
+        public OffHeapStringColumn build(int maxId) {
+            ByteBuffer data = ByteBuffer.allocateDirect(byteSize);
+            data.put(bytes, 0, byteSize);
+            int[] finalCodes = Arrays.copyOf(codes, maxId + 1);
+            if (finalCodes.length > codes.length) {
+                Arrays.fill(finalCodes, codes.length, finalCodes.length, -1);
+            }
+            OffHeapStringColumn column = new OffHeapStringColumn(data, Arrays.copyOf(entryOffsets, dictionary.size() + 1), finalCodes);
+            dictionary.clear();
+            bytes = new byte[0];
+            return column;
+        }
+    }
+}
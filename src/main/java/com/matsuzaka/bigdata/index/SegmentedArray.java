@@ -0,0 +1,96 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.function.IntFunction;
+
+/**
+ * 不可變的參照陣列，修改時只複製被寫到的分段；與 SegmentedIntArray 相同，元素本身發佈後也不可修改
+ *
+ * @param <T> 元素型別
+ */
+public final class SegmentedArray<T> {
+
+    private static final int SEGMENT_BITS = SegmentedIntArray.SEGMENT_BITS;
+    private static final int SEGMENT_SIZE = SegmentedIntArray.SEGMENT_SIZE;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final Object[][] segments;
+    private final int length;
+
+    private SegmentedArray(Object[][] segments, int length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * 長度為 length 的陣列，第 i 格為 values.apply(i)
+     */
+    public static <T> SegmentedArray<T> of(int length, IntFunction<T> values) {
+        Object[][] segments = new Object[(length + SEGMENT_MASK) >>> SEGMENT_BITS][];
+        for (int s = 0; s < segments.length; s++) {
+            Object[] segment = new Object[SEGMENT_SIZE];
+            int offset = s << SEGMENT_BITS;
+            for (int i = 0; i < SEGMENT_SIZE && offset + i < length; i++) {
+                segment[i] = values.apply(offset + i);
+            }
+            segments[s] = segment;
+        }
+        return new SegmentedArray<>(segments, length);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 參照陣列本身的記憶體估計 (bytes)，不含元素
+     */
+    public long estimatedBytes() {
+        return 16L + 4L * segments.length + (16L + 4L * SEGMENT_SIZE) * segments.length;
+    }
+
+    public Editor<T> edit() {
+        return new Editor<>(this);
+    }
+
+    /**
+     * 以目前版本為基礎累積寫入；非執行緒安全，build() 之後不可再使用
+     */
+    public static final class Editor<T> {
+        private final Object[][] segments;
+        private final boolean[] copied;
+        private final int length;
+
+        private Editor(SegmentedArray<T> source) {
+            this.segments = source.segments.clone();
+            this.copied = new boolean[segments.length];
+            this.length = source.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+        }
+
+        public void set(int index, T value) {
+            int s = index >>> SEGMENT_BITS;
+            if (!copied[s]) {
+                segments[s] = segments[s].clone();
+                copied[s] = true;
+            }
+            segments[s][index & SEGMENT_MASK] = value;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public SegmentedArray<T> build() {
+            return new SegmentedArray<>(segments, length);
+        }
+    }
+}
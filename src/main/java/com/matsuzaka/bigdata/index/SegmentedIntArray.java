@@ -0,0 +1,114 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.Arrays;
+
+/**
+ * 不可變的 int 陣列，修改時只複製被寫到的分段 (persistent array)
+ *
+ * 與 SegmentedOverlay 相同的寫入時複製：陣列切成固定長度的分段，每段發佈後不再修改
+ * - edit() 取得 Editor，只複製分段參照陣列 (長度 / SEGMENT_SIZE)；某分段第一次被寫入時才複製該分段
+ * - build() 產生新的陣列，未被寫到的分段與舊版本共用
+ * 一次寫入的成本是「分段參照陣列 + 被寫到的分段」，而不是整個陣列。
+ */
+public final class SegmentedIntArray {
+
+    static final int SEGMENT_BITS = 10;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /** 各分段，長度都是 SEGMENT_SIZE；length 之後的格子都是 0 */
+    private final int[][] segments;
+    private final int length;
+
+    private SegmentedIntArray(int[][] segments, int length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    public static SegmentedIntArray of(int[] values) {
+        int[][] segments = new int[segmentCount(values.length)][];
+        for (int s = 0; s < segments.length; s++) {
+            segments[s] = Arrays.copyOfRange(values, s << SEGMENT_BITS, (s + 1) << SEGMENT_BITS);
+        }
+        return new SegmentedIntArray(segments, values.length);
+    }
+
+    private static int segmentCount(int length) {
+        return (length + SEGMENT_MASK) >>> SEGMENT_BITS;
+    }
+
+    public int get(int index) {
+        return segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 記憶體估計 (bytes)：分段參照陣列加上各分段，與其他版本共用的分段也計入
+     */
+    public long estimatedBytes() {
+        return 16L + 4L * segments.length + (16L + 4L * SEGMENT_SIZE) * segments.length;
+    }
+
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    /**
+     * 以目前版本為基礎累積寫入；非執行緒安全，build() 之後不可再使用
+     */
+    public static final class Editor {
+        private int[][] segments;
+        private boolean[] copied;
+        private int length;
+
+        private Editor(SegmentedIntArray source) {
+            this.segments = source.segments.clone();
+            this.copied = new boolean[segments.length];
+            this.length = source.length;
+        }
+
+        public int get(int index) {
+            return segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+        }
+
+        public void set(int index, int value) {
+            int s = index >>> SEGMENT_BITS;
+            if (!copied[s]) {
+                segments[s] = segments[s].clone();
+                copied[s] = true;
+            }
+            segments[s][index & SEGMENT_MASK] = value;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * 把長度擴充到 newLength，新的格子為 0；只配置新的分段，既有分段不複製
+         */
+        public void grow(int newLength) {
+            if (newLength <= length) {
+                return;
+            }
+            int oldCount = segments.length;
+            int newCount = segmentCount(newLength);
+            if (newCount > oldCount) {
+                segments = Arrays.copyOf(segments, newCount);
+                copied = Arrays.copyOf(copied, newCount);
+                for (int s = oldCount; s < newCount; s++) {
+                    segments[s] = new int[SEGMENT_SIZE];
+                    copied[s] = true;
+                }
+            }
+            length = newLength;
+        }
+
+        public SegmentedIntArray build() {
+            return new SegmentedIntArray(segments, length);
+        }
+    }
+}
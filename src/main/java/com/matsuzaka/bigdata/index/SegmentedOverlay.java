@@ -0,0 +1,101 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 不可變的 key → value 覆蓋層，修改時只複製被寫到的分段 (persistent map)
+ *
+ * 記憶體索引的寫入採「在副本上修改、再以一次參照替換發佈」；覆蓋層若是單一 HashMap，每次寫入都得複製整份。
+ * 這裡把 key 依雜湊分到固定數量的分段，每段是一份發佈後不再修改的 HashMap：
+ * - edit() 取得 Editor，只複製分段參照陣列；某分段第一次被寫入時才複製該分段
+ * - build() 產生新的覆蓋層，未被寫到的分段與舊版本共用
+ * 舊版本完全不受影響，仍在讀取舊版本的查詢看到的是一致的內容。
+ *
+ * @param <K> key，需正確實作 hashCode / equals
+ * @param <V> value，發佈後不可修改
+ */
+public final class SegmentedOverlay<K, V> {
+
+    private static final int SEGMENTS = 256;
+
+    /** 各分段；尚未寫入過的分段為 null */
+    private final Map<K, V>[] segments;
+    private final int size;
+
+    private SegmentedOverlay(Map<K, V>[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> SegmentedOverlay<K, V> empty() {
+        return new SegmentedOverlay<>((Map<K, V>[]) new Map[SEGMENTS], 0);
+    }
+
+    private static int segment(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (SEGMENTS - 1);
+    }
+
+    /** 覆蓋層中的值；沒有這個 key 時為 null */
+    public V get(K key) {
+        Map<K, V> segment = segments[segment(key)];
+        return segment != null ? segment.get(key) : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Map<K, V> segment : segments) {
+            if (segment != null) {
+                segment.forEach(action);
+            }
+        }
+    }
+
+    public Editor<K, V> edit() {
+        return new Editor<>(this);
+    }
+
+    /**
+     * 以目前版本為基礎累積寫入；非執行緒安全，build() 之後不可再使用
+     */
+    public static final class Editor<K, V> {
+        private final Map<K, V>[] segments;
+        private final boolean[] copied = new boolean[SEGMENTS];
+        private int size;
+
+        private Editor(SegmentedOverlay<K, V> source) {
+            this.segments = source.segments.clone();
+            this.size = source.size;
+        }
+
+        public V get(K key) {
+            Map<K, V> segment = segments[segment(key)];
+            return segment != null ? segment.get(key) : null;
+        }
+
+        public void put(K key, V value) {
+            int index = segment(key);
+            if (!copied[index]) {
+                segments[index] = segments[index] == null ? new HashMap<>() : new HashMap<>(segments[index]);
+                copied[index] = true;
+            }
+            if (segments[index].put(key, value) == null) {
+                size++;
+            }
+        }
+
+        public SegmentedOverlay<K, V> build() {
+            return new SegmentedOverlay<>(segments, size);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 教師 → 課程的鄰接表 (功能 8 / 9)，與 CSR 選課索引的課程端串起「教師 → 課程 → 學生」的多段查詢
+ *
+ * 以 CSR 格式儲存：teacherOffsets[t] ~ teacherOffsets[t + 1] 為教師 t 所授課程在 courseIds 中的區間。
+ * 授課資料量小 (課程數的量級)，啟動時從 course_assignment 整表載入，之後不再變動；
+ * 修課人數則是查詢時才向 CSR 索引取得，因此選課 / 退選會立即反映在結果中。
+ */
+public final class TeachingGraph {
+
+    /**
+     * 依修課人次排序的前 K 名教師：teacherIds[i] 的人次為 enrollments[i]
+     */
+    public record TeacherRanking(int[] teacherIds, int[] enrollments) {
+        public int size() {
+            return teacherIds.length;
+        }
+    }
+
+    private final int[] teacherOffsets;
+    private final int[] courseIds;
+
+    private TeachingGraph(int[] teacherOffsets, int[] courseIds) {
+        this.teacherOffsets = teacherOffsets;
+        this.courseIds = courseIds;
+    }
+
+    /**
+     * 逐筆累積 (教師, 課程) 的建構器；非執行緒安全
+     */
+    public static final class Builder {
+        private int[] teacherIds = new int[16];
+        private int[] courseIds = new int[16];
+        private int size;
+        private int maxTeacherId;
+
+        public void add(int teacherId, int courseId) {
+            if (size == teacherIds.length) {
+                teacherIds = Arrays.copyOf(teacherIds, size * 2);
+                courseIds = Arrays.copyOf(courseIds, size * 2);
+            }
+            teacherIds[size] = teacherId;
+            courseIds[size] = courseId;
+            size++;
+            maxTeacherId = Math.max(maxTeacherId, teacherId);
+        }
+
+        /**
+         * 計數排序成 CSR：先數每位教師的課程數，前綴和後再把課程 id 放進各自的區間
+         */
+        public TeachingGraph build() {
+            int[] offsets = new int[maxTeacherId + 2];
+            for (int i = 0; i < size; i++) {
+                offsets[teacherIds[i] + 1]++;
+            }
+            for (int t = 0; t <= maxTeacherId; t++) {
+                offsets[t + 1] += offsets[t];
+            }
+            int[] cursor = Arrays.copyOf(offsets, offsets.length);
+            int[] adjacency = new int[size];
+            for (int i = 0; i < size; i++) {
+                adjacency[cursor[teacherIds[i]]++] = courseIds[i];
+            }
+            return new TeachingGraph(offsets, adjacency);
+        }
+    }
+
+    public int maxTeacherId() {
+        return teacherOffsets.length - 2;
+    }
+
+    public int assignmentCount() {
+        return courseIds.length;
+    }
+
+    /** 該教師所授的課程數；id 超出範圍時為 0 */
+    public int courseCount(int teacherId) {
+        if (teacherId < 0 || teacherId > maxTeacherId()) {
+            return 0;
+        }
+        return teacherOffsets[teacherId + 1] - teacherOffsets[teacherId];
+    }
+
+    public void forEachCourse(int teacherId, IntConsumer consumer) {
+        if (teacherId < 0 || teacherId > maxTeacherId()) {
+            return;
+        }
+        int end = teacherOffsets[teacherId + 1];
+        for (int pos = teacherOffsets[teacherId]; pos < end; pos++) {
+            consumer.accept(courseIds[pos]);
+        }
+    }
+
+    /**
+     * 修課人次最多的前 k 位教師：每位教師的人次為所授課程的人數總和，O(授課筆數) 加上大小為 k 的最小堆積
+     * 沒有任何修課人次的教師不列入；同人次時 id 較小者優先
+     *
+     * @param courseDegree 課程 id -> 目前的修課人數
+     */
+    public TeacherRanking topTeachers(int k, IntUnaryOperator courseDegree) {
+        int[] totals = new int[maxTeacherId() + 1];
+        for (int t = 0; t < totals.length; t++) {
+            int end = teacherOffsets[t + 1];
+            for (int pos = teacherOffsets[t]; pos < end; pos++) {
+                totals[t] += courseDegree.applyAsInt(courseIds[pos]);
+            }
+        }
+        int[] teacherIds = CsrEnrollmentIndex.topByDegree(totals.length - 1, t -> totals[t], k);
+        int[] enrollments = new int[teacherIds.length];
+        for (int i = 0; i < teacherIds.length; i++) {
+            enrollments[i] = totals[teacherIds[i]];
+        }
+        return new TeacherRanking(teacherIds, enrollments);
+    }
+
+    /**
+     * 記憶體估計 (bytes)
+     */
+    public long estimatedBytes() {
+        return 32L + 4L * teacherOffsets.length + 4L * courseIds.length;
+    }
+}
@@ -0,0 +1,347 @@
+package com.matsuzaka.bigdata.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 文字欄位的前綴與子字串搜尋索引 (功能 10)：學生的姓名 / email、課程名稱
+ *
+ * 每筆資料 (文件) 有固定數目的文字欄位，建立時一律轉成小寫，查詢也以小寫比對，因此不分大小寫。
+ * - 前綴搜尋：「某個詞的開頭」以查詢字串起頭即算命中。每個詞首位置 (欄位開頭，或緊接在非字母數字字元之後) 都是一筆項目，
+ *   全部依「從該位置起的字尾」排序成陣列；查詢時二分搜尋第一筆 >= 查詢字串的項目，往後掃到不再以查詢字串起頭為止，
+ *   效果等同 trie 的走訪，但只用兩條 int[]，沒有節點物件。
+ * - 子字串搜尋：以 3-gram 倒排索引 (gram -> 含有它的文件，CSR 格式) 找候選。查詢字串至少 3 個字元時，
+ *   取所有 gram 的文件清單求交集 (由最短的開始)，再以 String.contains 驗證 (gram 全部出現不代表它們相連)；
+ *   1 ~ 2 個字元時，以該字元開頭的 gram 在排序後的 key 中是連續的一段，取其聯集即為答案，不需驗證。
+ *   欄位尾端補兩個 '\0' 再切 gram，讓每個位置都是某個 gram 的開頭。
+ * 文件依 id 由小到大加入，命中的文件以 BitSet 或遞增的清單收集，結果自然依 id 排序，取到 limit 筆即可停止。
+ * 建立後不可變，可安全地被多執行緒同時讀取。
+ */
+public final class TextSearchIndex {
+
+    /** n-gram 的長度 */
+    public static final int GRAM = 3;
+
+    private static final char PAD = '\0';
+
+    /** 文件序號 -> 實體 id (遞增) */
+    private final int[] ids;
+    /** texts[field][doc]：小寫後的欄位內容 */
+    private final String[][] texts;
+
+    // --- 前綴：依字尾排序的詞首位置 ---
+    private final int[] prefixDocs;
+    /** (field << 16) | offset */
+    private final int[] prefixPositions;
+
+    // --- 子字串：3-gram 倒排索引 (CSR) ---
+    private final long[] gramKeys;
+    private final int[] gramOffsets;
+    private final int[] gramDocs;
+
+    private TextSearchIndex(int[] ids, String[][] texts, int[] prefixDocs, int[] prefixPositions,
+                            long[] gramKeys, int[] gramOffsets, int[] gramDocs) {
+        this.ids = ids;
+        this.texts = texts;
+        this.prefixDocs = prefixDocs;
+        this.prefixPositions = prefixPositions;
+        this.gramKeys = gramKeys;
+        this.gramOffsets = gramOffsets;
+        this.gramDocs = gramDocs;
+    }
+
+    /**
+     * 逐筆加入文件的建構器；id 必須遞增，非執行緒安全
+     */
+    public static final class Builder {
+        private final int fieldCount;
+        private int[] ids = new int[16];
+        private final List<List<String>> texts = new ArrayList<>();
+        private int size;
+
+        public Builder(int fieldCount) {
+            if (fieldCount < 1 || fieldCount > 0x7FFF) {
+                throw new IllegalArgumentException("欄位數必須介於 1 ~ 32767: " + fieldCount);
+            }
+            this.fieldCount = fieldCount;
+            for (int f = 0; f < fieldCount; f++) {
+                texts.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * @param values 依欄位順序的內容，null 視為空字串
+         * @throws IllegalArgumentException 欄位數不符或 id 沒有遞增
+         */
+        public void add(int id, String... values) {
+            if (values.length != fieldCount) {
+                throw new IllegalArgumentException("欄位數不符: " + values.length + " (應為 " + fieldCount + ")");
+            }
+            if (size > 0 && id <= ids[size - 1]) {
+                throw new IllegalArgumentException("id 必須遞增: " + id);
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            for (int f = 0; f < fieldCount; f++) {
+                texts.get(f).add(values[f] == null ? "" : values[f].toLowerCase(Locale.ROOT));
+            }
+        }
+
+        public TextSearchIndex build() {
+            String[][] columns = new String[fieldCount][];
+            for (int f = 0; f < fieldCount; f++) {
+                columns[f] = texts.get(f).toArray(new String[0]);
+            }
+            int[] docIds = Arrays.copyOf(ids, size);
+
+            // 前綴：收集詞首位置後依字尾排序 (只在建立時裝箱一次)
+            List<Integer> docs = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            for (int doc = 0; doc < size; doc++) {
+                for (int f = 0; f < fieldCount; f++) {
+                    String text = columns[f][doc];
+                    // offset 以 16 bits 存放，超長欄位只索引前 65535 個字元內的詞首
+                    int limit = Math.min(text.length(), 0xFFFF);
+                    for (int offset = 0; offset < limit; offset++) {
+                        if (Character.isLetterOrDigit(text.charAt(offset))
+                                && (offset == 0 || !Character.isLetterOrDigit(text.charAt(offset - 1)))) {
+                            docs.add(doc);
+                            positions.add((f << 16) | offset);
+                        }
+                    }
+                }
+            }
+            Integer[] order = new Integer[docs.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compareSuffixes(columns, docs.get(a), positions.get(a), docs.get(b), positions.get(b)));
+            int[] prefixDocs = new int[order.length];
+            int[] prefixPositions = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                prefixDocs[i] = docs.get(order[i]);
+                prefixPositions[i] = positions.get(order[i]);
+            }
+
+            // 子字串：每份文件的每個 gram 只記一次，文件依序加入，各 gram 的文件清單自然遞增
+            Map<Long, int[]> postings = new HashMap<>();
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int doc = 0; doc < size; doc++) {
+                for (int f = 0; f < fieldCount; f++) {
+                    String text = columns[f][doc];
+                    for (int offset = 0; offset < text.length(); offset++) {
+                        long key = gramKey(text, offset);
+                        int[] list = postings.get(key);
+                        int count = counts.getOrDefault(key, 0);
+                        if (list == null) {
+                            list = new int[4];
+                            postings.put(key, list);
+                        } else if (list[count - 1] == doc) {
+                            continue;
+                        } else if (count == list.length) {
+                            list = Arrays.copyOf(list, count * 2);
+                            postings.put(key, list);
+                        }
+                        list[count] = doc;
+                        counts.put(key, count + 1);
+                    }
+                }
+            }
+            long[] keys = postings.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            int[] offsets = new int[keys.length + 1];
+            for (int i = 0; i < keys.length; i++) {
+                offsets[i + 1] = offsets[i] + counts.get(keys[i]);
+            }
+            int[] gramDocs = new int[offsets[keys.length]];
+            for (int i = 0; i < keys.length; i++) {
+                System.arraycopy(postings.get(keys[i]), 0, gramDocs, offsets[i], offsets[i + 1] - offsets[i]);
+            }
+            return new TextSearchIndex(docIds, columns, prefixDocs, prefixPositions, keys, offsets, gramDocs);
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * 有某個詞以 query 開頭的文件 id (依 id 遞增)，最多 limit 筆；query 為空白時沒有結果
+     */
+    public int[] prefix(String query, int limit) {
+        String q = query.toLowerCase(Locale.ROOT);
+        if (q.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        // 第一筆字尾 >= q 的項目
+        int low = 0;
+        int high = prefixDocs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareSuffix(mid, q) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        BitSet matched = new BitSet(ids.length);
+        for (int i = low; i < prefixDocs.length && suffixStartsWith(i, q); i++) {
+            matched.set(prefixDocs[i]);
+        }
+        return collect(matched, limit);
+    }
+
+    /**
+     * 任一欄位包含 query 的文件 id (依 id 遞增)，最多 limit 筆；query 為空白時沒有結果
+     */
+    public int[] contains(String query, int limit) {
+        String q = query.toLowerCase(Locale.ROOT);
+        if (q.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        if (q.length() < GRAM) {
+            // 以 q 開頭的 gram 在 key 上是連續區間：[q 補 0, q 的最後一個字元 + 1 再補 0)
+            long from = gramKey(q, 0);
+            long to = from + (1L << (16 * (GRAM - q.length())));
+            BitSet matched = new BitSet(ids.length);
+            for (int k = lowerBound(from); k < gramKeys.length && gramKeys[k] < to; k++) {
+                for (int pos = gramOffsets[k]; pos < gramOffsets[k + 1]; pos++) {
+                    matched.set(gramDocs[pos]);
+                }
+            }
+            return collect(matched, limit);
+        }
+
+        // 各 gram 的文件清單，由短到長求交集
+        int grams = q.length() - GRAM + 1;
+        int[] slots = new int[grams];
+        for (int i = 0; i < grams; i++) {
+            int slot = Arrays.binarySearch(gramKeys, gramKey(q, i));
+            if (slot < 0) {
+                return new int[0];
+            }
+            slots[i] = slot;
+        }
+        Integer[] bySize = new Integer[grams];
+        for (int i = 0; i < grams; i++) {
+            bySize[i] = slots[i];
+        }
+        Arrays.sort(bySize, (a, b) -> Integer.compare(gramOffsets[a + 1] - gramOffsets[a], gramOffsets[b + 1] - gramOffsets[b]));
+        int first = bySize[0];
+        int[] candidates = Arrays.copyOfRange(gramDocs, gramOffsets[first], gramOffsets[first + 1]);
+        int count = candidates.length;
+        for (int i = 1; i < grams && count > 0; i++) {
+            count = intersect(candidates, count, bySize[i]);
+        }
+
+        int[] result = new int[Math.min(count, limit)];
+        int found = 0;
+        for (int i = 0; i < count && found < result.length; i++) {
+            int doc = candidates[i];
+            for (String[] column : texts) {
+                if (column[doc].contains(q)) {
+                    result[found++] = ids[doc];
+                    break;
+                }
+            }
+        }
+        return found == result.length ? result : Arrays.copyOf(result, found);
+    }
+
+    /**
+     * 索引的記憶體估計 (bytes)：小寫字串 (以 Latin-1 緊湊字串估算) 與所有 int / long 陣列
+     */
+    public long estimatedBytes() {
+        long bytes = 16L + 4L * ids.length;
+        for (String[] column : texts) {
+            bytes += 16L + 4L * column.length;
+            for (String text : column) {
+                bytes += 40L + text.length();
+            }
+        }
+        bytes += 16L + 4L * prefixDocs.length + 16L + 4L * prefixPositions.length;
+        bytes += 16L + 8L * gramKeys.length + 16L + 4L * gramOffsets.length + 16L + 4L * gramDocs.length;
+        return bytes;
+    }
+
+    // --- 內部工具 ---
+
+    /** candidates[0, count) 與 gram slot 的文件清單求交集，結果寫回 candidates 前段 */
+    private int intersect(int[] candidates, int count, int slot) {
+        int pos = gramOffsets[slot];
+        int end = gramOffsets[slot + 1];
+        int kept = 0;
+        for (int i = 0; i < count && pos < end; i++) {
+            int doc = candidates[i];
+            while (pos < end && gramDocs[pos] < doc) {
+                pos++;
+            }
+            if (pos < end && gramDocs[pos] == doc) {
+                candidates[kept++] = doc;
+            }
+        }
+        return kept;
+    }
+
+    private int lowerBound(long key) {
+        int slot = Arrays.binarySearch(gramKeys, key);
+        return slot >= 0 ? slot : -slot - 1;
+    }
+
+    private int[] collect(BitSet matched, int limit) {
+        int[] result = new int[Math.min(matched.cardinality(), limit)];
+        for (int i = 0, doc = matched.nextSetBit(0); i < result.length; i++, doc = matched.nextSetBit(doc + 1)) {
+            result[i] = ids[doc];
+        }
+        return result;
+    }
+
+    /** 從 offset 起的 GRAM 個字元 (不足補 PAD) 各佔 16 bits */
+    private static long gramKey(String text, int offset) {
+        long key = 0;
+        for (int i = 0; i < GRAM; i++) {
+            int at = offset + i;
+            key = (key << 16) | (at < text.length() ? text.charAt(at) : PAD);
+        }
+        return key;
+    }
+
+    /** 第 entry 筆字尾與 q 比較，只比到 q 的長度 (以 q 起頭的字尾視為相等) */
+    private int compareSuffix(int entry, String q) {
+        String text = texts[prefixPositions[entry] >>> 16][prefixDocs[entry]];
+        int offset = prefixPositions[entry] & 0xFFFF;
+        int length = Math.min(text.length() - offset, q.length());
+        for (int i = 0; i < length; i++) {
+            int diff = text.charAt(offset + i) - q.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length == q.length() ? 0 : -1;
+    }
+
+    private boolean suffixStartsWith(int entry, String q) {
+        return compareSuffix(entry, q) == 0;
+    }
+
+    private static int compareSuffixes(String[][] columns, int docA, int positionA, int docB, int positionB) {
+        String a = columns[positionA >>> 16][docA];
+        String b = columns[positionB >>> 16][docB];
+        int offsetA = positionA & 0xFFFF;
+        int offsetB = positionB & 0xFFFF;
+        int length = Math.min(a.length() - offsetA, b.length() - offsetB);
+        for (int i = 0; i < length; i++) {
+            int diff = a.charAt(offsetA + i) - b.charAt(offsetB + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (a.length() - offsetA) - (b.length() - offsetB);
+    }
+}
@@ -2,27 +2,125 @@ package com.matsuzaka.bigdata.repository;
 
 import com.matsuzaka.bigdata.entity.Enrollment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
 
-    // 功能 3: 原生 SQL 查詢找出最熱門的前10門課程
-    @Query(value = "SELECT course_id, COUNT(*) as count FROM enrollment GROUP BY course_id ORDER BY count DESC LIMIT 10", nativeQuery = true)
-    List<Object[]> findTop10PopularCoursesNative();
+    // 各功能的原生 SQL 另外宣告成常數，讓 IndexProfileManager 能以完全相同的查詢擷取 EXPLAIN 執行計畫
 
     // 功能 1: 原生 SQL 查詢某學生所有修課紀錄
-    @Query(value = "SELECT c.title, c.credit, e.enrollment_date " +
+    String COURSES_BY_STUDENT_SQL = "SELECT c.title, c.credit, e.enrollment_date " +
             "FROM enrollment e JOIN course c ON e.course_id = c.id " +
-            "WHERE e.student_id = ?1", nativeQuery = true)
-    List<Object[]> findCourseDetailsByStudentIdNative(Long studentId);
+            "WHERE e.student_id = ?1";
+
+    // 功能 1 (批次): 一次查詢多位學生，另外回傳 student_id 以便分組；IN 清單由呼叫端切成固定大小的區塊
+    String COURSES_BY_STUDENTS_SQL = "SELECT e.student_id, c.title, c.credit, e.enrollment_date " +
+            "FROM enrollment e JOIN course c ON e.course_id = c.id " +
+            "WHERE e.student_id IN (?1)";
 
     // 功能 2: 原生 SQL 查詢某課程所有修課學生
-    @Query(value = "SELECT s.name, s.email, e.enrollment_date " +
+    String STUDENTS_BY_COURSE_SQL = "SELECT s.name, s.email, e.enrollment_date " +
+            "FROM enrollment e JOIN student s ON e.student_id = s.id " +
+            "WHERE e.course_id = ?1";
+
+    // 功能 2 (批次): 一次查詢多門課程，另外回傳 course_id 以便分組
+    String STUDENTS_BY_COURSES_SQL = "SELECT e.course_id, s.name, s.email, e.enrollment_date " +
+            "FROM enrollment e JOIN student s ON e.student_id = s.id " +
+            "WHERE e.course_id IN (?1)";
+
+    // 功能 2 (分頁): keyset 分頁，從 (afterStudentId, afterEnrollmentId) 之後取 limit 筆
+    // 不用 OFFSET：OFFSET 越大資料庫要跳過的列越多，keyset 則每一頁都是 (course_id, student_id, ...) 索引上的一次範圍掃描
+    // course_id 已由等值條件固定，鍵只需 (student_id, id)；id 讓同一學生重複修同一門課的多筆紀錄各有唯一位置 (見 PerformanceService)
+    String STUDENTS_BY_COURSE_PAGE_SQL = "SELECT s.name, s.email, e.enrollment_date, e.student_id, e.id " +
             "FROM enrollment e JOIN student s ON e.student_id = s.id " +
-            "WHERE e.course_id = ?1", nativeQuery = true)
+            "WHERE e.course_id = ?1 AND (e.student_id > ?2 OR (e.student_id = ?2 AND e.id > ?3)) " +
+            "ORDER BY e.student_id, e.id LIMIT ?4";
+
+    // 功能 3: 原生 SQL 查詢找出最熱門的前 K 門課程
+    String TOP_COURSES_SQL = "SELECT course_id, COUNT(*) as count FROM enrollment GROUP BY course_id ORDER BY count DESC LIMIT ?1";
+
+    // 功能 4: 原生 SQL 查詢某課程在日期區間 [from, to] 內的修課學生，依修課日期排序
+    String STUDENTS_BY_COURSE_BETWEEN_SQL = "SELECT s.name, s.email, e.enrollment_date " +
+            "FROM enrollment e JOIN student s ON e.student_id = s.id " +
+            "WHERE e.course_id = ?1 AND e.enrollment_date BETWEEN ?2 AND ?3 " +
+            "ORDER BY e.enrollment_date, e.id";
+
+    // 功能 5: 原生 SQL 統計某課程在日期區間 [from, to] 內每個月的修課人次
+    String MONTHLY_ENROLLMENTS_SQL = "SELECT YEAR(enrollment_date), MONTH(enrollment_date), COUNT(*) FROM enrollment " +
+            "WHERE course_id = ?1 AND enrollment_date BETWEEN ?2 AND ?3 " +
+            "GROUP BY YEAR(enrollment_date), MONTH(enrollment_date) " +
+            "ORDER BY YEAR(enrollment_date), MONTH(enrollment_date)";
+
+    // 功能 6: 原生 SQL 自我 join，找出與某課程共同修課的不重複學生數最多的前 N 門課程
+    String CO_ENROLLED_COURSES_SQL = "SELECT o.course_id, COUNT(DISTINCT o.student_id) AS shared " +
+            "FROM enrollment x JOIN enrollment o ON o.student_id = x.student_id AND o.course_id <> x.course_id " +
+            "WHERE x.course_id = ?1 " +
+            "GROUP BY o.course_id ORDER BY shared DESC, o.course_id LIMIT ?2";
+
+    // 功能 7: 原生 SQL 計算兩門課各自的不重複學生數與共同學生數 (Jaccard 由呼叫端計算)
+    String COURSE_OVERLAP_SQL = "SELECT " +
+            "(SELECT COUNT(DISTINCT student_id) FROM enrollment WHERE course_id = ?1), " +
+            "(SELECT COUNT(DISTINCT student_id) FROM enrollment WHERE course_id = ?2), " +
+            "(SELECT COUNT(DISTINCT a.student_id) FROM enrollment a JOIN enrollment b ON a.student_id = b.student_id " +
+            "WHERE a.course_id = ?1 AND b.course_id = ?2)";
+
+    // 功能 8: 原生 SQL 兩段 join (教師 → 授課 → 選課 → 學生)，找出修過某教師任一門課的不重複學生
+    String STUDENTS_BY_TEACHER_SQL = "SELECT DISTINCT s.id, s.name, s.email " +
+            "FROM course_assignment a JOIN enrollment e ON e.course_id = a.course_id JOIN student s ON s.id = e.student_id " +
+            "WHERE a.teacher_id = ?1 ORDER BY s.id";
+
+    // 功能 9: 原生 SQL 依所授課程的修課人次總和排名教師
+    String TOP_TEACHERS_SQL = "SELECT a.teacher_id, COUNT(*) AS total " +
+            "FROM course_assignment a JOIN enrollment e ON e.course_id = a.course_id " +
+            "GROUP BY a.teacher_id ORDER BY total DESC, a.teacher_id LIMIT ?1";
+
+    @Query(value = TOP_COURSES_SQL, nativeQuery = true)
+    List<Object[]> findTopPopularCoursesNative(int limit);
+
+    @Query(value = COURSES_BY_STUDENT_SQL, nativeQuery = true)
+    List<Object[]> findCourseDetailsByStudentIdNative(Long studentId);
+
+    @Query(value = STUDENTS_BY_COURSE_SQL, nativeQuery = true)
     List<Object[]> findStudentDetailsByCourseIdNative(Long courseId);
+
+    @Query(value = COURSES_BY_STUDENTS_SQL, nativeQuery = true)
+    List<Object[]> findCourseDetailsByStudentIdsNative(Collection<Long> studentIds);
+
+    @Query(value = STUDENTS_BY_COURSES_SQL, nativeQuery = true)
+    List<Object[]> findStudentDetailsByCourseIdsNative(Collection<Long> courseIds);
+
+    @Query(value = STUDENTS_BY_COURSE_PAGE_SQL, nativeQuery = true)
+    List<Object[]> findStudentDetailsByCourseIdAfterNative(Long courseId, long afterStudentId, long afterEnrollmentId, int limit);
+
+    @Query(value = STUDENTS_BY_COURSE_BETWEEN_SQL, nativeQuery = true)
+    List<Object[]> findStudentDetailsByCourseIdBetweenNative(Long courseId, LocalDate from, LocalDate to);
+
+    @Query(value = MONTHLY_ENROLLMENTS_SQL, nativeQuery = true)
+    List<Object[]> countByCourseIdPerMonthNative(Long courseId, LocalDate from, LocalDate to);
+
+    @Query(value = CO_ENROLLED_COURSES_SQL, nativeQuery = true)
+    List<Object[]> findCoEnrolledCoursesNative(Long courseId, int limit);
+
+    @Query(value = COURSE_OVERLAP_SQL, nativeQuery = true)
+    List<Object[]> countCourseOverlapNative(Long courseA, Long courseB);
+
+    @Query(value = STUDENTS_BY_TEACHER_SQL, nativeQuery = true)
+    List<Object[]> findStudentDetailsByTeacherIdNative(Long teacherId);
+
+    @Query(value = TOP_TEACHERS_SQL, nativeQuery = true)
+    List<Object[]> findTopTeachersByEnrollmentNative(int limit);
+
+    // 退選: 回傳實際刪除的筆數，讓同一筆紀錄被同時退選兩次時只有一方會更新記憶體索引
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM enrollment WHERE id = ?1", nativeQuery = true)
+    int deleteByIdReturningCount(Long id);
 }
@@ -0,0 +1,130 @@
+package com.matsuzaka.bigdata.repository;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.CourseAssignment;
+import com.matsuzaka.bigdata.entity.Student;
+import com.matsuzaka.bigdata.entity.Teacher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+/**
+ * 以 JDBC 游標 (cursor) 串流讀取整張資料表，供記憶體快取初始化與大型結果的串流回應使用
+ *
+ * 與 JpaRepository.findAll() 不同：
+ * - 不經過 Hibernate，不會把每一列變成受管理 (managed) 的實體放進 persistence context
+ * - 設定 fetch size 後，MariaDB 驅動會分批從伺服器取回資料，而不是一次把整個結果集載入記憶體
+ * 呼叫端必須以 try-with-resources 關閉回傳的 Stream，以釋放底層連線
+ */
+@Repository
+public class EnrollmentStreamRepository {
+
+    /**
+     * 單純的選課資料列，讀出後直接交給索引建構器，用完即丟
+     */
+    public record EnrollmentRow(long id, long studentId, long courseId, LocalDate enrollmentDate) {}
+
+    /**
+     * 三張資料表的筆數與最大 id，用來判斷索引快照是否仍與資料庫一致
+     */
+    public record TableStats(long studentCount, long studentMaxId, long courseCount, long courseMaxId,
+                             long enrollmentCount, long enrollmentMaxId) {}
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public EnrollmentStreamRepository(DataSource dataSource, @Value("${bigdata.cache.fetch-size:10000}") int fetchSize) {
+        // 獨立的 JdbcTemplate，避免影響其他地方共用的 JdbcTemplate 設定
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public long countEnrollments() {
+        Long count = streamingJdbcTemplate.queryForObject("SELECT COUNT(*) FROM enrollment", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 以一次查詢取得三張表的 COUNT(*) 與 MAX(id)；兩者都走主鍵索引，不需要掃描資料列
+     */
+    public TableStats tableStats() {
+        return streamingJdbcTemplate.queryForObject("SELECT "
+                        + "(SELECT COUNT(*) FROM student), (SELECT COALESCE(MAX(id), 0) FROM student), "
+                        + "(SELECT COUNT(*) FROM course), (SELECT COALESCE(MAX(id), 0) FROM course), "
+                        + "(SELECT COUNT(*) FROM enrollment), (SELECT COALESCE(MAX(id), 0) FROM enrollment)",
+                (rs, rowNum) -> new TableStats(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6)));
+    }
+
+    public Stream<Student> streamStudents() {
+        return streamingJdbcTemplate.queryForStream("SELECT id, name, birth, email FROM student", (rs, rowNum) -> {
+            Student s = new Student();
+            s.setId(rs.getLong(1));
+            s.setName(rs.getString(2));
+            java.sql.Date birth = rs.getDate(3);
+            s.setBirth(birth == null ? null : birth.toLocalDate());
+            s.setEmail(rs.getString(4));
+            return s;
+        });
+    }
+
+    public Stream<Course> streamCourses() {
+        return streamingJdbcTemplate.queryForStream("SELECT id, title, credit FROM course", (rs, rowNum) -> {
+            Course c = new Course();
+            c.setId(rs.getLong(1));
+            c.setTitle(rs.getString(2));
+            c.setCredit(rs.getInt(3));
+            return c;
+        });
+    }
+
+    public Stream<Teacher> streamTeachers() {
+        return streamingJdbcTemplate.queryForStream("SELECT id, name, email FROM teacher", (rs, rowNum) -> {
+            Teacher t = new Teacher();
+            t.setId(rs.getLong(1));
+            t.setName(rs.getString(2));
+            t.setEmail(rs.getString(3));
+            return t;
+        });
+    }
+
+    public Stream<CourseAssignment> streamCourseAssignments() {
+        return streamingJdbcTemplate.queryForStream("SELECT id, teacher_id, course_id FROM course_assignment", (rs, rowNum) -> {
+            CourseAssignment a = new CourseAssignment();
+            a.setId(rs.getLong(1));
+            a.setTeacherId(rs.getLong(2));
+            a.setCourseId(rs.getLong(3));
+            return a;
+        });
+    }
+
+    /**
+     * 串流讀取某課程的所有修課學生 (與 findStudentDetailsByCourseIdNative 相同的查詢)，不在記憶體中組成完整的 List
+     */
+    public Stream<CourseStudentInfo> streamStudentDetailsByCourse(long courseId) {
+        return streamingJdbcTemplate.queryForStream("SELECT s.name, s.email, e.enrollment_date "
+                        + "FROM enrollment e JOIN student s ON e.student_id = s.id WHERE e.course_id = ?",
+                (rs, rowNum) -> new CourseStudentInfo(rs.getString(1), rs.getString(2), rs.getDate(3).toLocalDate()),
+                courseId);
+    }
+
+    /**
+     * 選課紀錄 id 的範圍 {MIN(id), MAX(id)}，空表時回傳 {0, 0}，供切分平行載入的分區使用
+     */
+    public long[] enrollmentIdRange() {
+        return streamingJdbcTemplate.queryForObject("SELECT COALESCE(MIN(id), 0), COALESCE(MAX(id), 0) FROM enrollment",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
+
+    /**
+     * 串流讀取 id 落在 [fromId, toIdExclusive) 的選課紀錄；以主鍵範圍切分，每個分區都是一次索引範圍掃描
+     */
+    public Stream<EnrollmentRow> streamEnrollments(long fromId, long toIdExclusive) {
+        return streamingJdbcTemplate.queryForStream("SELECT id, student_id, course_id, enrollment_date FROM enrollment WHERE id >= ? AND id < ?",
+                (rs, rowNum) -> new EnrollmentRow(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getDate(4).toLocalDate()),
+                fromId, toIdExclusive);
+    }
+}
@@ -0,0 +1,153 @@
+package com.matsuzaka.bigdata.repository;
+
+import com.matsuzaka.bigdata.dto.CourseSearchInfo;
+import com.matsuzaka.bigdata.dto.StudentSearchInfo;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 功能 10：學生姓名 / email 與課程名稱的前綴、子字串搜尋 (資料庫端)
+ *
+ * - 前綴搜尋在 MariaDB 上使用 FULLTEXT 索引：MATCH ... AGAINST 的 boolean mode，查詢中的每個詞都加上 + (必須出現) 與 * (前綴)。
+ *   FULLTEXT 依 InnoDB 的斷詞規則與 innodb_ft_min_token_size (預設 3) 運作，少於 3 個字元的詞與停用詞不會被比對，
+ *   多個詞時也不要求相鄰，因此結果可能與記憶體索引 (詞首連續比對) 不同。
+ * - 子字串搜尋：FULLTEXT 只能比對詞或詞的前綴，無法比對詞中間的片段，因此仍是 LOWER(欄位) LIKE '%x%' 的全表掃描，
+ *   這正是記憶體 n-gram 索引要取代的成本。
+ * H2 (測試與 Benchmark) 沒有 FULLTEXT，前綴搜尋改以 REGEXP_LIKE 比對「欄位開頭或非字母數字字元之後」，語意與記憶體索引相同。
+ * 結果一律依 id 排序，最多 limit 筆。
+ */
+@Repository
+public class SearchRepository {
+
+    public static final String STUDENT_FULLTEXT_INDEX = "ft_student_name_email";
+    public static final String COURSE_FULLTEXT_INDEX = "ft_course_title";
+
+    // 前綴 (MariaDB FULLTEXT)
+    static final String STUDENTS_BY_PREFIX_SQL = "SELECT id, name, email FROM student " +
+            "WHERE MATCH(name, email) AGAINST (? IN BOOLEAN MODE) ORDER BY id LIMIT ?";
+    static final String COURSES_BY_PREFIX_SQL = "SELECT id, title, credit FROM course " +
+            "WHERE MATCH(title) AGAINST (? IN BOOLEAN MODE) ORDER BY id LIMIT ?";
+
+    // 前綴 (H2)
+    static final String STUDENTS_BY_PREFIX_REGEXP_SQL = "SELECT id, name, email FROM student " +
+            "WHERE REGEXP_LIKE(LOWER(name), ?) OR REGEXP_LIKE(LOWER(email), ?) ORDER BY id LIMIT ?";
+    static final String COURSES_BY_PREFIX_REGEXP_SQL = "SELECT id, title, credit FROM course " +
+            "WHERE REGEXP_LIKE(LOWER(title), ?) ORDER BY id LIMIT ?";
+
+    // 子字串
+    static final String STUDENTS_BY_SUBSTRING_SQL = "SELECT id, name, email FROM student " +
+            "WHERE LOWER(name) LIKE ? ESCAPE '!' OR LOWER(email) LIKE ? ESCAPE '!' ORDER BY id LIMIT ?";
+    static final String COURSES_BY_SUBSTRING_SQL = "SELECT id, title, credit FROM course " +
+            "WHERE LOWER(title) LIKE ? ESCAPE '!' ORDER BY id LIMIT ?";
+
+    /** InnoDB FULLTEXT 的詞由字母、數字與底線組成，其餘字元 (包含 boolean mode 的運算子) 都是分隔 */
+    private static final Pattern TERM_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}_]+");
+
+    private static final RowMapper<StudentSearchInfo> STUDENT_MAPPER =
+            (rs, rowNum) -> new StudentSearchInfo(rs.getLong(1), rs.getString(2), rs.getString(3));
+    private static final RowMapper<CourseSearchInfo> COURSE_MAPPER =
+            (rs, rowNum) -> new CourseSearchInfo(rs.getLong(1), rs.getString(2), rs.getInt(3));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean fullText;
+
+    public SearchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        String normalized = product == null ? "" : product.toLowerCase(Locale.ROOT);
+        this.fullText = normalized.contains("mariadb") || normalized.contains("mysql");
+    }
+
+    /** 前綴搜尋是否使用 FULLTEXT 索引 (MariaDB / MySQL) */
+    public boolean usesFullText() {
+        return fullText;
+    }
+
+    /**
+     * 建立 student (name, email) 與 course (title) 上的 FULLTEXT 索引；已存在或不是 MariaDB 時不做任何事
+     * 大表上建立索引需要數秒到數分鐘，應在資料產生之後呼叫
+     */
+    public void ensureFullTextIndexes() {
+        if (!fullText) {
+            return;
+        }
+        createFullTextIndex("student", STUDENT_FULLTEXT_INDEX, "name, email");
+        createFullTextIndex("course", COURSE_FULLTEXT_INDEX, "title");
+    }
+
+    private void createFullTextIndex(String table, String name, String columns) {
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?", Integer.class, table, name);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD FULLTEXT INDEX " + name + " (" + columns + ")");
+        System.out.printf("[搜尋] 建立 FULLTEXT 索引 %s (%s)，耗時: %,d ms%n", name, columns, System.currentTimeMillis() - startTime);
+    }
+
+    public List<StudentSearchInfo> findStudentsByPrefix(String query, int limit) {
+        if (fullText) {
+            String terms = booleanPrefixTerms(query);
+            return terms.isEmpty() ? List.of() : jdbcTemplate.query(STUDENTS_BY_PREFIX_SQL, STUDENT_MAPPER, terms, limit);
+        }
+        if (!startsWithWordCharacter(query)) {
+            return List.of();
+        }
+        String regex = wordPrefixRegex(query);
+        return jdbcTemplate.query(STUDENTS_BY_PREFIX_REGEXP_SQL, STUDENT_MAPPER, regex, regex, limit);
+    }
+
+    public List<CourseSearchInfo> findCoursesByPrefix(String query, int limit) {
+        if (fullText) {
+            String terms = booleanPrefixTerms(query);
+            return terms.isEmpty() ? List.of() : jdbcTemplate.query(COURSES_BY_PREFIX_SQL, COURSE_MAPPER, terms, limit);
+        }
+        if (!startsWithWordCharacter(query)) {
+            return List.of();
+        }
+        return jdbcTemplate.query(COURSES_BY_PREFIX_REGEXP_SQL, COURSE_MAPPER, wordPrefixRegex(query), limit);
+    }
+
+    public List<StudentSearchInfo> findStudentsBySubstring(String query, int limit) {
+        String pattern = containsPattern(query);
+        return jdbcTemplate.query(STUDENTS_BY_SUBSTRING_SQL, STUDENT_MAPPER, pattern, pattern, limit);
+    }
+
+    public List<CourseSearchInfo> findCoursesBySubstring(String query, int limit) {
+        return jdbcTemplate.query(COURSES_BY_SUBSTRING_SQL, COURSE_MAPPER, containsPattern(query), limit);
+    }
+
+    /** "wei chen" -> "+wei* +chen*"；"student1@example" -> "+student1* +example*" */
+    private static String booleanPrefixTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        for (String word : TERM_SEPARATORS.split(query)) {
+            if (!word.isEmpty()) {
+                terms.add("+" + word + "*");
+            }
+        }
+        return String.join(" ", terms);
+    }
+
+    /** 詞首必定是字母或數字，以其他字元開頭的查詢不會命中任何詞 (與記憶體索引相同) */
+    private static boolean startsWithWordCharacter(String query) {
+        return !query.isEmpty() && Character.isLetterOrDigit(query.charAt(0));
+    }
+
+    private static String wordPrefixRegex(String query) {
+        return "(^|[^\\p{L}\\p{N}])" + Pattern.quote(query.toLowerCase(Locale.ROOT));
+    }
+
+    private static String containsPattern(String query) {
+        // 以 ! 作為 LIKE 的跳脫字元 (MariaDB 的字串常值中反斜線本身也需要跳脫)
+        String escaped = query.toLowerCase(Locale.ROOT).replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,82 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+
+import java.util.List;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CACHE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_DB;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_HASH;
+
+/**
+ * PerformanceService 內建的四種查詢方式 (db / cache / hash / csr) 包裝成 QueryEngine，由 QueryEngineRegistry 固定註冊在最前面
+ */
+record BuiltInQueryEngine(PerformanceService service, String id, String displayName) implements QueryEngine {
+
+    @Override
+    public boolean warmsUp() {
+        return !id.equals(ENGINE_CACHE);
+    }
+
+    @Override
+    public List<StudentCourseInfo> findCoursesByStudentId(long studentId) {
+        return switch (id) {
+            case ENGINE_DB -> service.coursesOfStudentDb(studentId);
+            case ENGINE_CACHE -> service.coursesOfStudentCached(studentId);
+            case ENGINE_HASH -> service.coursesOfStudentHash(studentId);
+            default -> service.coursesOfStudentCsr(studentId);
+        };
+    }
+
+    @Override
+    public List<CourseStudentInfo> findStudentsByCourseId(long courseId) {
+        return switch (id) {
+            case ENGINE_DB -> service.studentsOfCourseDb(courseId);
+            case ENGINE_CACHE -> service.studentsOfCourseCached(courseId);
+            case ENGINE_HASH -> service.studentsOfCourseHash(courseId);
+            default -> service.studentsOfCourseCsr(courseId);
+        };
+    }
+
+    @Override
+    public List<PopularCourseInfo> findTopPopularCourses(int k) {
+        return switch (id) {
+            case ENGINE_DB -> service.topCoursesDb(k);
+            case ENGINE_CACHE -> service.topCoursesCached(k);
+            case ENGINE_HASH -> service.topCoursesHash(k);
+            default -> service.topCoursesCsr(k);
+        };
+    }
+
+    // 以下直接呼叫 PerformanceService 已計時的方法，讓資料庫查詢與個別功能的呼叫一樣只計入取回結果 (或依端到端模式計入轉換)
+
+    QueryResult<StudentCourseInfo> timedCoursesByStudentId(long studentId) {
+        return switch (id) {
+            case ENGINE_DB -> service.findCoursesByStudentId_DB(studentId);
+            case ENGINE_CACHE -> service.findCoursesByStudentId_Cached(studentId);
+            case ENGINE_HASH -> service.findCoursesByStudentId_InMemory(studentId);
+            default -> service.findCoursesByStudentId_Csr(studentId);
+        };
+    }
+
+    QueryResult<CourseStudentInfo> timedStudentsByCourseId(long courseId) {
+        return switch (id) {
+            case ENGINE_DB -> service.findStudentsByCourseId_DB(courseId);
+            case ENGINE_CACHE -> service.findStudentsByCourseId_Cached(courseId);
+            case ENGINE_HASH -> service.findStudentsByCourseId_InMemory(courseId);
+            default -> service.findStudentsByCourseId_Csr(courseId);
+        };
+    }
+
+    QueryResult<PopularCourseInfo> timedTopPopularCourses(int k) {
+        return switch (id) {
+            case ENGINE_DB -> service.findTopPopularCourses_DB(k);
+            case ENGINE_CACHE -> service.findTopPopularCourses_Cached(k);
+            case ENGINE_HASH -> service.findTopPopularCourses_InMemory(k);
+            default -> service.findTopPopularCourses_Csr(k);
+        };
+    }
+}
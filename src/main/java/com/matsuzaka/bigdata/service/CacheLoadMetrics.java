@@ -0,0 +1,76 @@
+package com.matsuzaka.bigdata.service;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.function.LongSupplier;
+
+/**
+ * 記錄快取載入每張資料表的耗時、每秒筆數、heap 峰值與 GC 次數 / 累計時間
+ *
+ * heap 峰值取自各 heap 記憶體池 (Eden / Survivor / Old Gen) 的 peak usage 加總，
+ * 每張表載入前先重設峰值，因此數字代表「載入該表期間」的最高 heap 使用量。
+ * GC 數字為載入前後 GarbageCollectorMXBean 的差值；執行期間的 GC 暫停分布可由 /actuator/metrics/jvm.gc.pause 查看。
+ */
+final class CacheLoadMetrics {
+
+    private CacheLoadMetrics() {
+    }
+
+    /**
+     * 執行載入動作並印出統計
+     *
+     * @param table  資料表名稱 (僅用於輸出)
+     * @param loader 執行載入並回傳載入筆數
+     * @return 載入筆數
+     */
+    static long measure(String table, LongSupplier loader) {
+        resetPeakHeap();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long startTime = System.nanoTime();
+        long rows = loader.getAsLong();
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("[快取載入] %-10s %,12d 筆，耗時: %,d ms，%,.0f 筆/秒，heap 峰值: %.1f MB，GC: %d 次 / %,d ms%n",
+                table, rows, elapsedNanos / 1_000_000, seconds > 0 ? rows / seconds : 0.0, peakHeapBytes() / (1024.0 * 1024.0),
+                gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+        return rows;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionCount(), 0);
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Enrollment;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HashMap 索引中每個 key 的選課清單 (posting list) 都依「修課日期，再依 enrollment.id」排序
+ *
+ * 排序後日期區間查詢只需兩次二分搜尋找出區間的起訖位置，不必掃描整份清單；
+ * 寫入路徑以 insertionPoint 找到插入位置，維持排序而不需重新排序。
+ */
+final class DatePostings {
+
+    static final Comparator<Enrollment> ORDER = Comparator.comparing(Enrollment::getEnrollmentDate).thenComparing(Enrollment::getId);
+
+    private DatePostings() {
+    }
+
+    /**
+     * 第一筆修課日期 >= date 的位置；全部都早於 date 時為 postings.size()
+     */
+    static int firstOnOrAfter(List<Enrollment> postings, LocalDate date) {
+        int low = 0;
+        int high = postings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.get(mid).getEnrollmentDate().isBefore(date)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一筆修課日期 > date 的位置，即 [.., date] 區間的結尾 (不含)
+     */
+    static int firstAfter(List<Enrollment> postings, LocalDate date) {
+        int low = 0;
+        int high = postings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.get(mid).getEnrollmentDate().isAfter(date)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 依 ORDER 插入 enrollment 時應放的位置
+     */
+    static int insertionPoint(List<Enrollment> postings, Enrollment enrollment) {
+        int low = 0;
+        int high = postings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ORDER.compare(postings.get(mid), enrollment) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
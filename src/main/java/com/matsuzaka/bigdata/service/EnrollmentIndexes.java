@@ -0,0 +1,128 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Enrollment;
+import com.matsuzaka.bigdata.index.CoEnrollmentIndex;
+import com.matsuzaka.bigdata.index.CoursePopularityIndex;
+import com.matsuzaka.bigdata.index.CsrDeltaIndex;
+
+/**
+ * 由 enrollment 表衍生的所有記憶體索引，作為一個整體發佈
+ *
+ * PerformanceService 以單一 volatile 參照持有目前的版本，每個版本發佈後都不再修改：
+ * - 完整重建 (啟動載入、定期全量校正) 時在旁邊建好新的一份
+ * - 選課 / 退選與增量刷新以 batch() 在目前版本上累積異動，build() 產生共用未異動部分的新版本
+ * 兩者都以一次參照替換發佈；查詢開始時讀取一次參照，整個查詢都使用同一份索引，
+ * 不需加鎖也不會看到建到一半、只套用了一半或新舊混合的狀態。
+ *
+ * @param enrollmentsByStudent 以學生ID為索引，儲存該學生的所有選課紀錄 (依修課日期排序)；
+ *                             針對「功能1」的優化，可以 O(1) 找到某學生的所有選課，不需遍歷全部紀錄
+ * @param enrollmentsByCourse  以課程ID為索引，儲存該課程的所有選課紀錄 (依修課日期排序)；
+ *                             針對「功能2」和「功能3」的優化，依日期排序後「功能4 / 5」的日期區間只需二分搜尋起訖位置
+ * @param coursePopularity     即時維護的課程熱門度排名，供「功能3」使用；選課異動時只改寫少數格子、複製其所在的分段，查詢前 K 名只需 O(K)
+ * @param csrIndex             以 CSR (Compressed Sparse Row) 格式儲存的選課索引，學生端與課程端各有一組 offsets 陣列，
+ *                             以及平行的「另一方 id」與「修課日期 (epoch day)」int[] 欄位 (從快照啟動時為快照檔的記憶體映射)；
+ *                             寫入時以逐 key 的寫入時複製覆蓋層處理，基底陣列保持不變
+ * @param coEnrollment         共同修課分析用的點陣索引，供「功能6」和「功能7」使用，每門課一個修課學生的壓縮點陣
+ */
+record EnrollmentIndexes(PostingMap enrollmentsByStudent, PostingMap enrollmentsByCourse,
+                         CoursePopularityIndex coursePopularity, CsrDeltaIndex csrIndex, CoEnrollmentIndex coEnrollment) {
+
+    Batch batch() {
+        return new Batch(this);
+    }
+
+    /**
+     * 在某個版本上累積一批選課 / 退選，build() 產生新版本；非執行緒安全，呼叫端需持有 PerformanceService 的 indexWriteLock
+     * 各索引在第一次異動時才建立 Editor，沒有任何異動時 build() 直接回傳原本的版本；
+     * 每個 Editor 只複製分段參照陣列與被寫到的分段，一批異動不會複製整份與課程數等長的陣列
+     */
+    static final class Batch {
+        private final EnrollmentIndexes source;
+        private PostingMap.Editor byStudent;
+        private PostingMap.Editor byCourse;
+        private CsrDeltaIndex.Editor csr;
+        private CoursePopularityIndex.Editor popularity;
+        private CoEnrollmentIndex.Editor coEnrollment;
+
+        private Batch(EnrollmentIndexes source) {
+            this.source = source;
+        }
+
+        /**
+         * 加入一筆已存在於資料庫的選課紀錄
+         * 增量刷新可能讀到已由 enroll 套用過的紀錄，因此以學生端清單中是否已有同一 id 判斷，重複加入時不做任何事
+         *
+         * @return 實際加入時為 true
+         */
+        boolean add(Enrollment enrollment) {
+            if (containsPosting(enrollment.getStudentId(), enrollment.getId())) {
+                return false;
+            }
+            startEditing();
+            int studentId = Math.toIntExact(enrollment.getStudentId());
+            int courseId = Math.toIntExact(enrollment.getCourseId());
+            byStudent.add(enrollment.getStudentId(), enrollment);
+            byCourse.add(enrollment.getCourseId(), enrollment);
+            csr.add(studentId, courseId, (int) enrollment.getEnrollmentDate().toEpochDay());
+            popularity.increment(courseId);
+            coEnrollment.set(courseId, studentId, true);
+            return true;
+        }
+
+        /**
+         * 移除一筆選課紀錄；只有學生端清單中確實有這個 id 時才調整 CSR 與熱門度，避免誤刪同一天重複修同一門課的另一筆
+         *
+         * @return 找到並移除時為 true
+         */
+        boolean remove(Enrollment enrollment) {
+            if (!containsPosting(enrollment.getStudentId(), enrollment.getId())) {
+                return false;
+            }
+            startEditing();
+            int studentId = Math.toIntExact(enrollment.getStudentId());
+            int courseId = Math.toIntExact(enrollment.getCourseId());
+            byStudent.remove(enrollment.getStudentId(), enrollment.getId());
+            byCourse.remove(enrollment.getCourseId(), enrollment.getId());
+            if (csr.remove(studentId, courseId, (int) enrollment.getEnrollmentDate().toEpochDay())) {
+                popularity.decrement(courseId);
+            }
+            // 重複修同一門課時退選其中一筆，學生仍在該課程的集合中
+            boolean stillEnrolled = false;
+            for (Enrollment e : byStudent.get(enrollment.getStudentId())) {
+                if (e.getCourseId().equals(enrollment.getCourseId())) {
+                    stillEnrolled = true;
+                    break;
+                }
+            }
+            coEnrollment.set(courseId, studentId, stillEnrolled);
+            return true;
+        }
+
+        EnrollmentIndexes build() {
+            if (byStudent == null) {
+                return source;
+            }
+            return new EnrollmentIndexes(byStudent.build(), byCourse.build(), popularity.build(), csr.build(), coEnrollment.build());
+        }
+
+        private boolean containsPosting(Long studentId, Long enrollmentId) {
+            for (Enrollment e : byStudent != null ? byStudent.get(studentId) : source.enrollmentsByStudent().get(studentId)) {
+                if (e.getId().equals(enrollmentId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void startEditing() {
+            if (byStudent != null) {
+                return;
+            }
+            byStudent = source.enrollmentsByStudent().edit();
+            byCourse = source.enrollmentsByCourse().edit();
+            csr = source.csrIndex().edit();
+            popularity = source.coursePopularity().edit();
+            coEnrollment = source.coEnrollment().edit();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Enrollment;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository.EnrollmentRow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 記憶體快取平行載入時的一個分區：負責 enrollment.id 落在 [fromId, toIdExclusive) 的資料
+ *
+ * 每個分區使用自己的 JDBC 連線串流讀取資料，並建立只屬於自己的局部索引
+ * (HashMap 兩份、CSR 欄位一份)，分區之間完全不共享可變狀態，因此讀取與建立索引都不需要加鎖。
+ * 全部分區完成後再由呼叫端合併成最終索引。
+ */
+final class EnrollmentPartition {
+
+    private final int index;
+    private final int partitionCount;
+    private final long fromId;
+    private final long toIdExclusive;
+
+    final Map<Long, List<Enrollment>> byStudent = new HashMap<>();
+    final Map<Long, List<Enrollment>> byCourse = new HashMap<>();
+    final CsrEnrollmentIndex.Builder csrBuilder;
+
+    private EnrollmentPartition(int index, int partitionCount, long fromId, long toIdExclusive, int expectedSize) {
+        this.index = index;
+        this.partitionCount = partitionCount;
+        this.fromId = fromId;
+        this.toIdExclusive = toIdExclusive;
+        this.csrBuilder = new CsrEnrollmentIndex.Builder(expectedSize);
+    }
+
+    /**
+     * 將 [minId, maxId] 平均切成 partitionCount 個連續的 id 範圍
+     *
+     * @param expectedRows 預估總筆數，用來預先配置每個分區的 CSR 欄位容量
+     */
+    static List<EnrollmentPartition> split(long minId, long maxId, int partitionCount, long expectedRows) {
+        long span = maxId - minId + 1;
+        int count = (int) Math.max(1, Math.min(partitionCount, span));
+        long step = (span + count - 1) / count;
+        int expectedSize = (int) Math.min(Integer.MAX_VALUE, expectedRows / count + 1);
+        List<EnrollmentPartition> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long from = minId + i * step;
+            long to = Math.min(from + step, maxId + 1);
+            partitions.add(new EnrollmentPartition(i, count, from, to, expectedSize));
+        }
+        return partitions;
+    }
+
+    /**
+     * 在執行緒池上平行載入所有分區，回傳總筆數
+     */
+    static long loadAll(List<EnrollmentPartition> partitions, EnrollmentStreamRepository repository, ExecutorService pool) {
+        List<Callable<Integer>> tasks = new ArrayList<>(partitions.size());
+        for (EnrollmentPartition partition : partitions) {
+            tasks.add(() -> partition.load(repository));
+        }
+        long total = 0;
+        for (Integer rows : invokeAll(pool, tasks)) {
+            total += rows;
+        }
+        return total;
+    }
+
+    /**
+     * 同時合併學生端與課程端的 HashMap 索引
+     * 合併後每個 key 的 List 依修課日期 (再依 enrollment.id) 排序，供日期區間查詢二分搜尋
+     *
+     * @return {以學生為 key 的索引, 以課程為 key 的索引}
+     */
+    static List<Map<Long, List<Enrollment>>> mergeHashIndexes(List<EnrollmentPartition> partitions, ExecutorService pool) {
+        return invokeAll(pool, List.of(
+                () -> merge(partitions, p -> p.byStudent),
+                () -> merge(partitions, p -> p.byCourse)));
+    }
+
+    private static Map<Long, List<Enrollment>> merge(List<EnrollmentPartition> partitions, Function<EnrollmentPartition, Map<Long, List<Enrollment>>> side) {
+        Map<Long, List<Enrollment>> merged = new HashMap<>(side.apply(partitions.get(0)));
+        for (int i = 1; i < partitions.size(); i++) {
+            side.apply(partitions.get(i)).forEach((key, list) -> merged.merge(key, list, (existing, added) -> {
+                existing.addAll(added);
+                return existing;
+            }));
+        }
+        merged.values().forEach(list -> list.sort(DatePostings.ORDER));
+        return merged;
+    }
+
+    private int load(EnrollmentStreamRepository repository) {
+        long startTime = System.currentTimeMillis();
+        try (Stream<EnrollmentRow> rows = repository.streamEnrollments(fromId, toIdExclusive)) {
+            rows.forEach(row -> {
+                Enrollment e = new Enrollment();
+                e.setId(row.id());
+                e.setStudentId(row.studentId());
+                e.setCourseId(row.courseId());
+                e.setEnrollmentDate(row.enrollmentDate());
+                byStudent.computeIfAbsent(e.getStudentId(), k -> new ArrayList<>()).add(e);
+                byCourse.computeIfAbsent(e.getCourseId(), k -> new ArrayList<>()).add(e);
+                csrBuilder.add(Math.toIntExact(row.id()), Math.toIntExact(row.studentId()), Math.toIntExact(row.courseId()), (int) row.enrollmentDate().toEpochDay());
+            });
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        System.out.printf("[快取載入] 分區 %d/%d id [%d, %d)：%,d 筆，耗時: %,d ms (%s)%n",
+                index + 1, partitionCount, fromId, toIdExclusive, csrBuilder.size(), elapsed, Thread.currentThread().getName());
+        return csrBuilder.size();
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("記憶體快取載入被中斷", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("記憶體快取分區載入失敗", e.getCause());
+        }
+    }
+}
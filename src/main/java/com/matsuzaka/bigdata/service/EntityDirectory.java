@@ -0,0 +1,65 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.Student;
+
+import java.time.LocalDate;
+
+/**
+ * 查詢結果所需的學生 / 課程欄位 (姓名、email、課程名稱、學分) 的來源
+ *
+ * 兩種實作由 bigdata.cache.entity-store 決定：
+ * - heap：原本的作法，以 Map<Long, Student> / Map<Long, Course> 保存完整的實體物件
+ * - offheap：文字欄位以字典編碼存放在 heap 之外，heap 上只保留 int 陣列
+ */
+interface EntityDirectory {
+
+    boolean hasStudent(long studentId);
+
+    String studentName(long studentId);
+
+    String studentEmail(long studentId);
+
+    LocalDate studentBirth(long studentId);
+
+    boolean hasCourse(long courseId);
+
+    String courseTitle(long courseId);
+
+    int courseCredit(long courseId);
+
+    /** 學生 id 的上界 (含)，供以 id 為索引的陣列配置大小 */
+    int maxStudentId();
+
+    /** 課程 id 的上界 (含) */
+    int maxCourseId();
+
+    int studentCount();
+
+    int courseCount();
+
+    /** heap 上的記憶體估計 (bytes) */
+    long heapBytes();
+
+    /** heap 之外的記憶體 (bytes) */
+    long offHeapBytes();
+
+    /**
+     * 逐筆加入載入到的實體；實體物件是否被保留由實作決定
+     */
+    interface Builder {
+        void addStudent(Student student);
+
+        void addCourse(Course course);
+
+        EntityDirectory build();
+    }
+
+    static Builder builder(String store) {
+        return switch (store) {
+            case "heap" -> new HeapEntityDirectory.Builder();
+            case "offheap" -> new OffHeapEntityDirectory.Builder();
+            default -> throw new IllegalArgumentException("未知的 bigdata.cache.entity-store: " + store + " (可用 heap / offheap)");
+        };
+    }
+}
@@ -0,0 +1,163 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.Student;
+import com.matsuzaka.bigdata.repository.EnrollmentRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository.EnrollmentRow;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_H2;
+
+/**
+ * 內嵌 H2 記憶體資料庫的查詢引擎：啟動時把三張表複製一份到同一個 JVM 內的 H2，以相同的 SQL 查詢
+ *
+ * 與 db 模式比較可以分出「資料庫引擎本身」與「網路往返 + 獨立的資料庫行程」各佔多少成本；
+ * 與 hash / csr 比較則可看出同樣在記憶體中，經過 SQL 解析與 JDBC 結果集仍有多少額外開銷。
+ * 複製在背景執行緒進行，完成前 isReady() 為 false。這是啟動當下的快照，之後的選課 / 退選不會同步到 H2。
+ * 預設關閉 (bigdata.engine.h2.enabled)，因為資料會在 JVM heap 中再佔一份。
+ */
+@Component
+@Order(200)
+@ConditionalOnProperty(name = "bigdata.engine.h2.enabled", havingValue = "true")
+public class H2QueryEngine implements QueryEngine {
+
+    private static final int BATCH_SIZE = 5_000;
+
+    private static final String TOP_COURSES_SQL = "SELECT c.title, t.cnt FROM " +
+            "(SELECT course_id, COUNT(*) AS cnt FROM enrollment GROUP BY course_id ORDER BY cnt DESC, course_id LIMIT ?1) t " +
+            "JOIN course c ON c.id = t.course_id ORDER BY t.cnt DESC, t.course_id";
+
+    private final EnrollmentStreamRepository source;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean ready;
+
+    public H2QueryEngine(EnrollmentStreamRepository source,
+                         @Value("${bigdata.engine.h2.url:jdbc:h2:mem:bigdata-engine;DB_CLOSE_DELAY=-1}") String url,
+                         @Value("${bigdata.engine.h2.pool-size:8}") int poolSize) {
+        this.source = source;
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setMaximumPoolSize(poolSize);
+        config.setPoolName("h2-engine");
+        this.dataSource = new HikariDataSource(config);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    public void startLoading() {
+        Thread loader = new Thread(this::load, "h2-engine-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    /**
+     * 先建表、批次寫入，最後才建次要索引 (邊寫邊維護索引較慢)
+     */
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        try {
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+            jdbcTemplate.execute("CREATE TABLE student (id BIGINT PRIMARY KEY, name VARCHAR(255), email VARCHAR(255))");
+            jdbcTemplate.execute("CREATE TABLE course (id BIGINT PRIMARY KEY, title VARCHAR(255), credit INT NOT NULL)");
+            jdbcTemplate.execute("CREATE TABLE enrollment (id BIGINT PRIMARY KEY, student_id BIGINT NOT NULL, course_id BIGINT NOT NULL, enrollment_date DATE)");
+
+            long students;
+            try (Stream<Student> rows = source.streamStudents()) {
+                students = copy(rows, "INSERT INTO student (id, name, email) VALUES (?, ?, ?)",
+                        s -> new Object[]{s.getId(), s.getName(), s.getEmail()});
+            }
+            long courses;
+            try (Stream<Course> rows = source.streamCourses()) {
+                courses = copy(rows, "INSERT INTO course (id, title, credit) VALUES (?, ?, ?)",
+                        c -> new Object[]{c.getId(), c.getTitle(), c.getCredit()});
+            }
+            long[] range = source.enrollmentIdRange();
+            long enrollments;
+            try (Stream<EnrollmentRow> rows = source.streamEnrollments(range[0], range[1] + 1)) {
+                enrollments = copy(rows, "INSERT INTO enrollment (id, student_id, course_id, enrollment_date) VALUES (?, ?, ?, ?)",
+                        e -> new Object[]{e.id(), e.studentId(), e.courseId(), java.sql.Date.valueOf(e.enrollmentDate())});
+            }
+
+            jdbcTemplate.execute("CREATE INDEX idx_enrollment_student ON enrollment (student_id, course_id, enrollment_date)");
+            jdbcTemplate.execute("CREATE INDEX idx_enrollment_course ON enrollment (course_id, student_id, enrollment_date)");
+            ready = true;
+            System.out.printf("H2 查詢引擎載入完成: %,d 位學生、%,d 門課程、%,d 筆選課紀錄，耗時: %d ms%n",
+                    students, courses, enrollments, System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            System.err.println("H2 查詢引擎載入失敗: " + e);
+        }
+    }
+
+    private <T> long copy(Stream<T> rows, String sql, Function<T, Object[]> toArgs) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long[] total = {0};
+        rows.forEach(row -> {
+            batch.add(toArgs.apply(row));
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                total[0] += batch.size();
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            total[0] += batch.size();
+        }
+        return total[0];
+    }
+
+    @Override
+    public String id() {
+        return ENGINE_H2;
+    }
+
+    @Override
+    public String displayName() {
+        return "內嵌 H2 記憶體資料庫";
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public List<StudentCourseInfo> findCoursesByStudentId(long studentId) {
+        return jdbcTemplate.query(EnrollmentRepository.COURSES_BY_STUDENT_SQL,
+                (rs, rowNum) -> new StudentCourseInfo(rs.getString(1), rs.getInt(2), rs.getDate(3).toLocalDate()), studentId);
+    }
+
+    @Override
+    public List<CourseStudentInfo> findStudentsByCourseId(long courseId) {
+        return jdbcTemplate.query(EnrollmentRepository.STUDENTS_BY_COURSE_SQL,
+                (rs, rowNum) -> new CourseStudentInfo(rs.getString(1), rs.getString(2), rs.getDate(3).toLocalDate()), courseId);
+    }
+
+    @Override
+    public List<PopularCourseInfo> findTopPopularCourses(int k) {
+        return jdbcTemplate.query(TOP_COURSES_SQL, (rs, rowNum) -> new PopularCourseInfo(rs.getString(1), rs.getLong(2)), k);
+    }
+}
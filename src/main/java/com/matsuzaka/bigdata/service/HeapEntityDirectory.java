@@ -0,0 +1,177 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.Student;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 以實體物件保存學生與課程 (bigdata.cache.entity-store=heap)
+ *
+ * 每一列都是一個 Student / Course 物件，加上各個欄位的 String、Long、LocalDate 物件，全部位於 heap 上。
+ */
+final class HeapEntityDirectory implements EntityDirectory {
+
+    /**
+     * 儲存所有學生資料，Key 為 student.id，Value 為 Student 物件
+     * 作用：可以透過 O(1) 的時間複雜度快速查找學生詳細資訊
+     */
+    private final Map<Long, Student> studentMap;
+
+    /**
+     * 儲存所有課程資料，Key 為 course.id，Value 為 Course 物件
+     * 作用：可以透過 O(1) 的時間複雜度快速查找課程詳細資訊
+     */
+    private final Map<Long, Course> courseMap;
+
+    /**
+     * 以 id 為索引的學生陣列 (studentsById[id])，查詢時取代 studentMap 的雜湊查找
+     */
+    private final Student[] studentsById;
+
+    /**
+     * 以 id 為索引的課程陣列 (coursesById[id])，查詢時取代 courseMap 的雜湊查找
+     */
+    private final Course[] coursesById;
+
+    private HeapEntityDirectory(Map<Long, Student> studentMap, Map<Long, Course> courseMap) {
+        this.studentMap = studentMap;
+        this.courseMap = courseMap;
+        this.studentsById = toDenseArray(studentMap, Student[]::new);
+        this.coursesById = toDenseArray(courseMap, Course[]::new);
+    }
+
+    /**
+     * 將以 Long 為 key 的 Map 轉為以 id 為索引的陣列 (array[id] = value)
+     * 資料庫的自動遞增 id 是連續的，因此陣列幾乎沒有空洞
+     */
+    private static <T> T[] toDenseArray(Map<Long, T> map, IntFunction<T[]> arrayFactory) {
+        int maxId = map.keySet().stream().mapToInt(Math::toIntExact).max().orElse(0);
+        T[] array = arrayFactory.apply(maxId + 1);
+        map.forEach((id, value) -> array[Math.toIntExact(id)] = value);
+        return array;
+    }
+
+    private Student student(long studentId) {
+        return studentId >= 0 && studentId < studentsById.length ? studentsById[(int) studentId] : null;
+    }
+
+    private Course course(long courseId) {
+        return courseId >= 0 && courseId < coursesById.length ? coursesById[(int) courseId] : null;
+    }
+
+    @Override
+    public boolean hasStudent(long studentId) {
+        return student(studentId) != null;
+    }
+
+    @Override
+    public String studentName(long studentId) {
+        Student student = student(studentId);
+        return student == null ? null : student.getName();
+    }
+
+    @Override
+    public String studentEmail(long studentId) {
+        Student student = student(studentId);
+        return student == null ? null : student.getEmail();
+    }
+
+    @Override
+    public LocalDate studentBirth(long studentId) {
+        Student student = student(studentId);
+        return student == null ? null : student.getBirth();
+    }
+
+    @Override
+    public boolean hasCourse(long courseId) {
+        return course(courseId) != null;
+    }
+
+    @Override
+    public String courseTitle(long courseId) {
+        Course course = course(courseId);
+        return course == null ? null : course.getTitle();
+    }
+
+    @Override
+    public int courseCredit(long courseId) {
+        Course course = course(courseId);
+        return course == null ? 0 : course.getCredit();
+    }
+
+    @Override
+    public int maxStudentId() {
+        return studentsById.length - 1;
+    }
+
+    @Override
+    public int maxCourseId() {
+        return coursesById.length - 1;
+    }
+
+    @Override
+    public int studentCount() {
+        return studentMap.size();
+    }
+
+    @Override
+    public int courseCount() {
+        return courseMap.size();
+    }
+
+    /**
+     * 以 64 位元 JVM (壓縮指標) 的物件配置估算：
+     * HashMap 節點 32 + 桶位 4、Long 16、Student 32 / Course 24、LocalDate 24、每個 String 24 + byte[] (16 + 內容)，
+     * 以及 studentsById / coursesById 陣列每格 4 bytes
+     */
+    @Override
+    public long heapBytes() {
+        long bytes = 16L + 4L * studentsById.length + 16L + 4L * coursesById.length;
+        for (Student s : studentMap.values()) {
+            bytes += 36 + 16 + 32 + 24 + stringBytes(s.getName()) + stringBytes(s.getEmail());
+        }
+        for (Course c : courseMap.values()) {
+            bytes += 36 + 16 + 24 + stringBytes(c.getTitle());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        // 含非 Latin-1 字元 (如中文姓名) 時每個字元佔 2 bytes
+        boolean latin1 = value.chars().allMatch(ch -> ch < 256);
+        long content = latin1 ? value.length() : 2L * value.length();
+        return 24 + ((16 + content + 7) & ~7L);
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0;
+    }
+
+    static final class Builder implements EntityDirectory.Builder {
+        private final Map<Long, Student> students = new HashMap<>();
+        private final Map<Long, Course> courses = new HashMap<>();
+
+        @Override
+        public void addStudent(Student student) {
+            students.put(student.getId(), student);
+        }
+
+        @Override
+        public void addCourse(Course course) {
+            courses.put(course.getId(), course);
+        }
+
+        @Override
+        public EntityDirectory build() {
+            return new HeapEntityDirectory(students, courses);
+        }
+    }
+}
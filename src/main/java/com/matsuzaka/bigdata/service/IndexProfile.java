@@ -0,0 +1,56 @@
+package com.matsuzaka.bigdata.service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * enrollment 資料表的次要索引配置，用來比較不同索引下資料庫查詢方式的表現
+ *
+ * - none：只有主鍵，所有依學生 / 課程的查詢都是全表掃描
+ * - single：student_id、course_id 各一個單欄索引
+ * - covering：(student_id, course_id, enrollment_date) 與 (course_id, student_id, enrollment_date) 兩個涵蓋索引，
+ *   功能 1 / 2 / 分頁只讀索引即可取得 enrollment 端的欄位；另加 (course_id, enrollment_date) 供功能 4 / 5 的日期區間使用
+ */
+public enum IndexProfile {
+
+    NONE(List.of()),
+    SINGLE(List.of(
+            new IndexDefinition("idx_enrollment_student", "student_id"),
+            new IndexDefinition("idx_enrollment_course", "course_id"))),
+    COVERING(List.of(
+            new IndexDefinition("idx_enrollment_student_cover", "student_id, course_id, enrollment_date"),
+            new IndexDefinition("idx_enrollment_course_cover", "course_id, student_id, enrollment_date"),
+            new IndexDefinition("idx_enrollment_course_date", "course_id, enrollment_date")));
+
+    /** IndexProfileManager 只管理名稱以此開頭的索引 */
+    public static final String MANAGED_PREFIX = "idx_enrollment_";
+
+    public record IndexDefinition(String name, String columns) {}
+
+    private final List<IndexDefinition> indexes;
+
+    IndexProfile(List<IndexDefinition> indexes) {
+        this.indexes = indexes;
+    }
+
+    public List<IndexDefinition> indexes() {
+        return indexes;
+    }
+
+    /** 設定檔與指標標籤使用的名稱 (小寫) */
+    public String id() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @throws IllegalArgumentException 未知的設定檔名稱
+     */
+    public static IndexProfile of(String id) {
+        for (IndexProfile profile : values()) {
+            if (profile.id().equalsIgnoreCase(id.trim())) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("未知的索引設定檔: " + id + " (可用 none / single / covering)");
+    }
+}
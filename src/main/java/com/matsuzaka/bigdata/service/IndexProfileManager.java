@@ -0,0 +1,251 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.QueryPlan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.COURSES_BY_STUDENT_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.COURSE_OVERLAP_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.CO_ENROLLED_COURSES_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.MONTHLY_ENROLLMENTS_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.STUDENTS_BY_COURSE_BETWEEN_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.STUDENTS_BY_COURSE_PAGE_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.STUDENTS_BY_COURSE_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.STUDENTS_BY_TEACHER_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.TOP_COURSES_SQL;
+import static com.matsuzaka.bigdata.repository.EnrollmentRepository.TOP_TEACHERS_SQL;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_OVERLAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_CO_ENROLLED_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_MONTHLY_ENROLLMENTS;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BETWEEN;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_TEACHER;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_TEACHERS;
+
+/**
+ * 管理 enrollment 資料表的索引設定檔 (IndexProfile)，並擷取各原生查詢的執行計畫
+ *
+ * 只處理名稱以 idx_enrollment_ 開頭的索引，主鍵與其他索引不會被移除。
+ * 套用設定檔後會更新 QueryMetrics 的 index-profile 標籤，之後的延遲量測 (Actuator、壓測、JMH) 都能分辨是在哪種索引下量到的。
+ * 執行計畫以 EXPLAIN 取得；analyze 時改用 MariaDB 的 ANALYZE / H2 的 EXPLAIN ANALYZE，會實際執行查詢並附上實際列數。
+ */
+@Component
+public class IndexProfileManager {
+
+    private static final String TABLE = "enrollment";
+    private static final Pattern POSITIONAL_PARAMETER = Pattern.compile("\\?(\\d+)");
+
+    /** 要擷取執行計畫的原生查詢與代表性的參數 (參數順序對應 ?1, ?2, ...) */
+    private record NativeQuery(String name, String sql, Object... params) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryMetrics queryMetrics;
+    private final Path explainDirectory;
+
+    public IndexProfileManager(JdbcTemplate jdbcTemplate, QueryMetrics queryMetrics,
+                               @Value("${bigdata.db.explain-dir:data/explain}") String explainDirectory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queryMetrics = queryMetrics;
+        this.explainDirectory = Path.of(explainDirectory);
+    }
+
+    /**
+     * 目前 enrollment 上受管理的索引名稱 (小寫)
+     */
+    public Set<String> managedIndexes() {
+        return jdbcTemplate.execute((ConnectionCallback<Set<String>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? TABLE.toUpperCase(Locale.ROOT) : TABLE;
+            Set<String> names = new TreeSet<>();
+            // 多欄索引每個欄位各一列，以 Set 去除重複
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    if (name != null && name.toLowerCase(Locale.ROOT).startsWith(IndexProfile.MANAGED_PREFIX)) {
+                        names.add(name.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return names;
+        });
+    }
+
+    /**
+     * 與目前索引完全相符的設定檔；手動建立過其他受管理名稱的索引時為 empty
+     */
+    public Optional<IndexProfile> detect() {
+        Set<String> existing = managedIndexes();
+        for (IndexProfile profile : IndexProfile.values()) {
+            if (names(profile).equals(existing)) {
+                return Optional.of(profile);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 偵測目前的設定檔並設定到 QueryMetrics 的標籤 (不符合任何設定檔時為 custom)
+     *
+     * @return 標籤值
+     */
+    public String detectAndTag() {
+        String profile = detect().map(IndexProfile::id).orElse("custom");
+        queryMetrics.setIndexProfile(profile);
+        return profile;
+    }
+
+    /**
+     * 套用設定檔：建立缺少的索引、移除不屬於該設定檔的受管理索引，最後更新資料表統計
+     * 大表上建立索引需要數秒到數分鐘，期間資料庫查詢與寫入可能變慢
+     */
+    public synchronized void apply(IndexProfile profile) {
+        long startTime = System.currentTimeMillis();
+        Set<String> existing = managedIndexes();
+        Set<String> wanted = names(profile);
+        boolean h2 = isH2();
+        for (IndexProfile.IndexDefinition index : profile.indexes()) {
+            if (!existing.contains(index.name())) {
+                long indexStartTime = System.currentTimeMillis();
+                jdbcTemplate.execute("CREATE INDEX " + index.name() + " ON " + TABLE + " (" + index.columns() + ")");
+                System.out.printf("[索引設定檔] 建立索引 %s (%s)，耗時: %,d ms%n", index.name(), index.columns(),
+                        System.currentTimeMillis() - indexStartTime);
+            }
+        }
+        // 先建後刪，切換期間查詢不會暫時失去可用的索引
+        for (String name : existing) {
+            if (!wanted.contains(name)) {
+                jdbcTemplate.execute(h2 ? "DROP INDEX " + name : "DROP INDEX " + name + " ON " + TABLE);
+                System.out.printf("[索引設定檔] 移除索引 %s%n", name);
+            }
+        }
+        // 讓最佳化器依新的索引重新估算
+        jdbcTemplate.execute("ANALYZE TABLE " + TABLE);
+        queryMetrics.setIndexProfile(profile.id());
+        System.out.printf("[索引設定檔] 已套用 %s，耗時: %,d ms%n", profile.id(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 擷取所有原生查詢在目前索引下的執行計畫，並寫到 bigdata.db.explain-dir/<設定檔>.txt
+     *
+     * @param analyze true 時實際執行查詢，計畫中含實際列數與耗時
+     */
+    public List<QueryPlan> explainAll(boolean analyze) {
+        String profile = queryMetrics.indexProfile();
+        String prefix = analyze ? (isH2() ? "EXPLAIN ANALYZE " : "ANALYZE ") : "EXPLAIN ";
+        List<QueryPlan> plans = new ArrayList<>();
+        for (NativeQuery query : nativeQueries()) {
+            List<Object> args = new ArrayList<>();
+            String sql = toJdbcPlaceholders(query.sql(), query.params(), args);
+            List<String> plan = jdbcTemplate.query(prefix + sql, IndexProfileManager::formatRows, args.toArray());
+            plans.add(new QueryPlan(query.name(), profile, query.sql(), analyze, plan));
+        }
+        writePlans(profile, plans);
+        return plans;
+    }
+
+    /**
+     * 以資料中實際存在的學生 / 課程 id 作為參數，日期區間為最近一年
+     */
+    private List<NativeQuery> nativeQueries() {
+        Long studentId = jdbcTemplate.queryForObject("SELECT COALESCE(MIN(student_id), 1) FROM " + TABLE, Long.class);
+        Long courseId = jdbcTemplate.queryForObject("SELECT COALESCE(MIN(course_id), 1) FROM " + TABLE, Long.class);
+        Long teacherId = jdbcTemplate.queryForObject("SELECT COALESCE(MIN(teacher_id), 1) FROM course_assignment", Long.class);
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusYears(1);
+        return List.of(
+                new NativeQuery(FEATURE_COURSES_BY_STUDENT, COURSES_BY_STUDENT_SQL, studentId),
+                new NativeQuery(FEATURE_STUDENTS_BY_COURSE, STUDENTS_BY_COURSE_SQL, courseId),
+                new NativeQuery(FEATURE_STUDENTS_BY_COURSE_PAGE, STUDENTS_BY_COURSE_PAGE_SQL, courseId, 0L, 0L, 100),
+                new NativeQuery(FEATURE_TOP_COURSES, TOP_COURSES_SQL, 10),
+                new NativeQuery(FEATURE_STUDENTS_BY_COURSE_BETWEEN, STUDENTS_BY_COURSE_BETWEEN_SQL, courseId, from, to),
+                new NativeQuery(FEATURE_MONTHLY_ENROLLMENTS, MONTHLY_ENROLLMENTS_SQL, courseId, from, to),
+                new NativeQuery(FEATURE_CO_ENROLLED_COURSES, CO_ENROLLED_COURSES_SQL, courseId, 10),
+                new NativeQuery(FEATURE_COURSE_OVERLAP, COURSE_OVERLAP_SQL, courseId, courseId + 1),
+                new NativeQuery(FEATURE_STUDENTS_BY_TEACHER, STUDENTS_BY_TEACHER_SQL, teacherId),
+                new NativeQuery(FEATURE_TOP_TEACHERS, TOP_TEACHERS_SQL, 10));
+    }
+
+    /**
+     * Spring Data 的 ?1、?2 轉成 JDBC 的 ?，同一個參數出現多次時重複放入 args
+     */
+    private static String toJdbcPlaceholders(String sql, Object[] params, List<Object> args) {
+        Matcher matcher = POSITIONAL_PARAMETER.matcher(sql);
+        StringBuilder converted = new StringBuilder();
+        while (matcher.find()) {
+            args.add(params[Integer.parseInt(matcher.group(1)) - 1]);
+            matcher.appendReplacement(converted, "?");
+        }
+        matcher.appendTail(converted);
+        return converted.toString();
+    }
+
+    private static List<String> formatRows(ResultSet rs) throws java.sql.SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<String> rows = new ArrayList<>();
+        List<String> header = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            header.add(metaData.getColumnLabel(i));
+        }
+        rows.add(String.join(" | ", header));
+        while (rs.next()) {
+            List<String> values = new ArrayList<>(header.size());
+            for (int i = 1; i <= header.size(); i++) {
+                values.add(String.valueOf(rs.getObject(i)));
+            }
+            rows.add(String.join(" | ", values));
+        }
+        return rows;
+    }
+
+    private void writePlans(String profile, List<QueryPlan> plans) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# index profile: ").append(profile).append(", captured at ").append(LocalDateTime.now()).append('\n');
+        for (QueryPlan plan : plans) {
+            sb.append("\n## ").append(plan.query()).append(plan.analyzed() ? " (analyze)" : "").append('\n');
+            sb.append(plan.sql()).append('\n');
+            plan.plan().forEach(row -> sb.append(row).append('\n'));
+        }
+        Path file = explainDirectory.resolve(profile + ".txt");
+        try {
+            Files.createDirectories(explainDirectory);
+            Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+            System.out.printf("[執行計畫] 已寫入 %s (%d 個查詢)%n", file, plans.size());
+        } catch (IOException e) {
+            // 執行計畫仍會回傳給呼叫端，寫檔失敗不影響
+            System.out.println("[執行計畫] 寫入失敗: " + e);
+        }
+    }
+
+    private boolean isH2() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return product != null && product.toUpperCase(Locale.ROOT).contains("H2");
+    }
+
+    private static Set<String> names(IndexProfile profile) {
+        return profile.indexes().stream().map(IndexProfile.IndexDefinition::name).collect(Collectors.toCollection(TreeSet::new));
+    }
+}
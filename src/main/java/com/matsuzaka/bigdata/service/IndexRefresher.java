@@ -0,0 +1,132 @@
+package com.matsuzaka.bigdata.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 定期把其他系統直接寫入 enrollment 表的變更同步到 PerformanceService 的記憶體索引
+ *
+ * - 增量刷新 (每 bigdata.refresh.delta-interval-seconds 秒)：只讀取 id 大於浮水印的新紀錄
+ * - 全量校正 (每 bigdata.refresh.full-interval-minutes 分鐘)：在旁邊重建整份索引後一次替換，修正刪除與較晚提交的紀錄
+ * 兩者在同一條背景執行緒上輪流執行，查詢端不受影響。
+ *
+ * 指標：
+ * - bigdata.index.refresh (Timer，標籤 mode=delta / full)：每次刷新的耗時
+ * - bigdata.index.refresh.rows (Counter，標籤 mode)：套用到索引的紀錄數
+ * - bigdata.index.refresh.failures (Counter，標籤 mode)：失敗次數，失敗後下一輪照常執行
+ * - bigdata.index.refresh.lag (Gauge，秒)：距離最近一次成功刷新開始的時間，即索引可能落後資料表的上限
+ * - bigdata.index.refresh.watermark (Gauge)：已套用的最大 enrollment.id
+ */
+@Component
+public class IndexRefresher {
+
+    public static final String METRIC_NAME = "bigdata.index.refresh";
+
+    private static final String MODE_DELTA = "delta";
+    private static final String MODE_FULL = "full";
+
+    private final PerformanceService performanceService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long deltaIntervalSeconds;
+    private final long fullIntervalMinutes;
+
+    /** 最近一次成功刷新開始時的 System.nanoTime()；啟動載入也算一次 */
+    private volatile long lastRefreshStartNanos = System.nanoTime();
+
+    private ScheduledExecutorService scheduler;
+
+    public IndexRefresher(PerformanceService performanceService, MeterRegistry meterRegistry,
+                          @Value("${bigdata.refresh.enabled:true}") boolean enabled,
+                          @Value("${bigdata.refresh.delta-interval-seconds:5}") long deltaIntervalSeconds,
+                          @Value("${bigdata.refresh.full-interval-minutes:60}") long fullIntervalMinutes) {
+        if (deltaIntervalSeconds <= 0 || fullIntervalMinutes <= 0) {
+            throw new IllegalArgumentException("bigdata.refresh.delta-interval-seconds 與 full-interval-minutes 必須為正數");
+        }
+        this.performanceService = performanceService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.deltaIntervalSeconds = deltaIntervalSeconds;
+        this.fullIntervalMinutes = fullIntervalMinutes;
+        Gauge.builder(METRIC_NAME + ".lag", this, IndexRefresher::lagSeconds).description("距離最近一次成功刷新開始的時間")
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".watermark", performanceService, PerformanceService::getRefreshWatermark)
+                .description("已套用到記憶體索引的最大 enrollment.id").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "index-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshDelta, deltaIntervalSeconds, deltaIntervalSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::reconcile, fullIntervalMinutes, fullIntervalMinutes, TimeUnit.MINUTES);
+        System.out.printf("[索引刷新] 增量每 %d 秒，全量校正每 %d 分鐘%n", deltaIntervalSeconds, fullIntervalMinutes);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public double lagSeconds() {
+        return (System.nanoTime() - lastRefreshStartNanos) / 1_000_000_000.0;
+    }
+
+    /**
+     * @return 套用的紀錄數；失敗時為 -1
+     */
+    public long refreshDelta() {
+        return run(MODE_DELTA, performanceService::refreshNewEnrollments);
+    }
+
+    /**
+     * @return 重建時讀取的紀錄數；失敗時為 -1
+     */
+    public long reconcile() {
+        return run(MODE_FULL, performanceService::reconcileIndexes);
+    }
+
+    /**
+     * 排程的工作丟出例外後不會再被執行，因此在這裡攔下、記錄失敗次數
+     */
+    private long run(String mode, LongSupplier refresh) {
+        long startTime = System.nanoTime();
+        long rows;
+        try {
+            rows = refresh.getAsLong();
+        } catch (RuntimeException e) {
+            Counter.builder(METRIC_NAME + ".failures").tag("mode", mode).register(meterRegistry).increment();
+            System.out.println("[索引刷新] " + mode + " 失敗: " + e);
+            return -1;
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        lastRefreshStartNanos = startTime;
+        Timer.builder(METRIC_NAME).description("記憶體索引刷新的耗時").tag("mode", mode).register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        Counter.builder(METRIC_NAME + ".rows").tag("mode", mode).register(meterRegistry).increment(rows);
+        if (mode.equals(MODE_FULL) || rows > 0) {
+            System.out.printf("[索引刷新] %s：%,d 筆，耗時: %,d ms，浮水印: %d%n", mode, rows, elapsedNanos / 1_000_000,
+                    performanceService.getRefreshWatermark());
+        }
+        return rows;
+    }
+}
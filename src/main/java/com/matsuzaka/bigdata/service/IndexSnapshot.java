@@ -0,0 +1,199 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.Student;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository.TableStats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 記憶體索引的二進位快照檔，讓重新啟動時不必再從資料庫載入全部資料
+ *
+ * 檔案格式 (big-endian)：
+ * - 標頭：魔術數字 "BDIX"、格式版本、建立快照時三張表的筆數與最大 id (TableStats)
+ * - CSR 欄位：依 CsrEnrollmentIndex.columns() 的順序，每條欄位為「int 長度 + 內容」
+ * - 學生、課程：各為「int 筆數 + 逐筆資料」
+ *
+ * 讀取時 CSR 欄位直接以 FileChannel.map 映射，不複製到 Java heap，由作業系統依需要載入頁面；
+ * 學生與課程則逐筆交給 EntityDirectory.Builder，依設定重建成實體物件或 heap 外的字串欄位。
+ * 寫入時先寫暫存檔再原子性地改名，不會留下寫到一半的快照。
+ */
+final class IndexSnapshot {
+
+    private static final int MAGIC = 0x42444958; // "BDIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 6 * 8;
+    private static final long NO_BIRTH = Long.MIN_VALUE;
+
+    /**
+     * 從快照還原的內容
+     */
+    record Contents(EntityDirectory directory, CsrEnrollmentIndex csrIndex) {}
+
+    private IndexSnapshot() {
+    }
+
+    /**
+     * 讀取快照；檔案不存在、版本不符或與資料庫目前的 TableStats 不一致時回傳 empty
+     */
+    static Optional<Contents> read(Path path, TableStats expected, EntityDirectory.Builder directory) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            System.out.println("[索引快照] 找不到快照檔: " + path);
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                System.out.println("[索引快照] 格式或版本不符，忽略: " + path);
+                return Optional.empty();
+            }
+            TableStats stats = new TableStats(header.getLong(), header.getLong(), header.getLong(),
+                    header.getLong(), header.getLong(), header.getLong());
+            if (!stats.equals(expected)) {
+                System.out.printf("[索引快照] 快照已過期 (快照: %s，資料庫: %s)%n", stats, expected);
+                return Optional.empty();
+            }
+
+            // CSR 欄位逐條映射；每條欄位各自一個映射，避免單一 MappedByteBuffer 的 2GB 上限
+            long position = HEADER_BYTES;
+            List<IntBuffer> columns = new ArrayList<>(CsrEnrollmentIndex.COLUMN_COUNT);
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+            for (int i = 0; i < CsrEnrollmentIndex.COLUMN_COUNT; i++) {
+                lengthBuffer.clear();
+                readFully(channel, lengthBuffer, position);
+                int length = lengthBuffer.flip().getInt();
+                position += 4;
+                // 映射超出檔尾的區域要到存取時才會出錯 (SIGBUS)，因此先確認欄位完整在檔案內
+                if (length < 0 || position + 4L * length > channel.size()) {
+                    throw new IOException("快照檔已截斷或損毀: 第 " + i + " 條 CSR 欄位長度 " + length);
+                }
+                columns.add(channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * length).asIntBuffer());
+                position += 4L * length;
+            }
+
+            channel.position(position);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            readStudents(in, directory);
+            readCourses(in, directory);
+            return Optional.of(new Contents(directory.build(), CsrEnrollmentIndex.fromColumns(columns)));
+        }
+    }
+
+    /**
+     * 寫入快照：先寫到同目錄的暫存檔，完成後再以原子性改名取代舊檔
+     */
+    static void write(Path path, TableStats stats, EntityDirectory directory, CsrEnrollmentIndex csrIndex) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(stats.studentCount());
+                out.writeLong(stats.studentMaxId());
+                out.writeLong(stats.courseCount());
+                out.writeLong(stats.courseMaxId());
+                out.writeLong(stats.enrollmentCount());
+                out.writeLong(stats.enrollmentMaxId());
+                for (IntBuffer column : csrIndex.columns()) {
+                    out.writeInt(column.limit());
+                    for (int i = 0; i < column.limit(); i++) {
+                        out.writeInt(column.get(i));
+                    }
+                }
+                writeStudents(out, directory);
+                writeCourses(out, directory);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeStudents(DataOutputStream out, EntityDirectory directory) throws IOException {
+        out.writeInt(directory.studentCount());
+        for (int id = 0; id <= directory.maxStudentId(); id++) {
+            if (directory.hasStudent(id)) {
+                LocalDate birth = directory.studentBirth(id);
+                out.writeLong(id);
+                writeNullableString(out, directory.studentName(id));
+                out.writeLong(birth == null ? NO_BIRTH : birth.toEpochDay());
+                writeNullableString(out, directory.studentEmail(id));
+            }
+        }
+    }
+
+    private static void readStudents(DataInputStream in, EntityDirectory.Builder directory) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Student s = new Student();
+            s.setId(in.readLong());
+            s.setName(readNullableString(in));
+            long birth = in.readLong();
+            s.setBirth(birth == NO_BIRTH ? null : LocalDate.ofEpochDay(birth));
+            s.setEmail(readNullableString(in));
+            directory.addStudent(s);
+        }
+    }
+
+    private static void writeCourses(DataOutputStream out, EntityDirectory directory) throws IOException {
+        out.writeInt(directory.courseCount());
+        for (int id = 0; id <= directory.maxCourseId(); id++) {
+            if (directory.hasCourse(id)) {
+                out.writeLong(id);
+                writeNullableString(out, directory.courseTitle(id));
+                out.writeInt(directory.courseCredit(id));
+            }
+        }
+    }
+
+    private static void readCourses(DataInputStream in, EntityDirectory.Builder directory) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Course c = new Course();
+            c.setId(in.readLong());
+            c.setTitle(readNullableString(in));
+            c.setCredit(in.readInt());
+            directory.addCourse(c);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("快照檔提早結束");
+            }
+        }
+    }
+}
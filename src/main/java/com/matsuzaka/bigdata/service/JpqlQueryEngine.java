@@ -0,0 +1,102 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.entity.Enrollment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_JPQL;
+
+/**
+ * 經由 Hibernate 的查詢引擎：功能 1 / 2 為 JPQL 建構子運算式，功能 3 為 Criteria API
+ *
+ * 與原生 SQL 相同的資料庫與索引，差別在於 Hibernate 的查詢翻譯 (有查詢計畫快取) 與結果轉換；
+ * 建構子運算式直接產生 DTO，不會把實體放進 persistence context。
+ * Criteria API 無法 join 沒有關聯的實體，因此功能 3 先分組取前 K 名課程 id，再以第二個查詢取課程名稱。
+ */
+@Component
+@Order(100)
+public class JpqlQueryEngine implements QueryEngine {
+
+    private static final String COURSES_BY_STUDENT_JPQL = "SELECT new com.matsuzaka.bigdata.dto.StudentCourseInfo(c.title, c.credit, e.enrollmentDate) " +
+            "FROM Enrollment e JOIN Course c ON c.id = e.courseId WHERE e.studentId = :studentId";
+
+    private static final String STUDENTS_BY_COURSE_JPQL = "SELECT new com.matsuzaka.bigdata.dto.CourseStudentInfo(s.name, s.email, e.enrollmentDate) " +
+            "FROM Enrollment e JOIN Student s ON s.id = e.studentId WHERE e.courseId = :courseId";
+
+    private static final String COURSE_TITLES_JPQL = "SELECT c.id, c.title FROM Course c WHERE c.id IN :ids";
+
+    private final EntityManager entityManager;
+
+    public JpqlQueryEngine(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public String id() {
+        return ENGINE_JPQL;
+    }
+
+    @Override
+    public String displayName() {
+        return "資料庫 (JPQL / Criteria)";
+    }
+
+    @Override
+    public List<StudentCourseInfo> findCoursesByStudentId(long studentId) {
+        return entityManager.createQuery(COURSES_BY_STUDENT_JPQL, StudentCourseInfo.class)
+                .setParameter("studentId", studentId)
+                .getResultList();
+    }
+
+    @Override
+    public List<CourseStudentInfo> findStudentsByCourseId(long courseId) {
+        return entityManager.createQuery(STUDENTS_BY_COURSE_JPQL, CourseStudentInfo.class)
+                .setParameter("courseId", courseId)
+                .getResultList();
+    }
+
+    @Override
+    public List<PopularCourseInfo> findTopPopularCourses(int k) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Enrollment> enrollment = query.from(Enrollment.class);
+        Path<Long> courseId = enrollment.get("courseId");
+        Expression<Long> count = cb.count(enrollment);
+        query.multiselect(courseId, count)
+                .groupBy(courseId)
+                .orderBy(cb.desc(count), cb.asc(courseId));
+        List<Tuple> top = entityManager.createQuery(query).setMaxResults(k).getResultList();
+        if (top.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = new ArrayList<>(top.size());
+        for (Tuple row : top) {
+            ids.add(row.get(0, Long.class));
+        }
+        Map<Long, String> titles = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(COURSE_TITLES_JPQL, Object[].class).setParameter("ids", ids).getResultList()) {
+            titles.put((Long) row[0], (String) row[1]);
+        }
+        List<PopularCourseInfo> resultList = new ArrayList<>(top.size());
+        for (Tuple row : top) {
+            resultList.add(new PopularCourseInfo(titles.get(row.get(0, Long.class)), row.get(1, Long.class)));
+        }
+        return resultList;
+    }
+}
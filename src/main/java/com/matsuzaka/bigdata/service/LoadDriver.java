@@ -0,0 +1,218 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.LoadProfile;
+import com.matsuzaka.bigdata.dto.LoadReport;
+import com.matsuzaka.bigdata.dto.ResultCacheStats;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CACHE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CSR;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_DB;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_HASH;
+
+/**
+ * 並行壓測：以 N 條執行緒在固定時間內不停地送出三種功能的混合查詢，比較各查詢方式的吞吐量與延遲
+ *
+ * 單次從 GUI 查詢只能看出「一個請求」的耗時；實際上線時的差異在於並行：
+ * DB 模式受限於連線池大小與資料庫本身，HashMap / CSR 模式則隨 CPU 核心數擴展。
+ * 各查詢方式依序壓測 (不同時進行)，避免互相搶資源；延遲以 HdrHistogram 記錄，百分位數不會因取樣而失真。
+ * 壓測期間暫時關閉查詢前的暖機，讓每個請求只執行一次查詢。
+ */
+@Component
+public class LoadDriver {
+
+    private final PerformanceService performanceService;
+    private final QueryMetrics queryMetrics;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public LoadDriver(PerformanceService performanceService, QueryMetrics queryMetrics) {
+        this.performanceService = performanceService;
+        this.queryMetrics = queryMetrics;
+    }
+
+    /**
+     * 執行壓測；同一時間只允許一個壓測
+     *
+     * @param progress 接收進度訊息 (例如輸出到主控台或 GUI)
+     * @return 每種查詢方式一份結果，順序同 profile.engines()
+     * @throws IllegalStateException 已有壓測正在執行
+     */
+    public List<LoadReport> run(LoadProfile profile, Consumer<String> progress) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("已有壓測正在執行");
+        }
+        int warmupIterations = performanceService.getWarmupIterations();
+        performanceService.setWarmupIterations(0);
+        try {
+            IdSampler students = IdSampler.of(profile.distribution(), performanceService.maxStudentId(), profile.zipfExponent());
+            IdSampler courses = IdSampler.of(profile.distribution(), performanceService.maxCourseId(), profile.zipfExponent());
+            List<LoadReport> reports = new ArrayList<>(profile.engines().size());
+            for (String engine : profile.engines()) {
+                progress.accept(String.format("[壓測] %s：%d 條%s執行緒，%d 秒，id 分布 %s ...", engine, profile.threads(),
+                        profile.virtualThreads() ? "虛擬" : "", profile.duration().toSeconds(), profile.distribution()));
+                LoadReport report = runEngine(engine, profile, students, courses);
+                progress.accept(format(report));
+                if (engine.equals(ENGINE_CACHE)) {
+                    progress.accept(formatCacheStats(performanceService.resultCacheStats()));
+                }
+                reports.add(report);
+            }
+            return reports;
+        } finally {
+            performanceService.setWarmupIterations(warmupIterations);
+            running.set(false);
+        }
+    }
+
+    private LoadReport runEngine(String engine, LoadProfile profile, IdSampler students, IdSampler courses) {
+        Runnable[] features = features(engine, profile, students, courses);
+        int[] mix = profile.mix();
+        int totalWeight = mix[0] + mix[1] + mix[2];
+
+        Recorder recorder = new Recorder(3);
+        LongAdder errors = new LongAdder();
+        long startTime = System.nanoTime();
+        long deadline = startTime + profile.duration().toNanos();
+
+        ExecutorService executor = newExecutor(profile.threads(), profile.virtualThreads());
+        try {
+            for (int t = 0; t < profile.threads(); t++) {
+                executor.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        int pick = random.nextInt(totalWeight);
+                        Runnable feature = pick < mix[0] ? features[0] : pick < mix[0] + mix[1] ? features[1] : features[2];
+                        long requestStart = System.nanoTime();
+                        try {
+                            feature.run();
+                            recorder.recordValue(System.nanoTime() - requestStart);
+                        } catch (RuntimeException e) {
+                            errors.increment();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            // 每條執行緒在 deadline 後最多再完成一個請求 (DB 模式可能正在等待連線)
+            if (!executor.awaitTermination(profile.duration().toSeconds() + 60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        double elapsedSeconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        return new LoadReport(engine, queryMetrics.indexProfile(), profile.threads(), histogram.getTotalCount(), errors.sum(),
+                elapsedSeconds,
+                histogram.getValueAtPercentile(50.0) / 1_000_000.0, histogram.getValueAtPercentile(99.0) / 1_000_000.0,
+                histogram.getValueAtPercentile(99.9) / 1_000_000.0, histogram.getMaxValue() / 1_000_000.0);
+    }
+
+    private Runnable[] features(String engine, LoadProfile profile, IdSampler students, IdSampler courses) {
+        int k = profile.topK();
+        return switch (engine) {
+            case ENGINE_DB -> new Runnable[]{
+                    () -> performanceService.findCoursesByStudentId_DB(students.next()),
+                    () -> performanceService.findStudentsByCourseId_DB(courses.next()),
+                    () -> performanceService.findTopPopularCourses_DB(k)};
+            case ENGINE_CACHE -> new Runnable[]{
+                    () -> performanceService.findCoursesByStudentId_Cached(students.next()),
+                    () -> performanceService.findStudentsByCourseId_Cached(courses.next()),
+                    () -> performanceService.findTopPopularCourses_Cached(k)};
+            case ENGINE_HASH -> new Runnable[]{
+                    () -> performanceService.findCoursesByStudentId_InMemory(students.next()),
+                    () -> performanceService.findStudentsByCourseId_InMemory(courses.next()),
+                    () -> performanceService.findTopPopularCourses_InMemory(k)};
+            case ENGINE_CSR -> new Runnable[]{
+                    () -> performanceService.findCoursesByStudentId_Csr(students.next()),
+                    () -> performanceService.findStudentsByCourseId_Csr(courses.next()),
+                    () -> performanceService.findTopPopularCourses_Csr(k)};
+            default -> throw new IllegalArgumentException("未知的查詢方式: " + engine + " (可用 db / cache / hash / csr)");
+        };
+    }
+
+    /**
+     * 虛擬執行緒需要 Java 21；以反射呼叫，在 Java 17 上退回固定大小的平台執行緒池
+     */
+    private static ExecutorService newExecutor(int threads, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("[壓測] 目前的 Java 版本不支援虛擬執行緒，改用平台執行緒");
+            }
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * 一行文字摘要，供主控台與 GUI 共用
+     */
+    public static String format(LoadReport report) {
+        return String.format("[壓測] %-5s (索引 %s) 請求 %,d 次 (錯誤 %,d)，吞吐量 %,.0f 次/秒，p50 %.3f / p99 %.3f / p999 %.3f / max %.3f ms",
+                report.engine(), report.indexProfile(), report.requests(), report.errors(), report.throughputPerSecond(),
+                report.p50Millis(), report.p99Millis(), report.p999Millis(), report.maxMillis());
+    }
+
+    /**
+     * 查詢結果快取的累計統計 (自啟動以來，含 GUI / API 的查詢)
+     */
+    public static String formatCacheStats(ResultCacheStats stats) {
+        return String.format("[結果快取] 命中率 %.1f%% (命中 %,d / 未命中 %,d)，淘汰 %,d 次，%,d 筆結果，使用 %.1f / %.1f MB",
+                stats.hitRatio() * 100, stats.hits(), stats.misses(), stats.evictions(), stats.entries(),
+                stats.usedBytes() / (1024.0 * 1024.0), stats.maxBytes() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * 在 [1, maxId] 中抽取 id：uniform 為均勻分布；zipf 時 id 越小越熱門 (第 r 名的機率正比於 1 / r^s)
+     */
+    private interface IdSampler {
+        long next();
+
+        static IdSampler of(String distribution, int maxId, double exponent) {
+            int n = Math.max(maxId, 1);
+            if (distribution.equals("uniform")) {
+                return () -> 1 + ThreadLocalRandom.current().nextInt(n);
+            }
+            // 預先計算累積分布，抽樣時二分搜尋，O(log n)
+            double[] cdf = new double[n];
+            double sum = 0;
+            for (int rank = 1; rank <= n; rank++) {
+                sum += 1.0 / Math.pow(rank, exponent);
+                cdf[rank - 1] = sum;
+            }
+            double total = sum;
+            return () -> {
+                double u = ThreadLocalRandom.current().nextDouble() * total;
+                int low = 0;
+                int high = n - 1;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (cdf[mid] < u) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                return low + 1;
+            };
+        }
+    }
+}
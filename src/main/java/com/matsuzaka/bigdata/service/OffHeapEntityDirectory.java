@@ -0,0 +1,162 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.Student;
+import com.matsuzaka.bigdata.index.OffHeapStringColumn;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 以欄位方式保存學生與課程 (bigdata.cache.entity-store=offheap)
+ *
+ * - 姓名、email、課程名稱：OffHeapStringColumn，UTF-8 字典編碼，內容位於 heap 之外
+ * - 生日、學分：以 id 為索引的 int[]
+ * - 是否存在：BitSet
+ * 載入時讀到的 Student / Course 物件在編碼後立即丟棄，heap 上不保留任何每列一個的物件。
+ */
+final class OffHeapEntityDirectory implements EntityDirectory {
+
+    private static final int NO_BIRTH = Integer.MIN_VALUE;
+
+    private final BitSet students;
+    private final OffHeapStringColumn studentNames;
+    private final OffHeapStringColumn studentEmails;
+    private final int[] studentBirthEpochDays;
+
+    private final BitSet courses;
+    private final OffHeapStringColumn courseTitles;
+    private final int[] courseCredits;
+
+    private OffHeapEntityDirectory(BitSet students, OffHeapStringColumn studentNames, OffHeapStringColumn studentEmails, int[] studentBirthEpochDays,
+                                   BitSet courses, OffHeapStringColumn courseTitles, int[] courseCredits) {
+        this.students = students;
+        this.studentNames = studentNames;
+        this.studentEmails = studentEmails;
+        this.studentBirthEpochDays = studentBirthEpochDays;
+        this.courses = courses;
+        this.courseTitles = courseTitles;
+        this.courseCredits = courseCredits;
+    }
+
+    @Override
+    public boolean hasStudent(long studentId) {
+        return studentId >= 0 && studentId < studentBirthEpochDays.length && students.get((int) studentId);
+    }
+
+    @Override
+    public String studentName(long studentId) {
+        return hasStudent(studentId) ? studentNames.get((int) studentId) : null;
+    }
+
+    @Override
+    public String studentEmail(long studentId) {
+        return hasStudent(studentId) ? studentEmails.get((int) studentId) : null;
+    }
+
+    @Override
+    public LocalDate studentBirth(long studentId) {
+        if (!hasStudent(studentId) || studentBirthEpochDays[(int) studentId] == NO_BIRTH) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(studentBirthEpochDays[(int) studentId]);
+    }
+
+    @Override
+    public boolean hasCourse(long courseId) {
+        return courseId >= 0 && courseId < courseCredits.length && courses.get((int) courseId);
+    }
+
+    @Override
+    public String courseTitle(long courseId) {
+        return hasCourse(courseId) ? courseTitles.get((int) courseId) : null;
+    }
+
+    @Override
+    public int courseCredit(long courseId) {
+        return hasCourse(courseId) ? courseCredits[(int) courseId] : 0;
+    }
+
+    @Override
+    public int maxStudentId() {
+        return studentBirthEpochDays.length - 1;
+    }
+
+    @Override
+    public int maxCourseId() {
+        return courseCredits.length - 1;
+    }
+
+    @Override
+    public int studentCount() {
+        return students.cardinality();
+    }
+
+    @Override
+    public int courseCount() {
+        return courses.cardinality();
+    }
+
+    @Override
+    public long heapBytes() {
+        return studentNames.heapBytes() + studentEmails.heapBytes() + courseTitles.heapBytes()
+                + 16L + 4L * studentBirthEpochDays.length + 16L + 4L * courseCredits.length
+                + students.size() / 8 + courses.size() / 8;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return studentNames.offHeapBytes() + studentEmails.offHeapBytes() + courseTitles.offHeapBytes();
+    }
+
+    static final class Builder implements EntityDirectory.Builder {
+        private final BitSet students = new BitSet();
+        private final OffHeapStringColumn.Builder studentNames = new OffHeapStringColumn.Builder(1024);
+        private final OffHeapStringColumn.Builder studentEmails = new OffHeapStringColumn.Builder(1024);
+        private int[] studentBirthEpochDays = new int[0];
+        private int maxStudentId;
+
+        private final BitSet courses = new BitSet();
+        private final OffHeapStringColumn.Builder courseTitles = new OffHeapStringColumn.Builder(1024);
+        private int[] courseCredits = new int[0];
+        private int maxCourseId;
+
+        @Override
+        public void addStudent(Student student) {
+            int id = Math.toIntExact(student.getId());
+            if (id >= studentBirthEpochDays.length) {
+                int oldLength = studentBirthEpochDays.length;
+                studentBirthEpochDays = Arrays.copyOf(studentBirthEpochDays, Math.max(id + 1, oldLength + (oldLength >> 1)));
+                Arrays.fill(studentBirthEpochDays, oldLength, studentBirthEpochDays.length, NO_BIRTH);
+            }
+            students.set(id);
+            studentNames.set(id, student.getName());
+            studentEmails.set(id, student.getEmail());
+            studentBirthEpochDays[id] = student.getBirth() == null ? NO_BIRTH : (int) student.getBirth().toEpochDay();
+            maxStudentId = Math.max(maxStudentId, id);
+        }
+
+        @Override
+        public void addCourse(Course course) {
+            int id = Math.toIntExact(course.getId());
+            if (id >= courseCredits.length) {
+                courseCredits = Arrays.copyOf(courseCredits, Math.max(id + 1, courseCredits.length + (courseCredits.length >> 1)));
+            }
+            courses.set(id);
+            courseTitles.set(id, course.getTitle());
+            courseCredits[id] = course.getCredit();
+            maxCourseId = Math.max(maxCourseId, id);
+        }
+
+        @Override
+        public EntityDirectory build() {
+            int[] birthEpochDays = Arrays.copyOf(studentBirthEpochDays, maxStudentId + 1);
+            if (birthEpochDays.length > studentBirthEpochDays.length) {
+                Arrays.fill(birthEpochDays, studentBirthEpochDays.length, birthEpochDays.length, NO_BIRTH);
+            }
+            return new OffHeapEntityDirectory(students, studentNames.build(maxStudentId), studentEmails.build(maxStudentId), birthEpochDays,
+                    courses, courseTitles.build(maxCourseId), Arrays.copyOf(courseCredits, maxCourseId + 1));
+        }
+    }
+}
@@ -1,227 +1,1512 @@
 package com.matsuzaka.bigdata.service;
 
+import com.matsuzaka.bigdata.dto.BatchQueryResult;
+import com.matsuzaka.bigdata.dto.CoEnrolledCourseInfo;
+import com.matsuzaka.bigdata.dto.CourseOverlapInfo;
+import com.matsuzaka.bigdata.dto.CourseSearchInfo;
 import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.IndexFootprint;
+import com.matsuzaka.bigdata.dto.MonthlyEnrollmentCount;
+import com.matsuzaka.bigdata.dto.PageResult;
 import com.matsuzaka.bigdata.dto.PopularCourseInfo;
 import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.ResultCacheStats;
 import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentSearchInfo;
+import com.matsuzaka.bigdata.dto.TeacherEnrollmentInfo;
+import com.matsuzaka.bigdata.dto.TeacherStudentInfo;
 import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.CourseAssignment;
 import com.matsuzaka.bigdata.entity.Enrollment;
 import com.matsuzaka.bigdata.entity.Student;
-import com.matsuzaka.bigdata.repository.CourseRepository;
+import com.matsuzaka.bigdata.entity.Teacher;
+import com.matsuzaka.bigdata.index.CoEnrollmentIndex;
+import com.matsuzaka.bigdata.index.CoursePopularityIndex;
+import com.matsuzaka.bigdata.index.CsrDeltaIndex;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import com.matsuzaka.bigdata.index.TeachingGraph;
+import com.matsuzaka.bigdata.index.TextSearchIndex;
 import com.matsuzaka.bigdata.repository.EnrollmentRepository;
-import com.matsuzaka.bigdata.repository.StudentRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository.TableStats;
+import com.matsuzaka.bigdata.repository.SearchRepository;
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_BITMAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CACHE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CSR;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_DB;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_HASH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_TEXT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_OVERLAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_CO_ENROLLED_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_MONTHLY_ENROLLMENTS;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BETWEEN;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_TEACHER;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_TEACHERS;
 
 @Service
 public class PerformanceService {
     private final EnrollmentRepository enrollmentRepository;
-    private final StudentRepository studentRepository;
-    private final CourseRepository courseRepository;
+    private final EnrollmentStreamRepository enrollmentStreamRepository;
+    private final SearchRepository searchRepository;
+    private final QueryMetrics queryMetrics;
+    private final QueryResultCache resultCache;
+
+    /** 載入快取時 ForkJoinPool 的平行度 (同時讀取資料庫的連線數) */
+    private final int cacheParallelism;
+
+    /** 選課紀錄依 id 範圍切分的分區數，通常設為平行度的數倍以平衡各分區的耗時差異 */
+    private final int cachePartitions;
+
+    /** 每次計時查詢前的暖機次數；以 JMH 等外部工具量測或並行壓測時設為 0，交由工具本身暖機 */
+    private volatile int warmupIterations;
+
+    /** 資料庫查詢的計時是否包含把 Object[] 轉換成 DTO 的時間 (端到端)；預設只量取回結果 */
+    private volatile boolean endToEndTiming;
+
+    /** 批次查詢時每個 IN (...) 清單的 id 數 */
+    private final int batchChunkSize;
+
+    /** 功能 1 / 2 / 3 共用的暖機與計時流程，QueryEngineRegistry 中的其他查詢引擎也使用同一個 */
+    private final QueryHarness harness;
+
+    /** 是否使用索引快照檔加速啟動 */
+    private final boolean snapshotEnabled;
+
+    /** 索引快照檔的路徑 */
+    private final Path snapshotPath;
+
+    /** 學生 / 課程欄位的存放方式：heap (實體物件，預設) 或 offheap (heap 外的字典編碼字串) */
+    private final String entityStore;
+
+    /** 載入時是否另外建一份另一種模式的學生 / 課程資料，只用來比較兩者的記憶體用量 */
+    private final boolean entityStoreCompare;
 
     // === 物件化後端資料結構 ===
     // 這些 Map 就是我們預先載入到記憶體中的資料快取
     // 這是實現「物件化後端資料結構」的核心
 
     /**
-     * 儲存所有學生資料，Key 為 student.id，Value 為 Student 物件
-     * 作用：可以透過 O(1) 的時間複雜度快速查找學生詳細資訊
+     * 所有學生與課程的資料 (姓名、email、課程名稱、學分)，以 id 查找
+     * 作用：各種查詢模式組合結果時，透過 O(1) 的時間複雜度取得學生 / 課程的詳細資訊
+     * 依 bigdata.cache.entity-store 可為實體物件 Map (heap) 或 heap 外的字串欄位 (offheap)
      */
-    private Map<Long, Student> studentMap;
+    private EntityDirectory directory;
 
     /**
-     * 儲存所有課程資料，Key 為 course.id，Value 為 Course 物件
-     * 作用：可以透過 O(1) 的時間複雜度快速查找課程詳細資訊
+     * 由 enrollment 衍生的記憶體索引：兩份 HashMap、熱門度排名、CSR 原生型別索引與共同修課點陣 (各自的說明見 EnrollmentIndexes)
+     * 完整重建與每一批寫入都產生新的一份，再替換這個參照發佈；每個查詢只讀取一次參照，之後都使用同一份
      */
-    private Map<Long, Course> courseMap;
+    private volatile EnrollmentIndexes indexes;
+
+    /** 已套用到記憶體索引的最大 enrollment.id，增量刷新只讀取這之後的紀錄 */
+    private volatile long refreshWatermark;
 
     /**
-     * 以學生ID為索引，儲存該學生的所有選課紀錄
-     * Key: student.id
-     * Value: List<Enrollment>，該學生的所有選課紀錄
-     * 作用：這是針對「功能1」的優化，可以 O(1) 找到某學生的所有選課，不需遍歷全部紀錄
+     * 寫入端 (選課 / 退選、增量刷新、全量校正的替換) 套用到記憶體索引時彼此序列化，讓「是否已套用」的判斷與套用成為一體
+     * 讀取端完全不使用這個鎖
      */
-    private Map<Long, List<Enrollment>> enrollmentsByStudent;
+    private final ReentrantLock indexWriteLock = new ReentrantLock();
+
+    /** 增量刷新與全量校正彼此序列化 (兩者都會讀寫浮水印) */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    /**
+     * 經由 unenroll 刪除、但刷新時可能仍會讀到的選課紀錄 (id -> 紀錄)：
+     * - 增量刷新略過這些 id，刷新讀出資料後才被退選的紀錄不會被加回來
+     * - 全量校正替換前再從新索引中移除一次，重建讀取資料表期間的退選不會遺失
+     * 只保留 id 大於浮水印或全量校正進行中的紀錄
+     */
+    private final Map<Long, Enrollment> recentlyRemoved = new ConcurrentHashMap<>();
+
+    /** 全量校正正在讀取資料表 */
+    private volatile boolean reconciling;
+
+    // === 教師授課 ===
+
+    /**
+     * 所有教師的資料，以 id 查找 (教師只有百位數量級，直接保留實體物件)
+     */
+    private Map<Long, Teacher> teacherMap;
+
+    /**
+     * 教師 → 所授課程的鄰接表，供「功能8」和「功能9」使用
+     * 作用：從教師出發，經由 CSR 索引的課程端走到學生，取代 SQL 中授課、選課、學生三張表的 join
+     */
+    private TeachingGraph teachingGraph;
+
+    // === 文字搜尋 ===
 
     /**
-     * 以課程ID為索引，儲存該課程的所有選課紀錄
-     * Key: course.id
-     * Value: List<Enrollment>，該課程的所有選課紀錄
-     * 作用：這是針對「功能2」和「功能3」的優化，可以 O(1) 找到某課程的所有學生
+     * 學生姓名 / email (兩個欄位) 與課程名稱的前綴與 n-gram 索引，供「功能10」使用
+     * 作用：取代資料庫端 LIKE '%x%' 的全表掃描；由 directory 建立，與 directory 一樣只在載入時重建
      */
-    private Map<Long, List<Enrollment>> enrollmentsByCourse;
+    private volatile TextSearchIndex studentSearch;
+    private volatile TextSearchIndex courseSearch;
 
+    /** 另一種存放模式的記憶體用量 (entity-store-compare 開啟時)，建好量測後即丟棄該份資料；未開啟時為 null */
+    private volatile IndexFootprint comparisonDirectoryFootprint;
 
-    public PerformanceService(EnrollmentRepository enrollmentRepository, StudentRepository studentRepository, CourseRepository courseRepository) {
+
+    public PerformanceService(EnrollmentRepository enrollmentRepository, EnrollmentStreamRepository enrollmentStreamRepository,
+                              SearchRepository searchRepository, QueryMetrics queryMetrics, QueryResultCache resultCache,
+                              @Value("${bigdata.cache.parallelism:4}") int cacheParallelism,
+                              @Value("${bigdata.cache.partitions:16}") int cachePartitions,
+                              @Value("${bigdata.query.warmup-iterations:5}") int warmupIterations,
+                              @Value("${bigdata.query.batch-chunk-size:1000}") int batchChunkSize,
+                              @Value("${bigdata.query.end-to-end-timing:false}") boolean endToEndTiming,
+                              @Value("${bigdata.snapshot.enabled:false}") boolean snapshotEnabled,
+                              @Value("${bigdata.snapshot.path:data/bigdata-index.snapshot}") String snapshotPath,
+                              @Value("${bigdata.cache.entity-store:heap}") String entityStore,
+                              @Value("${bigdata.cache.entity-store-compare:false}") boolean entityStoreCompare) {
         this.enrollmentRepository = enrollmentRepository;
-        this.studentRepository = studentRepository;
-        this.courseRepository = courseRepository;
+        this.enrollmentStreamRepository = enrollmentStreamRepository;
+        this.searchRepository = searchRepository;
+        this.queryMetrics = queryMetrics;
+        this.resultCache = resultCache;
+        this.cacheParallelism = cacheParallelism;
+        this.cachePartitions = cachePartitions;
+        this.warmupIterations = warmupIterations;
+        this.batchChunkSize = batchChunkSize;
+        this.endToEndTiming = endToEndTiming;
+        this.harness = new QueryHarness(queryMetrics, this::getWarmupIterations, this::isEndToEndTiming);
+        this.snapshotEnabled = snapshotEnabled;
+        this.snapshotPath = Path.of(snapshotPath);
+        this.entityStore = entityStore;
+        this.entityStoreCompare = entityStoreCompare;
     }
 
     /**
      * @PostConstruct
      * Spring Boot 在完成此 Service 的建構後，會自動執行此方法
      * 我們在這裡將所有資料從資料庫載入到記憶體中的 Map
+     * 啟用快照時，若快照與資料庫一致則直接從快照啟動，否則從資料庫重建並寫出新的快照
      */
     @PostConstruct
     public void initializeInMemoryCache() {
+        // 重新載入時不與背景刷新交錯
+        refreshLock.lock();
+        try {
+            loadInMemoryCache();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void loadInMemoryCache() {
         System.out.println("開始初始化記憶體快取...");
         long startTime = System.currentTimeMillis();
 
-        // 1. 載入所有學生和課程資料，並轉換成 Map
-        studentMap = studentRepository.findAll().stream()
-                .collect(Collectors.toMap(Student::getId, Function.identity()));
-        courseMap = courseRepository.findAll().stream()
-                .collect(Collectors.toMap(Course::getId, Function.identity()));
+        // 先記下資料表狀態再載入：載入期間若有寫入，快照記錄的是較舊的狀態，下次啟動會判定過期而重建
+        TableStats stats = snapshotEnabled ? enrollmentStreamRepository.tableStats() : null;
+        long enrollmentCount;
+        if (snapshotEnabled && loadFromSnapshot(stats)) {
+            enrollmentCount = indexes.csrIndex().base().size();
+        } else {
+            enrollmentCount = loadFromDatabase();
+            if (snapshotEnabled) {
+                writeSnapshot(stats);
+            }
+        }
+        // 授課資料不在快照中，資料量小，每次都從資料庫載入
+        loadTeachingGraph();
+        buildTextSearchIndexes();
+        // 重新載入 (例如 benchmark 產生資料後) 時，先前快取的查詢結果與退選紀錄已不可信
+        resultCache.invalidateAll();
+        recentlyRemoved.clear();
+        registerIndexMemoryGauges();
+
+        long endTime = System.currentTimeMillis();
+        System.out.printf("記憶體快取初始化完成。共載入 %d 筆選課紀錄，耗時: %d ms%n", enrollmentCount, (endTime - startTime));
+    }
+
+    private long loadFromDatabase() {
+        // 1. 以 JDBC 游標串流載入所有學生和課程資料，逐筆交給 EntityDirectory (實體 Map 或 heap 外的字串欄位)
+        //    不使用 findAll()，避免整張表先變成受管理的實體放進 persistence context
+        EntityDirectory.Builder entities = entityBuilder();
+        CacheLoadMetrics.measure("student", () -> {
+            long[] count = new long[1];
+            try (Stream<Student> rows = enrollmentStreamRepository.streamStudents()) {
+                rows.forEach(s -> {
+                    entities.addStudent(s);
+                    count[0]++;
+                });
+            }
+            return count[0];
+        });
+        CacheLoadMetrics.measure("course", () -> {
+            long[] count = new long[1];
+            try (Stream<Course> rows = enrollmentStreamRepository.streamCourses()) {
+                rows.forEach(c -> {
+                    entities.addCourse(c);
+                    count[0]++;
+                });
+            }
+            return count[0];
+        });
+        directory = entities.build();
 
-        // 2. 載入所有選課紀錄
-        List<Enrollment> allEnrollments = enrollmentRepository.findAll();
+        long[] idRange = enrollmentStreamRepository.enrollmentIdRange();
+        indexes = buildIndexes(idRange);
+        refreshWatermark = idRange[1];
+        return indexes.csrIndex().base().size();
+    }
 
-        // 3. 建立索引
-        // 使用 groupingBy 一次性建立兩個索引 Map，效率更高
-        enrollmentsByStudent = new HashMap<>();
-        enrollmentsByCourse = new HashMap<>();
+    /**
+     * 依 enrollment.id 範圍切成多個分區，在 ForkJoinPool 上平行串流讀取
+     * 每個分區各自建立局部索引，不保留完整的紀錄清單：
+     * - HashMap 索引：以一個不受 Hibernate 管理的 Enrollment 物件存放
+     * - CSR 索引：拆成四條 int 欄位
+     * 啟動載入與全量校正共用；只讀取 id 落在 idRange 內的紀錄，建立期間不影響目前發佈中的索引
+     */
+    private EnrollmentIndexes buildIndexes(long[] idRange) {
+        ForkJoinPool pool = new ForkJoinPool(cacheParallelism);
+        try {
+            List<EnrollmentPartition> partitions = EnrollmentPartition.split(idRange[0], idRange[1], cachePartitions,
+                    enrollmentStreamRepository.countEnrollments());
+            System.out.printf("[快取載入] 平行度: %d，分區數: %d%n", cacheParallelism, partitions.size());
+            AtomicReference<List<Map<Long, List<Enrollment>>>> merged = new AtomicReference<>();
+            CacheLoadMetrics.measure("enrollment", () -> {
+                long rows = EnrollmentPartition.loadAll(partitions, enrollmentStreamRepository, pool);
+                // 合併各分區的局部索引
+                merged.set(EnrollmentPartition.mergeHashIndexes(partitions, pool));
+                return rows;
+            });
 
-        for (Enrollment e : allEnrollments) {
-            enrollmentsByStudent.computeIfAbsent(e.getStudentId(), k -> new ArrayList<>()).add(e);
-            enrollmentsByCourse.computeIfAbsent(e.getCourseId(), k -> new ArrayList<>()).add(e);
+            // 建立 CSR 索引：各分區平行計數、前綴和後再平行寫入互不重疊的位置
+            long csrStartTime = System.currentTimeMillis();
+            CsrDeltaIndex csr = new CsrDeltaIndex(CsrEnrollmentIndex.build(partitions.stream().map(p -> p.csrBuilder).toList(),
+                    directory.maxStudentId(), directory.maxCourseId(), pool));
+            long csrEndTime = System.currentTimeMillis();
+            System.out.printf("CSR 索引建立完成，耗時: %d ms，索引大小約 %.1f MB%n",
+                    (csrEndTime - csrStartTime), csr.estimatedBytes() / (1024.0 * 1024.0));
+            return new EnrollmentIndexes(new PostingMap(merged.get().get(0)), new PostingMap(merged.get().get(1)),
+                    buildCoursePopularity(csr.base()), csr, buildCoEnrollment(csr.base()));
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        long endTime = System.currentTimeMillis();
-        System.out.printf("記憶體快取初始化完成。共載入 %d 筆選課紀錄，耗時: %d ms%n", allEnrollments.size(), (endTime - startTime));
+    /**
+     * 從快照啟動：CSR 索引直接使用快照檔的記憶體映射，HashMap 索引則由 CSR 學生端的欄位還原，不需讀取任何資料表
+     *
+     * @return 快照可用並已載入時為 true
+     */
+    private boolean loadFromSnapshot(TableStats stats) {
+        Optional<IndexSnapshot.Contents> snapshot;
+        try {
+            snapshot = IndexSnapshot.read(snapshotPath, stats, entityBuilder());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[索引快照] 讀取失敗，改由資料庫重建: " + e);
+            return false;
+        }
+        if (snapshot.isEmpty()) {
+            return false;
+        }
+        IndexSnapshot.Contents contents = snapshot.get();
+        directory = contents.directory();
+        CsrEnrollmentIndex base = contents.csrIndex();
+        Map<Long, List<Enrollment>> byStudent = new HashMap<>();
+        Map<Long, List<Enrollment>> byCourse = new HashMap<>();
+        CacheLoadMetrics.measure("enrollment (快照)", () -> {
+            for (int studentId = 0; studentId <= base.maxStudentId(); studentId++) {
+                int end = base.studentEnd(studentId);
+                for (int pos = base.studentStart(studentId); pos < end; pos++) {
+                    Enrollment e = new Enrollment();
+                    e.setId((long) base.studentEnrollmentIdAt(pos));
+                    e.setStudentId((long) studentId);
+                    e.setCourseId((long) base.studentCourseIdAt(pos));
+                    e.setEnrollmentDate(LocalDate.ofEpochDay(base.studentEpochDayAt(pos)));
+                    byStudent.computeIfAbsent(e.getStudentId(), k -> new ArrayList<>()).add(e);
+                    byCourse.computeIfAbsent(e.getCourseId(), k -> new ArrayList<>()).add(e);
+                }
+            }
+            byStudent.values().parallelStream().forEach(list -> list.sort(DatePostings.ORDER));
+            byCourse.values().parallelStream().forEach(list -> list.sort(DatePostings.ORDER));
+            return base.size();
+        });
+        indexes = new EnrollmentIndexes(new PostingMap(byStudent), new PostingMap(byCourse),
+                buildCoursePopularity(base), new CsrDeltaIndex(base), buildCoEnrollment(base));
+        // 快照與資料表狀態一致才會被採用，因此資料表當時的最大 id 就是浮水印
+        refreshWatermark = stats.enrollmentMaxId();
+        System.out.printf("[索引快照] 已從 %s 載入 (記憶體映射 %.1f MB)%n", snapshotPath, base.estimatedBytes() / (1024.0 * 1024.0));
+        return true;
+    }
+
+    private void loadTeachingGraph() {
+        Map<Long, Teacher> teachers = new HashMap<>();
+        CacheLoadMetrics.measure("teacher", () -> {
+            try (Stream<Teacher> rows = enrollmentStreamRepository.streamTeachers()) {
+                rows.forEach(t -> teachers.put(t.getId(), t));
+            }
+            return teachers.size();
+        });
+        TeachingGraph.Builder graph = new TeachingGraph.Builder();
+        CacheLoadMetrics.measure("course_assignment", () -> {
+            long[] count = new long[1];
+            try (Stream<CourseAssignment> rows = enrollmentStreamRepository.streamCourseAssignments()) {
+                rows.forEach(a -> {
+                    graph.add(Math.toIntExact(a.getTeacherId()), Math.toIntExact(a.getCourseId()));
+                    count[0]++;
+                });
+            }
+            return count[0];
+        });
+        teacherMap = teachers;
+        teachingGraph = graph.build();
+    }
+
+    /**
+     * 由 directory 建立學生 (name, email) 與課程 (title) 的文字搜尋索引 (功能 10)
+     *
+     * 快照檔不包含這兩個索引，因此不論從資料庫或快照啟動，都在 directory 就緒後依 id 順序重新建立。
+     * 與 directory 相同只反映載入當下的學生 / 課程，選課異動與增量刷新不會改變它們。
+     */
+    private void buildTextSearchIndexes() {
+        long startTime = System.currentTimeMillis();
+        EntityDirectory entities = directory;
+        TextSearchIndex.Builder students = new TextSearchIndex.Builder(2);
+        for (int studentId = 0; studentId <= entities.maxStudentId(); studentId++) {
+            if (entities.hasStudent(studentId)) {
+                students.add(studentId, entities.studentName(studentId), entities.studentEmail(studentId));
+            }
+        }
+        TextSearchIndex.Builder courses = new TextSearchIndex.Builder(1);
+        for (int courseId = 0; courseId <= entities.maxCourseId(); courseId++) {
+            if (entities.hasCourse(courseId)) {
+                courses.add(courseId, entities.courseTitle(courseId));
+            }
+        }
+        studentSearch = students.build();
+        courseSearch = courses.build();
+        System.out.printf("文字搜尋索引建立完成，耗時: %d ms，索引大小約 %.1f MB%n", System.currentTimeMillis() - startTime,
+                (studentSearch.estimatedBytes() + courseSearch.estimatedBytes()) / (1024.0 * 1024.0));
+    }
+
+    private void writeSnapshot(TableStats stats) {
+        long startTime = System.currentTimeMillis();
+        try {
+            IndexSnapshot.write(snapshotPath, stats, directory, indexes.csrIndex().base());
+            System.out.printf("[索引快照] 已寫入 %s，耗時: %d ms%n", snapshotPath, System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            // 快照只是啟動加速，寫入失敗不影響本次執行
+            System.out.println("[索引快照] 寫入失敗: " + e);
+        }
+    }
+
+    /**
+     * 建立熱門度排名：修課人數即 CSR 課程端各區間的長度 (忽略不存在於 course 表的 id)
+     */
+    private CoursePopularityIndex buildCoursePopularity(CsrEnrollmentIndex base) {
+        int[] courseCounts = new int[directory.maxCourseId() + 1];
+        for (int courseId = 0; courseId < courseCounts.length; courseId++) {
+            courseCounts[courseId] = base.courseDegree(courseId);
+        }
+        return CoursePopularityIndex.fromCounts(courseCounts);
+    }
+
+    private CoEnrollmentIndex buildCoEnrollment(CsrEnrollmentIndex base) {
+        long startTime = System.currentTimeMillis();
+        CoEnrollmentIndex coEnrollment = CoEnrollmentIndex.build(base, directory.maxCourseId());
+        System.out.printf("共同修課點陣索引建立完成，耗時: %d ms，索引大小約 %.1f MB%n",
+                System.currentTimeMillis() - startTime, coEnrollment.estimatedBytes() / (1024.0 * 1024.0));
+        return coEnrollment;
+    }
+
+
+    // --- 記憶體用量 ---
+
+    /**
+     * 學生 / 課程資料的建構器；開啟 entity-store-compare 時同一批實體也交給另一種模式的建構器，
+     * 建好後只記下其記憶體用量 (memoryFootprint 中的 entity-directory-heap / entity-directory-offheap) 就丟棄，
+     * 因此載入期間的峰值記憶體約為兩種模式的總和
+     */
+    private EntityDirectory.Builder entityBuilder() {
+        EntityDirectory.Builder primary = EntityDirectory.builder(entityStore);
+        if (!entityStoreCompare) {
+            comparisonDirectoryFootprint = null;
+            return primary;
+        }
+        String otherStore = "heap".equals(entityStore) ? "offheap" : "heap";
+        EntityDirectory.Builder comparison = EntityDirectory.builder(otherStore);
+        return new EntityDirectory.Builder() {
+            @Override
+            public void addStudent(Student student) {
+                primary.addStudent(student);
+                comparison.addStudent(student);
+            }
+
+            @Override
+            public void addCourse(Course course) {
+                primary.addCourse(course);
+                comparison.addCourse(course);
+            }
+
+            @Override
+            public EntityDirectory build() {
+                comparisonDirectoryFootprint = directoryFootprint("entity-directory-" + otherStore, comparison.build());
+                return primary.build();
+            }
+        };
+    }
+
+    private static IndexFootprint directoryFootprint(String index, EntityDirectory entities) {
+        return new IndexFootprint(index, (long) entities.studentCount() + entities.courseCount(), entities.heapBytes(), entities.offHeapBytes());
+    }
+
+    /**
+     * 各記憶體索引的保留大小估計，與 HeapEntityDirectory 相同以 64 位元 JVM (壓縮指標) 的物件配置估算
+     * enrollment 物件由學生端與課程端兩個 Map 共用，只計入學生端；記憶體映射的 CSR 快照計入 heap 外
+     * entity-directory 為目前使用的存放模式；開啟 entity-store-compare 時另列另一種模式，兩者並排比較
+     */
+    public List<IndexFootprint> memoryFootprint() {
+        EnrollmentIndexes idx = indexes;
+        List<IndexFootprint> footprints = new ArrayList<>();
+        footprints.add(directoryFootprint("entity-directory", directory));
+        IndexFootprint comparison = comparisonDirectoryFootprint;
+        if (comparison != null) {
+            footprints.add(comparison);
+        }
+        long[] enrollments = new long[1];
+        idx.enrollmentsByStudent().forEachPostings(list -> enrollments[0] += list.size());
+        footprints.add(new IndexFootprint("hash-by-student", idx.enrollmentsByStudent().size(),
+                postingMapBytes(idx.enrollmentsByStudent()) + ENROLLMENT_BYTES * enrollments[0], 0));
+        footprints.add(new IndexFootprint("hash-by-course", idx.enrollmentsByCourse().size(), postingMapBytes(idx.enrollmentsByCourse()), 0));
+        footprints.add(new IndexFootprint("course-popularity", idx.coursePopularity().capacity(), idx.coursePopularity().estimatedBytes(), 0));
+        CsrDeltaIndex csr = idx.csrIndex();
+        long csrBase = csr.base().estimatedBytes();
+        long csrOverlay = csr.estimatedBytes() - csrBase;
+        footprints.add(csr.base().isMapped()
+                ? new IndexFootprint("csr", csr.base().size(), csrOverlay, csrBase)
+                : new IndexFootprint("csr", csr.base().size(), csr.estimatedBytes(), 0));
+        footprints.add(new IndexFootprint("co-enrollment-bitmap", idx.coEnrollment().maxCourseId() + 1L, idx.coEnrollment().estimatedBytes(), 0));
+        long teacherBytes = 0;
+        for (Teacher teacher : teacherMap.values()) {
+            // HashMap 節點與桶位 36、Long 16、Teacher 24、String 24 + byte[]
+            teacherBytes += 36 + 16 + 24 + 24 + 16 + (teacher.getName() == null ? 0 : teacher.getName().length());
+        }
+        footprints.add(new IndexFootprint("teaching-graph", teachingGraph.assignmentCount(),
+                teachingGraph.estimatedBytes() + teacherBytes, 0));
+        footprints.add(new IndexFootprint("student-search", studentSearch.size(), studentSearch.estimatedBytes(), 0));
+        footprints.add(new IndexFootprint("course-search", courseSearch.size(), courseSearch.estimatedBytes(), 0));
+        return footprints;
+    }
+
+    /** Enrollment 24 (標頭與四個參照) 加上三個 Long 各 16 與 LocalDate 24，對齊後約 104 bytes */
+    private static final long ENROLLMENT_BYTES = 104;
+
+    /**
+     * HashMap 節點與桶位 36、Long 鍵 16、ArrayList 24 + 陣列 (16 + 每格 4)；不含 Enrollment 物件本身
+     */
+    private static long postingMapBytes(PostingMap map) {
+        long[] bytes = {64};
+        map.forEachPostings(list -> bytes[0] += 36 + 16 + 24 + 16 + 4L * list.size());
+        return bytes[0];
     }
 
+    /**
+     * 把各索引的大小註冊成 Gauge，每次讀取時重新估計，因此重新載入或寫入後的變化也會反映出來
+     */
+    private void registerIndexMemoryGauges() {
+        for (IndexFootprint footprint : memoryFootprint()) {
+            String index = footprint.index();
+            queryMetrics.registerIndexMemory(index,
+                    () -> footprintOf(index).heapBytes(), () -> footprintOf(index).offHeapBytes());
+        }
+    }
+
+    private IndexFootprint footprintOf(String index) {
+        return memoryFootprint().stream().filter(f -> f.index().equals(index)).findFirst()
+                .orElse(new IndexFootprint(index, 0, 0, 0));
+    }
+
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public void setWarmupIterations(int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+    }
+
+    public boolean isEndToEndTiming() {
+        return endToEndTiming;
+    }
+
+    public void setEndToEndTiming(boolean endToEndTiming) {
+        this.endToEndTiming = endToEndTiming;
+    }
+
+    QueryHarness harness() {
+        return harness;
+    }
+
+    /** 學生 / 課程欄位的來源，供其他查詢引擎組合結果；重新載入後會換成新的一份，每次查詢時取用 */
+    EntityDirectory directory() {
+        return directory;
+    }
+
+    /** 查詢結果快取 (cache 模式) 的命中率、淘汰次數與用量 */
+    public ResultCacheStats resultCacheStats() {
+        return resultCache.stats();
+    }
+
+    /** 目前已載入的最大學生 id，供壓測產生查詢參數 */
+    public int maxStudentId() {
+        return directory.maxStudentId();
+    }
+
+    /** 目前已載入的最大課程 id */
+    public int maxCourseId() {
+        return directory.maxCourseId();
+    }
 
     // --- 功能 1: 根據學生ID查詢課程 ---
+    // 查詢的暖機與計時由 QueryHarness 統一處理；資料庫查詢分成取回結果與轉換成 DTO 兩段，依計時模式決定是否計入轉換
+    // 這裡的 xxxDb / xxxHash 等方法只包含核心查詢邏輯，是 BuiltInQueryEngine 實作 QueryEngine 介面時呼叫的方法
 
     public QueryResult<StudentCourseInfo> findCoursesByStudentId_DB(Long studentId) {
-        // 暖機
-        for (int i = 0; i < 5; i++) {
-            enrollmentRepository.findCourseDetailsByStudentIdNative(studentId);
-        }
-        long startTime = System.nanoTime();
-        List<Object[]> results = enrollmentRepository.findCourseDetailsByStudentIdNative(studentId);
-        long endTime = System.nanoTime();
+        return harness.measure(FEATURE_COURSES_BY_STUDENT, ENGINE_DB,
+                () -> enrollmentRepository.findCourseDetailsByStudentIdNative(studentId), PerformanceService::toStudentCourseInfos);
+    }
 
-        List<StudentCourseInfo> dtoList = results.stream()
-                .map(res -> new StudentCourseInfo((String) res[0], (Integer) res[1], ((java.sql.Date) res[2]).toLocalDate()))
-                .collect(Collectors.toList());
-        return new QueryResult<>(dtoList, (endTime - startTime) / 1_000_000);
+    /**
+     * 查詢結果快取模式：命中時不碰資料庫，未命中時執行與 DB 模式相同的原生 SQL 並放入快取
+     * 不暖機：暖機會先把結果放進快取，量到的永遠是命中；未命中時的資料庫耗時正是這個模式要呈現的成本
+     */
+    public QueryResult<StudentCourseInfo> findCoursesByStudentId_Cached(Long studentId) {
+        return harness.measureOnce(FEATURE_COURSES_BY_STUDENT, ENGINE_CACHE, () -> coursesOfStudentCached(studentId));
     }
 
     public QueryResult<StudentCourseInfo> findCoursesByStudentId_InMemory(Long studentId) {
-        // 暖機
-        for (int i = 0; i < 5; i++) {
-            enrollmentsByStudent.getOrDefault(studentId, Collections.emptyList());
-        }
-
-        long startTime = System.nanoTime();
-        // 核心查詢邏輯
-        List<Enrollment> studentEnrollments = enrollmentsByStudent.getOrDefault(studentId, Collections.emptyList());
-        List<StudentCourseInfo> resultList = new ArrayList<>();
-        if (!studentEnrollments.isEmpty()) {
-            for (Enrollment enrollment : studentEnrollments) {
-                Course course = courseMap.get(enrollment.getCourseId());
-                if (course != null) {
-                    resultList.add(new StudentCourseInfo(course.getTitle(), course.getCredit(), enrollment.getEnrollmentDate()));
-                }
+        return harness.measure(FEATURE_COURSES_BY_STUDENT, ENGINE_HASH, () -> coursesOfStudentHash(studentId));
+    }
+
+    public QueryResult<StudentCourseInfo> findCoursesByStudentId_Csr(Long studentId) {
+        return harness.measure(FEATURE_COURSES_BY_STUDENT, ENGINE_CSR, () -> coursesOfStudentCsr(studentId));
+    }
+
+    List<StudentCourseInfo> coursesOfStudentDb(long studentId) {
+        return toStudentCourseInfos(enrollmentRepository.findCourseDetailsByStudentIdNative(studentId));
+    }
+
+    List<StudentCourseInfo> coursesOfStudentCached(long studentId) {
+        return resultCache.get(FEATURE_COURSES_BY_STUDENT, studentId, () -> coursesOfStudentDb(studentId));
+    }
+
+    private static List<StudentCourseInfo> toStudentCourseInfos(List<Object[]> results) {
+        List<StudentCourseInfo> dtoList = new ArrayList<>(results.size());
+        for (Object[] res : results) {
+            dtoList.add(new StudentCourseInfo((String) res[0], (Integer) res[1], ((java.sql.Date) res[2]).toLocalDate()));
+        }
+        return dtoList;
+    }
+
+    List<StudentCourseInfo> coursesOfStudentHash(long studentId) {
+        List<Enrollment> studentEnrollments = indexes.enrollmentsByStudent().get(studentId);
+        List<StudentCourseInfo> resultList = new ArrayList<>(studentEnrollments.size());
+        for (Enrollment enrollment : studentEnrollments) {
+            long courseId = enrollment.getCourseId();
+            if (directory.hasCourse(courseId)) {
+                resultList.add(new StudentCourseInfo(directory.courseTitle(courseId), directory.courseCredit(courseId), enrollment.getEnrollmentDate()));
             }
         }
-        // 核心查詢邏輯結束
-        long endTime = System.nanoTime();
-        return new QueryResult<>(resultList, (endTime - startTime) / 1_000_000);
+        return resultList;
+    }
+
+    /**
+     * offsets 直接定位區間 (或該學生的寫入覆蓋層)，接著線性掃描平行的 int[] 欄位
+     */
+    List<StudentCourseInfo> coursesOfStudentCsr(long studentId) {
+        int id = indexId(studentId);
+        CsrDeltaIndex csr = indexes.csrIndex();
+        List<StudentCourseInfo> resultList = new ArrayList<>(csr.studentDegree(id));
+        csr.forEachCourseOfStudent(id, (courseId, epochDay) -> {
+            if (directory.hasCourse(courseId)) {
+                resultList.add(new StudentCourseInfo(directory.courseTitle(courseId), directory.courseCredit(courseId), LocalDate.ofEpochDay(epochDay)));
+            }
+        });
+        return resultList;
     }
 
     // --- 功能 2: 根據課程ID查詢學生 ---
 
     public QueryResult<CourseStudentInfo> findStudentsByCourseId_DB(Long courseId) {
-        // 暖機
-        for (int i = 0; i < 5; i++) {
-            enrollmentRepository.findStudentDetailsByCourseIdNative(courseId);
-        }
-        long startTime = System.nanoTime();
-        List<Object[]> results = enrollmentRepository.findStudentDetailsByCourseIdNative(courseId);
-        long endTime = System.nanoTime();
-        List<CourseStudentInfo> dtoList = results.stream()
-                .map(res -> new CourseStudentInfo((String) res[0], (String) res[1], ((java.sql.Date) res[2]).toLocalDate()))
-                .collect(Collectors.toList());
-        return new QueryResult<>(dtoList, (endTime - startTime) / 1_000_000);
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE, ENGINE_DB,
+                () -> enrollmentRepository.findStudentDetailsByCourseIdNative(courseId), PerformanceService::toCourseStudentInfos);
+    }
+
+    public QueryResult<CourseStudentInfo> findStudentsByCourseId_Cached(Long courseId) {
+        return harness.measureOnce(FEATURE_STUDENTS_BY_COURSE, ENGINE_CACHE, () -> studentsOfCourseCached(courseId));
     }
 
     public QueryResult<CourseStudentInfo> findStudentsByCourseId_InMemory(Long courseId) {
-        // 暖機
-        for (int i = 0; i < 5; i++) {
-            enrollmentsByCourse.getOrDefault(courseId, Collections.emptyList());
-        }
-        long startTime = System.nanoTime();
-        // 核心查詢邏輯
-        List<Enrollment> courseEnrollments = enrollmentsByCourse.getOrDefault(courseId, Collections.emptyList());
-        List<CourseStudentInfo> resultList = new ArrayList<>();
-        if (!courseEnrollments.isEmpty()) {
-            for (Enrollment enrollment : courseEnrollments) {
-                Student student = studentMap.get(enrollment.getStudentId());
-                if (student != null) {
-                    resultList.add(new CourseStudentInfo(student.getName(), student.getEmail(), enrollment.getEnrollmentDate()));
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE, ENGINE_HASH, () -> studentsOfCourseHash(courseId));
+    }
+
+    public QueryResult<CourseStudentInfo> findStudentsByCourseId_Csr(Long courseId) {
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE, ENGINE_CSR, () -> studentsOfCourseCsr(courseId));
+    }
+
+    List<CourseStudentInfo> studentsOfCourseDb(long courseId) {
+        return toCourseStudentInfos(enrollmentRepository.findStudentDetailsByCourseIdNative(courseId));
+    }
+
+    List<CourseStudentInfo> studentsOfCourseCached(long courseId) {
+        return resultCache.get(FEATURE_STUDENTS_BY_COURSE, courseId, () -> studentsOfCourseDb(courseId));
+    }
+
+    private static List<CourseStudentInfo> toCourseStudentInfos(List<Object[]> results) {
+        List<CourseStudentInfo> dtoList = new ArrayList<>(results.size());
+        for (Object[] res : results) {
+            dtoList.add(new CourseStudentInfo((String) res[0], (String) res[1], ((java.sql.Date) res[2]).toLocalDate()));
+        }
+        return dtoList;
+    }
+
+    List<CourseStudentInfo> studentsOfCourseHash(long courseId) {
+        List<Enrollment> courseEnrollments = indexes.enrollmentsByCourse().get(courseId);
+        List<CourseStudentInfo> resultList = new ArrayList<>(courseEnrollments.size());
+        for (Enrollment enrollment : courseEnrollments) {
+            long studentId = enrollment.getStudentId();
+            if (directory.hasStudent(studentId)) {
+                resultList.add(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId), enrollment.getEnrollmentDate()));
+            }
+        }
+        return resultList;
+    }
+
+    List<CourseStudentInfo> studentsOfCourseCsr(long courseId) {
+        int id = indexId(courseId);
+        CsrDeltaIndex csr = indexes.csrIndex();
+        List<CourseStudentInfo> resultList = new ArrayList<>(csr.courseDegree(id));
+        csr.forEachStudentOfCourse(id, (studentId, epochDay) -> {
+            if (directory.hasStudent(studentId)) {
+                resultList.add(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId), LocalDate.ofEpochDay(epochDay)));
+            }
+        });
+        return resultList;
+    }
+
+    // --- 功能 1 / 2 (批次): 一次查詢數千至數萬個 id ---
+    // 逐一呼叫單筆版本時，每個 id 都要一次資料庫往返加上暖機；批次版本在資料庫端把 id 切成固定大小的 IN (...) 清單，
+    // 記憶體端則在 ForkJoin common pool 上平行查詢，每個 id 的結果清單依 CSR 的 degree 預先配置大小
+    // 兩者都經由 QueryHarness 以整批暖機與計時：資料庫端與其他資料庫查詢相同，核心計時只量取回各區塊的結果，
+    // 端到端計時才包含分組與轉換成 DTO；記憶體端的分組本來就在查詢中。結果以請求中 id 的順序排列
+
+    /** 單次批次查詢的 id 數上限 */
+    public static final int MAX_BATCH_IDS = 100_000;
+
+    /**
+     * @param studentIds 重複的 id 只查詢一次
+     * @throws IllegalArgumentException id 為 null 或超過 MAX_BATCH_IDS 個
+     */
+    public BatchQueryResult<StudentCourseInfo> findCoursesByStudentIds_DB(Collection<Long> studentIds) {
+        List<Long> ids = distinctIds(studentIds);
+        return harness.measure(FEATURE_COURSES_BY_STUDENT_BATCH, ENGINE_DB,
+                () -> fetchInChunks(ids, enrollmentRepository::findCourseDetailsByStudentIdsNative),
+                rows -> groupById(ids, rows, res -> new StudentCourseInfo((String) res[1], (Integer) res[2], ((java.sql.Date) res[3]).toLocalDate())),
+                BatchQueryResult::new);
+    }
+
+    public BatchQueryResult<StudentCourseInfo> findCoursesByStudentIds_Csr(Collection<Long> studentIds) {
+        List<Long> ids = distinctIds(studentIds);
+        return harness.measure(FEATURE_COURSES_BY_STUDENT_BATCH, ENGINE_CSR, () -> {
+            CsrDeltaIndex csr = indexes.csrIndex();
+            // 各 id 平行查詢，結果寫入自己的格子，彼此不共用可變狀態
+            List<List<StudentCourseInfo>> lists = new ArrayList<>(Collections.nCopies(ids.size(), null));
+            IntStream.range(0, ids.size()).parallel().forEach(i -> {
+                int id = indexId(ids.get(i));
+                List<StudentCourseInfo> resultList = new ArrayList<>(csr.studentDegree(id));
+                csr.forEachCourseOfStudent(id, (courseId, epochDay) -> {
+                    if (directory.hasCourse(courseId)) {
+                        resultList.add(new StudentCourseInfo(directory.courseTitle(courseId), directory.courseCredit(courseId), LocalDate.ofEpochDay(epochDay)));
+                    }
+                });
+                lists.set(i, resultList);
+            });
+            return toBatchResult(ids, lists);
+        }, Function.identity(), BatchQueryResult::new);
+    }
+
+    /**
+     * @param courseIds 重複的 id 只查詢一次
+     * @throws IllegalArgumentException id 為 null 或超過 MAX_BATCH_IDS 個
+     */
+    public BatchQueryResult<CourseStudentInfo> findStudentsByCourseIds_DB(Collection<Long> courseIds) {
+        List<Long> ids = distinctIds(courseIds);
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE_BATCH, ENGINE_DB,
+                () -> fetchInChunks(ids, enrollmentRepository::findStudentDetailsByCourseIdsNative),
+                rows -> groupById(ids, rows, res -> new CourseStudentInfo((String) res[1], (String) res[2], ((java.sql.Date) res[3]).toLocalDate())),
+                BatchQueryResult::new);
+    }
+
+    public BatchQueryResult<CourseStudentInfo> findStudentsByCourseIds_Csr(Collection<Long> courseIds) {
+        List<Long> ids = distinctIds(courseIds);
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE_BATCH, ENGINE_CSR, () -> {
+            CsrDeltaIndex csr = indexes.csrIndex();
+            List<List<CourseStudentInfo>> lists = new ArrayList<>(Collections.nCopies(ids.size(), null));
+            IntStream.range(0, ids.size()).parallel().forEach(i -> {
+                int id = indexId(ids.get(i));
+                List<CourseStudentInfo> resultList = new ArrayList<>(csr.courseDegree(id));
+                csr.forEachStudentOfCourse(id, (studentId, epochDay) -> {
+                    if (directory.hasStudent(studentId)) {
+                        resultList.add(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId), LocalDate.ofEpochDay(epochDay)));
+                    }
+                });
+                lists.set(i, resultList);
+            });
+            return toBatchResult(ids, lists);
+        }, Function.identity(), BatchQueryResult::new);
+    }
+
+    /**
+     * 把 id 切成 batchChunkSize 個一組的 IN (...) 清單依序查詢，回傳所有區塊的原始結果 (第一欄為 id)
+     */
+    private List<Object[]> fetchInChunks(List<Long> ids, Function<List<Long>, List<Object[]>> query) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchChunkSize) {
+            rows.addAll(query.apply(ids.subList(from, Math.min(from + batchChunkSize, ids.size()))));
+        }
+        return rows;
+    }
+
+    /**
+     * 原始結果依第一欄的 id 分組並轉換成 DTO；請求中的每個 id 都有一份清單，查無資料時為空清單
+     */
+    private static <T> Map<Long, List<T>> groupById(List<Long> ids, List<Object[]> rows, Function<Object[], T> mapper) {
+        Map<Long, List<T>> resultMap = emptyBatchResult(ids);
+        for (Object[] res : rows) {
+            resultMap.get(((Number) res[0]).longValue()).add(mapper.apply(res));
+        }
+        return resultMap;
+    }
+
+    /**
+     * 使用者傳入的 id 轉成索引使用的 int；超出 int 範圍的 id 不可能存在於資料庫中，一律轉成 -1，
+     * 各索引對超出範圍的 id 回傳空結果，與資料庫查不到資料的行為一致
+     */
+    static int indexId(long id) {
+        return id >= 0 && id <= Integer.MAX_VALUE ? (int) id : -1;
+    }
+
+    /**
+     * 去除重複並保留第一次出現的順序
+     */
+    private static List<Long> distinctIds(Collection<Long> ids) {
+        LinkedHashSet<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.contains(null)) {
+            throw new IllegalArgumentException("id 不可為 null");
+        }
+        if (distinct.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("單次批次查詢最多 " + MAX_BATCH_IDS + " 個 id: " + distinct.size());
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    private static <T> Map<Long, List<T>> emptyBatchResult(List<Long> ids) {
+        Map<Long, List<T>> resultMap = new LinkedHashMap<>(Math.max(ids.size() * 4 / 3 + 1, 16));
+        for (Long id : ids) {
+            resultMap.put(id, new ArrayList<>());
+        }
+        return resultMap;
+    }
+
+    private static <T> Map<Long, List<T>> toBatchResult(List<Long> ids, List<List<T>> lists) {
+        Map<Long, List<T>> resultMap = new LinkedHashMap<>(Math.max(ids.size() * 4 / 3 + 1, 16));
+        for (int i = 0; i < ids.size(); i++) {
+            resultMap.put(ids.get(i), lists.get(i));
+        }
+        return resultMap;
+    }
+
+    // --- 功能 2 (大型名單): 分頁與串流 ---
+    // 熱門課程的名單可能有數萬筆，一次組成完整 List 會讓每個請求的配置量隨名單大小成長
+    // 分頁版本每次只配置一頁，串流版本逐筆交給呼叫端；兩者都經由 QueryHarness 暖機與計時，記錄耗時與配置量
+    // 資料庫分頁與其他資料庫查詢相同，核心計時只量取回結果，端到端計時才包含轉換成 DTO
+
+    /** 每頁筆數上限 */
+    public static final int MAX_PAGE_SIZE = 10_000;
+
+    /**
+     * 資料庫 keyset 分頁：依 (student_id, enrollment.id) 排序，游標為上一頁最後一筆的 "studentId:enrollmentId"
+     * 游標不用 (course_id, student_id)：
+     * - course_id 是 WHERE 的等值條件，整個翻頁過程固定不變，放進游標沒有任何資訊，排序與比較只需要它之後的欄位
+     * - (course_id, student_id) 並不唯一：同一學生可能重複修同一門課，只以 student_id 比較時，落在頁面邊界的重複修課
+     *   會被略過 (以 >) 或重複 (以 >=)，因此補上 enrollment.id 成為唯一鍵，每一列都有唯一的位置
+     * 排序鍵與 (course_id, student_id, ...) 索引的順序相同，每頁都是一次索引範圍掃描；
+     * 翻頁期間新增或刪除的紀錄只會落在游標之前或之後，已回傳的列不會重複出現，其他列也不會被略過
+     *
+     * @param cursor null 表示第一頁
+     * @throws IllegalArgumentException pageSize 超出範圍或游標格式錯誤
+     */
+    public PageResult<CourseStudentInfo> findStudentsByCourseIdPage_DB(Long courseId, String cursor, int pageSize) {
+        checkPageSize(pageSize);
+        long[] after = parseKeysetCursor(cursor);
+        // 本頁最後一筆；還有下一頁時才有值
+        Object[][] last = new Object[1][];
+        QueryResult<CourseStudentInfo> page = harness.measure(FEATURE_STUDENTS_BY_COURSE_PAGE, ENGINE_DB,
+                // 多取一筆以判斷是否還有下一頁
+                () -> enrollmentRepository.findStudentDetailsByCourseIdAfterNative(courseId, after[0], after[1], pageSize + 1),
+                results -> {
+                    last[0] = results.size() > pageSize ? results.get(pageSize - 1) : null;
+                    return toCourseStudentInfos(results.subList(0, Math.min(results.size(), pageSize)));
+                });
+        String nextCursor = last[0] == null ? null : ((Number) last[0][3]).longValue() + ":" + ((Number) last[0][4]).longValue();
+        return new PageResult<>(page, nextCursor);
+    }
+
+    /**
+     * HashMap 索引的分頁：游標為該課程選課清單中的位置 (offset)，直接定位，不需掃描前面的紀錄
+     * 清單是寫入時複製的，翻頁期間若有選課 / 退選，後續頁面可能重複或略過一筆；需要穩定的翻頁請用資料庫分頁
+     *
+     * @param cursor null 表示第一頁
+     * @throws IllegalArgumentException pageSize 超出範圍或游標格式錯誤
+     */
+    public PageResult<CourseStudentInfo> findStudentsByCourseIdPage_InMemory(Long courseId, String cursor, int pageSize) {
+        checkPageSize(pageSize);
+        int offset = parseOffsetCursor(cursor);
+        // 計時的那一次取到的清單長度，用來判斷是否還有下一頁
+        int[] total = new int[1];
+        QueryResult<CourseStudentInfo> page = harness.measure(FEATURE_STUDENTS_BY_COURSE_PAGE, ENGINE_HASH, () -> {
+            List<Enrollment> courseEnrollments = indexes.enrollmentsByCourse().get(courseId);
+            total[0] = courseEnrollments.size();
+            int end = (int) Math.min((long) offset + pageSize, courseEnrollments.size());
+            List<CourseStudentInfo> resultList = new ArrayList<>(Math.max(end - offset, 0));
+            for (int i = offset; i < end; i++) {
+                Enrollment enrollment = courseEnrollments.get(i);
+                long studentId = enrollment.getStudentId();
+                if (directory.hasStudent(studentId)) {
+                    resultList.add(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId), enrollment.getEnrollmentDate()));
+                }
+            }
+            return resultList;
+        });
+        int end = (int) Math.min((long) offset + pageSize, total[0]);
+        return new PageResult<>(page, end < total[0] ? Integer.toString(end) : null);
+    }
+
+    /**
+     * 以 JDBC 游標串流某課程的完整名單，逐筆交給 sink，不組成 List
+     * 暖機時走訪同一份名單但不交給 sink；計時與配置量包含 sink 的處理 (例如寫入 HTTP 回應)
+     *
+     * @return 串流的筆數
+     */
+    public long streamStudentsByCourseId_DB(Long courseId, Consumer<CourseStudentInfo> sink) {
+        return harness.measureStream(FEATURE_STUDENTS_BY_COURSE_STREAM, ENGINE_DB, target -> {
+            long[] count = new long[1];
+            try (Stream<CourseStudentInfo> rows = enrollmentStreamRepository.streamStudentDetailsByCourse(courseId)) {
+                rows.forEach(info -> {
+                    target.accept(info);
+                    count[0]++;
+                });
+            }
+            return count[0];
+        }, sink);
+    }
+
+    /**
+     * 逐筆走訪 HashMap 索引中某課程的名單並交給 sink；走訪的是當下那一份寫入時複製的清單
+     * 暖機方式與資料庫串流相同
+     *
+     * @return 串流的筆數
+     */
+    public long streamStudentsByCourseId_InMemory(Long courseId, Consumer<CourseStudentInfo> sink) {
+        return harness.measureStream(FEATURE_STUDENTS_BY_COURSE_STREAM, ENGINE_HASH, target -> {
+            long count = 0;
+            for (Enrollment enrollment : indexes.enrollmentsByCourse().get(courseId)) {
+                long studentId = enrollment.getStudentId();
+                if (directory.hasStudent(studentId)) {
+                    target.accept(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId), enrollment.getEnrollmentDate()));
+                    count++;
+                }
+            }
+            return count;
+        }, sink);
+    }
+
+    private static void checkPageSize(int pageSize) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("每頁筆數必須介於 1 與 " + MAX_PAGE_SIZE + " 之間: " + pageSize);
+        }
+    }
+
+    /**
+     * 解析 "studentId:enrollmentId" 游標；null 表示第一頁，回傳 {0, 0} (所有 id 都大於 0)
+     */
+    private static long[] parseKeysetCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return new long[]{0, 0};
+        }
+        int colon = cursor.indexOf(':');
+        try {
+            if (colon < 0) {
+                throw new NumberFormatException();
+            }
+            return new long[]{Long.parseLong(cursor.substring(0, colon)), Long.parseLong(cursor.substring(colon + 1))};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("游標格式錯誤: " + cursor);
+        }
+    }
+
+    private static int parseOffsetCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset < 0) {
+                throw new NumberFormatException();
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("游標格式錯誤: " + cursor);
+        }
+    }
+
+    // --- 功能 3: 查詢最熱門的前 K 門課程 ---
+
+    public QueryResult<PopularCourseInfo> findTopPopularCourses_DB(int k) {
+        return harness.measure(FEATURE_TOP_COURSES, ENGINE_DB,
+                () -> enrollmentRepository.findTopPopularCoursesNative(k), this::toPopularCourseInfos);
+    }
+
+    public QueryResult<PopularCourseInfo> findTopPopularCourses_Cached(int k) {
+        return harness.measureOnce(FEATURE_TOP_COURSES, ENGINE_CACHE, () -> topCoursesCached(k));
+    }
+
+    public QueryResult<PopularCourseInfo> findTopPopularCourses_InMemory(int k) {
+        return harness.measure(FEATURE_TOP_COURSES, ENGINE_HASH, () -> topCoursesHash(k));
+    }
+
+    public QueryResult<PopularCourseInfo> findTopPopularCourses_Csr(int k) {
+        return harness.measure(FEATURE_TOP_COURSES, ENGINE_CSR, () -> topCoursesCsr(k));
+    }
+
+    List<PopularCourseInfo> topCoursesDb(int k) {
+        return toPopularCourseInfos(enrollmentRepository.findTopPopularCoursesNative(k));
+    }
+
+    List<PopularCourseInfo> topCoursesCached(int k) {
+        return resultCache.get(FEATURE_TOP_COURSES, k, () -> topCoursesDb(k));
+    }
+
+    private List<PopularCourseInfo> toPopularCourseInfos(List<Object[]> results) {
+        List<PopularCourseInfo> dtoList = new ArrayList<>(results.size());
+        for (Object[] res : results) {
+            Long courseId = ((Number) res[0]).longValue();
+            String title = directory.courseTitle(courseId);
+            long count = ((Number) res[1]).longValue();
+            dtoList.add(new PopularCourseInfo(title, count));
+        }
+        return dtoList;
+    }
+
+    /**
+     * 排名已在選課異動時即時維護，直接複製前 K 名，O(K)，不需排序全部課程
+     */
+    List<PopularCourseInfo> topCoursesHash(int k) {
+        CoursePopularityIndex.Ranking ranking = indexes.coursePopularity().top(k);
+        List<PopularCourseInfo> resultList = new ArrayList<>(ranking.size());
+        for (int i = 0; i < ranking.size(); i++) {
+            resultList.add(new PopularCourseInfo(directory.courseTitle(ranking.courseIds()[i]), ranking.counts()[i]));
+        }
+        return resultList;
+    }
+
+    /**
+     * 修課人數 = courseOffsets 相鄰差值，以最小堆積取前 K 名，不需排序全部課程
+     */
+    List<PopularCourseInfo> topCoursesCsr(int k) {
+        CsrDeltaIndex csr = indexes.csrIndex();
+        int[] topCourseIds = csr.topCourses(k);
+        List<PopularCourseInfo> resultList = new ArrayList<>(topCourseIds.length);
+        for (int courseId : topCourseIds) {
+            resultList.add(new PopularCourseInfo(directory.courseTitle(courseId), csr.courseDegree(courseId)));
+        }
+        return resultList;
+    }
+
+    // --- 功能 4: 查詢課程在日期區間內的修課學生 ---
+
+    /**
+     * @throws IllegalArgumentException from 晚於 to
+     */
+    public QueryResult<CourseStudentInfo> findStudentsByCourseIdBetween_DB(Long courseId, LocalDate from, LocalDate to) {
+        checkDateRange(from, to);
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE_BETWEEN, ENGINE_DB,
+                () -> enrollmentRepository.findStudentDetailsByCourseIdBetweenNative(courseId, from, to), PerformanceService::toCourseStudentInfos);
+    }
+
+    public QueryResult<CourseStudentInfo> findStudentsByCourseIdBetween_InMemory(Long courseId, LocalDate from, LocalDate to) {
+        checkDateRange(from, to);
+        return harness.measure(FEATURE_STUDENTS_BY_COURSE_BETWEEN, ENGINE_HASH, () -> {
+            // 核心查詢邏輯: 清單依日期排序，二分搜尋區間起訖後只走訪區間內的紀錄
+            List<Enrollment> courseEnrollments = indexes.enrollmentsByCourse().get(courseId);
+            int start = DatePostings.firstOnOrAfter(courseEnrollments, from);
+            int end = DatePostings.firstAfter(courseEnrollments, to);
+            List<CourseStudentInfo> resultList = new ArrayList<>(Math.max(end - start, 0));
+            for (int i = start; i < end; i++) {
+                Enrollment enrollment = courseEnrollments.get(i);
+                long studentId = enrollment.getStudentId();
+                if (directory.hasStudent(studentId)) {
+                    resultList.add(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId), enrollment.getEnrollmentDate()));
+                }
+            }
+            return resultList;
+        });
+    }
+
+    // --- 功能 5: 統計課程每月修課人次 ---
+
+    /**
+     * @return 區間內有修課紀錄的月份 (依月份排序)
+     * @throws IllegalArgumentException from 晚於 to
+     */
+    public QueryResult<MonthlyEnrollmentCount> countEnrollmentsByMonth_DB(Long courseId, LocalDate from, LocalDate to) {
+        checkDateRange(from, to);
+        return harness.measure(FEATURE_MONTHLY_ENROLLMENTS, ENGINE_DB,
+                () -> enrollmentRepository.countByCourseIdPerMonthNative(courseId, from, to), results -> {
+                    List<MonthlyEnrollmentCount> dtoList = new ArrayList<>(results.size());
+                    for (Object[] res : results) {
+                        dtoList.add(new MonthlyEnrollmentCount(YearMonth.of(((Number) res[0]).intValue(), ((Number) res[1]).intValue()),
+                                ((Number) res[2]).longValue()));
+                    }
+                    return dtoList;
+                });
+    }
+
+    public QueryResult<MonthlyEnrollmentCount> countEnrollmentsByMonth_InMemory(Long courseId, LocalDate from, LocalDate to) {
+        checkDateRange(from, to);
+        return harness.measure(FEATURE_MONTHLY_ENROLLMENTS, ENGINE_HASH, () -> {
+            // 核心查詢邏輯: 每個月份的人次 = 下個月份起點與本月起點的位置差，每月只需一次二分搜尋，不走訪任何紀錄
+            List<Enrollment> courseEnrollments = indexes.enrollmentsByCourse().get(courseId);
+            List<MonthlyEnrollmentCount> resultList = new ArrayList<>();
+            int end = DatePostings.firstAfter(courseEnrollments, to);
+            int monthStart = DatePostings.firstOnOrAfter(courseEnrollments, from);
+            while (monthStart < end) {
+                // 直接跳到區間內下一筆紀錄所在的月份，略過沒有紀錄的月份
+                YearMonth month = YearMonth.from(courseEnrollments.get(monthStart).getEnrollmentDate());
+                int monthEnd = Math.min(DatePostings.firstAfter(courseEnrollments, month.atEndOfMonth()), end);
+                resultList.add(new MonthlyEnrollmentCount(month, monthEnd - monthStart));
+                monthStart = monthEnd;
+            }
+            return resultList;
+        });
+    }
+
+    private static void checkDateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("日期區間無效: " + from + " ~ " + to);
+        }
+    }
+
+    // --- 功能 6: 修過某課程的學生也修了哪些課 ---
+
+    /**
+     * @param n 回傳的課程數上限
+     * @return 依共同修課的不重複學生數由多到少排序，不含該課程本身
+     */
+    public QueryResult<CoEnrolledCourseInfo> findCoEnrolledCourses_DB(Long courseId, int n) {
+        return harness.measure(FEATURE_CO_ENROLLED_COURSES, ENGINE_DB,
+                () -> enrollmentRepository.findCoEnrolledCoursesNative(courseId, n), results -> {
+                    List<CoEnrolledCourseInfo> dtoList = new ArrayList<>(results.size());
+                    for (Object[] res : results) {
+                        dtoList.add(new CoEnrolledCourseInfo(directory.courseTitle(((Number) res[0]).longValue()), ((Number) res[1]).longValue()));
+                    }
+                    return dtoList;
+                });
+    }
+
+    public QueryResult<CoEnrolledCourseInfo> findCoEnrolledCourses_Bitmap(Long courseId, int n) {
+        int id = indexId(courseId);
+        return harness.measure(FEATURE_CO_ENROLLED_COURSES, ENGINE_BITMAP, () -> {
+            // 核心查詢邏輯: 該課程的點陣與其他每門課的點陣平行求交集大小，再以最小堆積取前 N 名
+            CoursePopularityIndex.Ranking ranking = indexes.coEnrollment().coEnrolled(id, n);
+            List<CoEnrolledCourseInfo> resultList = new ArrayList<>(ranking.size());
+            for (int i = 0; i < ranking.size(); i++) {
+                resultList.add(new CoEnrolledCourseInfo(directory.courseTitle(ranking.courseIds()[i]), ranking.counts()[i]));
+            }
+            return resultList;
+        });
+    }
+
+    // --- 功能 7: 兩門課的修課學生重疊程度 (Jaccard) ---
+
+    /**
+     * @return 只有一筆的結果
+     */
+    public QueryResult<CourseOverlapInfo> findCourseOverlap_DB(Long courseA, Long courseB) {
+        return harness.measure(FEATURE_COURSE_OVERLAP, ENGINE_DB,
+                () -> enrollmentRepository.countCourseOverlapNative(courseA, courseB).get(0), res -> {
+                    CoEnrollmentIndex.Overlap overlap = new CoEnrollmentIndex.Overlap(((Number) res[0]).intValue(),
+                            ((Number) res[1]).intValue(), ((Number) res[2]).intValue());
+                    return List.of(toCourseOverlapInfo(courseA, courseB, overlap));
+                });
+    }
+
+    public QueryResult<CourseOverlapInfo> findCourseOverlap_Bitmap(Long courseA, Long courseB) {
+        int a = indexId(courseA);
+        int b = indexId(courseB);
+        // 核心查詢邏輯: 兩個點陣的基數已知，只需計算一次交集大小
+        return harness.measure(FEATURE_COURSE_OVERLAP, ENGINE_BITMAP,
+                () -> indexes.coEnrollment().overlap(a, b), overlap -> List.of(toCourseOverlapInfo(courseA, courseB, overlap)));
+    }
+
+    private CourseOverlapInfo toCourseOverlapInfo(Long courseA, Long courseB, CoEnrollmentIndex.Overlap overlap) {
+        return new CourseOverlapInfo(directory.courseTitle(courseA), directory.courseTitle(courseB),
+                overlap.studentsA(), overlap.studentsB(), overlap.shared(), overlap.jaccard());
+    }
+
+    // --- 功能 8: 某教師教過的所有不重複學生 (教師 → 課程 → 學生) ---
+
+    /**
+     * @return 依學生 id 排序
+     */
+    public QueryResult<TeacherStudentInfo> findStudentsByTeacherId_DB(Long teacherId) {
+        return harness.measure(FEATURE_STUDENTS_BY_TEACHER, ENGINE_DB,
+                () -> enrollmentRepository.findStudentDetailsByTeacherIdNative(teacherId), results -> {
+                    List<TeacherStudentInfo> dtoList = new ArrayList<>(results.size());
+                    for (Object[] res : results) {
+                        dtoList.add(new TeacherStudentInfo((String) res[1], (String) res[2]));
+                    }
+                    return dtoList;
+                });
+    }
+
+    public QueryResult<TeacherStudentInfo> findStudentsByTeacherId_Csr(Long teacherId) {
+        int id = indexId(teacherId);
+        return harness.measure(FEATURE_STUDENTS_BY_TEACHER, ENGINE_CSR, () -> {
+            // 核心查詢邏輯: 沿鄰接表走到每門課，再掃描 CSR 課程端的學生區間，以 BitSet 去除重複 (同時依 id 排序)
+            BitSet seen = new BitSet(directory.maxStudentId() + 1);
+            CsrDeltaIndex csr = indexes.csrIndex();
+            teachingGraph.forEachCourse(id, courseId -> csr.forEachStudentOfCourse(courseId, (studentId, epochDay) -> seen.set(studentId)));
+            List<TeacherStudentInfo> resultList = new ArrayList<>(seen.cardinality());
+            for (int studentId = seen.nextSetBit(0); studentId >= 0; studentId = seen.nextSetBit(studentId + 1)) {
+                if (directory.hasStudent(studentId)) {
+                    resultList.add(new TeacherStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId)));
+                }
+            }
+            return resultList;
+        });
+    }
+
+    // --- 功能 9: 依所授課程的修課人次總和排名教師 ---
+
+    public QueryResult<TeacherEnrollmentInfo> findTopTeachers_DB(int k) {
+        return harness.measure(FEATURE_TOP_TEACHERS, ENGINE_DB,
+                () -> enrollmentRepository.findTopTeachersByEnrollmentNative(k), results -> {
+                    List<TeacherEnrollmentInfo> dtoList = new ArrayList<>(results.size());
+                    for (Object[] res : results) {
+                        dtoList.add(new TeacherEnrollmentInfo(teacherName(((Number) res[0]).longValue()), ((Number) res[1]).longValue()));
+                    }
+                    return dtoList;
+                });
+    }
+
+    public QueryResult<TeacherEnrollmentInfo> findTopTeachers_Csr(int k) {
+        return harness.measure(FEATURE_TOP_TEACHERS, ENGINE_CSR, () -> {
+            // 核心查詢邏輯: 每位教師的人次 = 所授課程的 CSR 區間長度總和，O(授課筆數)，不需走訪任何選課紀錄
+            TeachingGraph.TeacherRanking ranking = teachingGraph.topTeachers(k, indexes.csrIndex()::courseDegree);
+            List<TeacherEnrollmentInfo> resultList = new ArrayList<>(ranking.size());
+            for (int i = 0; i < ranking.size(); i++) {
+                resultList.add(new TeacherEnrollmentInfo(teacherName(ranking.teacherIds()[i]), ranking.enrollments()[i]));
+            }
+            return resultList;
+        });
+    }
+
+    private String teacherName(long teacherId) {
+        Teacher teacher = teacherMap.get(teacherId);
+        return teacher == null ? null : teacher.getName();
+    }
+
+    // --- 功能 10: 搜尋學生姓名 / email 與課程名稱 (前綴或子字串，不分大小寫) ---
+    // 資料庫端的前綴搜尋在 MariaDB 上使用 FULLTEXT 索引，子字串搜尋只能 LIKE 全表掃描 (見 SearchRepository)
+
+    /** 單次搜尋最多回傳的筆數 */
+    public static final int MAX_SEARCH_RESULTS = 1000;
+
+    /**
+     * @return 依學生 id 排序，最多 limit 筆
+     * @throws IllegalArgumentException 查詢字串空白或 limit 不在 1 ~ MAX_SEARCH_RESULTS
+     */
+    public QueryResult<StudentSearchInfo> searchStudents_DB(String query, SearchMode mode, int limit) {
+        String q = validateSearch(query, limit);
+        return harness.measure(mode.studentFeature(), ENGINE_DB, () -> mode == SearchMode.PREFIX
+                ? searchRepository.findStudentsByPrefix(q, limit)
+                : searchRepository.findStudentsBySubstring(q, limit));
+    }
+
+    public QueryResult<StudentSearchInfo> searchStudents_InMemory(String query, SearchMode mode, int limit) {
+        String q = validateSearch(query, limit);
+        return harness.measure(mode.studentFeature(), ENGINE_TEXT, () -> {
+            // 核心查詢邏輯: 前綴走詞首排序陣列的二分搜尋，子字串走 3-gram 倒排索引的交集，兩者都已依 id 排序
+            TextSearchIndex index = studentSearch;
+            int[] ids = mode == SearchMode.PREFIX ? index.prefix(q, limit) : index.contains(q, limit);
+            List<StudentSearchInfo> resultList = new ArrayList<>(ids.length);
+            for (int studentId : ids) {
+                resultList.add(new StudentSearchInfo(studentId, directory.studentName(studentId), directory.studentEmail(studentId)));
+            }
+            return resultList;
+        });
+    }
+
+    /**
+     * @return 依課程 id 排序，最多 limit 筆
+     * @throws IllegalArgumentException 查詢字串空白或 limit 不在 1 ~ MAX_SEARCH_RESULTS
+     */
+    public QueryResult<CourseSearchInfo> searchCourses_DB(String query, SearchMode mode, int limit) {
+        String q = validateSearch(query, limit);
+        return harness.measure(mode.courseFeature(), ENGINE_DB, () -> mode == SearchMode.PREFIX
+                ? searchRepository.findCoursesByPrefix(q, limit)
+                : searchRepository.findCoursesBySubstring(q, limit));
+    }
+
+    public QueryResult<CourseSearchInfo> searchCourses_InMemory(String query, SearchMode mode, int limit) {
+        String q = validateSearch(query, limit);
+        return harness.measure(mode.courseFeature(), ENGINE_TEXT, () -> {
+            TextSearchIndex index = courseSearch;
+            int[] ids = mode == SearchMode.PREFIX ? index.prefix(q, limit) : index.contains(q, limit);
+            List<CourseSearchInfo> resultList = new ArrayList<>(ids.length);
+            for (int courseId : ids) {
+                resultList.add(new CourseSearchInfo(courseId, directory.courseTitle(courseId), directory.courseCredit(courseId)));
+            }
+            return resultList;
+        });
+    }
+
+    /** 去掉前後空白後的查詢字串 */
+    private static String validateSearch(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("搜尋字串不可為空白");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("limit 必須介於 1 ~ " + MAX_SEARCH_RESULTS + ": " + limit);
+        }
+        return query.trim();
+    }
+
+    // --- 寫入路徑: 選課 / 退選 ---
+    // 先寫入資料庫，成功後失效查詢結果快取中受影響的結果，再套用到所有記憶體索引，讓記憶體快取與資料庫保持一致
+    // 寫入在目前版本的 EnrollmentIndexes.Batch 上進行，再以一次參照替換發佈新版本，讀取端不會被寫入阻塞；
+    // 寫入端之間以 indexWriteLock 序列化，避免兩個寫入各自從同一版本出發而遺失其中一個
+
+    /**
+     * 新增一筆選課紀錄
+     *
+     * @param enrollmentDate 修課日期，null 時使用今天
+     * @return 已寫入資料庫 (含自動產生 id) 的選課紀錄
+     * @throws IllegalArgumentException 學生或課程不存在
+     */
+    public Enrollment enroll(Long studentId, Long courseId, LocalDate enrollmentDate) {
+        if (studentId == null || !directory.hasStudent(studentId)) {
+            throw new IllegalArgumentException("學生不存在: " + studentId);
+        }
+        if (courseId == null || !directory.hasCourse(courseId)) {
+            throw new IllegalArgumentException("課程不存在: " + courseId);
+        }
+        Enrollment enrollment = new Enrollment();
+        enrollment.setStudentId(studentId);
+        enrollment.setCourseId(courseId);
+        enrollment.setEnrollmentDate(enrollmentDate != null ? enrollmentDate : LocalDate.now());
+        Enrollment saved = enrollmentRepository.save(enrollment);
+        resultCache.invalidateEnrollment(saved.getStudentId(), saved.getCourseId());
+
+        indexWriteLock.lock();
+        try {
+            EnrollmentIndexes.Batch batch = indexes.batch();
+            batch.add(saved);
+            indexes = batch.build();
+        } finally {
+            indexWriteLock.unlock();
+        }
+        return saved;
+    }
+
+    /**
+     * 刪除一筆選課紀錄 (退選)
+     *
+     * @return 紀錄存在並已刪除時為 true
+     */
+    public boolean unenroll(Long enrollmentId) {
+        Enrollment enrollment = enrollmentRepository.findById(enrollmentId).orElse(null);
+        if (enrollment == null || enrollmentRepository.deleteByIdReturningCount(enrollmentId) == 0) {
+            return false;
+        }
+        resultCache.invalidateEnrollment(enrollment.getStudentId(), enrollment.getCourseId());
+
+        indexWriteLock.lock();
+        try {
+            if (reconciling || enrollmentId > refreshWatermark) {
+                recentlyRemoved.put(enrollmentId, enrollment);
+            }
+            EnrollmentIndexes.Batch batch = indexes.batch();
+            batch.remove(enrollment);
+            indexes = batch.build();
+        } finally {
+            indexWriteLock.unlock();
+        }
+        return true;
+    }
+
+    // --- 背景刷新: 其他系統直接寫入 enrollment 表的紀錄 ---
+    // 增量刷新以自動遞增的 enrollment.id 為浮水印，只讀取新的紀錄，套用方式與 enroll 相同；
+    // 刪除與 id 不遞增的寫入 (例如交易較晚提交而拿到較小 id 的紀錄) 看不到，交由定期的全量校正處理
+
+    /** 已套用到記憶體索引的最大 enrollment.id */
+    public long getRefreshWatermark() {
+        return refreshWatermark;
+    }
+
+    /**
+     * 讀取 id 大於浮水印的選課紀錄並套用到目前的索引
+     * 學生或課程不在記憶體中的紀錄 (學生 / 課程資料只在啟動時載入) 略過，與 enroll 的檢查一致
+     *
+     * @return 實際套用的筆數
+     */
+    public int refreshNewEnrollments() {
+        refreshLock.lock();
+        try {
+            long from = refreshWatermark + 1;
+            long maxId = enrollmentStreamRepository.enrollmentIdRange()[1];
+            if (maxId < from) {
+                return 0;
+            }
+            List<Enrollment> rows = readEnrollments(from, maxId);
+            int applied;
+            indexWriteLock.lock();
+            try {
+                EnrollmentIndexes.Batch batch = indexes.batch();
+                applied = applyNewEnrollments(batch, rows);
+                indexes = batch.build();
+                refreshWatermark = maxId;
+                if (!reconciling) {
+                    recentlyRemoved.keySet().removeIf(id -> id <= maxId);
+                }
+            } finally {
+                indexWriteLock.unlock();
+            }
+            return applied;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 讀取 id 介於 [from, maxId] 的選課紀錄；學生或課程不在記憶體中的紀錄 (學生 / 課程資料只在啟動時載入) 略過，與 enroll 的檢查一致
+     */
+    private List<Enrollment> readEnrollments(long from, long maxId) {
+        List<Enrollment> rows = new ArrayList<>();
+        try (Stream<EnrollmentStreamRepository.EnrollmentRow> stream = enrollmentStreamRepository.streamEnrollments(from, maxId + 1)) {
+            stream.forEach(row -> {
+                if (directory.hasStudent(row.studentId()) && directory.hasCourse(row.courseId())) {
+                    Enrollment e = new Enrollment();
+                    e.setId(row.id());
+                    e.setStudentId(row.studentId());
+                    e.setCourseId(row.courseId());
+                    e.setEnrollmentDate(row.enrollmentDate());
+                    rows.add(e);
+                }
+            });
+        }
+        return rows;
+    }
+
+    /**
+     * 把讀出的紀錄加入 batch；讀出之後才被退選的紀錄不加入。呼叫端需持有 indexWriteLock
+     *
+     * @return 實際加入的筆數
+     */
+    private int applyNewEnrollments(EnrollmentIndexes.Batch batch, List<Enrollment> rows) {
+        int applied = 0;
+        for (Enrollment e : rows) {
+            if (!recentlyRemoved.containsKey(e.getId()) && batch.add(e)) {
+                resultCache.invalidateEnrollment(e.getStudentId(), e.getCourseId());
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 全量校正：在旁邊從資料表重建一份完整的索引，再以一次參照替換發佈，修正增量刷新看不到的刪除與較晚提交的紀錄
+     * 重建期間查詢與寫入照常使用目前的索引 (重建期間由 enroll 寫入的紀錄只套用到舊索引)。替換前仍持有鎖時，在新索引上：
+     * - 再套用一次重建期間的退選
+     * - 補上 id 大於重建範圍的紀錄
+     * 因此發佈的第一個版本就已包含替換當下資料表中的所有紀錄，不會短暫遺失重建期間的選課
+     *
+     * @return 重建時從資料表讀取的選課紀錄筆數
+     */
+    public long reconcileIndexes() {
+        EnrollmentIndexes rebuilt;
+        refreshLock.lock();
+        try {
+            // 先標記再讀取資料表：讀取開始後才刪除的紀錄，其退選必定在標記之後記錄
+            reconciling = true;
+            long[] idRange;
+            try {
+                idRange = enrollmentStreamRepository.enrollmentIdRange();
+                rebuilt = buildIndexes(idRange);
+            } catch (RuntimeException e) {
+                reconciling = false;
+                throw e;
+            }
+            indexWriteLock.lock();
+            try {
+                EnrollmentIndexes.Batch batch = rebuilt.batch();
+                for (Enrollment removed : recentlyRemoved.values()) {
+                    batch.remove(removed);
+                }
+                long maxId = Math.max(idRange[1], enrollmentStreamRepository.enrollmentIdRange()[1]);
+                if (maxId > idRange[1]) {
+                    applyNewEnrollments(batch, readEnrollments(idRange[1] + 1, maxId));
                 }
+                indexes = batch.build();
+                refreshWatermark = maxId;
+                reconciling = false;
+                // 之後的增量刷新只讀取 id 大於浮水印的紀錄，浮水印以內的退選紀錄不再需要
+                recentlyRemoved.keySet().removeIf(id -> id <= maxId);
+            } finally {
+                indexWriteLock.unlock();
             }
+            resultCache.invalidateAll();
+        } finally {
+            refreshLock.unlock();
         }
-        // 核心查詢邏輯結束
-        long endTime = System.nanoTime();
-        return new QueryResult<>(resultList, (endTime - startTime) / 1_000_000);
-    }
-
-    // --- 功能 3: 查詢最熱門的10門課程 ---
-
-    public QueryResult<PopularCourseInfo> findTop10PopularCourses_DB() {
-        // 暖機
-        for (int i = 0; i < 5; i++) {
-            enrollmentRepository.findTop10PopularCoursesNative();
-        }
-        long startTime = System.nanoTime();
-        List<Object[]> results = enrollmentRepository.findTop10PopularCoursesNative();
-        long endTime = System.nanoTime();
-        List<PopularCourseInfo> dtoList = results.stream()
-                .map(res -> {
-                    Long courseId = ((Number) res[0]).longValue();
-                    String title = courseMap.get(courseId).getTitle();
-                    long count = ((Number) res[1]).longValue();
-                    return new PopularCourseInfo(title, count);
-                })
-                .collect(Collectors.toList());
-        return new QueryResult<>(dtoList, (endTime - startTime) / 1_000_000);
-    }
-
-    public QueryResult<PopularCourseInfo> findTop10PopularCourses_InMemory() {
-        // 暖機
-        for (int i = 0; i < 5; i++) {
-            enrollmentsByCourse.entrySet().stream()
-                    .sorted((e1, e2) -> Integer.compare(e2.getValue().size(), e1.getValue().size()))
-                    .limit(10)
-                    .toList();
-        }
-
-        long startTime = System.nanoTime();
-        // 核心查詢邏輯: 遍歷 enrollmentsByCourse 這個 Map，找出 list size 最大的前10名
-        List<PopularCourseInfo> resultList = enrollmentsByCourse.entrySet().stream()
-                .sorted((e1, e2) -> Integer.compare(e2.getValue().size(), e1.getValue().size()))
-                .limit(10)
-                .map(entry -> {
-                    Course course = courseMap.get(entry.getKey());
-                    long count = entry.getValue().size();
-                    return new PopularCourseInfo(course.getTitle(), count);
-                })
-                .collect(Collectors.toList());
-        // 核心查詢邏輯結束
-        long endTime = System.nanoTime();
-        return new QueryResult<>(resultList, (endTime - startTime) / 1_000_000);
+        return rebuilt.csrIndex().base().size();
     }
 }
@@ -0,0 +1,125 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Enrollment;
+import com.matsuzaka.bigdata.index.SegmentedOverlay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * HashMap 索引 (學生或課程 id → 依日期排序的選課清單) 的不可變版本
+ *
+ * 載入時建好的 HashMap 作為基底，之後的選課 / 退選寫進 SegmentedOverlay 覆蓋層：
+ * 覆蓋層中的清單取代基底中同 key 的清單，空清單表示該 key 已沒有任何紀錄。
+ * 基底與每份清單發佈後都不再修改；寫入端以 edit() 累積異動，build() 產生新版本，舊版本仍可被查詢安全地讀取。
+ */
+final class PostingMap {
+
+    private final Map<Long, List<Enrollment>> base;
+    private final SegmentedOverlay<Long, List<Enrollment>> overlay;
+    private final int size;
+
+    /**
+     * @param base 載入完成的 key → 選課清單，交給 PostingMap 後不可再修改
+     */
+    PostingMap(Map<Long, List<Enrollment>> base) {
+        this(base, SegmentedOverlay.empty(), base.size());
+    }
+
+    private PostingMap(Map<Long, List<Enrollment>> base, SegmentedOverlay<Long, List<Enrollment>> overlay, int size) {
+        this.base = base;
+        this.overlay = overlay;
+        this.size = size;
+    }
+
+    /** 該 key 的選課清單 (依日期排序)；沒有紀錄時為空清單 */
+    List<Enrollment> get(Long key) {
+        List<Enrollment> postings = overlay.get(key);
+        if (postings != null) {
+            return postings;
+        }
+        return base.getOrDefault(key, Collections.emptyList());
+    }
+
+    /** 有選課紀錄的 key 數 */
+    int size() {
+        return size;
+    }
+
+    /** 走訪每個 key 目前的選課清單 (不含已清空的 key) */
+    void forEachPostings(Consumer<List<Enrollment>> action) {
+        base.forEach((key, postings) -> {
+            if (overlay.get(key) == null) {
+                action.accept(postings);
+            }
+        });
+        overlay.forEach((key, postings) -> {
+            if (!postings.isEmpty()) {
+                action.accept(postings);
+            }
+        });
+    }
+
+    Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 以目前版本為基礎累積寫入；非執行緒安全，目前版本不受影響
+     */
+    final class Editor {
+        private final SegmentedOverlay.Editor<Long, List<Enrollment>> postings = overlay.edit();
+        private int size = PostingMap.this.size;
+
+        private Editor() {
+        }
+
+        List<Enrollment> get(Long key) {
+            List<Enrollment> current = postings.get(key);
+            return current != null ? current : base.getOrDefault(key, Collections.emptyList());
+        }
+
+        /**
+         * 寫入時複製：依日期插入到新的清單，已發佈的清單不修改
+         */
+        void add(Long key, Enrollment enrollment) {
+            List<Enrollment> old = get(key);
+            List<Enrollment> copy = new ArrayList<>(old.size() + 1);
+            copy.addAll(old);
+            copy.add(DatePostings.insertionPoint(copy, enrollment), enrollment);
+            put(key, old, copy);
+        }
+
+        /**
+         * @return 清單中有這個 id 並已移除時為 true
+         */
+        boolean remove(Long key, Long enrollmentId) {
+            List<Enrollment> old = get(key);
+            List<Enrollment> copy = new ArrayList<>(old.size());
+            for (Enrollment e : old) {
+                if (!e.getId().equals(enrollmentId)) {
+                    copy.add(e);
+                }
+            }
+            if (copy.size() == old.size()) {
+                return false;
+            }
+            put(key, old, copy.isEmpty() ? Collections.emptyList() : copy);
+            return true;
+        }
+
+        private void put(Long key, List<Enrollment> old, List<Enrollment> updated) {
+            if (old.isEmpty() != updated.isEmpty()) {
+                size += updated.isEmpty() ? -1 : 1;
+            }
+            postings.put(key, updated);
+        }
+
+        PostingMap build() {
+            return new PostingMap(base, postings.build(), size);
+        }
+    }
+}
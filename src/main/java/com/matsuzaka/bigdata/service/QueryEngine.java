@@ -0,0 +1,43 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+
+import java.util.List;
+
+/**
+ * 功能 1 / 2 / 3 的查詢引擎 SPI
+ *
+ * 實作只需提供核心查詢邏輯，暖機、計時與記錄指標由 QueryEngineRegistry 透過 QueryHarness 統一處理。
+ * 標上 @Component 的實作會自動註冊 (依 @Order 排序)，Swing 介面與 REST API 都從 QueryEngineRegistry 取得可用的引擎清單，
+ * 新增查詢方式時不需要修改 PerformanceService 或 MainFrame。
+ * 實作必須是執行緒安全的：同一個引擎會同時被多個請求呼叫。
+ */
+public interface QueryEngine {
+
+    /** 識別碼：REST API 的 engine 參數，也是 QueryMetrics 的 engine 標籤 */
+    String id();
+
+    /** 介面上顯示的名稱 */
+    String displayName();
+
+    /** 資料尚未載入完成 (例如在背景建立) 時為 false，呼叫端應略過此引擎 */
+    default boolean isReady() {
+        return true;
+    }
+
+    /** 計時前是否暖機；結果快取類的引擎暖機後量到的永遠是命中，應回傳 false */
+    default boolean warmsUp() {
+        return true;
+    }
+
+    // 功能 1
+    List<StudentCourseInfo> findCoursesByStudentId(long studentId);
+
+    // 功能 2
+    List<CourseStudentInfo> findStudentsByCourseId(long courseId);
+
+    // 功能 3
+    List<PopularCourseInfo> findTopPopularCourses(int k);
+}
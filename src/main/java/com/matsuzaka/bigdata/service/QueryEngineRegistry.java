@@ -0,0 +1,193 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.QueryEngineInfo;
+import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_BITMAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CACHE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CSR;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_DB;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_HASH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_TEXT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_OVERLAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_PREFIX_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_SUBSTRING_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_CO_ENROLLED_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_MONTHLY_ENROLLMENTS;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BETWEEN;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_TEACHER;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENT_PREFIX_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENT_SUBSTRING_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_TEACHERS;
+
+/**
+ * 功能 1 / 2 / 3 所有查詢引擎的清單與執行入口
+ *
+ * 內建的 db / cache / hash / csr 固定排在最前面，其後是 Spring 容器中所有 QueryEngine bean (依 @Order 排序)。
+ * 所有引擎都經由與 PerformanceService 相同的 QueryHarness 暖機與計時，量測結果記錄在以引擎 id 為標籤的同一組指標。
+ * 內建引擎直接呼叫 PerformanceService 已計時的方法 (資料庫查詢分段計時)；外掛引擎無法區分取回與轉換，一律計入整個呼叫。
+ * 其他功能只有 PerformanceService 中的固定幾種實作，resolve 依功能檢查 engine 參數，REST API 與壓測共用同一份對照。
+ */
+@Component
+public class QueryEngineRegistry {
+
+    /** 所有已註冊引擎都能執行的功能 */
+    private static final Set<String> REGISTERED_FEATURES = Set.of(FEATURE_COURSES_BY_STUDENT, FEATURE_STUDENTS_BY_COURSE, FEATURE_TOP_COURSES);
+
+    /** 其餘功能 -> 有實作的引擎，第一個記憶體引擎同時是 memory 的對象 */
+    private static final Map<String, List<String>> FEATURE_ENGINES = Map.ofEntries(
+            Map.entry(FEATURE_STUDENTS_BY_COURSE_PAGE, List.of(ENGINE_DB, ENGINE_HASH)),
+            Map.entry(FEATURE_STUDENTS_BY_COURSE_STREAM, List.of(ENGINE_DB, ENGINE_HASH)),
+            Map.entry(FEATURE_STUDENTS_BY_COURSE_BETWEEN, List.of(ENGINE_DB, ENGINE_HASH)),
+            Map.entry(FEATURE_MONTHLY_ENROLLMENTS, List.of(ENGINE_DB, ENGINE_HASH)),
+            Map.entry(FEATURE_CO_ENROLLED_COURSES, List.of(ENGINE_DB, ENGINE_BITMAP)),
+            Map.entry(FEATURE_COURSE_OVERLAP, List.of(ENGINE_DB, ENGINE_BITMAP)),
+            Map.entry(FEATURE_STUDENTS_BY_TEACHER, List.of(ENGINE_DB, ENGINE_CSR)),
+            Map.entry(FEATURE_TOP_TEACHERS, List.of(ENGINE_DB, ENGINE_CSR)),
+            Map.entry(FEATURE_COURSES_BY_STUDENT_BATCH, List.of(ENGINE_DB, ENGINE_CSR)),
+            Map.entry(FEATURE_STUDENTS_BY_COURSE_BATCH, List.of(ENGINE_DB, ENGINE_CSR)),
+            Map.entry(FEATURE_STUDENT_PREFIX_SEARCH, List.of(ENGINE_DB, ENGINE_TEXT)),
+            Map.entry(FEATURE_STUDENT_SUBSTRING_SEARCH, List.of(ENGINE_DB, ENGINE_TEXT)),
+            Map.entry(FEATURE_COURSE_PREFIX_SEARCH, List.of(ENGINE_DB, ENGINE_TEXT)),
+            Map.entry(FEATURE_COURSE_SUBSTRING_SEARCH, List.of(ENGINE_DB, ENGINE_TEXT)));
+
+    /** 不是記憶體索引的引擎；memory 別名會略過它們 */
+    private static final Set<String> DATABASE_ENGINES = Set.of(ENGINE_DB, ENGINE_CACHE);
+
+    private final QueryHarness harness;
+    private final Map<String, QueryEngine> engines;
+
+    public QueryEngineRegistry(PerformanceService performanceService, ObjectProvider<QueryEngine> plugins) {
+        this.harness = performanceService.harness();
+        Map<String, QueryEngine> byId = new LinkedHashMap<>();
+        List<QueryEngine> all = new ArrayList<>(List.of(
+                new BuiltInQueryEngine(performanceService, ENGINE_DB, "資料庫 (原生 SQL)"),
+                new BuiltInQueryEngine(performanceService, ENGINE_CACHE, "資料庫 + 結果快取"),
+                new BuiltInQueryEngine(performanceService, ENGINE_HASH, "記憶體 (HashMap)"),
+                new BuiltInQueryEngine(performanceService, ENGINE_CSR, "記憶體 (CSR 原生陣列)")));
+        plugins.orderedStream().forEach(all::add);
+        for (QueryEngine engine : all) {
+            if (byId.putIfAbsent(engine.id(), engine) != null) {
+                throw new IllegalStateException("查詢引擎 id 重複: " + engine.id());
+            }
+        }
+        this.engines = Collections.unmodifiableMap(byId);
+    }
+
+    /** 依註冊順序排列的所有引擎 */
+    public List<QueryEngine> engines() {
+        return List.copyOf(engines.values());
+    }
+
+    public List<QueryEngineInfo> engineInfos() {
+        List<QueryEngineInfo> infos = new ArrayList<>(engines.size());
+        for (QueryEngine engine : engines.values()) {
+            infos.add(new QueryEngineInfo(engine.id(), engine.displayName(), engine.isReady()));
+        }
+        return infos;
+    }
+
+    public Optional<QueryEngine> find(String id) {
+        return Optional.ofNullable(engines.get(id));
+    }
+
+    /**
+     * 該功能可使用的引擎 id，依註冊順序；功能 1 / 2 / 3 為所有已註冊的引擎
+     *
+     * @throws IllegalArgumentException 未知的功能
+     */
+    public List<String> supportedEngines(String feature) {
+        if (REGISTERED_FEATURES.contains(feature)) {
+            return List.copyOf(engines.keySet());
+        }
+        List<String> supported = FEATURE_ENGINES.get(feature);
+        if (supported == null) {
+            throw new IllegalArgumentException("未知的功能: " + feature);
+        }
+        return supported;
+    }
+
+    /**
+     * 依功能解析 engine 參數 (不分大小寫)；memory 為該功能第一個記憶體引擎的別名
+     *
+     * @return 引擎 id，功能 1 / 2 / 3 可再以 find 取得對應的 QueryEngine
+     * @throws IllegalArgumentException 未知的引擎，或該功能沒有此引擎的實作
+     * @throws IllegalStateException 引擎尚未就緒 (例如仍在背景載入)
+     */
+    public String resolve(String feature, String engine) {
+        List<String> supported = supportedEngines(feature);
+        String normalized = engine.toLowerCase(Locale.ROOT);
+        String selected = normalized.equals("memory")
+                ? supported.stream().filter(id -> !DATABASE_ENGINES.contains(id)).findFirst().orElse(null)
+                : normalized;
+        if (selected == null || !supported.contains(selected)) {
+            throw new IllegalArgumentException("此功能不支援 engine=" + engine + " (可用 memory / " + String.join(" / ", supported) + ")");
+        }
+        QueryEngine registered = engines.get(selected);
+        if (registered != null && !registered.isReady()) {
+            throw new IllegalStateException(registered.displayName() + " 尚未就緒");
+        }
+        return selected;
+    }
+
+    /**
+     * @throws IllegalStateException 引擎尚未就緒
+     */
+    public QueryResult<StudentCourseInfo> findCoursesByStudentId(QueryEngine engine, long studentId) {
+        if (engine instanceof BuiltInQueryEngine builtIn) {
+            return builtIn.timedCoursesByStudentId(studentId);
+        }
+        return run(engine, FEATURE_COURSES_BY_STUDENT, () -> engine.findCoursesByStudentId(studentId));
+    }
+
+    /**
+     * @throws IllegalStateException 引擎尚未就緒
+     */
+    public QueryResult<CourseStudentInfo> findStudentsByCourseId(QueryEngine engine, long courseId) {
+        if (engine instanceof BuiltInQueryEngine builtIn) {
+            return builtIn.timedStudentsByCourseId(courseId);
+        }
+        return run(engine, FEATURE_STUDENTS_BY_COURSE, () -> engine.findStudentsByCourseId(courseId));
+    }
+
+    /**
+     * @throws IllegalStateException 引擎尚未就緒
+     */
+    public QueryResult<PopularCourseInfo> findTopPopularCourses(QueryEngine engine, int k) {
+        if (engine instanceof BuiltInQueryEngine builtIn) {
+            return builtIn.timedTopPopularCourses(k);
+        }
+        return run(engine, FEATURE_TOP_COURSES, () -> engine.findTopPopularCourses(k));
+    }
+
+    private <T> QueryResult<T> run(QueryEngine engine, String feature, Supplier<List<T>> query) {
+        if (!engine.isReady()) {
+            throw new IllegalStateException(engine.displayName() + " 尚未就緒");
+        }
+        return engine.warmsUp()
+                ? harness.measure(feature, engine.id(), query)
+                : harness.measureOnce(feature, engine.id(), query);
+    }
+}
@@ -0,0 +1,142 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.QueryResult;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 查詢的共用計時流程：暖機 → 計時執行一次 → 記錄耗時與配置量到 QueryMetrics
+ *
+ * 資料庫查詢分成兩段：取回 JDBC 結果 (fetch) 與把 Object[] 轉換成 DTO (map)。
+ * 預設的核心計時只量 fetch，與記憶體索引比較的是「取得資料」本身；
+ * 端到端計時 (bigdata.query.end-to-end-timing) 則連同轉換一起計時，呈現呼叫端實際等待的時間。
+ * 記憶體索引的查詢只有一段，轉換本來就在核心查詢邏輯中，兩種模式相同。
+ *
+ * 配置量取自 HotSpot 的執行緒配置計數 (com.sun.management.ThreadMXBean)，範圍與計時相同；
+ * 只計入呼叫端執行緒，平行查詢在 ForkJoin common pool 上的配置不計入。
+ * 暖機次數與計時模式每次查詢時才讀取，執行期間切換會立即生效。
+ */
+final class QueryHarness {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final QueryMetrics queryMetrics;
+    private final IntSupplier warmupIterations;
+    private final BooleanSupplier endToEnd;
+
+    /**
+     * 把查詢結果、耗時與配置量組成回傳值，例如 QueryResult::new、BatchQueryResult::new
+     */
+    @FunctionalInterface
+    interface Timed<V, Q> {
+        Q of(V data, long executionTimeNanos, long allocatedBytes);
+    }
+
+    QueryHarness(QueryMetrics queryMetrics, IntSupplier warmupIterations, BooleanSupplier endToEnd) {
+        this.queryMetrics = queryMetrics;
+        this.warmupIterations = warmupIterations;
+        this.endToEnd = endToEnd;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * 目前執行緒累計配置的位元組數；不支援時為 -1
+     */
+    static long currentThreadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 先暖機 bigdata.query.warmup-iterations 次再計時
+     */
+    <T> QueryResult<T> measure(String feature, String engine, Supplier<List<T>> query) {
+        return measure(feature, engine, query, Function.identity());
+    }
+
+    /**
+     * 兩段式查詢：核心計時只量 fetch，端到端計時連同 mapper 一起量
+     */
+    <R, T> QueryResult<T> measure(String feature, String engine, Supplier<R> fetch, Function<R, List<T>> mapper) {
+        return measure(feature, engine, fetch, mapper, QueryResult::new);
+    }
+
+    /**
+     * 結果不是 List 的兩段式查詢 (例如批次查詢依 id 分組的 Map)：暖機與計時方式與上面相同，由 result 組成回傳值
+     */
+    <R, V, Q> Q measure(String feature, String engine, Supplier<R> fetch, Function<R, V> mapper, Timed<V, Q> result) {
+        // 暖機
+        int iterations = warmupIterations.getAsInt();
+        for (int i = 0; i < iterations; i++) {
+            mapper.apply(fetch.get());
+        }
+        return measureOnce(feature, engine, fetch, mapper, result);
+    }
+
+    /**
+     * 不暖機直接計時；用於結果快取這類暖機會改變量測對象的查詢方式
+     */
+    <T> QueryResult<T> measureOnce(String feature, String engine, Supplier<List<T>> query) {
+        return measureOnce(feature, engine, query, Function.identity(), QueryResult::new);
+    }
+
+    private <R, V, Q> Q measureOnce(String feature, String engine, Supplier<R> fetch, Function<R, V> mapper, Timed<V, Q> result) {
+        boolean includeMapping = endToEnd.getAsBoolean();
+        long startBytes = currentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        R raw = fetch.get();
+        long fetchTime = System.nanoTime();
+        long fetchBytes = currentThreadAllocatedBytes();
+        V data = mapper.apply(raw);
+        long endTime = includeMapping ? System.nanoTime() : fetchTime;
+        long endBytes = includeMapping ? currentThreadAllocatedBytes() : fetchBytes;
+
+        long allocatedBytes = record(feature, engine, endTime - startTime, startBytes, endBytes);
+        return result.of(data, endTime - startTime, allocatedBytes);
+    }
+
+    /**
+     * 逐筆交給 sink 的查詢：暖機時走訪相同的資料但交給不做事的 sink，呼叫端 (例如 HTTP 回應) 不會收到重複的資料；
+     * 計時的那一次才交給 sink，因此耗時與配置量都包含 sink 的處理，兩種計時模式相同
+     *
+     * @param stream 把每一筆交給傳入的 sink，回傳筆數
+     * @return 交給 sink 的筆數
+     */
+    <T> long measureStream(String feature, String engine, ToLongFunction<Consumer<T>> stream, Consumer<T> sink) {
+        // 暖機
+        int iterations = warmupIterations.getAsInt();
+        for (int i = 0; i < iterations; i++) {
+            stream.applyAsLong(ignored -> { });
+        }
+        long startBytes = currentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        long count = stream.applyAsLong(sink);
+        long endTime = System.nanoTime();
+        record(feature, engine, endTime - startTime, startBytes, currentThreadAllocatedBytes());
+        return count;
+    }
+
+    /**
+     * @return 配置的位元組數；不支援時為 -1
+     */
+    private long record(String feature, String engine, long elapsedNanos, long startBytes, long endBytes) {
+        long allocatedBytes = startBytes < 0 ? -1 : endBytes - startBytes;
+        queryMetrics.record(feature, engine, elapsedNanos);
+        queryMetrics.recordAllocation(feature, engine, allocatedBytes);
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,184 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.AllocationSummary;
+import com.matsuzaka.bigdata.dto.LatencySummary;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 每個「功能 x 查詢引擎」一組的延遲直方圖
+ *
+ * 以 Micrometer Timer 記錄奈秒精度的耗時，客戶端計算 p50 / p99 / p999 並保留最大值與次數，
+ * 透過 /actuator/metrics/bigdata.query?tag=feature:...&tag=engine:... 查看。
+ * Timer 內部使用 HdrHistogram 的固定大小桶，記錄一次只是幾個原子操作，不會配置物件。
+ * 每個 Timer 另帶 index-profile 標籤 (目前 enrollment 的索引設定檔)，切換設定檔後改記錄到新的一組 Timer。
+ *
+ * 另外兩組指標：
+ * - bigdata.query.allocated：每次查詢在計時範圍內配置的位元組數 (DistributionSummary，標籤與 Timer 相同)
+ * - bigdata.index.memory：各記憶體索引的保留大小估計 (Gauge，標籤 index 與 area=heap / offheap)，讀取時才計算
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String METRIC_NAME = "bigdata.query";
+    public static final String ALLOCATION_METRIC_NAME = "bigdata.query.allocated";
+    public static final String INDEX_MEMORY_METRIC_NAME = "bigdata.index.memory";
+
+    // 功能
+    public static final String FEATURE_COURSES_BY_STUDENT = "courses-by-student";
+    public static final String FEATURE_STUDENTS_BY_COURSE = "students-by-course";
+    public static final String FEATURE_TOP_COURSES = "top-courses";
+    public static final String FEATURE_STUDENTS_BY_COURSE_BETWEEN = "students-by-course-between";
+    public static final String FEATURE_MONTHLY_ENROLLMENTS = "monthly-enrollments";
+    /** 功能 1 / 2 的批次版本 (一次查詢多個 id) */
+    public static final String FEATURE_COURSES_BY_STUDENT_BATCH = "courses-by-student-batch";
+    public static final String FEATURE_STUDENTS_BY_COURSE_BATCH = "students-by-course-batch";
+    /** 功能 2 的分頁與串流版本 */
+    public static final String FEATURE_STUDENTS_BY_COURSE_PAGE = "students-by-course-page";
+    public static final String FEATURE_STUDENTS_BY_COURSE_STREAM = "students-by-course-stream";
+    /** 共同修課分析：與某課程共同修課最多的課程、兩門課的 Jaccard 相似度 */
+    public static final String FEATURE_CO_ENROLLED_COURSES = "co-enrolled-courses";
+    public static final String FEATURE_COURSE_OVERLAP = "course-overlap";
+    /** 教師 → 課程 → 學生的多段查詢：某教師教過的不重複學生、依修課人次排名的教師 */
+    public static final String FEATURE_STUDENTS_BY_TEACHER = "students-by-teacher";
+    public static final String FEATURE_TOP_TEACHERS = "top-teachers";
+    /** 學生姓名 / email 與課程名稱的前綴、子字串搜尋 (見 SearchMode) */
+    public static final String FEATURE_STUDENT_PREFIX_SEARCH = "student-prefix-search";
+    public static final String FEATURE_STUDENT_SUBSTRING_SEARCH = "student-substring-search";
+    public static final String FEATURE_COURSE_PREFIX_SEARCH = "course-prefix-search";
+    public static final String FEATURE_COURSE_SUBSTRING_SEARCH = "course-substring-search";
+
+    // 查詢引擎
+    public static final String ENGINE_DB = "db";
+    /** 資料庫 + 查詢結果快取 */
+    public static final String ENGINE_CACHE = "cache";
+    public static final String ENGINE_HASH = "hash";
+    public static final String ENGINE_CSR = "csr";
+    /** 每門課一個壓縮點陣的修課學生集合 (CoEnrollmentIndex) */
+    public static final String ENGINE_BITMAP = "bitmap";
+    /** JPQL 與 Criteria API (經由 Hibernate)，見 JpqlQueryEngine */
+    public static final String ENGINE_JPQL = "jpql";
+    /** 資料複製到內嵌的 H2 記憶體資料庫，見 H2QueryEngine */
+    public static final String ENGINE_H2 = "h2";
+    /** 依學生 id 分散到多個工作行程的 CSR 索引，見 ShardedQueryEngine */
+    public static final String ENGINE_SHARDED = "sharded";
+    /** 詞首排序陣列與 3-gram 倒排索引，見 TextSearchIndex */
+    public static final String ENGINE_TEXT = "text";
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final MeterRegistry meterRegistry;
+    /** feature -> engine -> Timer；兩層 Map 讓每次記錄都不需要組合字串 key */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Timer>> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, DistributionSummary>> allocations = new ConcurrentHashMap<>();
+    /** 由 IndexProfileManager 設定；啟動時尚未偵測前為 unknown */
+    private volatile String indexProfile = "unknown";
+
+    public QueryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(String feature, String engine, long elapsedNanos) {
+        timer(feature, engine).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param allocatedBytes 為負數 (JVM 不支援執行緒配置計數) 時不記錄
+     */
+    public void recordAllocation(String feature, String engine, long allocatedBytes) {
+        if (allocatedBytes >= 0) {
+            allocation(feature, engine).record(allocatedBytes);
+        }
+    }
+
+    /**
+     * 註冊某個記憶體索引的大小 Gauge；同名索引重複註冊時沿用第一次的 Gauge
+     */
+    public void registerIndexMemory(String index, Supplier<Number> heapBytes, Supplier<Number> offHeapBytes) {
+        Gauge.builder(INDEX_MEMORY_METRIC_NAME, heapBytes).description("記憶體索引的保留大小估計")
+                .baseUnit("bytes").tag("index", index).tag("area", "heap").register(meterRegistry);
+        Gauge.builder(INDEX_MEMORY_METRIC_NAME, offHeapBytes).description("記憶體索引的保留大小估計")
+                .baseUnit("bytes").tag("index", index).tag("area", "offheap").register(meterRegistry);
+    }
+
+    /**
+     * 每次查詢配置位元組數的平均與最大值，以及累計次數
+     */
+    public AllocationSummary allocationSummary(String feature, String engine) {
+        ConcurrentHashMap<String, DistributionSummary> byEngine = allocations.get(feature);
+        DistributionSummary summary = byEngine == null ? null : byEngine.get(engine);
+        if (summary == null || summary.count() == 0) {
+            return AllocationSummary.EMPTY;
+        }
+        return new AllocationSummary(summary.count(), summary.mean(), summary.max());
+    }
+
+    /**
+     * 目前統計視窗內的百分位數與最大值，以及累計次數
+     */
+    public LatencySummary summary(String feature, String engine) {
+        ConcurrentHashMap<String, Timer> byEngine = timers.get(feature);
+        Timer timer = byEngine == null ? null : byEngine.get(engine);
+        if (timer == null) {
+            return LatencySummary.EMPTY;
+        }
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        double[] values = new double[PERCENTILES.length];
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (percentile.percentile() == PERCENTILES[i]) {
+                    values[i] = percentile.value(TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+        return new LatencySummary(snapshot.count(), values[0], values[1], values[2], snapshot.max(TimeUnit.NANOSECONDS));
+    }
+
+    public String indexProfile() {
+        return indexProfile;
+    }
+
+    /**
+     * 切換 index-profile 標籤；舊的 Timer 仍留在 MeterRegistry，summary 只看新設定檔的量測
+     */
+    public void setIndexProfile(String indexProfile) {
+        if (!indexProfile.equals(this.indexProfile)) {
+            this.indexProfile = indexProfile;
+            timers.clear();
+            allocations.clear();
+        }
+    }
+
+    private Timer timer(String feature, String engine) {
+        return timers.computeIfAbsent(feature, f -> new ConcurrentHashMap<>()).computeIfAbsent(engine, e -> Timer.builder(METRIC_NAME)
+                .description("PerformanceService 查詢耗時")
+                .tag("feature", feature)
+                .tag("engine", engine)
+                .tag("index-profile", indexProfile)
+                .publishPercentiles(PERCENTILES)
+                .percentilePrecision(2)
+                .distributionStatisticExpiry(Duration.ofMinutes(5))
+                .register(meterRegistry));
+    }
+
+    private DistributionSummary allocation(String feature, String engine) {
+        return allocations.computeIfAbsent(feature, f -> new ConcurrentHashMap<>()).computeIfAbsent(engine, e -> DistributionSummary.builder(ALLOCATION_METRIC_NAME)
+                .description("PerformanceService 每次查詢配置的位元組數")
+                .baseUnit("bytes")
+                .tag("feature", feature)
+                .tag("engine", engine)
+                .tag("index-profile", indexProfile)
+                .distributionStatisticExpiry(Duration.ofMinutes(5))
+                .register(meterRegistry));
+    }
+}
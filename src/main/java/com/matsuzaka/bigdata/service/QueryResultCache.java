@@ -0,0 +1,107 @@
+package com.matsuzaka.bigdata.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.ResultCacheStats;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_COURSES;
+
+/**
+ * 資料庫查詢結果的有界快取，介於「每次都查資料庫」與「全部預先載入記憶體」之間
+ *
+ * 以 Caffeine (W-TinyLFU 淘汰策略) 實作：總大小以估算的位元組數為上限，每筆結果寫入後經過 TTL 即失效。
+ * 未命中時在 Caffeine 的 compute 內查詢資料庫；寫入路徑在資料庫提交後呼叫 invalidate，
+ * 會等待同一個 key 正在進行的載入結束再移除，因此不會留下提交前讀到的舊結果。
+ * 命中率、淘汰次數與用量另外以 cache.* 指標 (cache=query-result) 發佈到 Actuator。
+ */
+@Component
+public class QueryResultCache {
+
+    /** 快取 key：功能 + 參數 (學生 id、課程 id 或 K) */
+    private record Key(String feature, long param) {}
+
+    private final Cache<Key, List<?>> cache;
+    private final long maxBytes;
+
+    public QueryResultCache(MeterRegistry meterRegistry,
+                            @Value("${bigdata.result-cache.max-mb:64}") long maxMegabytes,
+                            @Value("${bigdata.result-cache.ttl-seconds:60}") long ttlSeconds) {
+        if (maxMegabytes <= 0 || ttlSeconds <= 0) {
+            throw new IllegalArgumentException("bigdata.result-cache.max-mb 與 ttl-seconds 必須為正數");
+        }
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, List<?> rows) -> (int) Math.min(Integer.MAX_VALUE, estimateBytes(rows)))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "query-result");
+    }
+
+    /**
+     * 取得快取的結果，未命中時以 loader 查詢並放入快取；回傳的 List 不可修改 (多個呼叫端共用同一份)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(String feature, long param, Supplier<List<T>> loader) {
+        return (List<T>) cache.get(new Key(feature, param), key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * 選課 / 退選後失效受影響的結果：該學生的修課、該課程的學生，以及所有 Top K (排名可能改變)
+     */
+    public void invalidateEnrollment(long studentId, long courseId) {
+        cache.invalidate(new Key(FEATURE_COURSES_BY_STUDENT, studentId));
+        cache.invalidate(new Key(FEATURE_STUDENTS_BY_COURSE, courseId));
+        cache.asMap().keySet().removeIf(key -> key.feature().equals(FEATURE_TOP_COURSES));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public ResultCacheStats stats() {
+        CacheStats stats = cache.stats();
+        long usedBytes = cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L);
+        return new ResultCacheStats(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.estimatedSize(), usedBytes, maxBytes);
+    }
+
+    /**
+     * 估算一份結果佔用的 heap：List 本身 + 每筆 DTO (物件標頭與欄位) + 字串與 LocalDate
+     */
+    static long estimateBytes(List<?> rows) {
+        long bytes = 64 + 4L * rows.size();
+        for (Object row : rows) {
+            if (row instanceof StudentCourseInfo info) {
+                bytes += 24 + stringBytes(info.courseTitle()) + 24;
+            } else if (row instanceof CourseStudentInfo info) {
+                bytes += 24 + stringBytes(info.studentName()) + stringBytes(info.email()) + 24;
+            } else if (row instanceof PopularCourseInfo info) {
+                bytes += 24 + stringBytes(info.courseTitle());
+            } else {
+                bytes += 64;
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String s) {
+        // String 物件 + byte[] 標頭約 40 bytes；非 Latin-1 字元每字 2 bytes，這裡一律以 2 bytes 估算
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+}
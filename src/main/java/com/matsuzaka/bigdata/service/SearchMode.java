@@ -0,0 +1,56 @@
+package com.matsuzaka.bigdata.service;
+
+import java.util.Locale;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_PREFIX_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_SUBSTRING_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENT_PREFIX_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENT_SUBSTRING_SEARCH;
+
+/**
+ * 功能 10 的比對方式
+ *
+ * - prefix：姓名、email 或課程名稱中某個詞以查詢字串開頭 (例如 "chen" 命中 "Wei Chen"、"stu" 命中 "student1@example.com")
+ * - substring：欄位中任何位置含有查詢字串 (例如 "ent1" 命中 "student1@example.com")
+ * 兩者都不分大小寫。
+ */
+public enum SearchMode {
+
+    PREFIX(FEATURE_STUDENT_PREFIX_SEARCH, FEATURE_COURSE_PREFIX_SEARCH),
+    SUBSTRING(FEATURE_STUDENT_SUBSTRING_SEARCH, FEATURE_COURSE_SUBSTRING_SEARCH);
+
+    private final String studentFeature;
+    private final String courseFeature;
+
+    SearchMode(String studentFeature, String courseFeature) {
+        this.studentFeature = studentFeature;
+        this.courseFeature = courseFeature;
+    }
+
+    /** 搜尋學生時計時使用的功能名稱 */
+    public String studentFeature() {
+        return studentFeature;
+    }
+
+    /** 搜尋課程時計時使用的功能名稱 */
+    public String courseFeature() {
+        return courseFeature;
+    }
+
+    /** API 參數使用的名稱 (小寫) */
+    public String id() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @throws IllegalArgumentException 未知的比對方式
+     */
+    public static SearchMode of(String id) {
+        for (SearchMode mode : values()) {
+            if (mode.id().equalsIgnoreCase(id.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("未知的搜尋方式: " + id + " (可用 prefix / substring)");
+    }
+}
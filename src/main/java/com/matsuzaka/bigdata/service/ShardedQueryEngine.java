@@ -0,0 +1,170 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.index.CoursePopularityIndex;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository.EnrollmentRow;
+import com.matsuzaka.bigdata.shard.ShardCluster;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_SHARDED;
+
+/**
+ * 分片查詢引擎：選課紀錄依學生 id 分散到同一台主機上的多個工作行程 (見 ShardCluster)，以本機 socket 查詢
+ *
+ * 選課紀錄超過單一 JVM heap 能舒適容納的量 (例如上億筆) 時，每個工作行程只需保存約 1/N，
+ * 代價是每次查詢多了行程間的往返：功能 1 只詢問一個分片，功能 2 / 3 需詢問所有分片再合併。
+ * 分片只保存 id 與日期，課程名稱、學生姓名等欄位在這裡以 PerformanceService 的 EntityDirectory 補上。
+ * 工作行程的啟動與資料載入在背景執行緒進行，完成前 isReady() 為 false。這是啟動當下的快照，之後的選課 / 退選不會同步到分片。
+ * 預設關閉 (bigdata.engine.sharded.enabled)。
+ */
+@Component
+@Order(300)
+@ConditionalOnProperty(name = "bigdata.engine.sharded.enabled", havingValue = "true")
+public class ShardedQueryEngine implements QueryEngine {
+
+    private final PerformanceService performanceService;
+    private final EnrollmentStreamRepository source;
+    private final int shards;
+    private final String workerHeap;
+    private volatile ShardCluster cluster;
+
+    public ShardedQueryEngine(PerformanceService performanceService, EnrollmentStreamRepository source,
+                              @Value("${bigdata.engine.sharded.shards:4}") int shards,
+                              @Value("${bigdata.engine.sharded.worker-heap:1g}") String workerHeap) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("bigdata.engine.sharded.shards 必須至少為 1");
+        }
+        this.performanceService = performanceService;
+        this.source = source;
+        this.shards = shards;
+        this.workerHeap = workerHeap;
+    }
+
+    @PostConstruct
+    public void startLoading() {
+        Thread loader = new Thread(() -> {
+            try {
+                load();
+            } catch (RuntimeException e) {
+                System.err.println("分片查詢引擎載入失敗: " + e);
+            }
+        }, "sharded-engine-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        ShardCluster current = cluster;
+        cluster = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * 啟動工作行程，以一次串流讀取 enrollment 表並依學生 id 分送到各分片，最後各分片平行建立索引
+     * 在呼叫端執行緒上同步執行 (Benchmark 直接呼叫)；重新載入時完成後才替換並結束舊的工作行程
+     */
+    public void load() {
+        long startTime = System.currentTimeMillis();
+        ShardCluster started = ShardCluster.start(shards, List.of("-Xmx" + workerHeap));
+        long enrollments;
+        try {
+            long[] range = source.enrollmentIdRange();
+            try (Stream<EnrollmentRow> rows = source.streamEnrollments(range[0], range[1] + 1)) {
+                rows.forEach(e -> started.add(Math.toIntExact(e.id()), Math.toIntExact(e.studentId()),
+                        Math.toIntExact(e.courseId()), Math.toIntExact(e.enrollmentDate().toEpochDay())));
+            }
+            enrollments = started.finishLoading(performanceService.maxStudentId(), performanceService.maxCourseId());
+        } catch (RuntimeException e) {
+            started.close();
+            throw e;
+        }
+        ShardCluster previous = cluster;
+        cluster = started;
+        if (previous != null) {
+            previous.close();
+        }
+        System.out.printf("分片查詢引擎載入完成: %d 個分片 (PID %s)、%,d 筆選課紀錄，耗時: %d ms%n",
+                shards, Arrays.toString(started.pids()), enrollments, System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public String id() {
+        return ENGINE_SHARDED;
+    }
+
+    @Override
+    public String displayName() {
+        return "分片記憶體索引 (" + shards + " 個行程)";
+    }
+
+    @Override
+    public boolean isReady() {
+        return cluster != null;
+    }
+
+    private ShardCluster requireCluster() {
+        ShardCluster current = cluster;
+        if (current == null) {
+            throw new IllegalStateException("分片查詢引擎尚未載入完成");
+        }
+        return current;
+    }
+
+    @Override
+    public List<StudentCourseInfo> findCoursesByStudentId(long studentId) {
+        ShardCluster.Postings postings = requireCluster().coursesOfStudent(PerformanceService.indexId(studentId));
+        EntityDirectory directory = performanceService.directory();
+        List<StudentCourseInfo> resultList = new ArrayList<>(postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            int courseId = postings.ids()[i];
+            if (directory.hasCourse(courseId)) {
+                resultList.add(new StudentCourseInfo(directory.courseTitle(courseId), directory.courseCredit(courseId),
+                        LocalDate.ofEpochDay(postings.values()[i])));
+            }
+        }
+        return resultList;
+    }
+
+    @Override
+    public List<CourseStudentInfo> findStudentsByCourseId(long courseId) {
+        ShardCluster.Postings postings = requireCluster().studentsOfCourse(PerformanceService.indexId(courseId));
+        EntityDirectory directory = performanceService.directory();
+        List<CourseStudentInfo> resultList = new ArrayList<>(postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            int studentId = postings.ids()[i];
+            if (directory.hasStudent(studentId)) {
+                resultList.add(new CourseStudentInfo(directory.studentName(studentId), directory.studentEmail(studentId),
+                        LocalDate.ofEpochDay(postings.values()[i])));
+            }
+        }
+        return resultList;
+    }
+
+    @Override
+    public List<PopularCourseInfo> findTopPopularCourses(int k) {
+        CoursePopularityIndex.Ranking ranking = requireCluster().topCourses(k);
+        EntityDirectory directory = performanceService.directory();
+        List<PopularCourseInfo> resultList = new ArrayList<>(ranking.size());
+        for (int i = 0; i < ranking.size(); i++) {
+            resultList.add(new PopularCourseInfo(directory.courseTitle(ranking.courseIds()[i]), ranking.counts()[i]));
+        }
+        return resultList;
+    }
+}
@@ -0,0 +1,165 @@
+package com.matsuzaka.bigdata.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 協調者端對單一分片工作行程的代理：負責啟動 / 結束行程，並以連線池送出 ShardProtocol 請求
+ *
+ * 每條連線同一時間只服務一個請求；池中沒有閒置連線時直接再開一條，用完放回池中，
+ * 因此同時進行的查詢數就是連線數的上限，不需另外設定。連線發生 I/O 錯誤時直接丟棄，不放回池中。
+ */
+final class ShardClient implements AutoCloseable {
+
+    /** Spring Boot 可執行 jar 的啟動器：工作行程的類別在 jar 內的 BOOT-INF/classes，不在一般的 classpath 上 */
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+
+    @FunctionalInterface
+    interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Response<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private record Connection(Socket socket, DataInputStream in, DataOutputStream out) {
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 關閉失敗不影響後續
+            }
+        }
+    }
+
+    private final int shardIndex;
+    private final Process process;
+    private final int port;
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> opened = new ConcurrentLinkedQueue<>();
+
+    private ShardClient(int shardIndex, Process process, int port) {
+        this.shardIndex = shardIndex;
+        this.process = process;
+        this.port = port;
+    }
+
+    /**
+     * 以目前 JVM 的 java 執行檔與 classpath 啟動一個工作行程，等到它印出監聽的連接埠為止
+     *
+     * @param jvmOptions 工作行程的 JVM 參數 (例如 -Xmx)
+     */
+    static ShardClient launch(int shardIndex, int shardCount, List<String> jvmOptions) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        String workerClass = ShardWorker.class.getName();
+        if (ClassLoader.getSystemClassLoader().getResource(workerClass.replace('.', '/') + ".class") == null) {
+            // 以 java -jar 啟動的可執行 jar：交給 Spring Boot 的啟動器載入 jar 內的類別
+            command.add("-Dloader.main=" + workerClass);
+            command.add(BOOT_LAUNCHER);
+        } else {
+            command.add(workerClass);
+        }
+        command.add(String.valueOf(shardIndex));
+        command.add(String.valueOf(shardCount));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = stdout.readLine()) != null && !line.startsWith(ShardProtocol.READY_PREFIX)) {
+            // 略過就緒訊息之前的輸出 (例如 JVM 的警告)
+        }
+        if (line == null) {
+            process.destroyForcibly();
+            throw new IOException("分片 " + shardIndex + " 的工作行程未能啟動: " + String.join(" ", command));
+        }
+        return new ShardClient(shardIndex, process, Integer.parseInt(line.substring(ShardProtocol.READY_PREFIX.length()).trim()));
+    }
+
+    int shardIndex() {
+        return shardIndex;
+    }
+
+    long pid() {
+        return process.pid();
+    }
+
+    /**
+     * 送出一個請求並讀取回應；工作行程回報錯誤時丟出 IllegalStateException，連線仍可重用
+     *
+     * @throws UncheckedIOException 連線或行程發生 I/O 錯誤
+     */
+    <T> T call(byte command, Request request, Response<T> response) {
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = open();
+            }
+            DataOutputStream out = connection.out();
+            out.writeByte(command);
+            request.write(out);
+            out.flush();
+            DataInputStream in = connection.in();
+            byte status = in.readByte();
+            if (status != ShardProtocol.STATUS_OK) {
+                String message = in.readUTF();
+                idle.offer(connection);
+                throw new IllegalStateException("分片 " + shardIndex + ": " + message);
+            }
+            T result = response.read(in);
+            idle.offer(connection);
+            return result;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            throw new UncheckedIOException("分片 " + shardIndex + " 通訊失敗", e);
+        }
+    }
+
+    private Connection open() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        Connection connection = new Connection(socket, new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+        opened.add(connection);
+        return connection;
+    }
+
+    /**
+     * 關閉所有連線並結束工作行程 (先正常結束，逾時才強制終止)
+     */
+    @Override
+    public void close() {
+        opened.forEach(Connection::close);
+        process.destroy();
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
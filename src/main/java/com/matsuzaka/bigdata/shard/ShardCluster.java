@@ -0,0 +1,374 @@
+package com.matsuzaka.bigdata.shard;
+
+import com.matsuzaka.bigdata.index.CoursePopularityIndex;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * 同一台主機上 N 個分片工作行程 (ShardWorker) 的協調者
+ *
+ * 選課紀錄依 studentId % N 分配到各分片，每個分片是一個獨立的 JVM，各自在 heap 中保存自己那一份 CSR 索引，
+ * 單一行程的 heap 只需容納約 1/N 的選課紀錄。查詢的路由方式：
+ * - 功能 1 (學生的課程)：該學生的紀錄全部在同一個分片，只詢問一個分片
+ * - 功能 2 (課程的學生)：修課學生分散在所有分片，平行詢問後依分片順序串接
+ * - 功能 3 (熱門課程)：每門課的人數分散在所有分片，以三輪的門檻演算法 (TPUT) 合併各分片的部分前 K 名，見 topCourses
+ * 平行詢問時，呼叫端執行緒自己負責第 0 個分片，其餘分片交給 scatter 執行緒池。
+ *
+ * 這是載入當下的快照：載入完成後分片不再接受寫入。
+ */
+public final class ShardCluster implements AutoCloseable {
+
+    /** 每個分片累積多少筆紀錄才送出一次 LOAD_BATCH */
+    private static final int LOAD_BATCH_SIZE = 8_192;
+
+    /**
+     * 分片回傳的成對結果：ids[i] 對應 values[i] (修課日期的 epoch day 或人數)
+     */
+    public record Postings(int[] ids, int[] values) {
+        static final Postings EMPTY = new Postings(new int[0], new int[0]);
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    private final List<ShardClient> clients;
+    private final ExecutorService scatterPool;
+
+    // --- 載入階段 (非執行緒安全) ---
+    private final int[][] loadBuffers;
+    private final int[] loadCounts;
+    private int maxCourseId;
+    private boolean loaded;
+
+    private ShardCluster(List<ShardClient> clients) {
+        this.clients = clients;
+        this.scatterPool = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loadBuffers = new int[clients.size()][LOAD_BATCH_SIZE * 4];
+        this.loadCounts = new int[clients.size()];
+    }
+
+    /**
+     * 平行啟動 shardCount 個工作行程，全部就緒後才回傳；任何一個啟動失敗時結束已啟動的行程
+     *
+     * @param workerJvmOptions 每個工作行程的 JVM 參數 (例如 -Xmx)
+     * @throws IllegalArgumentException shardCount 小於 1
+     */
+    public static ShardCluster start(int shardCount, List<String> workerJvmOptions) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("分片數必須至少為 1: " + shardCount);
+        }
+        List<Future<ShardClient>> launches = new ArrayList<>(shardCount);
+        ExecutorService launcher = Executors.newFixedThreadPool(shardCount);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                int shardIndex = i;
+                launches.add(launcher.submit(() -> ShardClient.launch(shardIndex, shardCount, workerJvmOptions)));
+            }
+            List<ShardClient> clients = new ArrayList<>(shardCount);
+            Throwable failure = null;
+            for (Future<ShardClient> launch : launches) {
+                try {
+                    clients.add(launch.get());
+                } catch (ExecutionException e) {
+                    failure = failure == null ? e.getCause() : failure;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                clients.forEach(ShardClient::close);
+                throw new IllegalStateException("分片工作行程啟動失敗", failure);
+            }
+            return new ShardCluster(clients);
+        } finally {
+            launcher.shutdown();
+        }
+    }
+
+    public int shardCount() {
+        return clients.size();
+    }
+
+    /** 各工作行程的 PID，依分片順序 */
+    public long[] pids() {
+        return clients.stream().mapToLong(ShardClient::pid).toArray();
+    }
+
+    /** 該學生的紀錄所在的分片 */
+    public int shardOf(long studentId) {
+        return (int) Math.floorMod(studentId, (long) clients.size());
+    }
+
+    // --- 載入 ---
+
+    /**
+     * 把一筆選課紀錄放進所屬分片的緩衝區，滿了就送出；只能在 finishLoading 之前、由單一執行緒呼叫
+     */
+    public void add(int enrollmentId, int studentId, int courseId, int epochDay) {
+        if (loaded) {
+            throw new IllegalStateException("分片已完成載入");
+        }
+        int shard = shardOf(studentId);
+        int[] buffer = loadBuffers[shard];
+        int offset = loadCounts[shard] * 4;
+        buffer[offset] = enrollmentId;
+        buffer[offset + 1] = studentId;
+        buffer[offset + 2] = courseId;
+        buffer[offset + 3] = epochDay;
+        maxCourseId = Math.max(maxCourseId, courseId);
+        if (++loadCounts[shard] == LOAD_BATCH_SIZE) {
+            flush(shard);
+        }
+    }
+
+    private void flush(int shard) {
+        int n = loadCounts[shard];
+        if (n == 0) {
+            return;
+        }
+        int[] buffer = loadBuffers[shard];
+        clients.get(shard).call(ShardProtocol.LOAD_BATCH, out -> {
+            out.writeInt(n);
+            for (int i = 0; i < n * 4; i++) {
+                out.writeInt(buffer[i]);
+            }
+        }, DataInputStream::readInt);
+        loadCounts[shard] = 0;
+    }
+
+    /**
+     * 送出剩餘的緩衝區，各分片平行建立 CSR 索引
+     *
+     * @param minMaxStudentId offsets 陣列至少涵蓋到的學生 id
+     * @param minMaxCourseId  offsets 陣列至少涵蓋到的課程 id
+     * @return 所有分片的紀錄總數
+     */
+    public long finishLoading(int minMaxStudentId, int minMaxCourseId) {
+        for (int shard = 0; shard < clients.size(); shard++) {
+            flush(shard);
+        }
+        loaded = true;
+        maxCourseId = Math.max(maxCourseId, minMaxCourseId);
+        long total = 0;
+        for (int size : scatter(client -> client.call(ShardProtocol.BUILD, out -> {
+            out.writeInt(minMaxStudentId);
+            out.writeInt(minMaxCourseId);
+        }, DataInputStream::readInt))) {
+            total += size;
+        }
+        return total;
+    }
+
+    // --- 查詢 ---
+
+    /** 功能 1：(courseId, epochDay)，只詢問該學生所在的分片 */
+    public Postings coursesOfStudent(int studentId) {
+        return clients.get(shardOf(studentId))
+                .call(ShardProtocol.COURSES_OF_STUDENT, out -> out.writeInt(studentId), ShardCluster::readPostings);
+    }
+
+    /** 功能 2：(studentId, epochDay)，所有分片的結果依分片順序串接 */
+    public Postings studentsOfCourse(int courseId) {
+        List<Postings> parts = scatter(client ->
+                client.call(ShardProtocol.STUDENTS_OF_COURSE, out -> out.writeInt(courseId), ShardCluster::readPostings));
+        int total = 0;
+        for (Postings part : parts) {
+            total += part.size();
+        }
+        int[] ids = new int[total];
+        int[] values = new int[total];
+        int offset = 0;
+        for (Postings part : parts) {
+            System.arraycopy(part.ids(), 0, ids, offset, part.size());
+            System.arraycopy(part.values(), 0, values, offset, part.size());
+            offset += part.size();
+        }
+        return new Postings(ids, values);
+    }
+
+    /**
+     * 功能 3：修課人數前 k 名的課程，結果與單機的 CSR 索引完全相同 (同人數時 id 較小者優先)
+     *
+     * 只合併各分片的前 k 名並不精確 (一門課可能在每個分片都排在 k 名之外，加總後卻進入前 k 名)，
+     * 因此採用 TPUT (Three-Phase Uniform Threshold)，每一輪都只傳送少量的課程：
+     * 1. 各分片回傳自己的前 k 名，協調者加總得到部分人數；第 k 大的部分人數 τ 是最終第 k 名人數的下界
+     * 2. 總人數 >= τ 的課程至少在一個分片上 >= τ / N，各分片回傳人數 >= ⌈τ / N⌉ 的所有課程作為候選
+     * 3. 向所有分片取得候選課程的確切人數，加總後取前 k 名；不在候選中的課程總人數必定 < τ，不可能進入前 k 名
+     * 第一輪若不足 k 門課，表示每個分片都已回傳所有有人修的課程，部分人數即為確切人數，直接回傳。
+     */
+    public CoursePopularityIndex.Ranking topCourses(int k) {
+        return topCourses(k, maxCourseId, new TopCoursesRounds() {
+            @Override
+            public int shardCount() {
+                return clients.size();
+            }
+
+            @Override
+            public List<Postings> localTop(int k) {
+                return scatter(client -> client.call(ShardProtocol.TOP_COURSES, out -> out.writeInt(k), ShardCluster::readPostings));
+            }
+
+            @Override
+            public List<Postings> atLeast(int threshold) {
+                return scatter(client -> client.call(ShardProtocol.COURSES_AT_LEAST, out -> out.writeInt(threshold), ShardCluster::readPostings));
+            }
+
+            @Override
+            public List<int[]> counts(int[] courseIds) {
+                return scatter(client -> client.call(ShardProtocol.COURSE_COUNTS, out -> {
+                    out.writeInt(courseIds.length);
+                    for (int courseId : courseIds) {
+                        out.writeInt(courseId);
+                    }
+                }, ShardCluster::readInts));
+            }
+        });
+    }
+
+    /**
+     * TPUT 三輪各自對所有分片送出的請求，結果依分片順序排列；與傳輸方式分開，合併邏輯不需啟動工作行程即可測試
+     */
+    interface TopCoursesRounds {
+        int shardCount();
+
+        /** 第一輪：各分片修課人數前 k 名的 (courseId, 人數) */
+        List<Postings> localTop(int k);
+
+        /** 第二輪：各分片人數 >= threshold 的所有 (courseId, 人數) */
+        List<Postings> atLeast(int threshold);
+
+        /** 第三輪：各分片上這些課程的人數，與 courseIds 順序相同 */
+        List<int[]> counts(int[] courseIds);
+    }
+
+    /**
+     * TPUT 合併 (見 topCourses(int))；課程 id 不超過 maxCourseId
+     */
+    static CoursePopularityIndex.Ranking topCourses(int k, int maxCourseId, TopCoursesRounds rounds) {
+        if (k <= 0) {
+            return new CoursePopularityIndex.Ranking(new int[0], new int[0]);
+        }
+        int shardCount = rounds.shardCount();
+        int[] partial = new int[maxCourseId + 1];
+        for (Postings local : rounds.localTop(k)) {
+            for (int i = 0; i < local.size(); i++) {
+                partial[local.ids()[i]] += local.values()[i];
+            }
+        }
+        int[] seen = CsrEnrollmentIndex.topByDegree(maxCourseId, id -> partial[id], k);
+        if (seen.length < k || shardCount == 1) {
+            return ranking(seen, partial);
+        }
+
+        int tau = partial[seen[k - 1]];
+        int threshold = Math.max(1, (tau + shardCount - 1) / shardCount);
+        boolean[] isCandidate = new boolean[maxCourseId + 1];
+        int candidateCount = 0;
+        for (Postings above : rounds.atLeast(threshold)) {
+            for (int courseId : above.ids()) {
+                if (!isCandidate[courseId]) {
+                    isCandidate[courseId] = true;
+                    candidateCount++;
+                }
+            }
+        }
+        int[] candidates = new int[candidateCount];
+        for (int courseId = 0, i = 0; courseId <= maxCourseId; courseId++) {
+            if (isCandidate[courseId]) {
+                candidates[i++] = courseId;
+            }
+        }
+
+        int[] totals = new int[maxCourseId + 1];
+        for (int[] counts : rounds.counts(candidates)) {
+            for (int i = 0; i < candidates.length; i++) {
+                totals[candidates[i]] += counts[i];
+            }
+        }
+        return ranking(CsrEnrollmentIndex.topByDegree(maxCourseId, id -> totals[id], k), totals);
+    }
+
+    private static CoursePopularityIndex.Ranking ranking(int[] courseIds, int[] totals) {
+        int[] counts = new int[courseIds.length];
+        for (int i = 0; i < courseIds.length; i++) {
+            counts[i] = totals[courseIds[i]];
+        }
+        return new CoursePopularityIndex.Ranking(courseIds, counts);
+    }
+
+    /**
+     * 對所有分片送出同一個請求：第 0 個分片在呼叫端執行緒上執行，其餘交給執行緒池，結果依分片順序排列
+     */
+    private <T> List<T> scatter(Function<ShardClient, T> request) {
+        if (clients.size() == 1) {
+            return List.of(request.apply(clients.get(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(clients.size() - 1);
+        for (int shard = 1; shard < clients.size(); shard++) {
+            ShardClient client = clients.get(shard);
+            futures.add(scatterPool.submit(() -> request.apply(client)));
+        }
+        List<T> results = new ArrayList<>(clients.size());
+        results.add(request.apply(clients.get(0)));
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分片查詢被中斷", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("分片查詢失敗", e.getCause());
+        }
+        return results;
+    }
+
+    private static Postings readPostings(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n == 0) {
+            return Postings.EMPTY;
+        }
+        int[] ids = new int[n];
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = in.readInt();
+            values[i] = in.readInt();
+        }
+        return new Postings(ids, values);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * 結束所有工作行程
+     */
+    @Override
+    public void close() {
+        scatterPool.shutdownNow();
+        clients.forEach(ShardClient::close);
+    }
+}
@@ -0,0 +1,45 @@
+package com.matsuzaka.bigdata.shard;
+
+/**
+ * 協調者 (ShardCluster) 與分片工作行程 (ShardWorker) 之間的二進位協定
+ *
+ * 走本機 loopback TCP，以 DataOutputStream / DataInputStream 讀寫 (big-endian)。
+ * 每個請求為「1 byte 指令 + 參數」，回應開頭一律是 1 byte 狀態：
+ * - STATUS_OK 後接該指令的回應內容
+ * - STATUS_ERROR 後接一個 UTF 字串的錯誤訊息
+ * 同一條連線上請求與回應嚴格一問一答，協調者端以連線池讓多個查詢同時進行。
+ *
+ * 成對的結果 (id, 值) 一律編碼為「int 筆數 n + n 組 (int id, int 值)」，不傳送任何字串：
+ * 課程名稱、學生姓名等欄位只存在協調者的 EntityDirectory，分片只保存選課關係本身。
+ */
+final class ShardProtocol {
+
+    /** 工作行程啟動後在 stdout 印出的第一行：「READY 連接埠」 */
+    static final String READY_PREFIX = "READY ";
+
+    // --- 載入 ---
+
+    /** int n + n 組 (enrollmentId, studentId, courseId, epochDay)；回應 int 目前累積的筆數 */
+    static final byte LOAD_BATCH = 1;
+    /** int minMaxStudentId, int minMaxCourseId；把累積的紀錄建成 CSR 索引，回應 int 筆數 */
+    static final byte BUILD = 2;
+
+    // --- 查詢 ---
+
+    /** int studentId；回應 (courseId, epochDay) 成對結果 (功能 1) */
+    static final byte COURSES_OF_STUDENT = 10;
+    /** int courseId；回應 (studentId, epochDay) 成對結果 (功能 2) */
+    static final byte STUDENTS_OF_COURSE = 11;
+    /** int k；回應本分片修課人數前 k 名的 (courseId, 人數) (功能 3 第一輪) */
+    static final byte TOP_COURSES = 12;
+    /** int threshold；回應本分片人數 >= threshold 的所有 (courseId, 人數) (功能 3 第二輪) */
+    static final byte COURSES_AT_LEAST = 13;
+    /** int n + n 個 courseId；回應 n 個 int 人數 (功能 3 第三輪) */
+    static final byte COURSE_COUNTS = 14;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    private ShardProtocol() {
+    }
+}
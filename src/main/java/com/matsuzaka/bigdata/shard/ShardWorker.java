@@ -0,0 +1,239 @@
+package com.matsuzaka.bigdata.shard;
+
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * 分片工作行程的進入點：以獨立的 JVM 執行，只保存 studentId % shardCount == shardIndex 的選課紀錄
+ *
+ * 資料由協調者透過 LOAD_BATCH 送來 (工作行程本身不連資料庫)，含有不屬於本分片之紀錄的批次會整批拒絕；BUILD 後建成與單機相同的 CSR 索引，
+ * 之後以 ShardProtocol 回答查詢。只監聽 loopback 上由作業系統分配的連接埠，就緒後在 stdout 印出「READY 連接埠」。
+ * 標準輸入關閉 (協調者結束或被強制終止) 時跟著結束，不會留下孤兒行程。
+ *
+ * 用法：java -cp ... com.matsuzaka.bigdata.shard.ShardWorker shardIndex shardCount
+ */
+public final class ShardWorker {
+
+    private final int shardIndex;
+
+    private final int shardCount;
+
+    /** 載入階段累積紀錄的建構器；BUILD 後釋放 */
+    private CsrEnrollmentIndex.Builder builder = new CsrEnrollmentIndex.Builder(0);
+
+    /** BUILD 完成後發佈的索引，之後不再變動，查詢不需加鎖 */
+    private volatile CsrEnrollmentIndex index;
+
+    private ShardWorker(int shardIndex, int shardCount) {
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("用法: ShardWorker shardIndex shardCount");
+            System.exit(2);
+        }
+        int shardIndex = Integer.parseInt(args[0]);
+        int shardCount = Integer.parseInt(args[1]);
+        if (shardCount <= 0 || shardIndex < 0 || shardIndex >= shardCount) {
+            System.err.println("分片編號需介於 0 ~ shardCount - 1: " + shardIndex + " / " + shardCount);
+            System.exit(2);
+        }
+        ShardWorker worker = new ShardWorker(shardIndex, shardCount);
+
+        Thread watchdog = new Thread(ShardWorker::exitWhenParentGone, "shard-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println(ShardProtocol.READY_PREFIX + server.getLocalPort());
+            System.out.flush();
+            while (true) {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> worker.serve(socket), "shard-" + shardIndex + "-conn");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+    }
+
+    private static void exitWhenParentGone() {
+        try {
+            InputStream in = System.in;
+            while (in.read() >= 0) {
+                // 協調者不會寫入標準輸入，只用來偵測管線關閉
+            }
+        } catch (IOException ignored) {
+            // 管線中斷同樣視為協調者已結束
+        }
+        System.exit(0);
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            while (true) {
+                byte command;
+                try {
+                    command = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                try {
+                    handle(command, in, out);
+                } catch (RuntimeException e) {
+                    // 參數已讀完，回報錯誤後這條連線仍可繼續使用
+                    out.writeByte(ShardProtocol.STATUS_ERROR);
+                    out.writeUTF(String.valueOf(e));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("[分片 " + shardIndex + "] 連線中斷: " + e);
+        }
+    }
+
+    private void handle(byte command, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (command) {
+            case ShardProtocol.LOAD_BATCH -> {
+                int n = in.readInt();
+                int[] rows = new int[n * 4];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = in.readInt();
+                }
+                int size = load(rows);
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(size);
+            }
+            case ShardProtocol.BUILD -> {
+                int minMaxStudentId = in.readInt();
+                int minMaxCourseId = in.readInt();
+                int size = build(minMaxStudentId, minMaxCourseId);
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(size);
+            }
+            case ShardProtocol.COURSES_OF_STUDENT -> {
+                int studentId = in.readInt();
+                CsrEnrollmentIndex csr = requireIndex();
+                int start = csr.studentStart(studentId);
+                int end = csr.studentEnd(studentId);
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(end - start);
+                for (int pos = start; pos < end; pos++) {
+                    out.writeInt(csr.studentCourseIdAt(pos));
+                    out.writeInt(csr.studentEpochDayAt(pos));
+                }
+            }
+            case ShardProtocol.STUDENTS_OF_COURSE -> {
+                int courseId = in.readInt();
+                CsrEnrollmentIndex csr = requireIndex();
+                int start = csr.courseStart(courseId);
+                int end = csr.courseEnd(courseId);
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(end - start);
+                for (int pos = start; pos < end; pos++) {
+                    out.writeInt(csr.courseStudentIdAt(pos));
+                    out.writeInt(csr.courseEpochDayAt(pos));
+                }
+            }
+            case ShardProtocol.TOP_COURSES -> {
+                int k = in.readInt();
+                CsrEnrollmentIndex csr = requireIndex();
+                int[] courseIds = csr.topCourses(k);
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(courseIds.length);
+                for (int courseId : courseIds) {
+                    out.writeInt(courseId);
+                    out.writeInt(csr.courseDegree(courseId));
+                }
+            }
+            case ShardProtocol.COURSES_AT_LEAST -> {
+                int threshold = Math.max(in.readInt(), 1);
+                CsrEnrollmentIndex csr = requireIndex();
+                int count = 0;
+                for (int courseId = 0; courseId <= csr.maxCourseId(); courseId++) {
+                    if (csr.courseDegree(courseId) >= threshold) {
+                        count++;
+                    }
+                }
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(count);
+                for (int courseId = 0; courseId <= csr.maxCourseId(); courseId++) {
+                    int degree = csr.courseDegree(courseId);
+                    if (degree >= threshold) {
+                        out.writeInt(courseId);
+                        out.writeInt(degree);
+                    }
+                }
+            }
+            case ShardProtocol.COURSE_COUNTS -> {
+                int n = in.readInt();
+                int[] courseIds = new int[n];
+                for (int i = 0; i < n; i++) {
+                    courseIds[i] = in.readInt();
+                }
+                CsrEnrollmentIndex csr = requireIndex();
+                out.writeByte(ShardProtocol.STATUS_OK);
+                out.writeInt(n);
+                for (int courseId : courseIds) {
+                    out.writeInt(csr.courseDegree(courseId));
+                }
+            }
+            default -> throw new IOException("未知的指令: " + command);
+        }
+    }
+
+    /**
+     * 整批檢查通過才寫入建構器：路由錯誤的紀錄會讓單機與分片的結果不一致，
+     * 因此只要有一筆的 studentId 不屬於本分片就整批拒絕，建構器維持原狀
+     */
+    private synchronized int load(int[] rows) {
+        if (builder == null) {
+            throw new IllegalStateException("索引已建立，不再接受載入");
+        }
+        for (int i = 0; i < rows.length; i += 4) {
+            int studentId = rows[i + 1];
+            if (Math.floorMod(studentId, shardCount) != shardIndex) {
+                throw new IllegalArgumentException("選課紀錄 " + rows[i] + " 的學生 " + studentId
+                        + " 不屬於分片 " + shardIndex + " / " + shardCount);
+            }
+        }
+        for (int i = 0; i < rows.length; i += 4) {
+            builder.add(rows[i], rows[i + 1], rows[i + 2], rows[i + 3]);
+        }
+        return builder.size();
+    }
+
+    private synchronized int build(int minMaxStudentId, int minMaxCourseId) {
+        if (builder == null) {
+            throw new IllegalStateException("索引已建立");
+        }
+        long startTime = System.currentTimeMillis();
+        CsrEnrollmentIndex built = builder.build(minMaxStudentId, minMaxCourseId);
+        builder = null;
+        index = built;
+        System.err.printf("[分片 %d] 索引建立完成: %,d 筆，耗時: %d ms%n", shardIndex, built.size(), System.currentTimeMillis() - startTime);
+        return built.size();
+    }
+
+    private CsrEnrollmentIndex requireIndex() {
+        CsrEnrollmentIndex csr = index;
+        if (csr == null) {
+            throw new IllegalStateException("分片 " + shardIndex + " 的索引尚未建立");
+        }
+        return csr;
+    }
+}
@@ -0,0 +1,123 @@
+package com.matsuzaka.bigdata.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各查詢方式延遲的折線圖：x 軸為第幾次執行，y 軸為耗時 (ms，對數刻度)
+ *
+ * 資料庫與記憶體的耗時常相差上千倍，線性刻度會讓記憶體的折線貼在 0 上，因此 y 軸採用對數刻度，
+ * 並在 10 的次方處畫出格線。所有方法都只能在事件分派線程呼叫。
+ */
+final class LatencyChartPanel extends JPanel {
+
+    private static final int MARGIN_LEFT = 70;
+    private static final int MARGIN_RIGHT = 20;
+    private static final int MARGIN_TOP = 30;
+    private static final int MARGIN_BOTTOM = 30;
+    private static final Color[] PALETTE = {new Color(0xD6, 0x27, 0x28), new Color(0x1F, 0x77, 0xB4),
+            new Color(0x2C, 0xA0, 0x2C), new Color(0xFF, 0x7F, 0x0E), new Color(0x94, 0x67, 0xBD)};
+
+    private final Map<String, List<Double>> series = new LinkedHashMap<>();
+    private String title = "";
+
+    LatencyChartPanel() {
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(600, 250));
+    }
+
+    void reset(String title) {
+        this.title = title;
+        series.clear();
+        repaint();
+    }
+
+    String title() {
+        return title;
+    }
+
+    void addSample(String engine, double millis) {
+        series.computeIfAbsent(engine, k -> new ArrayList<>()).add(millis);
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        super.paintComponent(graphics);
+        Graphics2D g = (Graphics2D) graphics.create();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int width = getWidth() - MARGIN_LEFT - MARGIN_RIGHT;
+        int height = getHeight() - MARGIN_TOP - MARGIN_BOTTOM;
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(title, MARGIN_LEFT, MARGIN_TOP - 12);
+        if (series.isEmpty() || width <= 0 || height <= 0) {
+            g.drawString("重複執行查詢後，各查詢方式的耗時會顯示在這裡", MARGIN_LEFT, MARGIN_TOP + height / 2);
+            g.dispose();
+            return;
+        }
+
+        // y 軸範圍取包含所有資料點的 10 的次方
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        int samples = 1;
+        for (List<Double> values : series.values()) {
+            samples = Math.max(samples, values.size());
+            for (double v : values) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        int lowDecade = (int) Math.floor(Math.log10(Math.max(min, 1e-4)));
+        int highDecade = Math.max((int) Math.ceil(Math.log10(Math.max(max, 1e-4))), lowDecade + 1);
+
+        g.setColor(new Color(0xE0, 0xE0, 0xE0));
+        for (int decade = lowDecade; decade <= highDecade; decade++) {
+            int y = MARGIN_TOP + height - (decade - lowDecade) * height / (highDecade - lowDecade);
+            g.setColor(new Color(0xE0, 0xE0, 0xE0));
+            g.drawLine(MARGIN_LEFT, y, MARGIN_LEFT + width, y);
+            g.setColor(Color.GRAY);
+            g.drawString(formatMillis(Math.pow(10, decade)), 5, y + 4);
+        }
+        g.setColor(Color.GRAY);
+        g.drawLine(MARGIN_LEFT, MARGIN_TOP, MARGIN_LEFT, MARGIN_TOP + height);
+        g.drawLine(MARGIN_LEFT, MARGIN_TOP + height, MARGIN_LEFT + width, MARGIN_TOP + height);
+        g.drawString("第幾次執行 (共 " + samples + " 次)", MARGIN_LEFT + width / 2 - 50, MARGIN_TOP + height + 20);
+
+        int colorIndex = 0;
+        int legendX = MARGIN_LEFT + 10;
+        for (Map.Entry<String, List<Double>> entry : series.entrySet()) {
+            Color color = PALETTE[colorIndex++ % PALETTE.length];
+            g.setColor(color);
+            g.setStroke(new BasicStroke(1.5f));
+            List<Double> values = entry.getValue();
+            int previousX = -1;
+            int previousY = -1;
+            for (int i = 0; i < values.size(); i++) {
+                int x = MARGIN_LEFT + (samples == 1 ? width / 2 : i * width / (samples - 1));
+                double log = Math.log10(Math.max(values.get(i), 1e-4));
+                int y = MARGIN_TOP + height - (int) ((log - lowDecade) * height / (highDecade - lowDecade));
+                g.fillOval(x - 2, y - 2, 5, 5);
+                if (previousX >= 0) {
+                    g.drawLine(previousX, previousY, x, y);
+                }
+                previousX = x;
+                previousY = y;
+            }
+            // 圖例
+            g.fillRect(legendX, MARGIN_TOP + 5, 10, 10);
+            g.setColor(Color.DARK_GRAY);
+            String label = entry.getKey();
+            g.drawString(label, legendX + 14, MARGIN_TOP + 14);
+            legendX += 24 + g.getFontMetrics().stringWidth(label);
+        }
+        g.dispose();
+    }
+
+    private static String formatMillis(double millis) {
+        return millis >= 1 ? String.format("%,.0f ms", millis) : String.format("%s ms", (float) millis);
+    }
+}
@@ -1,46 +1,226 @@
 package com.matsuzaka.bigdata.ui;
 
+import com.matsuzaka.bigdata.dto.AllocationSummary;
+import com.matsuzaka.bigdata.dto.CoEnrolledCourseInfo;
+import com.matsuzaka.bigdata.dto.CourseOverlapInfo;
+import com.matsuzaka.bigdata.dto.CourseSearchInfo;
 import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.IndexFootprint;
+import com.matsuzaka.bigdata.dto.LatencySummary;
+import com.matsuzaka.bigdata.dto.LoadProfile;
+import com.matsuzaka.bigdata.dto.LoadReport;
+import com.matsuzaka.bigdata.dto.MonthlyEnrollmentCount;
 import com.matsuzaka.bigdata.dto.PopularCourseInfo;
 import com.matsuzaka.bigdata.dto.QueryResult;
 import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.dto.StudentSearchInfo;
+import com.matsuzaka.bigdata.dto.TeacherEnrollmentInfo;
+import com.matsuzaka.bigdata.dto.TeacherStudentInfo;
+import com.matsuzaka.bigdata.service.LoadDriver;
 import com.matsuzaka.bigdata.service.PerformanceService;
+import com.matsuzaka.bigdata.service.QueryEngine;
+import com.matsuzaka.bigdata.service.QueryEngineRegistry;
+import com.matsuzaka.bigdata.service.QueryMetrics;
+import com.matsuzaka.bigdata.service.SearchMode;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import java.awt.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * 延遲建立 (@Lazy)：由 BigDataApplication 在啟動完成後才建立視窗，命令列壓測模式下不會建立任何 Swing 元件
+ *
+ * 所有查詢都在 SwingWorker 的背景執行緒執行，事件分派線程只負責更新畫面，DB 查詢 (含暖機) 期間視窗不會凍結。
+ * 完整結果顯示在 JTable，執行紀錄只保留耗時摘要。
+ * 功能 1 / 2 / 3 的比較對象來自 QueryEngineRegistry：內建引擎以外的引擎 (例如 JPQL、H2) 會自動加上各自的勾選框。
+ */
 @Component
+@Lazy
 public class MainFrame extends JFrame {
 
+    private static final int MAX_LOG_CHARS = 200_000;
+
     private final PerformanceService performanceService;
+    private final QueryMetrics queryMetrics;
+    private final LoadDriver loadDriver;
+    private final QueryEngineRegistry queryEngineRegistry;
     private final JTextArea resultArea;
     private final JTextField studentIdField;
     private final JTextField courseIdField;
+    private final JTextField topKField;
+    private final JTextField rangeCourseIdField;
+    private final JTextField fromDateField;
+    private final JTextField toDateField;
+    private final JTextField coCourseIdField;
+    private final JTextField otherCourseIdField;
+    private final JTextField coTopNField;
+    private final JTextField teacherIdField;
+    private final JTextField topTeachersField;
+    private final JTextField searchQueryField;
+    private final JComboBox<String> searchModeBox;
+    private final JTextField searchLimitField;
+    private final JCheckBox dbCheckBox;
+    private final JCheckBox cacheCheckBox;
+    private final JCheckBox hashCheckBox;
+    private final JCheckBox csrCheckBox;
+    private final JCheckBox bitmapCheckBox;
+    private final JCheckBox textCheckBox;
+    /** 引擎 id -> 勾選框；內建引擎對應上面的勾選框 */
+    private final Map<String, JCheckBox> engineCheckBoxes = new LinkedHashMap<>();
+    private final JTextField loadThreadsField;
+    private final JTextField loadSecondsField;
+    private final JComboBox<String> loadDistributionBox;
+    private final JButton loadButton;
+    private final JTextField repeatField;
+    private final JButton cancelButton;
+    private final JButton memoryButton;
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final JLabel resultLabel;
+    private final JTable resultTable;
+    private final LatencyChartPanel chartPanel;
+    private final List<JButton> queryButtons;
+    private final ResultTableModel<StudentCourseInfo> studentCourseModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("課程名稱", String.class, StudentCourseInfo::courseTitle),
+            new ResultTableModel.Column<>("學分", Integer.class, StudentCourseInfo::credit),
+            new ResultTableModel.Column<>("修課日期", LocalDate.class, StudentCourseInfo::enrollmentDate));
+    private final ResultTableModel<CourseStudentInfo> courseStudentModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("學生姓名", String.class, CourseStudentInfo::studentName),
+            new ResultTableModel.Column<>("Email", String.class, CourseStudentInfo::email),
+            new ResultTableModel.Column<>("修課日期", LocalDate.class, CourseStudentInfo::enrollmentDate));
+    private final ResultTableModel<PopularCourseInfo> popularCourseModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("課程名稱", String.class, PopularCourseInfo::courseTitle),
+            new ResultTableModel.Column<>("修課人數", Long.class, PopularCourseInfo::enrollmentCount));
+    private final ResultTableModel<MonthlyEnrollmentCount> monthlyCountModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("月份", String.class, info -> info.month().toString()),
+            new ResultTableModel.Column<>("修課人次", Long.class, MonthlyEnrollmentCount::count));
+    private final ResultTableModel<CoEnrolledCourseInfo> coEnrolledModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("課程名稱", String.class, CoEnrolledCourseInfo::courseTitle),
+            new ResultTableModel.Column<>("共同修課學生數", Long.class, CoEnrolledCourseInfo::sharedStudents));
+    private final ResultTableModel<CourseOverlapInfo> overlapModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("課程 A", String.class, CourseOverlapInfo::courseTitleA),
+            new ResultTableModel.Column<>("課程 B", String.class, CourseOverlapInfo::courseTitleB),
+            new ResultTableModel.Column<>("A 學生數", Long.class, CourseOverlapInfo::studentsA),
+            new ResultTableModel.Column<>("B 學生數", Long.class, CourseOverlapInfo::studentsB),
+            new ResultTableModel.Column<>("共同學生數", Long.class, CourseOverlapInfo::sharedStudents),
+            new ResultTableModel.Column<>("Jaccard", Double.class, CourseOverlapInfo::jaccard));
+    private final ResultTableModel<TeacherStudentInfo> teacherStudentModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("學生姓名", String.class, TeacherStudentInfo::studentName),
+            new ResultTableModel.Column<>("Email", String.class, TeacherStudentInfo::email));
+    private final ResultTableModel<TeacherEnrollmentInfo> teacherEnrollmentModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("教師姓名", String.class, TeacherEnrollmentInfo::teacherName),
+            new ResultTableModel.Column<>("修課人次", Long.class, TeacherEnrollmentInfo::enrollmentCount));
+    private final ResultTableModel<StudentSearchInfo> studentSearchModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("學生 ID", Long.class, StudentSearchInfo::studentId),
+            new ResultTableModel.Column<>("學生姓名", String.class, StudentSearchInfo::studentName),
+            new ResultTableModel.Column<>("Email", String.class, StudentSearchInfo::email));
+    private final ResultTableModel<CourseSearchInfo> courseSearchModel = new ResultTableModel<>(
+            new ResultTableModel.Column<>("課程 ID", Long.class, CourseSearchInfo::courseId),
+            new ResultTableModel.Column<>("課程名稱", String.class, CourseSearchInfo::courseTitle),
+            new ResultTableModel.Column<>("學分", Integer.class, CourseSearchInfo::credit));
+    private SwingWorker<?, ?> currentWorker;
 
-    public MainFrame(PerformanceService performanceService) {
+    public MainFrame(PerformanceService performanceService, QueryMetrics queryMetrics, LoadDriver loadDriver,
+                     QueryEngineRegistry queryEngineRegistry) {
         this.performanceService = performanceService;
+        this.queryMetrics = queryMetrics;
+        this.loadDriver = loadDriver;
+        this.queryEngineRegistry = queryEngineRegistry;
 
         setTitle("資料庫 vs 記憶體 效能比較工具");
-        setSize(800, 600);
+        setSize(1000, 1160);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
         // --- Layout ---
         setLayout(new BorderLayout(10, 10));
 
-        // Result Area
-        resultArea = new JTextArea("查詢結果將會顯示在這裡...\n");
+        // Result Area：上方為完整結果表格，下方為延遲圖表與執行紀錄
+        resultTable = new JTable(studentCourseModel);
+        resultTable.setFillsViewportHeight(true);
+        resultLabel = new JLabel("查詢結果將會顯示在這裡...");
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.add(resultLabel, BorderLayout.NORTH);
+        tablePanel.add(new JScrollPane(resultTable), BorderLayout.CENTER);
+
+        resultArea = new JTextArea();
         resultArea.setEditable(false);
         resultArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        JScrollPane scrollPane = new JScrollPane(resultArea);
-        add(scrollPane, BorderLayout.CENTER);
+        chartPanel = new LatencyChartPanel();
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("延遲圖表", chartPanel);
+        tabs.addTab("執行紀錄", new JScrollPane(resultArea));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tablePanel, tabs);
+        splitPane.setResizeWeight(0.5);
+        add(splitPane, BorderLayout.CENTER);
 
         // Control Panel
         JPanel controlPanel = new JPanel();
-        controlPanel.setLayout(new GridLayout(3, 1, 5, 5));
+        controlPanel.setLayout(new GridLayout(10, 1, 5, 5));
+
+        // 比較模式：可勾選要參與比較的查詢引擎
+        JPanel modePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        modePanel.setBorder(BorderFactory.createTitledBorder("比較模式"));
+        dbCheckBox = new JCheckBox("資料庫 (原生 SQL)", true);
+        cacheCheckBox = new JCheckBox("資料庫 + 結果快取", true);
+        hashCheckBox = new JCheckBox("記憶體 (HashMap)", true);
+        csrCheckBox = new JCheckBox("記憶體 (CSR 原生陣列)", true);
+        bitmapCheckBox = new JCheckBox("記憶體 (壓縮點陣)", true);
+        textCheckBox = new JCheckBox("記憶體 (前綴 / n-gram 文字索引)", true);
+        modePanel.add(dbCheckBox);
+        modePanel.add(cacheCheckBox);
+        modePanel.add(hashCheckBox);
+        modePanel.add(csrCheckBox);
+        modePanel.add(bitmapCheckBox);
+        modePanel.add(textCheckBox);
+        engineCheckBoxes.put(QueryMetrics.ENGINE_DB, dbCheckBox);
+        engineCheckBoxes.put(QueryMetrics.ENGINE_CACHE, cacheCheckBox);
+        engineCheckBoxes.put(QueryMetrics.ENGINE_HASH, hashCheckBox);
+        engineCheckBoxes.put(QueryMetrics.ENGINE_CSR, csrCheckBox);
+        for (QueryEngine engine : queryEngineRegistry.engines()) {
+            if (!engineCheckBoxes.containsKey(engine.id())) {
+                JCheckBox checkBox = new JCheckBox(engine.displayName(), true);
+                engineCheckBoxes.put(engine.id(), checkBox);
+                modePanel.add(checkBox);
+            }
+        }
+        controlPanel.add(modePanel);
+
+        // 執行設定：重複次數、取消與進度
+        JPanel runPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        runPanel.setBorder(BorderFactory.createTitledBorder("執行"));
+        repeatField = new JTextField("1", 4);
+        cancelButton = new JButton("取消");
+        cancelButton.setEnabled(false);
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        statusLabel = new JLabel("就緒");
+        runPanel.add(new JLabel("重複次數:"));
+        runPanel.add(repeatField);
+        runPanel.add(cancelButton);
+        runPanel.add(progressBar);
+        runPanel.add(statusLabel);
+        JCheckBox endToEndCheckBox = new JCheckBox("端到端計時 (含結果轉換)", performanceService.isEndToEndTiming());
+        endToEndCheckBox.addActionListener(e -> performanceService.setEndToEndTiming(endToEndCheckBox.isSelected()));
+        memoryButton = new JButton("記憶體用量");
+        runPanel.add(endToEndCheckBox);
+        runPanel.add(memoryButton);
+        controlPanel.add(runPanel);
 
         // Function 1
         JPanel panel1 = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -64,98 +244,627 @@ public class MainFrame extends JFrame {
 
         // Function 3
         JPanel panel3 = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        panel3.setBorder(BorderFactory.createTitledBorder("功能 3: 查詢 Top 10 熱門課程"));
+        panel3.setBorder(BorderFactory.createTitledBorder("功能 3: 查詢 Top K 熱門課程"));
+        topKField = new JTextField("10", 5);
         JButton btn3 = new JButton("查詢");
+        panel3.add(new JLabel("K:"));
+        panel3.add(topKField);
         panel3.add(btn3);
         controlPanel.add(panel3);
 
+        // Function 4 / 5：日期區間 (只有資料庫與 HashMap 兩種實作)
+        JPanel panel4 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel4.setBorder(BorderFactory.createTitledBorder("功能 4 / 5: 課程在日期區間內的修課學生 / 每月修課人次 (資料庫、HashMap)"));
+        rangeCourseIdField = new JTextField("1", 5);
+        fromDateField = new JTextField(LocalDate.now().minusYears(1).toString(), 8);
+        toDateField = new JTextField(LocalDate.now().toString(), 8);
+        JButton btn4 = new JButton("修課學生");
+        JButton btn5 = new JButton("每月人次");
+        panel4.add(new JLabel("課程 ID:"));
+        panel4.add(rangeCourseIdField);
+        panel4.add(new JLabel("從:"));
+        panel4.add(fromDateField);
+        panel4.add(new JLabel("到:"));
+        panel4.add(toDateField);
+        panel4.add(btn4);
+        panel4.add(btn5);
+        controlPanel.add(panel4);
+
+        // Function 6 / 7：共同修課分析 (只有資料庫與壓縮點陣兩種實作)
+        JPanel panel6 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel6.setBorder(BorderFactory.createTitledBorder("功能 6 / 7: 共同修課最多的課程 / 兩門課的 Jaccard 重疊 (資料庫、壓縮點陣)"));
+        coCourseIdField = new JTextField("1", 5);
+        coTopNField = new JTextField("10", 4);
+        otherCourseIdField = new JTextField("2", 5);
+        JButton btn6 = new JButton("共同修課");
+        JButton btn7 = new JButton("重疊程度");
+        panel6.add(new JLabel("課程 ID:"));
+        panel6.add(coCourseIdField);
+        panel6.add(new JLabel("N:"));
+        panel6.add(coTopNField);
+        panel6.add(btn6);
+        panel6.add(new JLabel("另一課程 ID:"));
+        panel6.add(otherCourseIdField);
+        panel6.add(btn7);
+        controlPanel.add(panel6);
+
+        // Function 8 / 9：教師 → 課程 → 學生的多段查詢 (只有資料庫與 CSR 兩種實作)
+        JPanel panel8 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel8.setBorder(BorderFactory.createTitledBorder("功能 8 / 9: 教師教過的學生 / 依修課人次排名教師 (資料庫、CSR)"));
+        teacherIdField = new JTextField("1", 5);
+        topTeachersField = new JTextField("10", 4);
+        JButton btn8 = new JButton("教過的學生");
+        JButton btn9 = new JButton("教師排名");
+        panel8.add(new JLabel("教師 ID:"));
+        panel8.add(teacherIdField);
+        panel8.add(btn8);
+        panel8.add(new JLabel("K:"));
+        panel8.add(topTeachersField);
+        panel8.add(btn9);
+        controlPanel.add(panel8);
+
+        // Function 10：文字搜尋 (只有資料庫與文字索引兩種實作)
+        JPanel panel10 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel10.setBorder(BorderFactory.createTitledBorder("功能 10: 搜尋學生姓名 / Email 與課程名稱 (資料庫 FULLTEXT / LIKE、文字索引)"));
+        searchQueryField = new JTextField("student 1", 10);
+        searchModeBox = new JComboBox<>(new String[]{"前綴", "子字串"});
+        searchLimitField = new JTextField("50", 4);
+        JButton btn10 = new JButton("搜尋學生");
+        JButton btn11 = new JButton("搜尋課程");
+        panel10.add(new JLabel("關鍵字:"));
+        panel10.add(searchQueryField);
+        panel10.add(searchModeBox);
+        panel10.add(new JLabel("筆數:"));
+        panel10.add(searchLimitField);
+        panel10.add(btn10);
+        panel10.add(btn11);
+        controlPanel.add(panel10);
+
+        // 並行壓測：以勾選的比較模式依序壓測，三種功能混合查詢
+        JPanel loadPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        loadPanel.setBorder(BorderFactory.createTitledBorder("並行壓測 (功能 1 / 2 / 3 比重 4:4:2)"));
+        loadThreadsField = new JTextField("64", 4);
+        loadSecondsField = new JTextField("10", 4);
+        loadDistributionBox = new JComboBox<>(new String[]{"zipf", "uniform"});
+        loadButton = new JButton("開始壓測");
+        loadPanel.add(new JLabel("執行緒:"));
+        loadPanel.add(loadThreadsField);
+        loadPanel.add(new JLabel("秒數:"));
+        loadPanel.add(loadSecondsField);
+        loadPanel.add(new JLabel("id 分布:"));
+        loadPanel.add(loadDistributionBox);
+        loadPanel.add(loadButton);
+        controlPanel.add(loadPanel);
+
         add(controlPanel, BorderLayout.NORTH);
 
         // --- Action Listeners ---
         btn1.addActionListener(e -> findCoursesByStudent());
         btn2.addActionListener(e -> findStudentsByCourse());
         btn3.addActionListener(e -> findTopCourses());
+        cancelButton.addActionListener(e -> cancelQuery());
+        btn4.addActionListener(e -> findStudentsByCourseBetween());
+        btn5.addActionListener(e -> countEnrollmentsByMonth());
+        btn6.addActionListener(e -> findCoEnrolledCourses());
+        btn7.addActionListener(e -> findCourseOverlap());
+        btn8.addActionListener(e -> findStudentsByTeacher());
+        btn9.addActionListener(e -> findTopTeachers());
+        btn10.addActionListener(e -> searchStudents());
+        btn11.addActionListener(e -> searchCourses());
+        queryButtons = List.of(btn1, btn2, btn3, btn4, btn5, btn6, btn7, btn8, btn9, btn10, btn11);
+        loadButton.addActionListener(e -> runLoadTest());
+        memoryButton.addActionListener(e -> showMemoryFootprint());
     }
 
-    private void findCoursesByStudent() {
+    /**
+     * 估計時會走訪 HashMap 索引的每個 key，在背景執行緒執行
+     */
+    private void showMemoryFootprint() {
+        memoryButton.setEnabled(false);
+        new SwingWorker<List<IndexFootprint>, Void>() {
+            @Override
+            protected List<IndexFootprint> doInBackground() {
+                return performanceService.memoryFootprint();
+            }
+
+            @Override
+            protected void done() {
+                memoryButton.setEnabled(true);
+                try {
+                    StringBuilder sb = new StringBuilder("\n--- 記憶體索引大小估計 ---\n");
+                    sb.append(String.format("%-22s %12s %12s %12s%n", "索引", "項目數", "heap MB", "heap 外 MB"));
+                    for (IndexFootprint footprint : get()) {
+                        sb.append(String.format("%-22s %12d %12.1f %12.1f%n", footprint.index(), footprint.entries(),
+                                footprint.heapBytes() / (1024.0 * 1024.0), footprint.offHeapBytes() / (1024.0 * 1024.0)));
+                    }
+                    log(sb.toString());
+                } catch (Exception ex) {
+                    log("記憶體用量估計失敗: " + ex.getCause() + "\n");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * 壓測耗時數十秒，在背景執行緒執行，進度透過 SwingWorker.publish 回到事件分派線程顯示
+     */
+    private void runLoadTest() {
+        LoadProfile profile;
         try {
-            long studentId = Long.parseLong(studentIdField.getText());
-
-            QueryResult<StudentCourseInfo> dbResult = performanceService.findCoursesByStudentId_DB(studentId);
-            QueryResult<StudentCourseInfo> memResult = performanceService.findCoursesByStudentId_InMemory(studentId);
-
-            StringBuilder sb = new StringBuilder();
-            sb.append("\n=======================================================\n");
-            sb.append(String.format("查詢學生 ID: %d 的修課紀錄\n", studentId));
-            sb.append("-------------------------------------------------------\n");
-            sb.append(String.format("直接查詢資料庫：找到 %d 筆紀錄，耗時: %d ms\n", dbResult.data().size(), dbResult.executionTime()));
-            sb.append(String.format("查詢記憶體物件：找到 %d 筆紀錄，耗時: %d ms\n", memResult.data().size(), memResult.executionTime()));
-            sb.append("-------------------------------------------------------\n");
-
-            // 只顯示部分結果避免洗版
-            int limit = Math.min(memResult.data().size(), 5);
-            if (limit > 0) {
-                sb.append("結果預覽 (最多顯示 5 筆):\n");
-                for(int i = 0; i<limit; i++){
-                    StudentCourseInfo info = memResult.data().get(i);
-                    sb.append(String.format("- %s (學分: %d, 修課日期: %s)\n", info.courseTitle(), info.credit(), info.enrollmentDate()));
+            List<String> engines = new ArrayList<>();
+            if (dbCheckBox.isSelected()) {
+                engines.add(QueryMetrics.ENGINE_DB);
+            }
+            if (cacheCheckBox.isSelected()) {
+                engines.add(QueryMetrics.ENGINE_CACHE);
+            }
+            if (hashCheckBox.isSelected()) {
+                engines.add(QueryMetrics.ENGINE_HASH);
+            }
+            if (csrCheckBox.isSelected()) {
+                engines.add(QueryMetrics.ENGINE_CSR);
+            }
+            profile = new LoadProfile(engines, Integer.parseInt(loadThreadsField.getText()), false,
+                    Duration.ofSeconds(Integer.parseInt(loadSecondsField.getText())), new int[]{4, 4, 2},
+                    (String) loadDistributionBox.getSelectedItem(), 1.0, Integer.parseInt(topKField.getText()));
+        } catch (IllegalArgumentException ex) {
+            // NumberFormatException 也是 IllegalArgumentException
+            JOptionPane.showMessageDialog(this, "壓測設定無效: " + ex.getMessage());
+            return;
+        }
+
+        loadButton.setEnabled(false);
+        log("\n=======================================================\n");
+        new SwingWorker<List<LoadReport>, String>() {
+            @Override
+            protected List<LoadReport> doInBackground() {
+                return loadDriver.run(profile, this::publish);
+            }
+
+            @Override
+            protected void process(List<String> lines) {
+                lines.forEach(line -> log(line + "\n"));
+            }
+
+            @Override
+            protected void done() {
+                loadButton.setEnabled(true);
+                try {
+                    get();
+                } catch (Exception ex) {
+                    log("壓測失敗: " + ex.getCause() + "\n");
                 }
             }
-            resultArea.append(sb.toString());
+        }.execute();
+    }
 
+    private void findCoursesByStudent() {
+        long studentId;
+        try {
+            studentId = Long.parseLong(studentIdField.getText());
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "請輸入有效的學生 ID!");
+            return;
         }
+        runComparison(String.format("查詢學生 ID: %d 的修課紀錄", studentId), QueryMetrics.FEATURE_COURSES_BY_STUDENT,
+                registeredEngines(engine -> queryEngineRegistry.findCoursesByStudentId(engine, studentId)),
+                studentCourseModel);
     }
 
     private void findStudentsByCourse() {
+        long courseId;
         try {
-            long courseId = Long.parseLong(courseIdField.getText());
-
-            QueryResult<CourseStudentInfo> dbResult = performanceService.findStudentsByCourseId_DB(courseId);
-            QueryResult<CourseStudentInfo> memResult = performanceService.findStudentsByCourseId_InMemory(courseId);
-
-            StringBuilder sb = new StringBuilder();
-            sb.append("\n=======================================================\n");
-            sb.append(String.format("查詢課程 ID: %d 的修課學生\n", courseId));
-            sb.append("-------------------------------------------------------\n");
-            sb.append(String.format("直接查詢資料庫：找到 %d 筆紀錄，耗時: %d ms\n", dbResult.data().size(), dbResult.executionTime()));
-            sb.append(String.format("查詢記憶體物件：找到 %d 筆紀錄，耗時: %d ms\n", memResult.data().size(), memResult.executionTime()));
-            sb.append("-------------------------------------------------------\n");
-
-            int limit = Math.min(memResult.data().size(), 5);
-            if (limit > 0) {
-                sb.append("結果預覽 (最多顯示 5 筆):\n");
-                for(int i = 0; i<limit; i++){
-                    CourseStudentInfo info = memResult.data().get(i);
-                    sb.append(String.format("- %s (%s, 修課日期: %s)\n", info.studentName(), info.email(), info.enrollmentDate()));
-                }
+            courseId = Long.parseLong(courseIdField.getText());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的課程 ID!");
+            return;
+        }
+        runComparison(String.format("查詢課程 ID: %d 的修課學生", courseId), QueryMetrics.FEATURE_STUDENTS_BY_COURSE,
+                registeredEngines(engine -> queryEngineRegistry.findStudentsByCourseId(engine, courseId)),
+                courseStudentModel);
+    }
+
+    private void findTopCourses() {
+        int k;
+        try {
+            k = Integer.parseInt(topKField.getText());
+            if (k <= 0) {
+                throw new NumberFormatException("K must be positive");
             }
-            resultArea.append(sb.toString());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的 K (正整數)!");
+            return;
+        }
+        runComparison(String.format("查詢 Top %d 熱門課程", k), QueryMetrics.FEATURE_TOP_COURSES,
+                registeredEngines(engine -> queryEngineRegistry.findTopPopularCourses(engine, k)),
+                popularCourseModel);
+    }
+
+    private void findStudentsByCourseBetween() {
+        Long courseId = parseCourseId(rangeCourseIdField);
+        LocalDate[] range = parseDateRange();
+        if (courseId == null || range == null) {
+            return;
+        }
+        runComparison(String.format("查詢課程 ID: %d 在 %s ~ %s 的修課學生", courseId, range[0], range[1]),
+                QueryMetrics.FEATURE_STUDENTS_BY_COURSE_BETWEEN,
+                selectedEngines(() -> performanceService.findStudentsByCourseIdBetween_DB(courseId, range[0], range[1]), null,
+                        () -> performanceService.findStudentsByCourseIdBetween_InMemory(courseId, range[0], range[1]), null, null),
+                courseStudentModel);
+    }
+
+    private void countEnrollmentsByMonth() {
+        Long courseId = parseCourseId(rangeCourseIdField);
+        LocalDate[] range = parseDateRange();
+        if (courseId == null || range == null) {
+            return;
+        }
+        runComparison(String.format("統計課程 ID: %d 在 %s ~ %s 的每月修課人次", courseId, range[0], range[1]),
+                QueryMetrics.FEATURE_MONTHLY_ENROLLMENTS,
+                selectedEngines(() -> performanceService.countEnrollmentsByMonth_DB(courseId, range[0], range[1]), null,
+                        () -> performanceService.countEnrollmentsByMonth_InMemory(courseId, range[0], range[1]), null, null),
+                monthlyCountModel);
+    }
 
+    private void findCoEnrolledCourses() {
+        Long courseId = parseCourseId(coCourseIdField);
+        if (courseId == null) {
+            return;
+        }
+        int n;
+        try {
+            n = Integer.parseInt(coTopNField.getText());
+            if (n <= 0) {
+                throw new NumberFormatException("N must be positive");
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的 N (正整數)!");
+            return;
+        }
+        runComparison(String.format("查詢與課程 ID: %d 共同修課最多的 %d 門課程", courseId, n), QueryMetrics.FEATURE_CO_ENROLLED_COURSES,
+                selectedEngines(() -> performanceService.findCoEnrolledCourses_DB(courseId, n), null, null, null,
+                        () -> performanceService.findCoEnrolledCourses_Bitmap(courseId, n)),
+                coEnrolledModel);
+    }
+
+    private void findCourseOverlap() {
+        Long courseA = parseCourseId(coCourseIdField);
+        Long courseB = courseA == null ? null : parseCourseId(otherCourseIdField);
+        if (courseB == null) {
+            return;
+        }
+        runComparison(String.format("比較課程 ID: %d 與 %d 的修課學生重疊程度", courseA, courseB), QueryMetrics.FEATURE_COURSE_OVERLAP,
+                selectedEngines(() -> performanceService.findCourseOverlap_DB(courseA, courseB), null, null, null,
+                        () -> performanceService.findCourseOverlap_Bitmap(courseA, courseB)),
+                overlapModel);
+    }
+
+    private void findStudentsByTeacher() {
+        long teacherId;
+        try {
+            teacherId = Long.parseLong(teacherIdField.getText());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的教師 ID!");
+            return;
+        }
+        runComparison(String.format("查詢教師 ID: %d 教過的所有學生", teacherId), QueryMetrics.FEATURE_STUDENTS_BY_TEACHER,
+                selectedEngines(() -> performanceService.findStudentsByTeacherId_DB(teacherId), null, null,
+                        () -> performanceService.findStudentsByTeacherId_Csr(teacherId), null),
+                teacherStudentModel);
+    }
+
+    private void findTopTeachers() {
+        int k;
+        try {
+            k = Integer.parseInt(topTeachersField.getText());
+            if (k <= 0) {
+                throw new NumberFormatException("K must be positive");
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的 K (正整數)!");
+            return;
+        }
+        runComparison(String.format("查詢修課人次最多的 %d 位教師", k), QueryMetrics.FEATURE_TOP_TEACHERS,
+                selectedEngines(() -> performanceService.findTopTeachers_DB(k), null, null,
+                        () -> performanceService.findTopTeachers_Csr(k), null),
+                teacherEnrollmentModel);
+    }
+
+    private void searchStudents() {
+        String query = searchQueryField.getText().trim();
+        if (query.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "請輸入搜尋關鍵字!");
+            return;
+        }
+        Integer limit = parseSearchLimit();
+        if (limit == null) {
+            return;
+        }
+        SearchMode mode = selectedSearchMode();
+        runComparison(String.format("以%s搜尋學生: \"%s\" (最多 %d 筆)", searchModeBox.getSelectedItem(), query, limit), mode.studentFeature(),
+                textSearchEngines(() -> performanceService.searchStudents_DB(query, mode, limit),
+                        () -> performanceService.searchStudents_InMemory(query, mode, limit)),
+                studentSearchModel);
+    }
+
+    private void searchCourses() {
+        String query = searchQueryField.getText().trim();
+        if (query.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "請輸入搜尋關鍵字!");
+            return;
+        }
+        Integer limit = parseSearchLimit();
+        if (limit == null) {
+            return;
+        }
+        SearchMode mode = selectedSearchMode();
+        runComparison(String.format("以%s搜尋課程: \"%s\" (最多 %d 筆)", searchModeBox.getSelectedItem(), query, limit), mode.courseFeature(),
+                textSearchEngines(() -> performanceService.searchCourses_DB(query, mode, limit),
+                        () -> performanceService.searchCourses_InMemory(query, mode, limit)),
+                courseSearchModel);
+    }
+
+    private SearchMode selectedSearchMode() {
+        return searchModeBox.getSelectedIndex() == 0 ? SearchMode.PREFIX : SearchMode.SUBSTRING;
+    }
+
+    private Integer parseSearchLimit() {
+        try {
+            int limit = Integer.parseInt(searchLimitField.getText());
+            if (limit < 1 || limit > PerformanceService.MAX_SEARCH_RESULTS) {
+                throw new NumberFormatException("limit out of range");
+            }
+            return limit;
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的筆數 (1-" + PerformanceService.MAX_SEARCH_RESULTS + ")!");
+            return null;
+        }
+    }
+
+    private Long parseCourseId(JTextField field) {
+        try {
+            return Long.parseLong(field.getText());
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "請輸入有效的課程 ID!");
+            return null;
         }
     }
 
-    private void findTopCourses() {
-        QueryResult<PopularCourseInfo> dbResult = performanceService.findTop10PopularCourses_DB();
-        QueryResult<PopularCourseInfo> memResult = performanceService.findTop10PopularCourses_InMemory();
+    /**
+     * @return {from, to}，輸入無效時顯示訊息並回傳 null
+     */
+    private LocalDate[] parseDateRange() {
+        try {
+            LocalDate from = LocalDate.parse(fromDateField.getText().trim());
+            LocalDate to = LocalDate.parse(toDateField.getText().trim());
+            if (from.isAfter(to)) {
+                JOptionPane.showMessageDialog(this, "起始日期不可晚於結束日期!");
+                return null;
+            }
+            return new LocalDate[]{from, to};
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的日期 (yyyy-MM-dd)!");
+            return null;
+        }
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("\n=======================================================\n");
-        sb.append("查詢 Top 10 熱門課程\n");
-        sb.append("-------------------------------------------------------\n");
-        sb.append(String.format("直接查詢資料庫：耗時: %d ms\n", dbResult.executionTime()));
-        sb.append(String.format("查詢記憶體物件：耗時: %d ms\n", memResult.executionTime()));
-        sb.append("-------------------------------------------------------\n");
+    /**
+     * 功能 1 / 2 / 3：QueryEngineRegistry 中有勾選的引擎，尚未就緒的引擎略過並記錄在執行紀錄
+     */
+    private <T> List<EngineCall<T>> registeredEngines(Function<QueryEngine, QueryResult<T>> query) {
+        List<EngineCall<T>> calls = new ArrayList<>();
+        for (QueryEngine engine : queryEngineRegistry.engines()) {
+            if (!engineCheckBoxes.get(engine.id()).isSelected()) {
+                continue;
+            }
+            if (!engine.isReady()) {
+                log(engine.displayName() + " 尚未就緒，略過\n");
+                continue;
+            }
+            calls.add(new EngineCall<>(engine.displayName(), engine.displayName(), engine.id(), () -> query.apply(engine)));
+        }
+        return calls;
+    }
 
-        if (!memResult.data().isEmpty()) {
-            sb.append("熱門課程列表:\n");
-            for (PopularCourseInfo info : memResult.data()) {
-                sb.append(String.format("- %s (修課人數: %d)\n", info.courseTitle(), info.enrollmentCount()));
+    /**
+     * 依勾選的比較模式組成要執行的查詢；傳入 null 表示該功能沒有此查詢方式的實作
+     */
+    private <T> List<EngineCall<T>> selectedEngines(Supplier<QueryResult<T>> db, Supplier<QueryResult<T>> cached,
+                                                    Supplier<QueryResult<T>> hash, Supplier<QueryResult<T>> csr,
+                                                    Supplier<QueryResult<T>> bitmap) {
+        List<EngineCall<T>> calls = new ArrayList<>(5);
+        if (dbCheckBox.isSelected() && db != null) {
+            calls.add(new EngineCall<>("直接查詢資料庫", "資料庫", QueryMetrics.ENGINE_DB, db));
+        }
+        if (cacheCheckBox.isSelected() && cached != null) {
+            calls.add(new EngineCall<>("資料庫 + 結果快取", "結果快取", QueryMetrics.ENGINE_CACHE, cached));
+        }
+        if (hashCheckBox.isSelected() && hash != null) {
+            calls.add(new EngineCall<>("查詢記憶體物件", "HashMap", QueryMetrics.ENGINE_HASH, hash));
+        }
+        if (csrCheckBox.isSelected() && csr != null) {
+            calls.add(new EngineCall<>("查詢 CSR 陣列", "CSR", QueryMetrics.ENGINE_CSR, csr));
+        }
+        if (bitmapCheckBox.isSelected() && bitmap != null) {
+            calls.add(new EngineCall<>("查詢壓縮點陣", "Bitmap", QueryMetrics.ENGINE_BITMAP, bitmap));
+        }
+        return calls;
+    }
+
+    /**
+     * 功能 10 只有資料庫與文字索引兩種實作
+     */
+    private <T> List<EngineCall<T>> textSearchEngines(Supplier<QueryResult<T>> db, Supplier<QueryResult<T>> text) {
+        List<EngineCall<T>> calls = selectedEngines(db, null, null, null, null);
+        if (textCheckBox.isSelected()) {
+            calls.add(new EngineCall<>("查詢文字索引", "文字索引", QueryMetrics.ENGINE_TEXT, text));
+        }
+        return calls;
+    }
+
+    /**
+     * 在背景執行緒依序執行勾選的查詢方式，重複指定次數
+     *
+     * 每完成一次查詢就 publish 一筆耗時，由 process() 在事件分派線程加到圖表上；
+     * 全部完成後才把最後一次的完整結果交給表格模型。同一時間只執行一組比較。
+     */
+    private <T> void runComparison(String title, String feature, List<EngineCall<T>> calls, ResultTableModel<T> model) {
+        if (calls.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "請至少勾選一種支援此功能的比較模式!");
+            return;
+        }
+        int repeat;
+        try {
+            repeat = Integer.parseInt(repeatField.getText());
+            if (repeat <= 0) {
+                throw new NumberFormatException("repeat must be positive");
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "請輸入有效的重複次數 (正整數)!");
+            return;
+        }
+        if (!title.equals(chartPanel.title())) {
+            chartPanel.reset(title);
+        }
+        int total = repeat * calls.size();
+
+        SwingWorker<Map<EngineCall<T>, QueryResult<T>>, Sample> worker = new SwingWorker<>() {
+            @Override
+            protected Map<EngineCall<T>, QueryResult<T>> doInBackground() {
+                Map<EngineCall<T>, QueryResult<T>> last = new LinkedHashMap<>();
+                int completed = 0;
+                for (int run = 1; run <= repeat; run++) {
+                    for (EngineCall<T> call : calls) {
+                        if (isCancelled()) {
+                            return last;
+                        }
+                        QueryResult<T> result = call.query().get();
+                        last.put(call, result);
+                        publish(new Sample(call.seriesName(), run, result.data().size(), result.executionTimeMillis()));
+                        setProgress(++completed * 100 / total);
+                    }
+                }
+                return last;
+            }
+
+            @Override
+            protected void process(List<Sample> samples) {
+                for (Sample sample : samples) {
+                    chartPanel.addSample(sample.seriesName(), sample.millis());
+                }
+                Sample latest = samples.get(samples.size() - 1);
+                statusLabel.setText(String.format("第 %d/%d 次 %s：%,d 筆，%.3f ms",
+                        latest.run(), repeat, latest.seriesName(), latest.rows(), latest.millis()));
+            }
+
+            @Override
+            protected void done() {
+                setRunning(null);
+                if (isCancelled()) {
+                    statusLabel.setText("已取消");
+                    log(title + "：已取消\n");
+                    return;
+                }
+                Map<EngineCall<T>, QueryResult<T>> last;
+                try {
+                    last = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("查詢失敗");
+                    log(title + "：查詢失敗: " + ex.getCause() + "\n");
+                    return;
+                }
+
+                StringBuilder sb = new StringBuilder();
+                sb.append("\n=======================================================\n");
+                sb.append(title).append(repeat > 1 ? String.format(" (重複 %d 次，顯示最後一次)\n", repeat) : "\n");
+                sb.append("-------------------------------------------------------\n");
+                last.forEach((call, result) -> appendTiming(sb, call.label(), result, feature, call.engine()));
+                log(sb.toString());
+
+                // 各引擎結果內容相同，表格顯示第一個有執行的引擎的完整結果
+                List<T> rows = last.values().iterator().next().data();
+                model.setRows(rows);
+                resultTable.setModel(model);
+                resultLabel.setText(String.format("%s：共 %,d 筆", title, rows.size()));
+                statusLabel.setText("完成");
+            }
+        };
+        worker.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                progressBar.setValue((Integer) event.getNewValue());
             }
+        });
+        progressBar.setValue(0);
+        statusLabel.setText("執行中...");
+        setRunning(worker);
+        worker.execute();
+    }
+
+    /**
+     * 切換查詢按鈕與取消按鈕的狀態；worker 為 null 表示目前沒有查詢在執行
+     */
+    private void setRunning(SwingWorker<?, ?> worker) {
+        currentWorker = worker;
+        queryButtons.forEach(button -> button.setEnabled(worker == null));
+        cancelButton.setEnabled(worker != null);
+    }
+
+    /**
+     * 只設定取消旗標、不中斷執行緒：中斷正在讀寫檔案的 JDBC 連線會讓 H2 關閉資料庫檔案，
+     * 因此目前這一次查詢會跑完，之後的重複次數不再執行
+     */
+    private void cancelQuery() {
+        if (currentWorker != null) {
+            currentWorker.cancel(false);
+            statusLabel.setText("取消中 (等待目前這一次查詢完成)...");
         }
-        resultArea.append(sb.toString());
     }
+
+    /**
+     * 附加到執行紀錄，超過上限時丟掉最舊的部分，避免長時間使用後文字區無限成長
+     */
+    private void log(String text) {
+        resultArea.append(text);
+        Document document = resultArea.getDocument();
+        int excess = document.getLength() - MAX_LOG_CHARS;
+        if (excess > 0) {
+            try {
+                document.remove(0, excess);
+            } catch (BadLocationException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        resultArea.setCaretPosition(document.getLength());
+    }
+
+    /**
+     * 輸出本次耗時，以及該功能在該引擎上累計的延遲百分位數 (單次取樣容易受雜訊影響，尾端延遲更具參考價值)
+     * 與每次查詢配置的位元組數 (JVM 支援執行緒配置計數時)
+     */
+    private void appendTiming(StringBuilder sb, String label, QueryResult<?> result, String feature, String engine) {
+        if (result == null) {
+            return;
+        }
+        sb.append(String.format("%s：找到 %d 筆紀錄，本次耗時: %.3f ms\n", label, result.data().size(), result.executionTimeMillis()));
+        LatencySummary latency = queryMetrics.summary(feature, engine);
+        sb.append(String.format("    p50 %.3f / p99 %.3f / p999 %.3f / max %.3f ms (累計 %d 次)\n",
+                latency.p50Nanos() / 1_000_000.0, latency.p99Nanos() / 1_000_000.0,
+                latency.p999Nanos() / 1_000_000.0, latency.maxNanos() / 1_000_000.0, latency.count()));
+        if (result.allocatedBytes() >= 0) {
+            AllocationSummary allocation = queryMetrics.allocationSummary(feature, engine);
+            sb.append(String.format("    本次配置 %.1f KB，平均 %.1f KB / max %.1f KB\n", result.allocatedBytes() / 1024.0,
+                    allocation.meanBytes() / 1024.0, allocation.maxBytes() / 1024.0));
+        }
+        if (engine.equals(QueryMetrics.ENGINE_CACHE)) {
+            sb.append("    ").append(LoadDriver.formatCacheStats(performanceService.resultCacheStats())).append('\n');
+        }
+    }
+
+    /**
+     * @param label      執行紀錄中的說明文字
+     * @param seriesName 圖表上的圖例名稱
+     */
+    private record EngineCall<T>(String label, String seriesName, String engine, Supplier<QueryResult<T>> query) {}
+
+    private record Sample(String seriesName, int run, int rows, double millis) {}
 }
@@ -0,0 +1,55 @@
+package com.matsuzaka.bigdata.ui;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 直接包裝查詢結果 List 的表格模型
+ *
+ * 不複製資料、也不預先產生任何字串：JTable 只會對畫面上看得到的列呼叫 getValueAt，
+ * 因此即使結果有數十萬筆，捲動時也只處理可見的幾十列。
+ */
+final class ResultTableModel<T> extends AbstractTableModel {
+
+    record Column<T>(String name, Class<?> type, Function<T, Object> value) {}
+
+    private final List<Column<T>> columns;
+    private List<T> rows = List.of();
+
+    @SafeVarargs
+    ResultTableModel(Column<T>... columns) {
+        this.columns = List.of(columns);
+    }
+
+    /** 只能在事件分派線程呼叫 */
+    void setRows(List<T> rows) {
+        this.rows = rows;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column).name();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columns.get(column).type();
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return columns.get(column).value().apply(rows.get(row));
+    }
+}
@@ -0,0 +1,163 @@
+package com.matsuzaka.bigdata.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 壓縮點陣與 java.util.BitSet 比較：陣列容器在 4096 個元素時轉成點陣容器、點陣容器降到門檻以下時轉回陣列容器，
+ * 跨多個高 16 位元的桶，以及陣列 / 點陣容器兩兩組合的交集大小
+ *
+ * 容器種類不對外公開，以 estimatedBytes() 觀察：陣列容器 2 bytes / 元素，點陣容器固定 8 KB
+ */
+class CompressedBitmapTest {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int KEY = 1 << 16;
+
+    /** 依容器切換規則算出的記憶體估計，與 CompressedBitmap.estimatedBytes() 的算法相同 */
+    private static long expectedBytes(BitSet set) {
+        long bytes = 32L;
+        for (int key = 0; key * (long) KEY < set.length(); key++) {
+            int count = set.get(key * KEY, (key + 1) * KEY).cardinality();
+            if (count > 0) {
+                bytes += 2L + 4L + 16L + (count <= ARRAY_MAX ? 2L * count : 8L * 1024);
+            }
+        }
+        return bytes;
+    }
+
+    private static CompressedBitmap fromBitSet(BitSet set) {
+        return CompressedBitmap.fromSorted(set.stream().toArray(), set.cardinality());
+    }
+
+    private static void assertSameAs(CompressedBitmap bitmap, BitSet expected, int domain) {
+        assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+        assertThat(bitmap.isEmpty()).isEqualTo(expected.isEmpty());
+        assertThat(bitmap.estimatedBytes()).isEqualTo(expectedBytes(expected));
+        for (int value = 0; value < domain; value++) {
+            if (bitmap.contains(value) != expected.get(value)) {
+                assertThat(bitmap.contains(value)).as("contains(%d)", value).isEqualTo(expected.get(value));
+            }
+        }
+    }
+
+    private static int andCardinality(BitSet a, BitSet b) {
+        BitSet and = (BitSet) a.clone();
+        and.and(b);
+        return and.cardinality();
+    }
+
+    @Test
+    void arrayContainerIsPromotedAndDemotedAcrossTheThreshold() {
+        Random random = new Random(1);
+        BitSet expected = new BitSet();
+        CompressedBitmap bitmap = CompressedBitmap.EMPTY;
+        // 同一個桶 (高 16 位元為 1) 加到超過門檻
+        while (expected.cardinality() < ARRAY_MAX + 500) {
+            int value = KEY + random.nextInt(KEY);
+            CompressedBitmap updated = bitmap.with(value);
+            if (expected.get(value)) {
+                assertThat(updated).isSameAs(bitmap);
+            }
+            expected.set(value);
+            bitmap = updated;
+            assertThat(bitmap.estimatedBytes()).isEqualTo(expectedBytes(expected));
+        }
+        assertSameAs(bitmap, expected, 2 * KEY);
+        CompressedBitmap promoted = bitmap;
+        BitSet promotedExpected = (BitSet) expected.clone();
+
+        // 再逐一移除到門檻以下，並清空整個桶
+        int[] values = expected.stream().toArray();
+        for (int i = 0; i < values.length; i++) {
+            int swap = i + random.nextInt(values.length - i);
+            int value = values[swap];
+            values[swap] = values[i];
+            bitmap = bitmap.without(value);
+            expected.clear(value);
+            assertThat(bitmap.estimatedBytes()).isEqualTo(expectedBytes(expected));
+            if (expected.cardinality() == ARRAY_MAX - 1 || expected.cardinality() == 10) {
+                assertSameAs(bitmap, expected, 2 * KEY);
+            }
+        }
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThat(bitmap.without(KEY + 5)).isSameAs(bitmap);
+        // 已發佈的集合不受之後的 with / without 影響
+        assertSameAs(promoted, promotedExpected, 2 * KEY);
+    }
+
+    @Test
+    void fromSortedPicksTheContainerBySizeAcrossSeveralKeys() {
+        BitSet expected = new BitSet();
+        Random random = new Random(2);
+        // 桶 0 稠密、桶 2 正好 4096、桶 3 為 4097、桶 5 稀疏，桶 1 / 4 沒有元素
+        while (expected.get(0, KEY).cardinality() < 20_000) {
+            expected.set(random.nextInt(KEY));
+        }
+        for (int i = 0; i < ARRAY_MAX; i++) {
+            expected.set(2 * KEY + i * 16);
+        }
+        for (int i = 0; i <= ARRAY_MAX; i++) {
+            expected.set(3 * KEY + i * 15);
+        }
+        for (int i = 0; i < 37; i++) {
+            expected.set(5 * KEY + random.nextInt(KEY));
+        }
+        CompressedBitmap bitmap = fromBitSet(expected);
+        assertSameAs(bitmap, expected, 6 * KEY);
+        assertThat(bitmap.contains(Integer.MAX_VALUE)).isFalse();
+        assertThat(CompressedBitmap.fromSorted(new int[0], 0)).isSameAs(CompressedBitmap.EMPTY);
+    }
+
+    @Test
+    void andCardinalityMatchesBitSetForEveryContainerPair() {
+        Random random = new Random(3);
+        // 每個桶的大小：稠密 (點陣)、中等 (陣列)、極少 (陣列，與大陣列相比時走二分搜尋)、空
+        int[] sizes = {30_000, ARRAY_MAX + 1, 3_000, 1_000, 20, 1, 0};
+        BitSet[] sets = new BitSet[12];
+        for (int s = 0; s < sets.length; s++) {
+            sets[s] = new BitSet();
+            for (int key = 0; key < 4; key++) {
+                int size = sizes[random.nextInt(sizes.length)];
+                // 前半的集合集中在桶的前段，讓交集不會太小
+                int span = s % 2 == 0 ? KEY : 8 * size + 64;
+                while (sets[s].get(key * KEY, (key + 1) * KEY).cardinality() < size) {
+                    sets[s].set(key * KEY + random.nextInt(Math.min(span, KEY)));
+                }
+            }
+        }
+        CompressedBitmap[] bitmaps = new CompressedBitmap[sets.length];
+        for (int s = 0; s < sets.length; s++) {
+            bitmaps[s] = fromBitSet(sets[s]);
+            assertThat(bitmaps[s].estimatedBytes()).isEqualTo(expectedBytes(sets[s]));
+        }
+        for (int a = 0; a < sets.length; a++) {
+            for (int b = 0; b < sets.length; b++) {
+                assertThat(bitmaps[a].andCardinality(bitmaps[b])).as("%d ∩ %d", a, b).isEqualTo(andCardinality(sets[a], sets[b]));
+            }
+            assertThat(bitmaps[a].andCardinality(CompressedBitmap.EMPTY)).isZero();
+        }
+    }
+
+    @Test
+    void gallopingIntersectionCountsEveryMatch() {
+        BitSet large = new BitSet();
+        for (int i = 0; i < 3_000; i++) {
+            large.set(KEY + i * 7);
+        }
+        // 小的一邊有命中、未命中，也有超過大陣列最後一個元素的值
+        BitSet small = new BitSet();
+        for (int value : new int[]{KEY, KEY + 3, KEY + 14, KEY + 700, KEY + 701, KEY + 2_999 * 7, KEY + 30_000, KEY + 40_000}) {
+            small.set(value);
+        }
+        CompressedBitmap a = fromBitSet(small);
+        CompressedBitmap b = fromBitSet(large);
+
+        assertThat(a.andCardinality(b)).isEqualTo(andCardinality(small, large)).isEqualTo(4);
+        assertThat(b.andCardinality(a)).isEqualTo(4);
+    }
+}
@@ -0,0 +1,109 @@
+package com.matsuzaka.bigdata.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 熱門度排名的增減與寫入時複製：各版本的排名與逐一計數的結果相同，已發佈的版本不受之後的異動影響，
+ * 一次異動只複製被寫到的分段
+ */
+class CoursePopularityIndexTest {
+
+    /** 人數由多到少、同人數時的順序不固定，因此比較人數序列與每門課的人數 */
+    private static void assertMatches(CoursePopularityIndex index, int[] expected) {
+        int nonEmpty = (int) Arrays.stream(expected).filter(count -> count > 0).count();
+        CoursePopularityIndex.Ranking ranking = index.top(Integer.MAX_VALUE);
+        assertThat(ranking.size()).isEqualTo(nonEmpty);
+        int[] expectedCounts = IntStream.of(expected).filter(count -> count > 0).boxed()
+                .sorted(Comparator.reverseOrder()).mapToInt(Integer::intValue).toArray();
+        assertThat(ranking.counts()).containsExactly(expectedCounts);
+        for (int i = 0; i < ranking.size(); i++) {
+            assertThat(ranking.counts()[i]).isEqualTo(expected[ranking.courseIds()[i]]);
+        }
+        for (int courseId = 0; courseId < expected.length; courseId++) {
+            assertThat(index.count(courseId)).isEqualTo(expected[courseId]);
+        }
+    }
+
+    @Test
+    void rankingMatchesCountsAcrossSegmentsAndVersions() {
+        // 課程數跨過數個分段，人數也會超過建立時的最大值 (greater[] 需要擴充)
+        int courses = 3 * SegmentedIntArray.SEGMENT_SIZE + 17;
+        Random random = new Random(11);
+        int[] counts = new int[courses];
+        for (int courseId = 1; courseId < courses; courseId++) {
+            counts[courseId] = random.nextInt(4);
+        }
+        CoursePopularityIndex index = CoursePopularityIndex.fromCounts(counts);
+        assertMatches(index, counts);
+
+        for (int round = 0; round < 20; round++) {
+            int[] before = counts.clone();
+            CoursePopularityIndex previous = index;
+            CoursePopularityIndex.Editor editor = index.edit();
+            for (int i = 0; i < 500; i++) {
+                // 偏向少數幾門課，讓人數持續成長
+                int courseId = random.nextInt(4) == 0 ? random.nextInt(8) : random.nextInt(courses);
+                if (random.nextInt(3) > 0) {
+                    editor.increment(courseId);
+                    counts[courseId]++;
+                } else {
+                    editor.decrement(courseId);
+                    counts[courseId] = Math.max(0, counts[courseId] - 1);
+                }
+            }
+            index = editor.build();
+            assertMatches(index, counts);
+            assertMatches(previous, before);
+        }
+    }
+
+    @Test
+    void newCourseIdBeyondTheRangeStartsAtZero() {
+        CoursePopularityIndex index = CoursePopularityIndex.fromCounts(new int[]{0, 2, 1});
+        CoursePopularityIndex.Editor editor = index.edit();
+        int newCourse = 2 * SegmentedIntArray.SEGMENT_SIZE;
+        editor.increment(newCourse);
+        editor.increment(newCourse);
+        editor.increment(newCourse);
+        CoursePopularityIndex updated = editor.build();
+
+        assertThat(updated.capacity()).isGreaterThan(newCourse);
+        assertThat(updated.top(3).courseIds()).containsExactly(newCourse, 1, 2);
+        assertThat(updated.count(newCourse - 1)).isZero();
+        assertThat(index.capacity()).isEqualTo(3);
+        assertThat(index.top(3).courseIds()).containsExactly(1, 2);
+    }
+
+    @Test
+    void singleWriteCopiesOnlyTheTouchedSegments() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int courses = 1_000_000;
+        int[] counts = new int[courses];
+        Arrays.fill(counts, 1, courses, 5);
+        CoursePopularityIndex index = CoursePopularityIndex.fromCounts(counts);
+
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100; i++) {
+            CoursePopularityIndex.Editor editor = index.edit();
+            editor.increment(1 + i * 9_973);
+            index = editor.build();
+        }
+        long perWrite = (threads.getCurrentThreadAllocatedBytes() - start) / 100;
+
+        // 複製四個完整陣列約 16 MB；分段複製只需要分段參照陣列 (約 4 KB × 4) 與少數幾個 4 KB 的分段
+        assertThat(perWrite).isLessThan(256 * 1024);
+        assertThat(index.top(1).counts()).containsExactly(6);
+    }
+}
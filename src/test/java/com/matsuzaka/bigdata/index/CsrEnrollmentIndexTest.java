@@ -0,0 +1,76 @@
+package com.matsuzaka.bigdata.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CSR 索引的學生端 / 課程端區間與前 K 名課程
+ */
+class CsrEnrollmentIndexTest {
+
+    /** 課程 1 有 3 人、課程 2 有 1 人、課程 3 有 3 人、課程 4 沒有人 */
+    private static CsrEnrollmentIndex sample() {
+        CsrEnrollmentIndex.Builder builder = new CsrEnrollmentIndex.Builder(8);
+        builder.add(1, 1, 1, 100);
+        builder.add(2, 2, 1, 101);
+        builder.add(3, 3, 1, 102);
+        builder.add(4, 1, 2, 103);
+        builder.add(5, 1, 3, 104);
+        builder.add(6, 2, 3, 105);
+        builder.add(7, 3, 3, 106);
+        return builder.build(5, 4);
+    }
+
+    @Test
+    void rangesOnBothSidesFollowInsertionOrder() {
+        CsrEnrollmentIndex index = sample();
+
+        assertThat(index.size()).isEqualTo(7);
+        assertThat(index.maxStudentId()).isEqualTo(5);
+        assertThat(index.maxCourseId()).isEqualTo(4);
+        List<Integer> coursesOfStudent1 = new ArrayList<>();
+        for (int pos = index.studentStart(1); pos < index.studentEnd(1); pos++) {
+            coursesOfStudent1.add(index.studentCourseIdAt(pos));
+        }
+        assertThat(coursesOfStudent1).containsExactly(1, 2, 3);
+        List<Integer> studentsOfCourse3 = new ArrayList<>();
+        for (int pos = index.courseStart(3); pos < index.courseEnd(3); pos++) {
+            studentsOfCourse3.add(index.courseStudentIdAt(pos));
+        }
+        assertThat(studentsOfCourse3).containsExactly(1, 2, 3);
+        // 沒有選課紀錄、但在 id 範圍內的學生 / 課程是空區間
+        assertThat(index.studentEnd(5) - index.studentStart(5)).isZero();
+        assertThat(index.courseDegree(4)).isZero();
+    }
+
+    @Test
+    void topCoursesOrdersByDegreeThenSmallerId() {
+        CsrEnrollmentIndex index = sample();
+
+        assertThat(index.topCourses(1)).containsExactly(1);
+        assertThat(index.topCourses(2)).containsExactly(1, 3);
+        // 沒有學生的課程不列入，k 超過課程數時只回傳有學生的課程
+        assertThat(index.topCourses(10)).containsExactly(1, 3, 2);
+        assertThat(index.topCourses(Integer.MAX_VALUE)).containsExactly(1, 3, 2);
+    }
+
+    @Test
+    void nonPositiveKReturnsNoCourses() {
+        CsrEnrollmentIndex index = sample();
+
+        assertThat(index.topCourses(0)).isEmpty();
+        assertThat(index.topCourses(-1)).isEmpty();
+        assertThat(CsrEnrollmentIndex.topByDegree(3, id -> id + 1, 0)).isEmpty();
+        assertThat(CsrEnrollmentIndex.topByDegree(3, id -> id + 1, Integer.MIN_VALUE)).isEmpty();
+    }
+
+    @Test
+    void topByDegreeHandlesAnEmptyRange() {
+        assertThat(CsrEnrollmentIndex.topByDegree(-1, id -> 1, 5)).isEmpty();
+        assertThat(CsrEnrollmentIndex.topByDegree(0, id -> 0, 5)).isEmpty();
+    }
+}
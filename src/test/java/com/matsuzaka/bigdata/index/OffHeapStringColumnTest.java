@@ -0,0 +1,111 @@
+package com.matsuzaka.bigdata.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 堆外字典編碼的字串欄位：讀回的字串與寫入時相同，重複的字串只存一份，沒有值或超出範圍的 id 回傳 null
+ */
+class OffHeapStringColumnTest {
+
+    @Test
+    void duplicateStringsShareOneEntry() {
+        OffHeapStringColumn.Builder builder = new OffHeapStringColumn.Builder(10);
+        builder.set(1, "王小明");
+        builder.set(2, "Alice");
+        builder.set(3, "王小明");
+        builder.set(4, "Alice");
+        builder.set(5, "");
+        OffHeapStringColumn column = builder.build(5);
+
+        assertThat(column.distinctCount()).isEqualTo(3);
+        assertThat(column.get(1)).isEqualTo("王小明");
+        assertThat(column.get(3)).isEqualTo("王小明");
+        assertThat(column.get(2)).isEqualTo("Alice");
+        assertThat(column.get(4)).isEqualTo("Alice");
+        assertThat(column.get(5)).isEmpty();
+        // 王小明 每字 3 bytes，只存一份
+        assertThat(column.offHeapBytes()).isEqualTo(9 + 5);
+    }
+
+    @Test
+    void multiByteUtf8RoundTrips() {
+        String[] values = {"資料結構與演算法", "東京大学", "서울", "naïve café", "emoji 😀 與 𠮷", "a"};
+        OffHeapStringColumn.Builder builder = new OffHeapStringColumn.Builder(values.length);
+        for (int i = 0; i < values.length; i++) {
+            builder.set(i, values[i]);
+        }
+        OffHeapStringColumn column = builder.build(values.length - 1);
+        for (int i = 0; i < values.length; i++) {
+            assertThat(column.get(i)).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void nullAndMissingIdsReturnNull() {
+        OffHeapStringColumn.Builder builder = new OffHeapStringColumn.Builder(4);
+        builder.set(0, "zero");
+        builder.set(2, null);
+        builder.set(3, "three");
+        // 之後改成 null 的 id 不再有值
+        builder.set(3, null);
+        // build(maxId) 大於已設定的範圍時，後面補上沒有值的 id
+        OffHeapStringColumn column = builder.build(40);
+
+        assertThat(column.get(0)).isEqualTo("zero");
+        assertThat(column.get(1)).isNull();
+        assertThat(column.get(2)).isNull();
+        assertThat(column.get(3)).isNull();
+        assertThat(column.get(40)).isNull();
+        assertThat(column.get(41)).isNull();
+        assertThat(column.get(-1)).isNull();
+        assertThat(column.distinctCount()).isEqualTo(2);
+    }
+
+    @Test
+    void idsPastTheInitialCapacityGrowTheBuilder() {
+        // 遠超過 expectedIds、初始 1 KB 的位元組陣列與 64 格的 offsets，也包含一個比位元組陣列成長量更長的字串
+        Random random = new Random(7);
+        Map<Integer, String> expected = new HashMap<>();
+        Set<String> everSet = new HashSet<>();
+        OffHeapStringColumn.Builder builder = new OffHeapStringColumn.Builder(1);
+        int maxId = 0;
+        for (int i = 0; i < 5_000; i++) {
+            int id = random.nextInt(20_000);
+            String value = random.nextInt(4) == 0 ? "課程 #" + random.nextInt(100) : "學生 " + i + " 姓名";
+            builder.set(id, value);
+            expected.put(id, value);
+            everSet.add(value);
+            maxId = Math.max(maxId, id);
+        }
+        String longValue = "長".repeat(5_000);
+        builder.set(maxId + 1, longValue);
+        expected.put(maxId + 1, longValue);
+        everSet.add(longValue);
+        OffHeapStringColumn column = builder.build(maxId + 1);
+
+        for (int id = 0; id <= maxId + 1; id++) {
+            assertThat(column.get(id)).as("id %d", id).isEqualTo(expected.get(id));
+        }
+        // 被覆寫的 id 原本的字串仍留在字典中
+        assertThat(column.distinctCount()).isEqualTo(everSet.size());
+    }
+
+    @Test
+    void buildWithSmallerMaxIdDropsLaterIds() {
+        OffHeapStringColumn.Builder builder = new OffHeapStringColumn.Builder(100);
+        builder.set(5, "five");
+        builder.set(50, "fifty");
+        OffHeapStringColumn column = builder.build(10);
+
+        assertThat(column.get(5)).isEqualTo("five");
+        assertThat(column.get(50)).isNull();
+    }
+}
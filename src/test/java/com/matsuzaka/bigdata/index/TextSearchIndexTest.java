@@ -0,0 +1,140 @@
+package com.matsuzaka.bigdata.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 前綴 (詞首排序陣列) 與子字串 (3-gram 倒排索引) 搜尋，與逐筆掃描所有欄位的結果比較
+ */
+class TextSearchIndexTest {
+
+    /** 依 id 遞增的文件，每份兩個欄位 */
+    private static TextSearchIndex index(List<String[]> docs) {
+        TextSearchIndex.Builder builder = new TextSearchIndex.Builder(2);
+        for (int i = 0; i < docs.size(); i++) {
+            builder.add(10 + 3 * i, docs.get(i));
+        }
+        return builder.build();
+    }
+
+    private static boolean hasWordStartingWith(String text, String q) {
+        for (int offset = 0; offset < text.length(); offset++) {
+            if (Character.isLetterOrDigit(text.charAt(offset))
+                    && (offset == 0 || !Character.isLetterOrDigit(text.charAt(offset - 1)))
+                    && text.startsWith(q, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] scan(List<String[]> docs, String query, boolean prefix, int limit) {
+        String q = query.toLowerCase(Locale.ROOT);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < docs.size() && ids.size() < limit; i++) {
+            for (String value : docs.get(i)) {
+                String text = value == null ? "" : value.toLowerCase(Locale.ROOT);
+                if (prefix ? hasWordStartingWith(text, q) : text.contains(q)) {
+                    ids.add(10 + 3 * i);
+                    break;
+                }
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void matchesAFullScanOnRandomText() {
+        // 小字母表讓 gram 大量重複，也讓「每個 gram 都出現但不相連」的候選常常發生
+        String alphabet = "abcAB1 .@-_%";
+        Random random = new Random(3);
+        List<String[]> docs = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String[] fields = new String[2];
+            for (int f = 0; f < 2; f++) {
+                StringBuilder text = new StringBuilder();
+                int length = random.nextInt(14);
+                for (int c = 0; c < length; c++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                fields[f] = random.nextInt(20) == 0 ? null : text.toString();
+            }
+            docs.add(fields);
+        }
+        TextSearchIndex index = index(docs);
+        assertThat(index.size()).isEqualTo(docs.size());
+
+        for (int round = 0; round < 2_000; round++) {
+            StringBuilder query = new StringBuilder();
+            int length = 1 + random.nextInt(5);
+            for (int c = 0; c < length; c++) {
+                query.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String q = query.toString();
+            for (int limit : new int[]{1, 7, Integer.MAX_VALUE}) {
+                assertThat(index.prefix(q, limit)).as("prefix '%s' limit %d", q, limit).containsExactly(scan(docs, q, true, limit));
+                assertThat(index.contains(q, limit)).as("contains '%s' limit %d", q, limit).containsExactly(scan(docs, q, false, limit));
+            }
+        }
+    }
+
+    @Test
+    void prefixMatchesTheStartOfAnyWordIgnoringCase() {
+        TextSearchIndex index = index(List.of(
+                new String[]{"Wei Chen", "wei.chen@example.com"},
+                new String[]{"Chenoa Smith", "c.smith@example.com"},
+                new String[]{"Lichen Wu", "lw@example.com"}));
+
+        assertThat(index.prefix("chen", 10)).containsExactly(10, 13);
+        assertThat(index.prefix("CHEN", 10)).containsExactly(10, 13);
+        // "lichen" 中間的 chen 不是詞首
+        assertThat(index.prefix("lich", 10)).containsExactly(16);
+        assertThat(index.prefix("example", 10)).containsExactly(10, 13, 16);
+        assertThat(index.prefix("example", 2)).containsExactly(10, 13);
+        assertThat(index.prefix("nobody", 10)).isEmpty();
+    }
+
+    @Test
+    void substringVerifiesThatAllGramsAreAdjacent() {
+        TextSearchIndex index = index(List.of(
+                new String[]{"abcxbcd", ""},
+                new String[]{"zabcdz", ""},
+                new String[]{"", "ABCD"}));
+
+        // 第一份文件含有 abc 與 bcd 兩個 gram，但不含 abcd
+        assertThat(index.contains("abcd", 10)).containsExactly(13, 16);
+        assertThat(index.contains("bc", 10)).containsExactly(10, 13, 16);
+        assertThat(index.contains("x", 10)).containsExactly(10);
+        assertThat(index.contains("d", 10)).containsExactly(10, 13, 16);
+        assertThat(index.contains("d", 1)).containsExactly(10);
+        assertThat(index.contains("abcde", 10)).isEmpty();
+    }
+
+    @Test
+    void emptyQueryOrNonPositiveLimitReturnsNothing() {
+        TextSearchIndex index = index(List.<String[]>of(new String[]{"Student 1", "student1@example.com"}));
+
+        assertThat(index.prefix("", 10)).isEmpty();
+        assertThat(index.contains("", 10)).isEmpty();
+        assertThat(index.prefix("stu", 0)).isEmpty();
+        assertThat(index.contains("stu", -1)).isEmpty();
+        assertThat(new TextSearchIndex.Builder(1).build().contains("a", 10)).isEmpty();
+    }
+
+    @Test
+    void builderRejectsWrongFieldCountsAndNonIncreasingIds() {
+        TextSearchIndex.Builder builder = new TextSearchIndex.Builder(2);
+        builder.add(5, "a", "b");
+
+        assertThatThrownBy(() -> builder.add(6, "only one")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.add(5, "a", "b")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TextSearchIndex.Builder(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.BatchQueryResult;
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 功能 1 / 2 的批次查詢：每個 id 的結果與單筆查詢相同，重複的 id 只出現一次，結果依請求中 id 的順序排列
+ *
+ * 資料庫端以 bigdata.query.batch-chunk-size (預設 1000) 個 id 為一個 IN (...) 區塊，
+ * 因此請求中混入不存在的 id 讓批次跨過數個區塊。
+ */
+class BatchLookupTest extends SeededDatabaseTest {
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    /** 結果應有的 id 順序：請求中第一次出現的順序，重複的 id 只保留第一個 */
+    private static List<Long> requestOrder(List<Long> request) {
+        return request.stream().distinct().toList();
+    }
+
+    @Test
+    void coursesByStudentIdsMatchSingleLookups() {
+        List<Long> studentIds = new ArrayList<>();
+        for (long studentId = STUDENTS; studentId >= 1; studentId--) {
+            studentIds.add(studentId);
+            // 不存在的學生，讓資料庫端的批次跨過多個區塊
+            studentIds.add(10_000 + studentId);
+            studentIds.add(20_000 + studentId);
+            studentIds.add(30_000 + studentId);
+            studentIds.add(40_000 + studentId);
+        }
+        studentIds.add(1L);
+        studentIds.add(STUDENTS + 0L);
+
+        BatchQueryResult<StudentCourseInfo> db = performanceService.findCoursesByStudentIds_DB(studentIds);
+        BatchQueryResult<StudentCourseInfo> csr = performanceService.findCoursesByStudentIds_Csr(studentIds);
+        assertThat(db.data().keySet()).containsExactlyElementsOf(requestOrder(studentIds));
+        assertThat(csr.data().keySet()).containsExactlyElementsOf(requestOrder(studentIds));
+        assertThat(db.idCount()).isEqualTo(5 * STUDENTS);
+
+        for (long studentId = 1; studentId <= STUDENTS; studentId++) {
+            List<StudentCourseInfo> expected = sorted(performanceService.findCoursesByStudentId_DB(studentId).data());
+            assertThat(sorted(db.data().get(studentId))).isEqualTo(expected);
+            assertThat(sorted(csr.data().get(studentId))).isEqualTo(expected);
+            assertThat(db.data().get(10_000 + studentId)).isEmpty();
+            assertThat(csr.data().get(10_000 + studentId)).isEmpty();
+        }
+        assertThat(db.rowCount()).isEqualTo(csr.rowCount());
+    }
+
+    @Test
+    void studentsByCourseIdsMatchSingleLookups() {
+        List<Long> courseIds = new ArrayList<>(LongStream.rangeClosed(1, COURSES).boxed().toList());
+        Collections.shuffle(courseIds, new Random(3));
+        courseIds.add(0, COURSES + 100L);
+        courseIds.add(courseIds.get(1));
+
+        BatchQueryResult<CourseStudentInfo> db = performanceService.findStudentsByCourseIds_DB(courseIds);
+        BatchQueryResult<CourseStudentInfo> csr = performanceService.findStudentsByCourseIds_Csr(courseIds);
+        assertThat(db.data().keySet()).containsExactlyElementsOf(requestOrder(courseIds));
+        assertThat(csr.data().keySet()).containsExactlyElementsOf(requestOrder(courseIds));
+        assertThat(db.data().get(COURSES + 100L)).isEmpty();
+        assertThat(csr.data().get(COURSES + 100L)).isEmpty();
+
+        long rows = 0;
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            List<CourseStudentInfo> expected = sorted(performanceService.findStudentsByCourseId_DB(courseId).data());
+            assertThat(sorted(db.data().get(courseId))).isEqualTo(expected);
+            assertThat(sorted(csr.data().get(courseId))).isEqualTo(expected);
+            rows += expected.size();
+        }
+        assertThat(db.rowCount()).isEqualTo(rows);
+        assertThat(csr.rowCount()).isEqualTo(rows);
+    }
+
+    @Test
+    void emptyRequestReturnsAnEmptyResult() {
+        assertThat(performanceService.findCoursesByStudentIds_DB(List.of()).data()).isEmpty();
+        assertThat(performanceService.findCoursesByStudentIds_Csr(List.of()).data()).isEmpty();
+        assertThat(performanceService.findStudentsByCourseIds_DB(List.of()).data()).isEmpty();
+        assertThat(performanceService.findStudentsByCourseIds_Csr(List.of()).data()).isEmpty();
+    }
+
+    @Test
+    void rejectsNullIdsAndOversizedBatches() {
+        List<Long> withNull = Arrays.asList(1L, null, 2L);
+        assertThatThrownBy(() -> performanceService.findCoursesByStudentIds_DB(withNull)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.findCoursesByStudentIds_Csr(withNull)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.findStudentsByCourseIds_DB(withNull)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.findStudentsByCourseIds_Csr(withNull)).isInstanceOf(IllegalArgumentException.class);
+
+        List<Long> oversized = LongStream.rangeClosed(1, PerformanceService.MAX_BATCH_IDS + 1).boxed().toList();
+        assertThatThrownBy(() -> performanceService.findCoursesByStudentIds_DB(oversized)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.findStudentsByCourseIds_Csr(oversized)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void batchesRecordTimeAndAllocationOncePerCall() {
+        List<Long> studentIds = LongStream.rangeClosed(1, STUDENTS).boxed().toList();
+        for (String engine : List.of(QueryMetrics.ENGINE_DB, QueryMetrics.ENGINE_CSR)) {
+            long timings = queryMetrics.summary(QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH, engine).count();
+            long allocations = queryMetrics.allocationSummary(QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH, engine).count();
+
+            BatchQueryResult<StudentCourseInfo> result = engine.equals(QueryMetrics.ENGINE_DB)
+                    ? performanceService.findCoursesByStudentIds_DB(studentIds)
+                    : performanceService.findCoursesByStudentIds_Csr(studentIds);
+
+            // 暖機不計入指標
+            assertThat(result.idCount()).isEqualTo(STUDENTS);
+            assertThat(queryMetrics.summary(QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH, engine).count()).isEqualTo(timings + 1);
+            if (QueryHarness.currentThreadAllocatedBytes() >= 0) {
+                assertThat(result.allocatedBytes()).isPositive();
+                assertThat(queryMetrics.allocationSummary(QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH, engine).count()).isEqualTo(allocations + 1);
+            } else {
+                assertThat(result.allocatedBytes()).isEqualTo(-1);
+            }
+        }
+    }
+
+    @Test
+    void endToEndTimingDoesNotChangeBatchResults() {
+        List<Long> courseIds = LongStream.rangeClosed(1, COURSES).boxed().toList();
+        BatchQueryResult<CourseStudentInfo> core = performanceService.findStudentsByCourseIds_DB(courseIds);
+        performanceService.setEndToEndTiming(true);
+        try {
+            assertThat(performanceService.findStudentsByCourseIds_DB(courseIds).data()).isEqualTo(core.data());
+        } finally {
+            performanceService.setEndToEndTiming(false);
+        }
+    }
+}
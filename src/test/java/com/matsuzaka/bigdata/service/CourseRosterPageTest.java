@@ -0,0 +1,171 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PageResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 課程名單的分頁 (資料庫 keyset、HashMap offset) 與串流：逐頁串接或串流的結果與一次查詢完整名單相同，
+ * 兩者與其他查詢一樣經由 QueryHarness 暖機並記錄耗時與配置量
+ */
+class CourseRosterPageTest extends SeededDatabaseTest {
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    /** 翻頁期間新增的選課使用初始資料 (2023 年) 之外的日期，方便與原有的紀錄區分 */
+    private static final LocalDate INSERTED_DATE = LocalDate.of(2030, 1, 1);
+
+    private interface PageQuery {
+        PageResult<CourseStudentInfo> page(Long courseId, String cursor, int pageSize);
+    }
+
+    private static List<CourseStudentInfo> allPages(PageQuery query, long courseId, int pageSize) {
+        List<CourseStudentInfo> rows = new ArrayList<>();
+        String cursor = null;
+        do {
+            PageResult<CourseStudentInfo> page = query.page(courseId, cursor, pageSize);
+            assertThat(page.data().size()).isLessThanOrEqualTo(pageSize);
+            // 只有最後一頁可以不滿；有下一頁時這一頁必定是滿的
+            if (page.nextCursor() != null) {
+                assertThat(page.data()).hasSize(pageSize);
+            }
+            rows.addAll(page.data());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return rows;
+    }
+
+    @Test
+    void concatenatedPagesEqualTheFullRoster() {
+        for (long courseId = 1; courseId <= COURSES; courseId += 3) {
+            List<CourseStudentInfo> expected = sorted(performanceService.findStudentsByCourseId_DB(courseId).data());
+            for (int pageSize : new int[]{1, 7, expected.size(), expected.size() + 1, PerformanceService.MAX_PAGE_SIZE}) {
+                assertThat(sorted(allPages(performanceService::findStudentsByCourseIdPage_DB, courseId, pageSize))).isEqualTo(expected);
+                assertThat(sorted(allPages(performanceService::findStudentsByCourseIdPage_InMemory, courseId, pageSize))).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void keysetPagesFollowStudentIdOrder() {
+        List<CourseStudentInfo> rows = allPages(performanceService::findStudentsByCourseIdPage_DB, 1L, 5);
+        List<String> emails = rows.stream().map(CourseStudentInfo::email).toList();
+        // 學生 email 為 "student<id>@example.com"，依 student_id 排序時 id 不遞減
+        List<Integer> studentIds = emails.stream().map(email -> Integer.parseInt(email.substring(7, email.indexOf('@')))).toList();
+        for (int i = 1; i < studentIds.size(); i++) {
+            assertThat(studentIds.get(i)).isGreaterThanOrEqualTo(studentIds.get(i - 1));
+        }
+    }
+
+    @Test
+    void keysetPagesNeitherRepeatNorSkipRowsWhenEnrollmentsAreInsertedMidScan() {
+        long courseId = 2;
+        List<CourseStudentInfo> before = sorted(performanceService.findStudentsByCourseId_DB(courseId).data());
+        List<CourseStudentInfo> rows = new ArrayList<>();
+        String cursor = null;
+        int page = 0;
+        do {
+            PageResult<CourseStudentInfo> result = performanceService.findStudentsByCourseIdPage_DB(courseId, cursor, 10);
+            rows.addAll(result.data());
+            cursor = result.nextCursor();
+            // 每翻一頁就在游標前 (student 1) 與游標後 (最後一位學生) 各新增一筆，同一學生重複修同一門課
+            performanceService.enroll(1L, courseId, INSERTED_DATE.plusDays(page));
+            performanceService.enroll((long) STUDENTS, courseId, INSERTED_DATE.plusDays(page));
+            page++;
+        } while (cursor != null);
+
+        List<CourseStudentInfo> original = sorted(rows.stream().filter(row -> row.enrollmentDate().isBefore(INSERTED_DATE)).toList());
+        assertThat(original).isEqualTo(before);
+        List<CourseStudentInfo> inserted = rows.stream().filter(row -> !row.enrollmentDate().isBefore(INSERTED_DATE)).toList();
+        assertThat(inserted).doesNotHaveDuplicates();
+        // 游標之前的學生 1 不會再被讀到；排在最後的學生在最後一頁之前新增的紀錄都會讀到
+        assertThat(inserted.stream().map(CourseStudentInfo::email).distinct().toList()).containsExactly("student" + STUDENTS + "@example.com");
+        assertThat(inserted).hasSize(page - 1);
+    }
+
+    @Test
+    void emptyAndUnknownCoursesReturnOneEmptyPage() {
+        for (PageQuery query : List.<PageQuery>of(performanceService::findStudentsByCourseIdPage_DB,
+                performanceService::findStudentsByCourseIdPage_InMemory)) {
+            PageResult<CourseStudentInfo> page = query.page(COURSES + 1000L, null, 10);
+            assertThat(page.data()).isEmpty();
+            assertThat(page.nextCursor()).isNull();
+        }
+    }
+
+    @Test
+    void invalidPageSizeOrCursorIsRejected() {
+        for (int pageSize : new int[]{0, -1, PerformanceService.MAX_PAGE_SIZE + 1}) {
+            assertThatThrownBy(() -> performanceService.findStudentsByCourseIdPage_DB(1L, null, pageSize))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> performanceService.findStudentsByCourseIdPage_InMemory(1L, null, pageSize))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        for (String cursor : new String[]{"abc", "1", "1:", ":1", "1:x"}) {
+            assertThatThrownBy(() -> performanceService.findStudentsByCourseIdPage_DB(1L, cursor, 10))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        for (String cursor : new String[]{"abc", "-1", "1:2"}) {
+            assertThatThrownBy(() -> performanceService.findStudentsByCourseIdPage_InMemory(1L, cursor, 10))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void streamingDeliversTheFullRosterOneRowAtATime() {
+        for (long courseId = 1; courseId <= COURSES; courseId += 3) {
+            List<CourseStudentInfo> expected = sorted(performanceService.findStudentsByCourseId_DB(courseId).data());
+            List<CourseStudentInfo> fromDb = new ArrayList<>();
+            List<CourseStudentInfo> fromMemory = new ArrayList<>();
+            assertThat(performanceService.streamStudentsByCourseId_DB(courseId, fromDb::add)).isEqualTo(expected.size());
+            assertThat(performanceService.streamStudentsByCourseId_InMemory(courseId, fromMemory::add)).isEqualTo(expected.size());
+            assertThat(sorted(fromDb)).isEqualTo(expected);
+            assertThat(sorted(fromMemory)).isEqualTo(expected);
+        }
+        List<CourseStudentInfo> none = new ArrayList<>();
+        assertThat(performanceService.streamStudentsByCourseId_DB(COURSES + 1000L, none::add)).isZero();
+        assertThat(performanceService.streamStudentsByCourseId_InMemory(COURSES + 1000L, none::add)).isZero();
+        assertThat(none).isEmpty();
+    }
+
+    @Test
+    void pagesAndStreamsRecordTimeAndAllocationOncePerCall() {
+        for (String engine : List.of(QueryMetrics.ENGINE_DB, QueryMetrics.ENGINE_HASH)) {
+            long pages = queryMetrics.summary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE, engine).count();
+            long streams = queryMetrics.summary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM, engine).count();
+            long pageAllocations = queryMetrics.allocationSummary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE, engine).count();
+            long streamAllocations = queryMetrics.allocationSummary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM, engine).count();
+
+            boolean db = engine.equals(QueryMetrics.ENGINE_DB);
+            PageResult<CourseStudentInfo> page = db
+                    ? performanceService.findStudentsByCourseIdPage_DB(1L, null, 10)
+                    : performanceService.findStudentsByCourseIdPage_InMemory(1L, null, 10);
+            List<CourseStudentInfo> streamed = new ArrayList<>();
+            long count = db
+                    ? performanceService.streamStudentsByCourseId_DB(1L, streamed::add)
+                    : performanceService.streamStudentsByCourseId_InMemory(1L, streamed::add);
+
+            // 暖機不計入指標，也不交給呼叫端的 sink
+            assertThat(page.data()).hasSize(10);
+            assertThat(streamed).hasSize((int) count);
+            assertThat(queryMetrics.summary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE, engine).count()).isEqualTo(pages + 1);
+            assertThat(queryMetrics.summary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM, engine).count()).isEqualTo(streams + 1);
+            if (QueryHarness.currentThreadAllocatedBytes() >= 0) {
+                assertThat(page.allocatedBytes()).isPositive();
+                assertThat(queryMetrics.allocationSummary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE, engine).count()).isEqualTo(pageAllocations + 1);
+                assertThat(queryMetrics.allocationSummary(QueryMetrics.FEATURE_STUDENTS_BY_COURSE_STREAM, engine).count()).isEqualTo(streamAllocations + 1);
+            } else {
+                assertThat(page.allocatedBytes()).isEqualTo(-1);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.MonthlyEnrollmentCount;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 日期區間的課程名單與每月人次：依日期排序的 HashMap 清單上的二分搜尋與 SQL 結果相同，包含區間端點與寫入後的清單
+ */
+class DateRangeQueryTest extends SeededDatabaseTest {
+
+    /** 初始資料的日期都在 2023 年內 */
+    private static final LocalDate[][] RANGES = {
+            {LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31)},
+            {LocalDate.of(2023, 3, 15), LocalDate.of(2023, 3, 15)},
+            {LocalDate.of(2023, 2, 28), LocalDate.of(2023, 5, 1)},
+            {LocalDate.of(2022, 6, 1), LocalDate.of(2023, 1, 31)},
+            {LocalDate.of(2023, 7, 15), LocalDate.of(2024, 6, 15)},
+            {LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31)},
+    };
+
+    private void assertMatchesSql(long courseId) {
+        for (LocalDate[] range : RANGES) {
+            assertThat(sorted(performanceService.findStudentsByCourseIdBetween_InMemory(courseId, range[0], range[1]).data()))
+                    .isEqualTo(sorted(performanceService.findStudentsByCourseIdBetween_DB(courseId, range[0], range[1]).data()));
+            assertThat(performanceService.countEnrollmentsByMonth_InMemory(courseId, range[0], range[1]).data())
+                    .isEqualTo(performanceService.countEnrollmentsByMonth_DB(courseId, range[0], range[1]).data());
+        }
+    }
+
+    @Test
+    void rangesMatchSqlIncludingBothEnds() {
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            assertMatchesSql(courseId);
+        }
+        // 不存在的課程在兩邊都是空結果
+        assertMatchesSql(COURSES + 1000L);
+    }
+
+    @Test
+    void monthlyCountsSumToTheRosterSize() {
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        LocalDate to = LocalDate.of(2023, 12, 31);
+        for (long courseId = 1; courseId <= COURSES; courseId += 5) {
+            long total = performanceService.countEnrollmentsByMonth_InMemory(courseId, from, to).data().stream()
+                    .mapToLong(MonthlyEnrollmentCount::count).sum();
+            assertThat(total).isEqualTo(performanceService.findStudentsByCourseIdBetween_InMemory(courseId, from, to).data().size());
+            assertThat(performanceService.countEnrollmentsByMonth_InMemory(courseId, from, to).data())
+                    .extracting(MonthlyEnrollmentCount::month)
+                    .isSorted()
+                    .allSatisfy(month -> assertThat(month).isBetween(YearMonth.of(2023, 1), YearMonth.of(2023, 12)));
+        }
+    }
+
+    @Test
+    void listsStaySortedByDateAfterOutOfOrderWrites() {
+        long courseId = 4;
+        Random random = new Random(16);
+        // 寫入的日期不依序，有些早於、有些晚於既有紀錄，也有與既有紀錄同一天的
+        for (int i = 0; i < 60; i++) {
+            performanceService.enroll(1L + random.nextInt(STUDENTS), courseId, LocalDate.of(2023, 1, 1).plusDays(random.nextInt(730)));
+        }
+        assertMatchesSql(courseId);
+    }
+
+    @Test
+    void invalidRangesAreRejected() {
+        LocalDate day = LocalDate.of(2023, 6, 1);
+        assertThatThrownBy(() -> performanceService.findStudentsByCourseIdBetween_InMemory(1L, day, day.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.countEnrollmentsByMonth_DB(1L, null, day))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,207 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Enrollment;
+import com.matsuzaka.bigdata.index.CoEnrollmentIndex;
+import com.matsuzaka.bigdata.index.CoursePopularityIndex;
+import com.matsuzaka.bigdata.index.CsrDeltaIndex;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 索引的寫入時複製：batch 在新版本上累積異動，已發佈的版本永不改變，讀取端拿到的每個版本各索引之間都一致
+ */
+class EnrollmentIndexesTest {
+
+    private static final int STUDENTS = 20;
+    private static final int COURSES = 6;
+
+    private static Enrollment enrollment(long id, long studentId, long courseId, int day) {
+        Enrollment e = new Enrollment();
+        e.setId(id);
+        e.setStudentId(studentId);
+        e.setCourseId(courseId);
+        e.setEnrollmentDate(LocalDate.of(2024, 1, 1).plusDays(day));
+        return e;
+    }
+
+    /** 與 PerformanceService 從快照還原的方式相同，由一組紀錄建立第一個版本 */
+    private static EnrollmentIndexes indexes(List<Enrollment> enrollments) {
+        CsrEnrollmentIndex.Builder builder = new CsrEnrollmentIndex.Builder(enrollments.size());
+        Map<Long, List<Enrollment>> byStudent = new HashMap<>();
+        Map<Long, List<Enrollment>> byCourse = new HashMap<>();
+        for (Enrollment e : enrollments) {
+            builder.add(Math.toIntExact(e.getId()), Math.toIntExact(e.getStudentId()), Math.toIntExact(e.getCourseId()),
+                    (int) e.getEnrollmentDate().toEpochDay());
+            byStudent.computeIfAbsent(e.getStudentId(), k -> new ArrayList<>()).add(e);
+            byCourse.computeIfAbsent(e.getCourseId(), k -> new ArrayList<>()).add(e);
+        }
+        byStudent.values().forEach(list -> list.sort(DatePostings.ORDER));
+        byCourse.values().forEach(list -> list.sort(DatePostings.ORDER));
+        CsrEnrollmentIndex base = builder.build(STUDENTS, COURSES);
+        int[] courseCounts = new int[COURSES + 1];
+        for (int courseId = 0; courseId <= COURSES; courseId++) {
+            courseCounts[courseId] = base.courseDegree(courseId);
+        }
+        return new EnrollmentIndexes(new PostingMap(byStudent), new PostingMap(byCourse), CoursePopularityIndex.fromCounts(courseCounts),
+                new CsrDeltaIndex(base), CoEnrollmentIndex.build(base, COURSES));
+    }
+
+    @Test
+    void publishedVersionIsUnchangedByLaterBatches() {
+        Enrollment a = enrollment(1, 1, 1, 0);
+        Enrollment b = enrollment(2, 1, 2, 1);
+        Enrollment c = enrollment(3, 2, 1, 2);
+        EnrollmentIndexes v0 = indexes(List.of(a, b, c));
+
+        EnrollmentIndexes.Batch batch = v0.batch();
+        assertThat(batch.add(enrollment(4, 3, 1, 3))).isTrue();
+        assertThat(batch.remove(b)).isTrue();
+        // build() 之前，異動不會出現在任何已發佈的版本中
+        assertThat(v0.enrollmentsByStudent().get(3L)).isEmpty();
+        assertThat(v0.enrollmentsByStudent().get(1L)).containsExactly(a, b);
+        EnrollmentIndexes v1 = batch.build();
+
+        assertThat(v0.enrollmentsByStudent().get(1L)).containsExactly(a, b);
+        assertThat(v0.enrollmentsByCourse().get(1L)).containsExactly(a, c);
+        assertThat(v0.csrIndex().courseDegree(1)).isEqualTo(2);
+        assertThat(v0.coursePopularity().count(1)).isEqualTo(2);
+        assertThat(v0.coEnrollment().students(2).contains(1)).isTrue();
+        assertThat(v0.enrollmentsByStudent().size()).isEqualTo(2);
+
+        assertThat(v1.enrollmentsByStudent().get(1L)).containsExactly(a);
+        assertThat(v1.enrollmentsByStudent().get(3L)).hasSize(1);
+        assertThat(v1.enrollmentsByCourse().get(2L)).isEmpty();
+        assertThat(v1.csrIndex().courseDegree(1)).isEqualTo(3);
+        assertThat(v1.csrIndex().courseDegree(2)).isZero();
+        assertThat(v1.coursePopularity().top(COURSES).courseIds()).containsExactly(1);
+        assertThat(v1.coEnrollment().students(2).contains(1)).isFalse();
+        assertThat(v1.coEnrollment().students(1).contains(3)).isTrue();
+        assertThat(v1.enrollmentsByStudent().size()).isEqualTo(3);
+        assertThat(v1.enrollmentsByCourse().size()).isEqualTo(1);
+    }
+
+    @Test
+    void batchWithoutChangesReturnsTheSameVersion() {
+        Enrollment a = enrollment(1, 1, 1, 0);
+        EnrollmentIndexes v0 = indexes(List.of(a));
+
+        EnrollmentIndexes.Batch batch = v0.batch();
+        // 增量刷新再次讀到已套用的紀錄、退選不存在的紀錄
+        assertThat(batch.add(enrollment(1, 1, 1, 0))).isFalse();
+        assertThat(batch.remove(enrollment(9, 1, 1, 0))).isFalse();
+        assertThat(batch.build()).isSameAs(v0);
+    }
+
+    @Test
+    void droppingOneOfTwoEnrollmentsInTheSameCourseKeepsTheStudentInTheBitmap() {
+        Enrollment first = enrollment(1, 5, 3, 0);
+        Enrollment retake = enrollment(2, 5, 3, 200);
+        EnrollmentIndexes.Batch batch = indexes(List.of(first, retake)).batch();
+        assertThat(batch.remove(first)).isTrue();
+        EnrollmentIndexes v1 = batch.build();
+        assertThat(v1.coEnrollment().students(3).contains(5)).isTrue();
+        assertThat(v1.csrIndex().studentDegree(5)).isEqualTo(1);
+
+        batch = v1.batch();
+        assertThat(batch.remove(retake)).isTrue();
+        EnrollmentIndexes v2 = batch.build();
+        assertThat(v2.coEnrollment().students(3).isEmpty()).isTrue();
+        assertThat(v2.coursePopularity().count(3)).isZero();
+        assertThat(v2.enrollmentsByStudent().size()).isZero();
+    }
+
+    @Test
+    void readersNeverSeeAHalfAppliedWrite() throws InterruptedException {
+        List<Enrollment> live = new ArrayList<>();
+        Random random = new Random(7);
+        long nextId = 1;
+        for (; nextId <= 100; nextId++) {
+            live.add(enrollment(nextId, 1 + random.nextInt(STUDENTS), 1 + random.nextInt(COURSES), random.nextInt(365)));
+        }
+        // 與 PerformanceService 的 volatile 參照相同，每一批以一次替換發佈
+        AtomicReference<EnrollmentIndexes> published = new AtomicReference<>(indexes(live));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                while (writing.get()) {
+                    String violation = inconsistency(published.get());
+                    if (violation != null) {
+                        violations.add(violation);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 0; i < 3_000; i++) {
+            EnrollmentIndexes.Batch batch = published.get().batch();
+            // 一批中混合多筆選課與退選，讀取端只會看到整批之前或之後的版本
+            for (int j = 0; j < 3; j++) {
+                if (random.nextBoolean() || live.isEmpty()) {
+                    Enrollment e = enrollment(nextId++, 1 + random.nextInt(STUDENTS), 1 + random.nextInt(COURSES), random.nextInt(365));
+                    batch.add(e);
+                    live.add(e);
+                } else {
+                    batch.remove(live.remove(random.nextInt(live.size())));
+                }
+            }
+            published.set(batch.build());
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertThat(violations).isEmpty();
+        assertThat(inconsistency(published.get())).isNull();
+        long total = 0;
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            total += published.get().enrollmentsByCourse().get(courseId).size();
+        }
+        assertThat(total).isEqualTo(live.size());
+    }
+
+    /**
+     * 同一版本中 HashMap、CSR、熱門度與點陣索引對每個學生 / 課程的描述必須相同；一致時回傳 null
+     */
+    private static String inconsistency(EnrollmentIndexes idx) {
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            int hash = idx.enrollmentsByCourse().get(courseId).size();
+            int csr = idx.csrIndex().courseDegree((int) courseId);
+            int popularity = idx.coursePopularity().count((int) courseId);
+            if (hash != csr || csr != popularity) {
+                return "course " + courseId + ": hash=" + hash + " csr=" + csr + " popularity=" + popularity;
+            }
+        }
+        for (long studentId = 1; studentId <= STUDENTS; studentId++) {
+            List<Enrollment> postings = idx.enrollmentsByStudent().get(studentId);
+            if (postings.size() != idx.csrIndex().studentDegree((int) studentId)) {
+                return "student " + studentId + ": hash=" + postings.size() + " csr=" + idx.csrIndex().studentDegree((int) studentId);
+            }
+            for (int courseId = 1; courseId <= COURSES; courseId++) {
+                boolean enrolled = false;
+                for (Enrollment e : postings) {
+                    enrolled |= e.getCourseId() == courseId;
+                }
+                if (enrolled != idx.coEnrollment().students(courseId).contains((int) studentId)) {
+                    return "bitmap course " + courseId + " student " + studentId;
+                }
+            }
+        }
+        return null;
+    }
+}
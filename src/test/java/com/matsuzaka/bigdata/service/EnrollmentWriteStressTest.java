@@ -0,0 +1,151 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import com.matsuzaka.bigdata.entity.Enrollment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 大量並行的選課 / 退選與查詢混合流量後，記憶體索引 (HashMap、CSR、熱門度排名、共同修課點陣) 的結果必須與 SQL 一致。
+ * 同時有其他系統直接寫入資料表，由並行的增量刷新與全量校正同步到記憶體索引
+ */
+class EnrollmentWriteStressTest extends SeededDatabaseTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int WRITES_PER_WRITER = 400;
+
+    @Test
+    void inMemoryIndexesMatchSqlAfterConcurrentReadsAndWrites() throws Exception {
+        List<Long> liveIds = new CopyOnWriteArrayList<>(jdbcTemplate.queryForList("SELECT id FROM enrollment", Long.class));
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS + 2);
+        List<Future<?>> writers = new ArrayList<>();
+        // 其他系統直接寫入資料表的新紀錄，只能經由背景刷新進入記憶體索引
+        writers.add(executor.submit(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                jdbcTemplate.update("INSERT INTO enrollment (student_id, course_id, enrollment_date) VALUES (?, ?, ?)",
+                        1L + random.nextInt(STUDENTS), 1L + random.nextInt(COURSES), LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365)));
+            }
+        }));
+        // 增量刷新與全量校正和選課 / 退選、查詢同時進行
+        executor.submit(() -> {
+            int round = 0;
+            while (writing.get()) {
+                try {
+                    if (++round % 20 == 0) {
+                        performanceService.reconcileIndexes();
+                    } else {
+                        performanceService.refreshNewEnrollments();
+                    }
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+            }
+        });
+        for (int w = 0; w < WRITERS; w++) {
+            writers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                    if (random.nextInt(3) > 0 || liveIds.isEmpty()) {
+                        Enrollment saved = performanceService.enroll(1L + random.nextInt(STUDENTS), 1L + random.nextInt(COURSES),
+                                LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365)));
+                        liveIds.add(saved.getId());
+                    } else {
+                        Long id = liveIds.get(random.nextInt(liveIds.size()));
+                        if (performanceService.unenroll(id)) {
+                            liveIds.remove(id);
+                        }
+                    }
+                }
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (writing.get()) {
+                    try {
+                        performanceService.findCoursesByStudentId_InMemory(1L + random.nextInt(STUDENTS));
+                        performanceService.findCoursesByStudentId_Csr(1L + random.nextInt(STUDENTS));
+                        performanceService.findStudentsByCourseId_InMemory(1L + random.nextInt(COURSES));
+                        performanceService.findStudentsByCourseId_Csr(1L + random.nextInt(COURSES));
+                        performanceService.findTopPopularCourses_InMemory(10);
+                        performanceService.findTopPopularCourses_Csr(10);
+                        performanceService.findCoEnrolledCourses_Bitmap(1L + random.nextInt(COURSES), 5);
+                        performanceService.findCourseOverlap_Bitmap(1L + random.nextInt(COURSES), 1L + random.nextInt(COURSES));
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            });
+        }
+        for (Future<?> writer : writers) {
+            writer.get(2, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        assertThat(errors).isEmpty();
+        performanceService.refreshNewEnrollments();
+        assertThat(performanceService.getRefreshWatermark())
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT MAX(id) FROM enrollment", Long.class));
+
+        for (long studentId = 1; studentId <= STUDENTS; studentId++) {
+            List<StudentCourseInfo> expected = sorted(performanceService.findCoursesByStudentId_DB(studentId).data());
+            assertThat(sorted(performanceService.findCoursesByStudentId_InMemory(studentId).data())).isEqualTo(expected);
+            assertThat(sorted(performanceService.findCoursesByStudentId_Csr(studentId).data())).isEqualTo(expected);
+        }
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            List<CourseStudentInfo> expected = sorted(performanceService.findStudentsByCourseId_DB(courseId).data());
+            assertThat(sorted(performanceService.findStudentsByCourseId_InMemory(courseId).data())).isEqualTo(expected);
+            assertThat(sorted(performanceService.findStudentsByCourseId_Csr(courseId).data())).isEqualTo(expected);
+
+            // 兩邊都依共同學生數、再依課程 id 排序，因此可直接比較；重複修課與退選後點陣仍只記錄仍在修的學生
+            assertThat(performanceService.findCoEnrolledCourses_Bitmap(courseId, COURSES).data())
+                    .isEqualTo(performanceService.findCoEnrolledCourses_DB(courseId, COURSES).data());
+            long otherCourseId = courseId % COURSES + 1;
+            assertThat(performanceService.findCourseOverlap_Bitmap(courseId, otherCourseId).data())
+                    .isEqualTo(performanceService.findCourseOverlap_DB(courseId, otherCourseId).data());
+        }
+        // 同人數的課程先後順序不固定，因此只比較人數序列
+        List<Long> expectedCounts = counts(performanceService.findTopPopularCourses_DB(COURSES).data());
+        assertThat(counts(performanceService.findTopPopularCourses_InMemory(COURSES).data())).isEqualTo(expectedCounts);
+        assertThat(counts(performanceService.findTopPopularCourses_Csr(COURSES).data())).isEqualTo(expectedCounts);
+
+        // 其他系統的刪除只有全量校正看得到
+        List<Long> externallyDeleted = liveIds.subList(0, 50);
+        for (Long id : externallyDeleted) {
+            jdbcTemplate.update("DELETE FROM enrollment WHERE id = ?", id);
+        }
+        performanceService.reconcileIndexes();
+        for (long studentId = 1; studentId <= STUDENTS; studentId++) {
+            assertThat(sorted(performanceService.findCoursesByStudentId_Csr(studentId).data()))
+                    .isEqualTo(sorted(performanceService.findCoursesByStudentId_DB(studentId).data()));
+        }
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            assertThat(sorted(performanceService.findStudentsByCourseId_InMemory(courseId).data()))
+                    .isEqualTo(sorted(performanceService.findStudentsByCourseId_DB(courseId).data()));
+            assertThat(performanceService.findCoEnrolledCourses_Bitmap(courseId, COURSES).data())
+                    .isEqualTo(performanceService.findCoEnrolledCourses_DB(courseId, COURSES).data());
+        }
+        assertThat(counts(performanceService.findTopPopularCourses_InMemory(COURSES).data()))
+                .isEqualTo(counts(performanceService.findTopPopularCourses_DB(COURSES).data()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.index.CoEnrollmentIndex;
+import com.matsuzaka.bigdata.index.CsrDeltaIndex;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import com.matsuzaka.bigdata.index.TeachingGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 使用者傳入的 Long id 超出 int 範圍時視為不存在，而不是在轉型時丟出 ArithmeticException
+ */
+class IndexIdTest {
+
+    @Test
+    void idsOutsideTheIntRangeMapToMinusOne() {
+        assertThat(PerformanceService.indexId(0)).isZero();
+        assertThat(PerformanceService.indexId(42)).isEqualTo(42);
+        assertThat(PerformanceService.indexId(Integer.MAX_VALUE)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(PerformanceService.indexId(Integer.MAX_VALUE + 1L)).isEqualTo(-1);
+        assertThat(PerformanceService.indexId(Long.MAX_VALUE)).isEqualTo(-1);
+        assertThat(PerformanceService.indexId(-1)).isEqualTo(-1);
+        assertThat(PerformanceService.indexId(Long.MIN_VALUE)).isEqualTo(-1);
+    }
+
+    @Test
+    void indexesTreatTheMappedIdAsNotFound() {
+        CsrEnrollmentIndex.Builder builder = new CsrEnrollmentIndex.Builder(2);
+        builder.add(1, 1, 1, 100);
+        builder.add(2, 2, 1, 100);
+        CsrEnrollmentIndex base = builder.build(2, 1);
+        CsrDeltaIndex csr = new CsrDeltaIndex(base);
+        CoEnrollmentIndex coEnrollment = CoEnrollmentIndex.build(base, 1);
+        TeachingGraph.Builder graph = new TeachingGraph.Builder();
+        graph.add(1, 1);
+        TeachingGraph teaching = graph.build();
+
+        int id = PerformanceService.indexId(Long.MAX_VALUE);
+        List<Integer> visited = new ArrayList<>();
+        assertThat(csr.studentDegree(id)).isZero();
+        assertThat(csr.courseDegree(id)).isZero();
+        csr.forEachCourseOfStudent(id, (courseId, epochDay) -> visited.add(courseId));
+        csr.forEachStudentOfCourse(id, (studentId, epochDay) -> visited.add(studentId));
+        teaching.forEachCourse(id, visited::add);
+        assertThat(visited).isEmpty();
+        assertThat(coEnrollment.coEnrolled(id, 5).size()).isZero();
+        assertThat(coEnrollment.overlap(id, 1).shared()).isZero();
+        assertThat(coEnrollment.overlap(id, 1).studentsB()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,169 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.entity.Course;
+import com.matsuzaka.bigdata.entity.Student;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository.TableStats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 索引快照檔的寫入與讀回：內容完整還原、與資料庫的 TableStats 不一致時忽略、檔案損毀或截斷時丟出 IOException
+ */
+class IndexSnapshotTest {
+
+    private static final TableStats STATS = new TableStats(3, 4, 2, 2, 4, 4);
+
+    @TempDir
+    Path dir;
+
+    private static EntityDirectory directory(String store) {
+        EntityDirectory.Builder builder = EntityDirectory.builder(store);
+        builder.addStudent(student(1, "Alice Chen", "alice@example.com", LocalDate.of(2001, 2, 3)));
+        builder.addStudent(student(2, "王小明", null, null));
+        builder.addStudent(student(4, null, "d@example.com", LocalDate.of(1999, 12, 31)));
+        builder.addCourse(course(1, "Algorithms", 3));
+        builder.addCourse(course(2, "資料庫系統", 2));
+        return builder.build();
+    }
+
+    private static Student student(long id, String name, String email, LocalDate birth) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName(name);
+        student.setEmail(email);
+        student.setBirth(birth);
+        return student;
+    }
+
+    private static Course course(long id, String title, int credit) {
+        Course course = new Course();
+        course.setId(id);
+        course.setTitle(title);
+        course.setCredit(credit);
+        return course;
+    }
+
+    private static CsrEnrollmentIndex csr() {
+        CsrEnrollmentIndex.Builder builder = new CsrEnrollmentIndex.Builder(4);
+        builder.add(1, 1, 1, 19_500);
+        builder.add(2, 1, 2, 19_501);
+        builder.add(3, 2, 2, 19_502);
+        builder.add(4, 4, 1, 19_503);
+        return builder.build(4, 2);
+    }
+
+    private Path write(String store) throws IOException {
+        Path path = dir.resolve("index.snapshot");
+        IndexSnapshot.write(path, STATS, directory(store), csr());
+        return path;
+    }
+
+    @Test
+    void roundTripRestoresEntitiesAndCsrColumnsInBothStores() throws IOException {
+        for (String store : new String[]{"heap", "offheap"}) {
+            Path path = write(store);
+            // 寫入經由暫存檔改名，目錄中只剩快照檔本身
+            try (var files = Files.list(dir)) {
+                assertThat(files.toList()).containsExactly(path);
+            }
+
+            IndexSnapshot.Contents contents = IndexSnapshot.read(path, STATS, EntityDirectory.builder(store)).orElseThrow();
+            EntityDirectory restored = contents.directory();
+            EntityDirectory original = directory(store);
+            assertThat(restored.studentCount()).isEqualTo(3);
+            assertThat(restored.courseCount()).isEqualTo(2);
+            for (long id = 0; id <= 5; id++) {
+                assertThat(restored.hasStudent(id)).isEqualTo(original.hasStudent(id));
+                assertThat(restored.studentName(id)).isEqualTo(original.studentName(id));
+                assertThat(restored.studentEmail(id)).isEqualTo(original.studentEmail(id));
+                assertThat(restored.studentBirth(id)).isEqualTo(original.studentBirth(id));
+                assertThat(restored.hasCourse(id)).isEqualTo(original.hasCourse(id));
+                assertThat(restored.courseTitle(id)).isEqualTo(original.courseTitle(id));
+                assertThat(restored.courseCredit(id)).isEqualTo(original.courseCredit(id));
+            }
+            assertThat(restored.studentName(2)).isEqualTo("王小明");
+            assertThat(restored.studentBirth(2)).isNull();
+
+            CsrEnrollmentIndex csr = contents.csrIndex();
+            assertThat(csr.isMapped()).isTrue();
+            assertThat(ints(csr.columns())).isEqualTo(ints(csr().columns()));
+            assertThat(csr.topCourses(2)).containsExactly(1, 2);
+        }
+    }
+
+    @Test
+    void missingOrStaleSnapshotIsIgnored() throws IOException {
+        assertThat(IndexSnapshot.read(dir.resolve("missing.snapshot"), STATS, EntityDirectory.builder("heap"))).isEmpty();
+
+        Path path = write("heap");
+        // 資料庫在快照之後新增、刪除或改寫任一張表，TableStats 就不再相同
+        for (TableStats changed : new TableStats[]{
+                new TableStats(3, 4, 2, 2, 5, 5),
+                new TableStats(3, 4, 2, 2, 3, 4),
+                new TableStats(4, 5, 2, 2, 4, 4),
+                new TableStats(3, 4, 3, 3, 4, 4)}) {
+            assertThat(IndexSnapshot.read(path, changed, EntityDirectory.builder("heap"))).isEmpty();
+        }
+        assertThat(IndexSnapshot.read(path, STATS, EntityDirectory.builder("heap"))).isPresent();
+    }
+
+    @Test
+    void foreignFileIsIgnored() throws IOException {
+        Path path = write("heap");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'J', 'U', 'N', 'K'}), 0);
+        }
+        assertThat(IndexSnapshot.read(path, STATS, EntityDirectory.builder("heap"))).isEmpty();
+    }
+
+    @Test
+    void truncatedFileFailsInsteadOfMappingPastTheEnd() throws IOException {
+        long fullSize = Files.size(write("heap"));
+        // 標頭中、第一條 CSR 欄位中、學生 / 課程資料中
+        for (long size : new long[]{10, 4 + 4 + 6 * 8 + 4 + 8, fullSize - 3}) {
+            Path path = write("heap");
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+            assertThatThrownBy(() -> IndexSnapshot.read(path, STATS, EntityDirectory.builder("heap")))
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void negativeColumnLengthIsRejected() throws IOException {
+        Path path = write("heap");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, -1), 4 + 4 + 6 * 8);
+        }
+        assertThatThrownBy(() -> IndexSnapshot.read(path, STATS, EntityDirectory.builder("heap")))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static List<List<Integer>> ints(List<IntBuffer> columns) {
+        List<List<Integer>> values = new ArrayList<>();
+        for (IntBuffer column : columns) {
+            List<Integer> list = new ArrayList<>(column.limit());
+            for (int i = 0; i < column.limit(); i++) {
+                list.add(column.get(i));
+            }
+            values.add(list);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,137 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.dto.QueryEngineInfo;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.List;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_BITMAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CACHE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_CSR;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_DB;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_HASH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_JPQL;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_TEXT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT_BATCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSE_OVERLAP;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENTS_BY_COURSE_PAGE;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_STUDENT_SUBSTRING_SEARCH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_COURSES;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_TOP_TEACHERS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 查詢引擎的註冊順序、每個引擎與原生 SQL 的結果一致，以及 REST API 共用的 engine 參數解析
+ */
+class QueryEngineRegistryTest extends SeededDatabaseTest {
+
+    @Test
+    void builtInEnginesComeFirstAndPluginsFollow() {
+        assertThat(queryEngineRegistry.engines()).extracting(QueryEngine::id)
+                .containsExactly(ENGINE_DB, ENGINE_CACHE, ENGINE_HASH, ENGINE_CSR, ENGINE_JPQL);
+        assertThat(queryEngineRegistry.engineInfos()).extracting(QueryEngineInfo::ready).containsOnly(true);
+    }
+
+    @Test
+    void everyEngineMatchesNativeSql() {
+        List<Long> expectedCounts = counts(performanceService.findTopPopularCourses_DB(COURSES).data());
+        for (QueryEngine engine : queryEngineRegistry.engines()) {
+            for (long studentId = 1; studentId <= STUDENTS; studentId += 7) {
+                List<StudentCourseInfo> expected = sorted(performanceService.findCoursesByStudentId_DB(studentId).data());
+                assertThat(sorted(queryEngineRegistry.findCoursesByStudentId(engine, studentId).data())).isEqualTo(expected);
+            }
+            for (long courseId = 1; courseId <= COURSES; courseId++) {
+                List<CourseStudentInfo> expected = sorted(performanceService.findStudentsByCourseId_DB(courseId).data());
+                assertThat(sorted(queryEngineRegistry.findStudentsByCourseId(engine, courseId).data())).isEqualTo(expected);
+            }
+            List<PopularCourseInfo> top = queryEngineRegistry.findTopPopularCourses(engine, COURSES).data();
+            assertThat(counts(top)).isEqualTo(expectedCounts);
+            // 不存在的 id 與 SQL 相同是空結果
+            assertThat(queryEngineRegistry.findCoursesByStudentId(engine, STUDENTS + 1000L).data()).isEmpty();
+        }
+    }
+
+    @Test
+    void memoryResolvesToTheFirstInMemoryEngineOfEachFeature() {
+        assertThat(queryEngineRegistry.resolve(FEATURE_COURSES_BY_STUDENT, "memory")).isEqualTo(ENGINE_HASH);
+        assertThat(queryEngineRegistry.resolve(FEATURE_STUDENTS_BY_COURSE_PAGE, "memory")).isEqualTo(ENGINE_HASH);
+        assertThat(queryEngineRegistry.resolve(FEATURE_COURSE_OVERLAP, "memory")).isEqualTo(ENGINE_BITMAP);
+        assertThat(queryEngineRegistry.resolve(FEATURE_TOP_TEACHERS, "memory")).isEqualTo(ENGINE_CSR);
+        assertThat(queryEngineRegistry.resolve(FEATURE_COURSES_BY_STUDENT_BATCH, "memory")).isEqualTo(ENGINE_CSR);
+        assertThat(queryEngineRegistry.resolve(FEATURE_STUDENT_SUBSTRING_SEARCH, "memory")).isEqualTo(ENGINE_TEXT);
+    }
+
+    @Test
+    void explicitEnginesAreCaseInsensitiveAndLimitedToTheFeature() {
+        assertThat(queryEngineRegistry.resolve(FEATURE_TOP_COURSES, "JPQL")).isEqualTo(ENGINE_JPQL);
+        assertThat(queryEngineRegistry.resolve(FEATURE_COURSE_OVERLAP, "Db")).isEqualTo(ENGINE_DB);
+        assertThat(queryEngineRegistry.supportedEngines(FEATURE_TOP_COURSES))
+                .containsExactly(ENGINE_DB, ENGINE_CACHE, ENGINE_HASH, ENGINE_CSR, ENGINE_JPQL);
+
+        // 引擎存在，但此功能沒有它的實作
+        assertThatThrownBy(() -> queryEngineRegistry.resolve(FEATURE_COURSE_OVERLAP, ENGINE_CSR))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("db / bitmap");
+        assertThatThrownBy(() -> queryEngineRegistry.resolve(FEATURE_STUDENTS_BY_COURSE_PAGE, ENGINE_CACHE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> queryEngineRegistry.resolve(FEATURE_COURSES_BY_STUDENT, ENGINE_BITMAP))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> queryEngineRegistry.resolve(FEATURE_COURSES_BY_STUDENT, "nosql"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> queryEngineRegistry.resolve("no-such-feature", ENGINE_DB))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void engineThatIsStillLoadingIsReportedAsNotReady() {
+        DefaultListableBeanFactory plugins = new DefaultListableBeanFactory();
+        plugins.registerSingleton("loading", new LoadingEngine());
+        QueryEngineRegistry registry = new QueryEngineRegistry(performanceService, plugins.getBeanProvider(QueryEngine.class));
+
+        assertThat(registry.engineInfos()).extracting(QueryEngineInfo::ready).containsExactly(true, true, true, true, false);
+        assertThatThrownBy(() -> registry.resolve(FEATURE_TOP_COURSES, "loading")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> registry.findTopPopularCourses(registry.find("loading").orElseThrow(), 5))
+                .isInstanceOf(IllegalStateException.class);
+        // 其他引擎不受影響
+        assertThat(registry.resolve(FEATURE_TOP_COURSES, "memory")).isEqualTo(ENGINE_HASH);
+    }
+
+    /** 仍在背景載入資料的外掛引擎 */
+    private static final class LoadingEngine implements QueryEngine {
+
+        @Override
+        public String id() {
+            return "loading";
+        }
+
+        @Override
+        public String displayName() {
+            return "載入中的引擎";
+        }
+
+        @Override
+        public boolean isReady() {
+            return false;
+        }
+
+        @Override
+        public List<StudentCourseInfo> findCoursesByStudentId(long studentId) {
+            throw new AssertionError("尚未就緒的引擎不應被呼叫");
+        }
+
+        @Override
+        public List<CourseStudentInfo> findStudentsByCourseId(long courseId) {
+            throw new AssertionError("尚未就緒的引擎不應被呼叫");
+        }
+
+        @Override
+        public List<PopularCourseInfo> findTopPopularCourses(int k) {
+            throw new AssertionError("尚未就緒的引擎不應被呼叫");
+        }
+    }
+}
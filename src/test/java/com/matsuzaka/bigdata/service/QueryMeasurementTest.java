@@ -0,0 +1,85 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.AllocationSummary;
+import com.matsuzaka.bigdata.dto.CourseStudentInfo;
+import com.matsuzaka.bigdata.dto.IndexFootprint;
+import com.matsuzaka.bigdata.dto.QueryResult;
+import com.matsuzaka.bigdata.dto.StudentCourseInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_DB;
+import static com.matsuzaka.bigdata.service.QueryMetrics.ENGINE_HASH;
+import static com.matsuzaka.bigdata.service.QueryMetrics.FEATURE_COURSES_BY_STUDENT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 記憶體估計、每次查詢的配置位元組數與端到端計時
+ *
+ * 配置量取自 HotSpot 的執行緒配置計數，JVM 不支援時查詢結果的 allocatedBytes 為 -1，相關檢查略過。
+ */
+class QueryMeasurementTest extends SeededDatabaseTest {
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    @Test
+    void memoryFootprintListsEveryIndex() {
+        List<IndexFootprint> footprints = performanceService.memoryFootprint();
+        assertThat(footprints).extracting(IndexFootprint::index).contains("entity-directory", "hash-by-student", "hash-by-course",
+                "course-popularity", "csr", "co-enrollment-bitmap", "teaching-graph", "student-search", "course-search");
+        assertThat(footprints).allSatisfy(footprint -> {
+            assertThat(footprint.entries()).isPositive();
+            assertThat(footprint.totalBytes()).isPositive();
+            assertThat(footprint.heapBytes()).isNotNegative();
+            assertThat(footprint.offHeapBytes()).isNotNegative();
+        });
+        // 每位學生的選課清單都是一個項目
+        Long studentsWithEnrollments = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT student_id) FROM enrollment", Long.class);
+        assertThat(footprints).filteredOn(footprint -> footprint.index().equals("hash-by-student"))
+                .singleElement().extracting(IndexFootprint::entries).isEqualTo(studentsWithEnrollments);
+    }
+
+    @Test
+    void queriesReportAllocatedBytes() {
+        if (QueryHarness.currentThreadAllocatedBytes() < 0) {
+            return;
+        }
+        long dbCount = queryMetrics.allocationSummary(FEATURE_COURSES_BY_STUDENT, ENGINE_DB).count();
+        long hashCount = queryMetrics.allocationSummary(FEATURE_COURSES_BY_STUDENT, ENGINE_HASH).count();
+
+        QueryResult<StudentCourseInfo> db = performanceService.findCoursesByStudentId_DB(1L);
+        QueryResult<StudentCourseInfo> hash = performanceService.findCoursesByStudentId_InMemory(1L);
+        assertThat(db.data()).isNotEmpty();
+        assertThat(db.allocatedBytes()).isPositive();
+        assertThat(hash.allocatedBytes()).isPositive();
+
+        // 每次查詢各記錄一筆配置量，暖機不計入
+        AllocationSummary dbSummary = queryMetrics.allocationSummary(FEATURE_COURSES_BY_STUDENT, ENGINE_DB);
+        AllocationSummary hashSummary = queryMetrics.allocationSummary(FEATURE_COURSES_BY_STUDENT, ENGINE_HASH);
+        assertThat(dbSummary.count()).isEqualTo(dbCount + 1);
+        assertThat(hashSummary.count()).isEqualTo(hashCount + 1);
+        assertThat(hashSummary.maxBytes()).isGreaterThanOrEqualTo(hash.allocatedBytes());
+    }
+
+    @Test
+    void endToEndTimingDoesNotChangeResults() {
+        assertThat(performanceService.isEndToEndTiming()).isFalse();
+        performanceService.setEndToEndTiming(true);
+        try {
+            for (long courseId = 1; courseId <= COURSES; courseId++) {
+                List<CourseStudentInfo> expected = sorted(performanceService.findStudentsByCourseId_Csr(courseId).data());
+                assertThat(sorted(performanceService.findStudentsByCourseId_DB(courseId).data())).isEqualTo(expected);
+            }
+            for (long studentId = 1; studentId <= STUDENTS; studentId += 7) {
+                assertThat(sorted(performanceService.findCoursesByStudentId_DB(studentId).data()))
+                        .isEqualTo(sorted(performanceService.findCoursesByStudentId_Csr(studentId).data()));
+            }
+        } finally {
+            performanceService.setEndToEndTiming(false);
+        }
+        assertThat(performanceService.isEndToEndTiming()).isFalse();
+    }
+}
@@ -0,0 +1,135 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.ResultCacheStats;
+import com.matsuzaka.bigdata.entity.Enrollment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 查詢結果快取：命中與未命中都與原生 SQL 相同，選課 / 退選與增量刷新後不會留下寫入前讀到的舊結果
+ */
+class QueryResultCacheTest extends SeededDatabaseTest {
+
+    /** 本類別新增的選課使用初始資料 (2023 年) 之外的日期 */
+    private static final LocalDate INSERTED_DATE = LocalDate.of(2031, 1, 1);
+
+    private void assertCachedMatchesSql() {
+        for (long studentId = 1; studentId <= STUDENTS; studentId++) {
+            assertThat(sorted(performanceService.findCoursesByStudentId_Cached(studentId).data()))
+                    .isEqualTo(sorted(performanceService.findCoursesByStudentId_DB(studentId).data()));
+        }
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            assertThat(sorted(performanceService.findStudentsByCourseId_Cached(courseId).data()))
+                    .isEqualTo(sorted(performanceService.findStudentsByCourseId_DB(courseId).data()));
+        }
+        // 同人數的課程先後順序不固定，因此只比較人數序列
+        for (int k : new int[]{1, 10, COURSES}) {
+            assertThat(counts(performanceService.findTopPopularCourses_Cached(k).data()))
+                    .isEqualTo(counts(performanceService.findTopPopularCourses_DB(k).data()));
+        }
+    }
+
+    @Test
+    void repeatedQueriesAreServedFromTheCache() {
+        performanceService.findCoursesByStudentId_Cached(3L);
+        ResultCacheStats before = performanceService.resultCacheStats();
+        for (int i = 0; i < 5; i++) {
+            assertThat(sorted(performanceService.findCoursesByStudentId_Cached(3L).data()))
+                    .isEqualTo(sorted(performanceService.findCoursesByStudentId_DB(3L).data()));
+        }
+        ResultCacheStats after = performanceService.resultCacheStats();
+
+        assertThat(after.hits() - before.hits()).isEqualTo(5);
+        assertThat(after.misses()).isEqualTo(before.misses());
+        assertThat(after.usedBytes()).isPositive().isLessThanOrEqualTo(after.maxBytes());
+    }
+
+    @Test
+    void enrollAndUnenrollInvalidateTheAffectedResults() {
+        long studentId = 5;
+        long courseId = 7;
+        assertCachedMatchesSql();
+
+        Enrollment saved = performanceService.enroll(studentId, courseId, INSERTED_DATE);
+        assertThat(performanceService.findCoursesByStudentId_Cached(studentId).data())
+                .anySatisfy(row -> assertThat(row.enrollmentDate()).isEqualTo(INSERTED_DATE));
+        assertThat(performanceService.findStudentsByCourseId_Cached(courseId).data())
+                .anySatisfy(row -> assertThat(row.enrollmentDate()).isEqualTo(INSERTED_DATE));
+        assertCachedMatchesSql();
+
+        assertThat(performanceService.unenroll(saved.getId())).isTrue();
+        assertThat(performanceService.findCoursesByStudentId_Cached(studentId).data())
+                .noneSatisfy(row -> assertThat(row.enrollmentDate()).isEqualTo(INSERTED_DATE));
+        assertCachedMatchesSql();
+    }
+
+    @Test
+    void rowsPickedUpByTheIncrementalRefreshInvalidateTheCache() {
+        long studentId = 9;
+        performanceService.findCoursesByStudentId_Cached(studentId);
+        // 其他系統直接寫入資料表，只有增量刷新看得到
+        jdbcTemplate.update("INSERT INTO enrollment (student_id, course_id, enrollment_date) VALUES (?, ?, ?)",
+                studentId, 3L, INSERTED_DATE.plusDays(1));
+        performanceService.refreshNewEnrollments();
+
+        assertThat(sorted(performanceService.findCoursesByStudentId_Cached(studentId).data()))
+                .isEqualTo(sorted(performanceService.findCoursesByStudentId_DB(studentId).data()));
+    }
+
+    @Test
+    void noStaleResultsSurviveConcurrentWrites() throws Exception {
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        // 寫入集中在少數學生 / 課程上，讓失效與未命中時的載入經常重疊
+        for (int w = 0; w < 2; w++) {
+            writers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    if (ids.isEmpty() || random.nextBoolean()) {
+                        ids.add(performanceService.enroll(1L + random.nextInt(5), 1L + random.nextInt(3), INSERTED_DATE.plusDays(i)).getId());
+                    } else {
+                        performanceService.unenroll(ids.remove(random.nextInt(ids.size())));
+                    }
+                }
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (writing.get()) {
+                    try {
+                        performanceService.findCoursesByStudentId_Cached(1L + random.nextInt(5));
+                        performanceService.findStudentsByCourseId_Cached(1L + random.nextInt(3));
+                        performanceService.findTopPopularCourses_Cached(COURSES);
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            });
+        }
+        for (Future<?> writer : writers) {
+            writer.get(2, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        assertThat(errors).isEmpty();
+
+        assertCachedMatchesSql();
+    }
+}
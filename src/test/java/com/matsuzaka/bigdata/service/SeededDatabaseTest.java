@@ -0,0 +1,116 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.PopularCourseInfo;
+import com.matsuzaka.bigdata.repository.EnrollmentStreamRepository;
+import com.matsuzaka.bigdata.repository.SearchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 在 H2 上建立固定的學生 / 課程 / 教師 / 選課資料並載入記憶體索引，供比較記憶體查詢與 SQL 結果的測試共用
+ *
+ * 設定相同的測試類別共用同一個 Spring 測試情境與記憶體資料庫，因此每個類別開始前都先清空資料表 (id 從 1 重新編號)
+ * 再以固定的亂數種子建立同一份資料；同一類別中的測試共用這份資料，會寫入資料的測試類別需自行確保測試之間互不影響
+ */
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({PerformanceService.class, EnrollmentStreamRepository.class, SearchRepository.class, QueryMetrics.class, QueryResultCache.class, SimpleMeterRegistry.class,
+        QueryEngineRegistry.class, JpqlQueryEngine.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+abstract class SeededDatabaseTest {
+
+    static final int STUDENTS = 300;
+    static final int COURSES = 40;
+    static final int TEACHERS = 12;
+    static final int INITIAL_ENROLLMENTS = 6_000;
+
+    /** 記憶體索引與 SQL 的結果順序不一定相同時，以文字表示排序後再比較 */
+    static final Comparator<Object> BY_TEXT = Comparator.comparing(Object::toString);
+
+    private static final String[] TABLES = {"enrollment", "course_assignment", "teacher", "course", "student"};
+
+    @Autowired
+    PerformanceService performanceService;
+
+    @Autowired
+    QueryEngineRegistry queryEngineRegistry;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EnrollmentStreamRepository enrollmentStreamRepository;
+
+    @BeforeAll
+    void seedAndLoad() {
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        try {
+            for (String table : TABLES) {
+                jdbcTemplate.execute("TRUNCATE TABLE " + table + " RESTART IDENTITY");
+            }
+        } finally {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+        seed();
+        performanceService.initializeInMemoryCache();
+    }
+
+    private void seed() {
+        Random random = new Random(42);
+        List<Object[]> students = new ArrayList<>();
+        for (int i = 1; i <= STUDENTS; i++) {
+            students.add(new Object[]{"Student " + i, LocalDate.of(2000, 1, 1).plusDays(i), "student" + i + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO student (name, birth, email) VALUES (?, ?, ?)", students);
+        List<Object[]> courses = new ArrayList<>();
+        for (int i = 1; i <= COURSES; i++) {
+            courses.add(new Object[]{"Course #" + i, 1 + random.nextInt(4)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO course (title, credit) VALUES (?, ?)", courses);
+        List<Object[]> teachers = new ArrayList<>();
+        for (int i = 1; i <= TEACHERS; i++) {
+            teachers.add(new Object[]{"Teacher " + i, "teacher" + i + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO teacher (name, email) VALUES (?, ?)", teachers);
+        // 每門課一位教師，每三門課再加一位合授教師，讓同一學生可經由多門課、多位教師被走訪到
+        List<Object[]> assignments = new ArrayList<>();
+        for (int i = 1; i <= COURSES; i++) {
+            assignments.add(new Object[]{1 + i % TEACHERS, i});
+            if (i % 3 == 0) {
+                assignments.add(new Object[]{1 + (i + 5) % TEACHERS, i});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO course_assignment (teacher_id, course_id) VALUES (?, ?)", assignments);
+        List<Object[]> enrollments = new ArrayList<>();
+        for (int i = 0; i < INITIAL_ENROLLMENTS; i++) {
+            enrollments.add(new Object[]{1 + random.nextInt(STUDENTS), 1 + random.nextInt(COURSES), LocalDate.of(2023, 1, 1).plusDays(random.nextInt(365))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO enrollment (student_id, course_id, enrollment_date) VALUES (?, ?, ?)", enrollments);
+    }
+
+    static <T> List<T> sorted(List<T> list) {
+        List<T> copy = new ArrayList<>(list);
+        copy.sort(BY_TEXT);
+        return copy;
+    }
+
+    /** 同人數的課程先後順序不固定，因此熱門課程只比較人數序列 */
+    static List<Long> counts(List<PopularCourseInfo> courses) {
+        return courses.stream().map(PopularCourseInfo::enrollmentCount).toList();
+    }
+}
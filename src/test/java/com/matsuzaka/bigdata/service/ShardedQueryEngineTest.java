@@ -0,0 +1,51 @@
+package com.matsuzaka.bigdata.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分片引擎 (三個工作行程) 與單機 CSR 索引的結果相同：功能 1 路由到單一分片、功能 2 串接所有分片，
+ * 功能 3 的 TPUT 合併與單機的排名完全相同 (合併邏輯本身的邊界情況見 ShardClusterTest)
+ */
+class ShardedQueryEngineTest extends SeededDatabaseTest {
+
+    private ShardedQueryEngine shardedEngine;
+
+    @BeforeAll
+    void startShards() {
+        shardedEngine = new ShardedQueryEngine(performanceService, enrollmentStreamRepository, 3, "128m");
+        shardedEngine.load();
+    }
+
+    @AfterAll
+    void stopShards() {
+        shardedEngine.close();
+    }
+
+    @Test
+    void coursesOfStudentComeFromTheStudentsShard() {
+        assertThat(shardedEngine.isReady()).isTrue();
+        for (long studentId = 1; studentId <= STUDENTS; studentId++) {
+            assertThat(sorted(shardedEngine.findCoursesByStudentId(studentId)))
+                    .isEqualTo(sorted(performanceService.findCoursesByStudentId_Csr(studentId).data()));
+        }
+    }
+
+    @Test
+    void studentsOfCourseAreGatheredFromEveryShard() {
+        for (long courseId = 1; courseId <= COURSES; courseId++) {
+            assertThat(sorted(shardedEngine.findStudentsByCourseId(courseId)))
+                    .isEqualTo(sorted(performanceService.findStudentsByCourseId_Csr(courseId).data()));
+        }
+    }
+
+    @Test
+    void topCoursesMatchTheSingleIndexRankingExactly() {
+        for (int k : new int[]{1, 5, COURSES, COURSES + 10}) {
+            assertThat(shardedEngine.findTopPopularCourses(k)).isEqualTo(performanceService.findTopPopularCourses_Csr(k).data());
+        }
+    }
+}
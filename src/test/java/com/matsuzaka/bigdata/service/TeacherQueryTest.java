@@ -0,0 +1,64 @@
+package com.matsuzaka.bigdata.service;
+
+import com.matsuzaka.bigdata.dto.TeacherEnrollmentInfo;
+import com.matsuzaka.bigdata.dto.TeacherStudentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 教師 → 課程 → 學生的多跳查詢：經由授課鄰接表走到 CSR 課程端的結果與 SQL 相同
+ *
+ * 種子資料中每門課一位教師，每三門課再加一位合授教師 (見 SeededDatabaseTest)，同一學生可經由多門課、多位教師被走訪到。
+ * 兩邊都依學生 id / 人次再依教師 id 排序，因此可直接比較。
+ */
+class TeacherQueryTest extends SeededDatabaseTest {
+
+    private void assertMatchesSql() {
+        for (long teacherId = 1; teacherId <= TEACHERS; teacherId++) {
+            assertThat(performanceService.findStudentsByTeacherId_Csr(teacherId).data())
+                    .isEqualTo(performanceService.findStudentsByTeacherId_DB(teacherId).data());
+        }
+        for (int k : new int[]{1, 5, TEACHERS, TEACHERS + 5}) {
+            assertThat(performanceService.findTopTeachers_Csr(k).data()).isEqualTo(performanceService.findTopTeachers_DB(k).data());
+        }
+    }
+
+    @Test
+    void teacherQueriesMatchSql() {
+        assertMatchesSql();
+        // 每位學生只出現一次，即使經由多門課被走訪到
+        for (long teacherId = 1; teacherId <= TEACHERS; teacherId++) {
+            assertThat(performanceService.findStudentsByTeacherId_Csr(teacherId).data()).doesNotHaveDuplicates();
+        }
+        assertThat(performanceService.findStudentsByTeacherId_Csr(TEACHERS + 1000L).data()).isEmpty();
+    }
+
+    @Test
+    void topTeachersSumEnrollmentsOverEveryTaughtCourse() {
+        List<TeacherEnrollmentInfo> all = performanceService.findTopTeachers_Csr(TEACHERS).data();
+        assertThat(all).hasSize(TEACHERS);
+        assertThat(all).extracting(TeacherEnrollmentInfo::enrollmentCount).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+        // 合授的課程各算入兩位教師，因此總和大於選課紀錄數
+        long assigned = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM enrollment e JOIN course_assignment ca ON ca.course_id = e.course_id", Long.class);
+        assertThat(all.stream().mapToLong(TeacherEnrollmentInfo::enrollmentCount).sum()).isEqualTo(assigned);
+    }
+
+    @Test
+    void writesReachTheTeacherQueriesThroughTheCourseSide() {
+        // 課程 3 由兩位教師合授：退選一半的紀錄，再讓學生 STUDENTS 選這門課
+        long courseId = 3;
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM enrollment WHERE course_id = ?", Long.class, courseId);
+        for (Long id : ids.subList(0, ids.size() / 2)) {
+            performanceService.unenroll(id);
+        }
+        performanceService.enroll((long) STUDENTS, courseId, LocalDate.of(2024, 2, 1));
+        assertMatchesSql();
+        List<TeacherStudentInfo> students = performanceService.findStudentsByTeacherId_Csr(1L + courseId % TEACHERS).data();
+        assertThat(students).extracting(TeacherStudentInfo::email).contains("student" + STUDENTS + "@example.com");
+    }
+}
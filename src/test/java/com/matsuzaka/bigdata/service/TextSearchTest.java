@@ -0,0 +1,50 @@
+package com.matsuzaka.bigdata.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 功能 10：資料庫端 (H2 上為 REGEXP_LIKE / LIKE) 與前綴、n-gram 索引的搜尋結果依 id 排序後完全相同，
+ * 包含 LIKE 的萬用字元 % 與 _ 必須被當成一般字元
+ */
+class TextSearchTest extends SeededDatabaseTest {
+
+    private static final String[] QUERIES = {"student 1", "STU", "example", "1", "ent 1", "#1", "1@", "e", "_", "%", "no such"};
+
+    @Test
+    void inMemorySearchMatchesTheDatabase() {
+        for (SearchMode mode : SearchMode.values()) {
+            for (String query : QUERIES) {
+                for (int limit : new int[]{5, PerformanceService.MAX_SEARCH_RESULTS}) {
+                    assertThat(performanceService.searchStudents_InMemory(query, mode, limit).data())
+                            .isEqualTo(performanceService.searchStudents_DB(query, mode, limit).data());
+                    assertThat(performanceService.searchCourses_InMemory(query, mode, limit).data())
+                            .isEqualTo(performanceService.searchCourses_DB(query, mode, limit).data());
+                }
+            }
+        }
+    }
+
+    @Test
+    void prefixAndSubstringFindTheExpectedRows() {
+        // Student 1、10 ~ 19、100 ~ 199
+        assertThat(performanceService.searchStudents_InMemory("student 1", SearchMode.PREFIX, 1000).data()).hasSize(111);
+        // Course #1、#10 ~ #19
+        assertThat(performanceService.searchCourses_InMemory("#1", SearchMode.SUBSTRING, 1000).data()).hasSize(11);
+        // 萬用字元只比對字面上的字元，種子資料中沒有 % 與 _
+        assertThat(performanceService.searchStudents_DB("%", SearchMode.SUBSTRING, 1000).data()).isEmpty();
+        assertThat(performanceService.searchStudents_DB("_", SearchMode.SUBSTRING, 1000).data()).isEmpty();
+    }
+
+    @Test
+    void blankQueriesAndOutOfRangeLimitsAreRejected() {
+        assertThatThrownBy(() -> performanceService.searchStudents_InMemory("  ", SearchMode.PREFIX, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.searchCourses_DB("course", SearchMode.SUBSTRING, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> performanceService.searchCourses_InMemory("course", SearchMode.SUBSTRING, PerformanceService.MAX_SEARCH_RESULTS + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
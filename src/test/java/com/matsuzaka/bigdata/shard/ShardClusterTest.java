@@ -0,0 +1,214 @@
+package com.matsuzaka.bigdata.shard;
+
+import com.matsuzaka.bigdata.index.CoursePopularityIndex;
+import com.matsuzaka.bigdata.index.CsrEnrollmentIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 功能 3 的 TPUT 合併：以各分片的 CSR 索引回答三輪請求 (與 ShardWorker 相同的計算)，不啟動工作行程，
+ * 結果必須與把所有紀錄放進同一個 CSR 索引的前 K 名完全相同，包含同人數時 id 較小者優先
+ */
+class ShardClusterTest {
+
+    private static final int STUDENTS = 200;
+
+    /** 與 ShardWorker 相同的回應方式，並記錄每一輪被呼叫的次數 */
+    private static final class LocalRounds implements ShardCluster.TopCoursesRounds {
+        private final List<CsrEnrollmentIndex> shards;
+        private int localTopCalls;
+        private int atLeastCalls;
+        private int countsCalls;
+
+        LocalRounds(List<CsrEnrollmentIndex> shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public int shardCount() {
+            return shards.size();
+        }
+
+        @Override
+        public List<ShardCluster.Postings> localTop(int k) {
+            localTopCalls++;
+            List<ShardCluster.Postings> results = new ArrayList<>();
+            for (CsrEnrollmentIndex csr : shards) {
+                int[] courseIds = csr.topCourses(k);
+                int[] degrees = new int[courseIds.length];
+                for (int i = 0; i < courseIds.length; i++) {
+                    degrees[i] = csr.courseDegree(courseIds[i]);
+                }
+                results.add(new ShardCluster.Postings(courseIds, degrees));
+            }
+            return results;
+        }
+
+        @Override
+        public List<ShardCluster.Postings> atLeast(int threshold) {
+            atLeastCalls++;
+            List<ShardCluster.Postings> results = new ArrayList<>();
+            for (CsrEnrollmentIndex csr : shards) {
+                List<Integer> ids = new ArrayList<>();
+                for (int courseId = 0; courseId <= csr.maxCourseId(); courseId++) {
+                    if (csr.courseDegree(courseId) >= threshold) {
+                        ids.add(courseId);
+                    }
+                }
+                int[] courseIds = ids.stream().mapToInt(Integer::intValue).toArray();
+                int[] degrees = new int[courseIds.length];
+                for (int i = 0; i < courseIds.length; i++) {
+                    degrees[i] = csr.courseDegree(courseIds[i]);
+                }
+                results.add(new ShardCluster.Postings(courseIds, degrees));
+            }
+            return results;
+        }
+
+        @Override
+        public List<int[]> counts(int[] courseIds) {
+            countsCalls++;
+            List<int[]> results = new ArrayList<>();
+            for (CsrEnrollmentIndex csr : shards) {
+                int[] degrees = new int[courseIds.length];
+                for (int i = 0; i < courseIds.length; i++) {
+                    degrees[i] = csr.courseDegree(courseIds[i]);
+                }
+                results.add(degrees);
+            }
+            return results;
+        }
+    }
+
+    /** (studentId, courseId) 成對的紀錄，依 studentId % shardCount 分到各分片 */
+    private static List<CsrEnrollmentIndex> shard(int[][] rows, int shardCount, int maxCourseId) {
+        List<CsrEnrollmentIndex.Builder> builders = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            builders.add(new CsrEnrollmentIndex.Builder(rows.length));
+        }
+        for (int i = 0; i < rows.length; i++) {
+            builders.get(Math.floorMod(rows[i][0], shardCount)).add(i + 1, rows[i][0], rows[i][1], 0);
+        }
+        return builders.stream().map(builder -> builder.build(STUDENTS, maxCourseId)).toList();
+    }
+
+    private static void assertMatchesSingleIndex(int[][] rows, int shardCount, int maxCourseId, int k) {
+        CsrEnrollmentIndex single = shard(rows, 1, maxCourseId).get(0);
+        int[] expectedIds = single.topCourses(k);
+        int[] expectedCounts = new int[expectedIds.length];
+        for (int i = 0; i < expectedIds.length; i++) {
+            expectedCounts[i] = single.courseDegree(expectedIds[i]);
+        }
+        CoursePopularityIndex.Ranking merged = ShardCluster.topCourses(k, maxCourseId, new LocalRounds(shard(rows, shardCount, maxCourseId)));
+        assertThat(merged.courseIds()).as("shards=%d, k=%d", shardCount, k).containsExactly(expectedIds);
+        assertThat(merged.counts()).as("shards=%d, k=%d", shardCount, k).containsExactly(expectedCounts);
+    }
+
+    /** courseCounts[c] 為課程 c 的修課人數；學生 id 依序輪流分配，使每門課的人數平均散在各分片 */
+    private static int[][] rowsWithCounts(int... courseCounts) {
+        List<int[]> rows = new ArrayList<>();
+        int studentId = 1;
+        for (int courseId = 0; courseId < courseCounts.length; courseId++) {
+            for (int i = 0; i < courseCounts[courseId]; i++) {
+                rows.add(new int[]{studentId, courseId});
+                studentId = studentId % STUDENTS + 1;
+            }
+        }
+        return rows.toArray(new int[0][]);
+    }
+
+    @Test
+    void matchesSingleIndexOnRandomData() {
+        Random random = new Random(5);
+        for (int round = 0; round < 30; round++) {
+            int maxCourseId = 5 + random.nextInt(40);
+            int[][] rows = new int[200 + random.nextInt(2_000)][];
+            for (int i = 0; i < rows.length; i++) {
+                // 偏向 id 較小的課程，讓人數有明顯差距也有大量同人數
+                int courseId = random.nextBoolean() ? 1 + random.nextInt(maxCourseId) : 1 + random.nextInt(1 + maxCourseId / 4);
+                rows[i] = new int[]{1 + random.nextInt(STUDENTS), courseId};
+            }
+            for (int shardCount : new int[]{1, 2, 3, 7}) {
+                for (int k : new int[]{1, 3, maxCourseId / 2, maxCourseId}) {
+                    assertMatchesSingleIndex(rows, shardCount, maxCourseId, k);
+                }
+            }
+        }
+    }
+
+    @Test
+    void kLargerThanTheNumberOfCoursesReturnsEveryEnrolledCourseAfterOneRound() {
+        // 課程 2 沒有人修，不列入結果
+        int[][] rows = rowsWithCounts(0, 4, 0, 7, 4, 1);
+        assertMatchesSingleIndex(rows, 3, 5, 10);
+        assertMatchesSingleIndex(rows, 3, 5, Integer.MAX_VALUE);
+
+        LocalRounds rounds = new LocalRounds(shard(rows, 3, 5));
+        CoursePopularityIndex.Ranking ranking = ShardCluster.topCourses(10, 5, rounds);
+        assertThat(ranking.courseIds()).containsExactly(3, 1, 4, 5);
+        assertThat(ranking.counts()).containsExactly(7, 4, 4, 1);
+        // 第一輪不足 k 門課時，每個分片都已回傳所有有人修的課程，部分人數即為確切人數
+        assertThat(rounds.atLeastCalls).isZero();
+        assertThat(rounds.countsCalls).isZero();
+    }
+
+    @Test
+    void singleShardUsesTheFirstRoundOnly() {
+        int[][] rows = rowsWithCounts(0, 3, 9, 3, 6, 3);
+        LocalRounds rounds = new LocalRounds(shard(rows, 1, 5));
+        CoursePopularityIndex.Ranking ranking = ShardCluster.topCourses(3, 5, rounds);
+
+        assertThat(ranking.courseIds()).containsExactly(2, 4, 1);
+        assertThat(ranking.counts()).containsExactly(9, 6, 3);
+        assertThat(rounds.localTopCalls).isEqualTo(1);
+        assertThat(rounds.atLeastCalls).isZero();
+        assertThat(rounds.countsCalls).isZero();
+    }
+
+    @Test
+    void coursesTiedAtTheThresholdAreBrokenBySmallerId() {
+        // 課程 1 ~ 6 人數都是 6，每個分片各 2 人；第 k 名的人數 τ 正好落在同人數區塊中
+        int[][] tied = rowsWithCounts(0, 6, 6, 6, 6, 6, 6, 10);
+        for (int k = 1; k <= 7; k++) {
+            assertMatchesSingleIndex(tied, 3, 7, k);
+        }
+        LocalRounds rounds = new LocalRounds(shard(tied, 3, 7));
+        CoursePopularityIndex.Ranking ranking = ShardCluster.topCourses(3, 7, rounds);
+        assertThat(ranking.courseIds()).containsExactly(7, 1, 2);
+        assertThat(rounds.countsCalls).isEqualTo(1);
+
+        // 課程 1 / 9 在每個分片都只排第二，加總後卻同為第一名，同人數時 id 較小的課程 1 排在前面
+        List<int[]> rows = new ArrayList<>();
+        int[] students = {3, 1, 2};
+        for (int shard = 0; shard < 3; shard++) {
+            // 每個分片各有一門「本地第一」的課程：課程 2 / 3 / 4 各 5 人
+            for (int i = 0; i < 5; i++) {
+                rows.add(new int[]{students[shard] + 3 * i, 2 + shard});
+            }
+            for (int i = 0; i < 3; i++) {
+                rows.add(new int[]{students[shard] + 3 * i, 9});
+                rows.add(new int[]{students[shard] + 3 * i, 1});
+            }
+        }
+        int[][] hidden = rows.toArray(new int[0][]);
+        for (int k = 1; k <= 6; k++) {
+            assertMatchesSingleIndex(hidden, 3, 9, k);
+        }
+        CoursePopularityIndex.Ranking withHidden = ShardCluster.topCourses(4, 9, new LocalRounds(shard(hidden, 3, 9)));
+        assertThat(withHidden.courseIds()).containsExactly(1, 9, 2, 3);
+        assertThat(withHidden.counts()).containsExactly(9, 9, 5, 5);
+    }
+
+    @Test
+    void nonPositiveKReturnsNoCoursesWithoutAskingTheShards() {
+        LocalRounds rounds = new LocalRounds(shard(rowsWithCounts(0, 2), 2, 1));
+        assertThat(ShardCluster.topCourses(0, 1, rounds).size()).isZero();
+        assertThat(ShardCluster.topCourses(-1, 1, rounds).size()).isZero();
+        assertThat(rounds.localTopCalls).isZero();
+    }
+}